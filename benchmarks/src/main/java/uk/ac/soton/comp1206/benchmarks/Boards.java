@@ -0,0 +1,53 @@
+package uk.ac.soton.comp1206.benchmarks;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+
+/**
+ * Boards builds the partly filled grids the benchmarks run on, so every benchmark sees the same boards for the same
+ * parameters.
+ */
+final class Boards {
+
+    private Boards() {
+    }
+
+    /**
+     * Get the columns from a board size such as 10x10
+     * @param size the size
+     * @return columns
+     */
+    static int cols(String size) {
+        return Integer.parseInt(size.substring(0, size.indexOf('x')));
+    }
+
+    /**
+     * Get the rows from a board size such as 10x10
+     * @param size the size
+     * @return rows
+     */
+    static int rows(String size) {
+        return Integer.parseInt(size.substring(size.indexOf('x') + 1));
+    }
+
+    /**
+     * Fill a grid at random to roughly a given density. No row or column is left with fewer than two empty blocks, so
+     * adding one block or one row can never complete a column, and the line checks have nothing pending afterwards.
+     * @param grid an empty grid
+     * @param density the chance of each block being filled, from 0 to 1
+     * @param random the source of blocks
+     */
+    static void fill(Grid grid, double density, SplittableRandom random) {
+        int cols = grid.getCols();
+        int rows = grid.getRows();
+        for(int y = 0; y < rows; y++) {
+            for(int x = 0; x < cols; x++) {
+                if(random.nextDouble() < density && grid.getRowFill(y) < cols - 2 && grid.getColumnFill(x) < rows - 2) {
+                    grid.set(x, y, 1 + random.nextInt(Grid.MAX_VALUE));
+                }
+            }
+        }
+        grid.detectLines();
+    }
+}
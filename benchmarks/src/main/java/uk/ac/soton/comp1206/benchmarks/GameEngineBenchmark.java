@@ -0,0 +1,130 @@
+package uk.ac.soton.comp1206.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.event.GameEventListener;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.VirtualClock;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the line clearing and scoring run after every piece. These run on a GameEngine, which is what Game hands
+ * them to, so no JavaFX toolkit is needed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-simulation.xml")
+public class GameEngineBenchmark {
+
+    /**
+     * The number of empty blocks in the table, a power of two so stepping through it is a mask
+     */
+    private static final int BLOCKS = 1024;
+
+    @Param({ "5x5", "10x10", "40x40", "100x100" })
+    public String size;
+
+    @Param({ "0.0", "0.3", "0.6" })
+    public double density;
+
+    private GameEngine engine;
+    private Grid grid;
+
+    /**
+     * The row filled and cleared by afterPieceClearingRow, kept empty otherwise
+     */
+    private int clearRow;
+
+    private final int[] emptyXs = new int[BLOCKS];
+    private final int[] emptyYs = new int[BLOCKS];
+    private int next;
+
+    /**
+     * Fill the board, empty the row used for clearing, and pick empty blocks to fill
+     */
+    @Setup
+    public void setup() {
+        var random = new SplittableRandom(42);
+        int cols = Boards.cols(size);
+        int rows = Boards.rows(size);
+        engine = new GameEngine(cols, rows, random.split(), new VirtualClock(), GameEventListener.NONE);
+        grid = engine.getGrid();
+        Boards.fill(grid, density, random);
+
+        clearRow = rows / 2;
+        for(int x = 0; x < cols; x++) {
+            grid.set(x, clearRow, 0);
+        }
+        grid.detectLines();
+
+        for(int i = 0; i < BLOCKS; i++) {
+            int x;
+            int y;
+            do {
+                x = random.nextInt(cols);
+                y = random.nextInt(rows);
+            } while(grid.isOccupied(x, y) || y == clearRow);
+            emptyXs[i] = x;
+            emptyYs[i] = y;
+        }
+    }
+
+    /**
+     * Fill a block, check for lines when none are full, and empty the block again. This is the common case after a
+     * piece.
+     * @return the number of lines found
+     */
+    @Benchmark
+    public int afterPieceNoLines() {
+        int i = next++ & (BLOCKS - 1);
+        grid.set(emptyXs[i], emptyYs[i], 1);
+        int lines = engine.afterPiece().getLines();
+        grid.set(emptyXs[i], emptyYs[i], 0);
+        return lines;
+    }
+
+    /**
+     * Fill a whole row, then check for lines, which clears it. The time includes filling the row, one set per column,
+     * as pieces would have to before a clear.
+     * @return the number of blocks cleared
+     */
+    @Benchmark
+    public int afterPieceClearingRow() {
+        int cols = grid.getCols();
+        for(int x = 0; x < cols; x++) {
+            grid.set(x, clearRow, 1);
+        }
+        engine.afterPiece();
+        int blocks = engine.getNumberOfBlocks();
+        engine.setNumberOfLines(0);
+        engine.setNumberOfBlocks(0);
+        return blocks;
+    }
+
+    /**
+     * Score a piece that cleared lines, then one that did not, which resets the multiplier
+     * @return the score
+     */
+    @Benchmark
+    public int score() {
+        int lines = 1 + (next++ & 3);
+        engine.score(lines, lines * grid.getCols());
+        engine.score(0, 0);
+        return engine.getScore();
+    }
+}
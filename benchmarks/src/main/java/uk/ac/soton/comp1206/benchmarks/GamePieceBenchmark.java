@@ -0,0 +1,79 @@
+package uk.ac.soton.comp1206.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks making and rotating pieces. Pieces share their shapes from a table, so with -prof gc creating one should
+ * show only the piece itself being allocated, and rotating should show nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-simulation.xml")
+public class GamePieceBenchmark {
+
+    private GamePiece piece;
+    private int next;
+
+    /**
+     * Create the piece that is rotated
+     */
+    @Setup
+    public void setup() {
+        piece = GamePiece.createPiece(0);
+    }
+
+    /**
+     * Create each piece in turn, in each rotation
+     * @return the piece
+     */
+    @Benchmark
+    public GamePiece createPiece() {
+        next = (next + 1) % (GamePiece.PIECES * GamePiece.ROTATIONS);
+        return GamePiece.createPiece(next / GamePiece.ROTATIONS, next);
+    }
+
+    /**
+     * Rotate once to the right
+     * @return the new rotation
+     */
+    @Benchmark
+    public int rotate() {
+        piece.rotate();
+        return piece.getRotation();
+    }
+
+    /**
+     * Rotate once to the left
+     * @return the new rotation
+     */
+    @Benchmark
+    public int rotateLeft() {
+        piece.rotateLeft();
+        return piece.getRotation();
+    }
+
+    /**
+     * Rotate by a count, as used when spawning a piece in a given rotation
+     * @return the new rotation
+     */
+    @Benchmark
+    public int rotateBy() {
+        piece.rotate(3);
+        return piece.getRotation();
+    }
+}
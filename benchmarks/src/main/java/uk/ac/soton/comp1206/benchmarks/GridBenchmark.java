@@ -0,0 +1,120 @@
+package uk.ac.soton.comp1206.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PieceShape;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks checking and playing pieces on a Grid, the work done on every click and every simulated move.
+ *
+ * Each benchmark steps through a fixed table of pieces and positions so branches and cache behaviour match a real game
+ * rather than one position played over and over. The widest boards are past the single word row masks, so they time
+ * the general path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-simulation.xml")
+public class GridBenchmark {
+
+    /**
+     * The number of moves in each table, a power of two so stepping through it is a mask
+     */
+    private static final int MOVES = 1024;
+
+    @Param({ "5x5", "10x10", "40x40", "100x100" })
+    public String size;
+
+    @Param({ "0.0", "0.3", "0.6" })
+    public double density;
+
+    private Grid grid;
+
+    private final GamePiece[] pieces = new GamePiece[MOVES];
+    private final int[] xs = new int[MOVES];
+    private final int[] ys = new int[MOVES];
+
+    private final GamePiece[] legalPieces = new GamePiece[MOVES];
+    private final int[] legalXs = new int[MOVES];
+    private final int[] legalYs = new int[MOVES];
+
+    private int next;
+
+    /**
+     * Fill the board and build the move tables: any move for checking, and only legal moves for playing
+     */
+    @Setup
+    public void setup() {
+        var random = new SplittableRandom(42);
+        int cols = Boards.cols(size);
+        int rows = Boards.rows(size);
+        grid = new Grid(cols, rows);
+        Boards.fill(grid, density, random);
+
+        for(int i = 0; i < MOVES; i++) {
+            pieces[i] = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(GamePiece.ROTATIONS));
+            xs[i] = random.nextInt(cols);
+            ys[i] = random.nextInt(rows);
+        }
+
+        int legal = 0;
+        while(legal < MOVES) {
+            var piece = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(GamePiece.ROTATIONS));
+            int x = random.nextInt(cols);
+            int y = random.nextInt(rows);
+            if(grid.canPlayPiece(piece, x, y)) {
+                legalPieces[legal] = piece;
+                legalXs[legal] = x;
+                legalYs[legal] = y;
+                legal++;
+            }
+        }
+    }
+
+    /**
+     * Check whether a piece fits, with a mix of moves that do and do not fit
+     * @return whether it fits
+     */
+    @Benchmark
+    public boolean canPlayPiece() {
+        int i = next++ & (MOVES - 1);
+        return grid.canPlayPiece(pieces[i], xs[i], ys[i]);
+    }
+
+    /**
+     * Play a piece that fits, then take its blocks off again so the board stays at the same density. Taking the blocks
+     * off costs a set per block, so compare with the block count rather than reading this as playPiece alone.
+     * @return the value of the first block played
+     */
+    @Benchmark
+    public int playPiece() {
+        int i = next++ & (MOVES - 1);
+        GamePiece piece = legalPieces[i];
+        int x = legalXs[i];
+        int y = legalYs[i];
+        grid.playPiece(piece, x, y);
+
+        PieceShape shape = piece.getShape();
+        int value = grid.get(x + shape.getOffsetX(0), y + shape.getOffsetY(0));
+        for(int block = 0; block < shape.getBlockCount(); block++) {
+            grid.set(x + shape.getOffsetX(block), y + shape.getOffsetY(block), 0);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,579 @@
+package uk.ac.soton.comp1206.benchmarks;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.component.GameBoard;
+import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.metrics.Histogram;
+import uk.ac.soton.comp1206.scene.ChallengeScene;
+import uk.ac.soton.comp1206.scene.ScoresScene;
+import uk.ac.soton.comp1206.server.TetrECSServer;
+import uk.ac.soton.comp1206.ui.GameWindow;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The RenderBenchmark times the game's JavaFX components on a real toolkit with no display, using the Monocle
+ * headless platform and the software renderer. JMH cannot drive the JavaFX thread, so this is a plain program: each
+ * step is run on the JavaFX thread and timed there, and every pulse is recorded while it runs.
+ *
+ * For each board size and render mode it times building a GameBoard, repainting every block, and a storm of line
+ * clear fade outs. It also times PieceBoard.setNextPiece and the menu, challenge and scores scene transitions through
+ * a GameWindow. Each is reported as percentiles of the step itself, the time between frames while it ran, and the
+ * work done on the JavaFX thread in each pulse, along with the number of nodes built.
+ *
+ * Run with: java -cp target/benchmarks.jar uk.ac.soton.comp1206.benchmarks.RenderBenchmark [--sizes 5x5,10x10,...]
+ * [--runs N]
+ */
+public class RenderBenchmark {
+
+    /**
+     * Width and height of the boards, matching the challenge scene's board in an 800 wide window
+     */
+    private static final double BOARD_SIZE = 400;
+
+    private static final int WINDOW_WIDTH = 800;
+    private static final int WINDOW_HEIGHT = 600;
+
+    /**
+     * Runs made before measuring, so the JIT has compiled the code being timed
+     */
+    private static final int WARMUP_RUNS = 10;
+
+    /**
+     * How long each fade out storm lasts, and how often every block is faded out during it
+     */
+    private static final long STORM_MILLIS = 3000;
+    private static final long STORM_EVERY_MILLIS = 100;
+
+    /**
+     * The longest a fade out animation runs, waited for after a storm so it does not spill into the next step
+     */
+    private static final long FADE_MILLIS = 1200;
+
+    private final List<String> sizes;
+    private final int runs;
+    private final PrintStream out;
+
+    private Stage stage;
+    private StackPane root;
+
+    /**
+     * Time between the starts of each pulse, in nanoseconds
+     */
+    private final Histogram frames = new Histogram();
+
+    /**
+     * Time from the start of each pulse to the end of its layout on the benchmark scene, in nanoseconds
+     */
+    private final Histogram pulses = new Histogram();
+
+    private long lastPulse;
+    private long pulseStart;
+    private CompletableFuture<Void> pulseWaiter;
+
+    /**
+     * Runs at the start of every pulse, and keeps pulses coming while a step is measured
+     */
+    private final AnimationTimer frameTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if(lastPulse != 0) {
+                frames.record(now - lastPulse);
+            }
+            lastPulse = now;
+            pulseStart = System.nanoTime();
+        }
+    };
+
+    /**
+     * Create a new render benchmark
+     * @param sizes board sizes such as 10x10
+     * @param runs measured runs of each step
+     * @param out stream to report to
+     */
+    public RenderBenchmark(List<String> sizes, int runs, PrintStream out) {
+        this.sizes = sizes;
+        this.runs = runs;
+        this.out = out;
+    }
+
+    /**
+     * Start JavaFX headless, run every benchmark and print the results
+     * @param args commandline arguments
+     * @throws Exception if the toolkit could not start or a step failed
+     */
+    public static void main(String[] args) throws Exception {
+        //Headless platform and software rendering, unless asked for something else
+        setDefault("glass.platform", "Monocle");
+        setDefault("monocle.platform", "Headless");
+        setDefault("prism.order", "sw");
+        setDefault("log4j.configurationFile", "log4j2-simulation.xml");
+
+        List<String> sizes = List.of("5x5", "10x10", "20x20", "40x40");
+        int runs = 50;
+        for(int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--sizes" -> sizes = Arrays.asList(value.split(","));
+                case "--runs" -> runs = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        var started = new CompletableFuture<Void>();
+        Platform.startup(() -> started.complete(null));
+        started.get();
+        //Closing the board stage before the game window opens must not shut JavaFX down
+        Platform.setImplicitExit(false);
+        try {
+            new RenderBenchmark(sizes, runs, System.out).run();
+        } finally {
+            Platform.exit();
+        }
+        //The game window leaves media players and the communicator behind
+        System.exit(0);
+    }
+
+    /**
+     * Run every benchmark
+     * @throws Exception if a step failed
+     */
+    public void run() throws Exception {
+        fx(() -> {
+            stage = new Stage();
+            root = new StackPane();
+            var scene = new Scene(root, WINDOW_WIDTH, WINDOW_HEIGHT);
+            scene.addPostLayoutPulseListener(this::pulseDone);
+            stage.setScene(scene);
+            stage.show();
+            frameTimer.start();
+            return null;
+        });
+
+        out.printf("JavaFX %s on %s, %d runs per step, times in ms%n", System.getProperty("javafx.runtime.version"),
+                System.getProperty("glass.platform"), runs);
+        for(String size : sizes) {
+            for(GameBoard.RenderMode mode : GameBoard.RenderMode.values()) {
+                String label = size + " " + mode.name().toLowerCase(Locale.ROOT);
+                build(label, Boards.cols(size), Boards.rows(size), mode);
+                repaint(label, Boards.cols(size), Boards.rows(size), mode);
+                storm(label, Boards.cols(size), Boards.rows(size), mode);
+            }
+        }
+        pieceBoard();
+
+        fx(() -> {
+            stage.close();
+            return null;
+        });
+        transitions();
+        fx(() -> {
+            frameTimer.stop();
+            return null;
+        });
+    }
+
+    /**
+     * Time building a board on a half full grid and laying it out
+     * @param label the board size and mode
+     * @param cols columns
+     * @param rows rows
+     * @param mode render mode
+     * @throws Exception if a step failed
+     */
+    private void build(String label, int cols, int rows, GameBoard.RenderMode mode) throws Exception {
+        var build = new Histogram();
+        int[] nodes = new int[1];
+        for(int run = 0; run < WARMUP_RUNS + runs; run++) {
+            if(run == WARMUP_RUNS) {
+                startMeasuring();
+            }
+            boolean measured = run >= WARMUP_RUNS;
+            var grid = new Grid(cols, rows);
+            Boards.fill(grid, 0.5, new SplittableRandom(run));
+            fx(() -> {
+                long start = System.nanoTime();
+                var board = new GameBoard(grid, BOARD_SIZE, BOARD_SIZE, mode);
+                show(board);
+                root.applyCss();
+                root.layout();
+                if(measured) {
+                    build.record(System.nanoTime() - start);
+                }
+                nodes[0] = countNodes(board);
+                return null;
+            });
+            awaitPulse();
+        }
+        report("build " + label, build, nodes[0] + " nodes");
+        reportFrames();
+    }
+
+    /**
+     * Time changing every block on a board, which repaints each GameBlock or the board canvas
+     * @param label the board size and mode
+     * @param cols columns
+     * @param rows rows
+     * @param mode render mode
+     * @throws Exception if a step failed
+     */
+    private void repaint(String label, int cols, int rows, GameBoard.RenderMode mode) throws Exception {
+        var grid = new Grid(cols, rows);
+        fx(() -> show(new GameBoard(grid, BOARD_SIZE, BOARD_SIZE, mode)));
+
+        var repaint = new Histogram();
+        for(int run = 0; run < WARMUP_RUNS + runs; run++) {
+            if(run == WARMUP_RUNS) {
+                startMeasuring();
+            }
+            boolean measured = run >= WARMUP_RUNS;
+            int offset = run;
+            fx(() -> {
+                long start = System.nanoTime();
+                for(int y = 0; y < rows; y++) {
+                    for(int x = 0; x < cols; x++) {
+                        grid.set(x, y, 1 + (offset + x + y) % Grid.MAX_VALUE);
+                    }
+                }
+                if(measured) {
+                    repaint.record(System.nanoTime() - start);
+                }
+                return null;
+            });
+            awaitPulse();
+        }
+        report("repaint " + label, repaint, String.format(Locale.ROOT, "%.2f us per block",
+                repaint.getMean() / 1e3 / (cols * rows)));
+        reportFrames();
+    }
+
+    /**
+     * Fade out every block of a full board over and over, as a run of line clears would
+     * @param label the board size and mode
+     * @param cols columns
+     * @param rows rows
+     * @param mode render mode
+     * @throws Exception if a step failed
+     */
+    private void storm(String label, int cols, int rows, GameBoard.RenderMode mode) throws Exception {
+        var grid = new Grid(cols, rows);
+        Set<GameBlockCoordinate> everything = new HashSet<>();
+        for(int y = 0; y < rows; y++) {
+            for(int x = 0; x < cols; x++) {
+                grid.set(x, y, 1 + (x + y) % Grid.MAX_VALUE);
+                everything.add(new GameBlockCoordinate(x, y));
+            }
+        }
+        var board = fx(() -> {
+            var created = new GameBoard(grid, BOARD_SIZE, BOARD_SIZE, mode);
+            show(created);
+            return created;
+        });
+        awaitPulse();
+
+        var fadeOut = new Histogram();
+        startMeasuring();
+        long end = System.nanoTime() + STORM_MILLIS * 1_000_000L;
+        while(System.nanoTime() < end) {
+            fx(() -> {
+                long start = System.nanoTime();
+                board.fadeOut(everything);
+                fadeOut.record(System.nanoTime() - start);
+                return null;
+            });
+            Thread.sleep(STORM_EVERY_MILLIS);
+        }
+        report("fadeOut storm " + label, fadeOut, (cols * rows) + " blocks every " + STORM_EVERY_MILLIS + " ms");
+        reportFrames();
+        Thread.sleep(FADE_MILLIS);
+    }
+
+    /**
+     * Show a board in place of the one shown before, stopping the old one so its canvas stops repainting
+     * @param board the board to show
+     * @return whether the children changed, as from setAll
+     */
+    private boolean show(GameBoard board) {
+        for(var child : root.getChildren()) {
+            if(child instanceof GameBoard shown) {
+                shown.stop();
+            }
+        }
+        return root.getChildren().setAll(board);
+    }
+
+    /**
+     * Time showing each piece in turn on a piece board
+     * @throws Exception if a step failed
+     */
+    private void pieceBoard() throws Exception {
+        var board = fx(() -> {
+            var created = new PieceBoard(3, 3, 150, 150);
+            show(created);
+            return created;
+        });
+
+        var setNextPiece = new Histogram();
+        for(int run = 0; run < WARMUP_RUNS + runs; run++) {
+            if(run == WARMUP_RUNS) {
+                startMeasuring();
+            }
+            boolean measured = run >= WARMUP_RUNS;
+            var piece = GamePiece.createPiece(run % GamePiece.PIECES, run);
+            fx(() -> {
+                long start = System.nanoTime();
+                board.setNextPiece(piece);
+                if(measured) {
+                    setNextPiece.record(System.nanoTime() - start);
+                }
+                return null;
+            });
+            awaitPulse();
+        }
+        report("PieceBoard.setNextPiece", setNextPiece, countNodes(board) + " nodes");
+        reportFrames();
+    }
+
+    /**
+     * Time moving between the menu, a challenge and the scores in a game window, against a local server. Each is
+     * timed until the new scene has been laid out in its first pulse.
+     * @throws Exception if a step failed
+     */
+    private void transitions() throws Exception {
+        Path scoresFile = Files.createTempFile("tetrecs-render", ".dat");
+        var server = TetrECSServer.open(new InetSocketAddress("localhost", 0), scoresFile);
+        server.start();
+        try {
+            var window = fx(() -> {
+                var gameStage = new Stage();
+                var created = new GameWindow(gameStage, WINDOW_WIDTH, WINDOW_HEIGHT,
+                        "ws://localhost:" + server.getPort());
+                gameStage.show();
+                return created;
+            });
+            Thread.sleep(500);
+
+            var toChallenge = new Histogram();
+            var toScores = new Histogram();
+            var toMenu = new Histogram();
+            int[] nodes = new int[3];
+            for(int run = 0; run < WARMUP_RUNS + runs; run++) {
+                if(run == WARMUP_RUNS) {
+                    startMeasuring();
+                }
+                boolean measured = run >= WARMUP_RUNS;
+
+                //Press play, as a player would, so the menu music is stopped
+                nodes[0] = transition(window, measured ? toChallenge : null, () ->
+                        window.getScene().getRoot().lookupAll(".menuItem").stream()
+                                .filter(node -> node instanceof Button button && button.getText().equals("Play"))
+                                .map(Button.class::cast)
+                                .findFirst().orElseThrow().fire());
+                nodes[1] = transition(window, measured ? toScores : null, () -> {
+                    var challenge = (ChallengeScene) window.getCurrentScene();
+                    challenge.getGame().getGameTimer().cancel();
+                    challenge.ScoreScreen();
+                });
+                nodes[2] = transition(window, measured ? toMenu : null, () ->
+                        ((ScoresScene) window.getCurrentScene()).shutdownResults());
+            }
+            //Each change returns the size of the scene it left
+            report("menu -> challenge", toChallenge, nodes[1] + " nodes");
+            report("challenge -> scores", toScores, nodes[2] + " nodes");
+            report("scores -> menu", toMenu, nodes[0] + " nodes");
+            reportFrames();
+        } finally {
+            server.close();
+            deleteScores(scoresFile);
+        }
+    }
+
+    /**
+     * Run a scene change and wait for the new scene's first layout
+     * @param window the game window
+     * @param times where to record the time to the first layout, or null while warming up
+     * @param change the scene change
+     * @return the number of nodes in the scene that was left
+     * @throws Exception if the change failed
+     */
+    private int transition(GameWindow window, Histogram times, Runnable change) throws Exception {
+        var laidOut = new CompletableFuture<Void>();
+        int nodes = fx(() -> {
+            int before = countNodes(window.getScene().getRoot());
+            long start = System.nanoTime();
+            change.run();
+            Scene scene = window.getScene();
+            Runnable[] listener = new Runnable[1];
+            listener[0] = () -> {
+                if(times != null) {
+                    times.record(System.nanoTime() - start);
+                }
+                scene.removePostLayoutPulseListener(listener[0]);
+                laidOut.complete(null);
+            };
+            scene.addPostLayoutPulseListener(listener[0]);
+            return before;
+        });
+        laidOut.get();
+        //Let the scene's initialise run before it is left
+        fx(() -> null);
+        return nodes;
+    }
+
+    /**
+     * Delete a temporary server score log and its journal
+     * @param scoresFile the score log
+     * @throws IOException if a file could not be deleted
+     */
+    private static void deleteScores(Path scoresFile) throws IOException {
+        Files.deleteIfExists(scoresFile);
+        Files.deleteIfExists(scoresFile.resolveSibling(scoresFile.getFileName() + ".journal"));
+    }
+
+    /**
+     * Clear the frame and pulse histograms, to measure a new step from the next pulse
+     * @throws Exception if the JavaFX thread failed
+     */
+    private void startMeasuring() throws Exception {
+        fx(() -> {
+            frames.reset();
+            pulses.reset();
+            lastPulse = 0;
+            return null;
+        });
+    }
+
+    /**
+     * Wait for the benchmark scene's next layout
+     * @throws Exception if the JavaFX thread failed
+     */
+    private void awaitPulse() throws Exception {
+        fx(() -> {
+            pulseWaiter = new CompletableFuture<>();
+            return pulseWaiter;
+        }).get();
+    }
+
+    /**
+     * Record the end of a pulse's work on the benchmark scene
+     */
+    private void pulseDone() {
+        if(pulseStart != 0) {
+            pulses.record(System.nanoTime() - pulseStart);
+        }
+        if(pulseWaiter != null) {
+            pulseWaiter.complete(null);
+            pulseWaiter = null;
+        }
+    }
+
+    /**
+     * Print a step's times
+     * @param label the step
+     * @param step times of the step itself
+     * @param detail anything more to say about it
+     */
+    private void report(String label, Histogram step, String detail) {
+        out.printf("%-30s %s; %s%n", label + ":", summary(step), detail);
+    }
+
+    /**
+     * Print the frames, and the pulses on the benchmark scene, since measuring started
+     */
+    private void reportFrames() {
+        out.printf("%-30s %s%n", "  frame interval:", summary(frames));
+        if(pulses.getCount() > 0) {
+            out.printf("%-30s %s%n", "  pulse work:", summary(pulses));
+        }
+    }
+
+    /**
+     * Summarise a histogram of nanoseconds in milliseconds
+     * @param histogram the histogram
+     * @return the summary
+     */
+    private static String summary(Histogram histogram) {
+        if(histogram.getCount() == 0) {
+            return "none";
+        }
+        return String.format(Locale.ROOT, "p50 %.3f, p90 %.3f, p99 %.3f, max %.3f (%d)",
+                histogram.getPercentile(50) / 1e6, histogram.getPercentile(90) / 1e6,
+                histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6, histogram.getCount());
+    }
+
+    /**
+     * Count a node and everything under it
+     * @param node the node
+     * @return the number of nodes
+     */
+    private static int countNodes(Node node) {
+        int count = 1;
+        if(node instanceof Parent parent) {
+            for(Node child : parent.getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Run something on the JavaFX thread and wait for it
+     * @param task the task
+     * @param <T> the result type
+     * @return the result
+     * @throws Exception if the task failed
+     */
+    private static <T> T fx(Callable<T> task) throws Exception {
+        var result = new CompletableFuture<T>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Set a system property unless it has already been set
+     * @param key the property
+     * @param value the default value
+     */
+    private static void setDefault(String key, String value) {
+        if(System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -6,6 +6,8 @@
  */
 module uk.ac.soton.comp1206 {
     requires java.scripting;
+    requires java.management;
+    requires jdk.jfr;
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.media;
@@ -19,4 +21,10 @@ module uk.ac.soton.comp1206 {
     exports uk.ac.soton.comp1206.event;
     exports uk.ac.soton.comp1206.component;
     exports uk.ac.soton.comp1206.game;
+    exports uk.ac.soton.comp1206.metrics;
+    exports uk.ac.soton.comp1206.simulation;
+    exports uk.ac.soton.comp1206.scores;
+    exports uk.ac.soton.comp1206.server;
+    exports uk.ac.soton.comp1206.loadtest;
+    exports uk.ac.soton.comp1206.jfr;
 }
\ No newline at end of file
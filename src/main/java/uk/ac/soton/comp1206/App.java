@@ -6,10 +6,24 @@ import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import uk.ac.soton.comp1206.game.SoundEngine;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
+import uk.ac.soton.comp1206.scores.HighScoreService;
+import uk.ac.soton.comp1206.server.TetrECSServer;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * JavaFX Application class
+ *
+ * The game starts a TetrECSServer inside itself and connects to it for online scores and the lobby, or connects to the
+ * one already running on this machine. Passing --server followed by a web socket address connects to that server
+ * instead, such as one started with Launcher server.
  */
 public class App extends Application {
 
@@ -27,13 +41,23 @@ public class App extends Application {
     private static final Logger logger = LogManager.getLogger(App.class);
     private Stage stage;
 
+    /**
+     * The server started inside the game, or null if using a separate one
+     */
+    private TetrECSServer localServer;
+
+    /**
+     * Where the game's metrics are written when it shuts down
+     */
+    public static final Path METRICS_FILE = Path.of("metrics.txt");
+
     /**
      * Start the game
      * @param args commandline arguments
      */
     public static void main(String[] args) {
         logger.info("Starting client");
-        launch();
+        launch(args);
     }
 
     /**
@@ -45,18 +69,64 @@ public class App extends Application {
         instance = this;
         this.stage = stage;
 
+        //Make the game's metrics readable over JMX, and keep them when the game closes
+        MetricsRegistry.getInstance().registerMBean();
+        MetricsRegistry.getInstance().dumpOnShutdown(METRICS_FILE);
+
+        //Decode the sound effects while the window opens
+        SoundEngine.getInstance().preload();
+
+        //Open and read the local scores off the JavaFX thread, so the first game and the scores scene need not wait
+        CompletableFuture.runAsync(() -> HighScoreService.getInstance().preload());
+
+        String server = serverArgument();
+        if (server == null) {
+            server = startLocalServer();
+        }
+
         //Open game window
-        openGame();
+        openGame(server);
+    }
+
+    /**
+     * Get the server given with --server
+     * @return the server's web socket address, or null if none was given
+     */
+    private String serverArgument() {
+        List<String> args = getParameters().getRaw();
+        int index = args.indexOf("--server");
+        if (index < 0 || index + 1 >= args.size()) {
+            return null;
+        }
+        return args.get(index + 1);
+    }
+
+    /**
+     * Start a TetrECS server inside the game, on the usual port
+     * @return the address to connect to it on
+     */
+    private String startLocalServer() {
+        try {
+            localServer = TetrECSServer.open(
+                    new InetSocketAddress("localhost", TetrECSServer.DEFAULT_PORT), TetrECSServer.SCORES_FILE);
+            localServer.start();
+        } catch (IOException e) {
+            //Most likely a server is already running on this machine, so use that one
+            logger.warn("Unable to start local server, connecting to the one already running: {}", e.getMessage());
+            localServer = null;
+        }
+        return GameWindow.DEFAULT_SERVER;
     }
 
     /**
      * Create the GameWindow with the specified width and height
+     * @param server the TetrECS server to connect to
      */
-    public void openGame() {
+    public void openGame(String server) {
         logger.info("Opening game window");
 
         //Change the width and height in this class to change the base rendering resolution for all game parts
-        var gameWindow = new GameWindow(stage,width,height);
+        var gameWindow = new GameWindow(stage,width,height,server);
 
         //Display the GameWindow
         stage.show();
@@ -67,6 +137,9 @@ public class App extends Application {
      */
     public void shutdown() {
         logger.info("Shutting down");
+        if (localServer != null) {
+            localServer.close();
+        }
         System.exit(0);
     }
 
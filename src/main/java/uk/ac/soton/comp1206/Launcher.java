@@ -1,17 +1,59 @@
 package uk.ac.soton.comp1206;
 
+import uk.ac.soton.comp1206.loadtest.LoadTester;
+import uk.ac.soton.comp1206.scores.ScoreArchive;
+import uk.ac.soton.comp1206.server.TetrECSServer;
+import uk.ac.soton.comp1206.simulation.Simulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * This Launcher class is used to allow the game to be built into a shaded jar file which then loads JavaFX. This
  * Launcher is used when running as a shaded jar file.
+ *
+ * Passing "simulate" as the first argument runs the headless Simulator instead of the game, passing "scores" runs the
+ * ScoreArchive import and export tool, passing "server" runs a standalone TetrECSServer, and passing "loadtest" runs
+ * the LoadTester against a server.
  */
 public class Launcher {
 
     /**
      * Launch the JavaFX Application, passing through the commandline arguments
      * @param args commandline arguments
+     * @throws IOException if the score tool could not read or write a file, the server could not start, or the load
+     * test report could not be written
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("simulate")) {
+            Simulator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("scores")) {
+            useToolLogging();
+            ScoreArchive.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("server")) {
+            TetrECSServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("loadtest")) {
+            useToolLogging();
+            LoadTester.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         App.main(args);
     }
 
+    /**
+     * Use the quieter logging configuration for a command line tool, unless one was given. This must be set before
+     * the tool's class is loaded, as its logger starts log4j.
+     */
+    private static void useToolLogging() {
+        if(System.getProperty("log4j.configurationFile") == null) {
+            System.setProperty("log4j.configurationFile", "log4j2-simulation.xml");
+        }
+    }
+
 }
@@ -0,0 +1,300 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GridChangedListener;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * The BoardCanvas draws a whole Grid onto a single Canvas, instead of using a GameBlock node for every block. It is
+ * used by a GameBoard in canvas render mode, for boards too large to build out of individual nodes.
+ *
+ * Changes to the grid only mark the changed blocks as dirty. Dirty blocks are then repainted together once per pulse,
+ * so a line clear costs one repaint of the blocks it touched rather than a redraw of the whole board.
+ *
+ * Mouse positions are mapped back to the column and row underneath, so clicks can be passed on like clicks on a
+ * GameBlock, and the block under the mouse is highlighted.
+ */
+public class BoardCanvas extends Canvas {
+
+    private static final Logger logger = LogManager.getLogger(BoardCanvas.class);
+
+    /**
+     * How long a cleared block flashes before fading, in nanoseconds
+     */
+    private static final long FLASH_NANOS = 100_000_000L;
+
+    /**
+     * How long a cleared block takes to fade out after flashing, in nanoseconds
+     */
+    private static final long FADE_NANOS = 1_000_000_000L;
+
+    /**
+     * The colour used to highlight the block under the mouse
+     */
+    private static final int HOVER = 1;
+
+    private final GameBoard gameBoard;
+    private final Grid grid;
+    private final int cols;
+    private final int rows;
+    private final double blockWidth;
+    private final double blockHeight;
+
+    /**
+     * Whether each block is waiting to be repainted, indexed by y * cols + x
+     */
+    private final boolean[] dirty;
+
+    /**
+     * The indexes of the dirty blocks, in the order they were marked
+     */
+    private final int[] dirtyBlocks;
+    private int dirtyCount;
+
+    /**
+     * The pulse time each block started fading out at, or 0 if it is not fading
+     */
+    private final long[] fadeStart;
+    private int fading;
+
+    /**
+     * The index of the block under the mouse, or -1
+     */
+    private int hover = -1;
+
+    /**
+     * The pre-rendered tiles for blocks on this canvas
+     */
+    private final TileCache tiles;
+
+    /**
+     * Marks blocks dirty as the grid changes, until the canvas is stopped
+     */
+    private final GridChangedListener gridListener;
+
+    /**
+     * Repaints the dirty blocks once per pulse, running only while there is something to repaint
+     */
+    private final AnimationTimer repainter = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            repaint(now);
+        }
+    };
+    private boolean repainting;
+    private boolean stopped;
+
+    /**
+     * Create a new canvas showing a grid
+     * @param gameBoard the board this canvas belongs to
+     * @param grid the grid to show
+     * @param width the visual width
+     * @param height the visual height
+     */
+    public BoardCanvas(GameBoard gameBoard, Grid grid, double width, double height) {
+        super(width, height);
+        this.gameBoard = gameBoard;
+        this.grid = grid;
+        this.cols = grid.getCols();
+        this.rows = grid.getRows();
+        this.blockWidth = width / cols;
+        this.blockHeight = height / rows;
+
+        dirty = new boolean[cols * rows];
+        dirtyBlocks = new int[cols * rows];
+        fadeStart = new long[cols * rows];
+
+        tiles = TileCache.get(blockWidth, blockHeight);
+
+        //Do an initial paint of every block
+        for(int index = 0; index < cols * rows; index++) {
+            paintBlock(index, 1);
+        }
+
+        gridListener = (x, y, value) -> markDirty(y * cols + x);
+        grid.addGridChangedListener(gridListener);
+
+        setOnMouseClicked(this::mouseClicked);
+        setOnMouseMoved(this::mouseMoved);
+        setOnMouseExited(event -> setHover(-1));
+    }
+
+    /**
+     * Start fading out a block that has been cleared
+     * @param x column
+     * @param y row
+     */
+    public void fadeOut(int x, int y) {
+        int index = y * cols + x;
+        if(fadeStart[index] == 0) {
+            fading++;
+        }
+        //The start time is filled in with the pulse time on the next repaint
+        fadeStart[index] = -1;
+        markDirty(index);
+    }
+
+    /**
+     * Stop repainting and stop following the grid for good, used when the board is no longer shown. Without this the
+     * grid and the running repaint timer would keep the canvas reachable.
+     */
+    public void stop() {
+        stopped = true;
+        grid.removeGridChangedListener(gridListener);
+        repainter.stop();
+        repainting = false;
+    }
+
+    /**
+     * Mark a block as needing a repaint on the next pulse
+     * @param index block index
+     */
+    private void markDirty(int index) {
+        if(stopped) {
+            return;
+        }
+        if(!dirty[index]) {
+            dirty[index] = true;
+            dirtyBlocks[dirtyCount++] = index;
+        }
+        if(!repainting) {
+            repainting = true;
+            repainter.start();
+        }
+    }
+
+    /**
+     * Repaint every dirty block, and every block still fading out
+     * @param now the pulse time in nanoseconds
+     */
+    private void repaint(long now) {
+        if(fading > 0) {
+            for(int index = 0; index < fadeStart.length; index++) {
+                if(fadeStart[index] != 0 && !dirty[index]) {
+                    dirty[index] = true;
+                    dirtyBlocks[dirtyCount++] = index;
+                }
+            }
+        }
+
+        int count = dirtyCount;
+        dirtyCount = 0;
+        for(int i = 0; i < count; i++) {
+            int index = dirtyBlocks[i];
+            dirty[index] = false;
+            paintBlock(index, fadeOpacity(index, now));
+        }
+
+        if(dirtyCount == 0 && fading == 0) {
+            repainter.stop();
+            repainting = false;
+        }
+    }
+
+    /**
+     * Work out how opaque a block should be drawn, following the same flash and fade as GameBlock.fadeOut
+     * @param index block index
+     * @param now the pulse time in nanoseconds
+     * @return opacity between 0 and 1
+     */
+    private double fadeOpacity(int index, long now) {
+        long start = fadeStart[index];
+        if(start == 0) {
+            return 1;
+        }
+        if(start < 0) {
+            fadeStart[index] = now;
+            return 1;
+        }
+        long elapsed = now - start;
+        if(elapsed < FLASH_NANOS) {
+            return 1 - 0.5 * elapsed / FLASH_NANOS;
+        }
+        if(elapsed < FLASH_NANOS + FADE_NANOS) {
+            return 1 - (double) (elapsed - FLASH_NANOS) / FADE_NANOS;
+        }
+        //Finished, so the block goes back to full opacity
+        fadeStart[index] = 0;
+        fading--;
+        return 1;
+    }
+
+    /**
+     * Paint a single block into its rectangle on the canvas
+     * @param index block index
+     * @param opacity how opaque to draw the block
+     */
+    private void paintBlock(int index, double opacity) {
+        int x = index % cols;
+        int y = index / cols;
+        double left = x * blockWidth;
+        double top = y * blockHeight;
+        var gc = getGraphicsContext2D();
+
+        gc.clearRect(left, top, blockWidth, blockHeight);
+        gc.setGlobalAlpha(opacity);
+        int value = index == hover ? HOVER : grid.get(x, y);
+        gc.drawImage(tiles.getTile(value, TileCache.State.NORMAL), left, top, blockWidth, blockHeight);
+        gc.setGlobalAlpha(1);
+    }
+
+    /**
+     * Work out which block is under a mouse position
+     * @param event the mouse event
+     * @return block index, or -1 if the mouse is outside the board
+     */
+    private int blockAt(MouseEvent event) {
+        int x = (int) (event.getX() / blockWidth);
+        int y = (int) (event.getY() / blockHeight);
+        if(event.getX() < 0 || event.getY() < 0 || x >= cols || y >= rows) {
+            return -1;
+        }
+        return y * cols + x;
+    }
+
+    /**
+     * Pass a primary click on to the board as a click on the block underneath
+     * @param event mouse event
+     */
+    private void mouseClicked(MouseEvent event) {
+        if(event.getButton() != MouseButton.PRIMARY) {
+            return;
+        }
+        int index = blockAt(event);
+        if(index >= 0) {
+            gameBoard.blockClicked(index % cols, index / cols);
+        }
+    }
+
+    /**
+     * Move the highlight to the block under the mouse
+     * @param event mouse event
+     */
+    private void mouseMoved(MouseEvent event) {
+        setHover(blockAt(event));
+    }
+
+    /**
+     * Change which block is highlighted, repainting the old and new blocks
+     * @param index block index, or -1 for none
+     */
+    private void setHover(int index) {
+        if(index == hover) {
+            return;
+        }
+        int previous = hover;
+        hover = index;
+        if(previous >= 0) {
+            markDirty(previous);
+        }
+        if(index >= 0) {
+            logger.debug("Hovering over block {},{}", index % cols, index / cols);
+            markDirty(index);
+        }
+    }
+}
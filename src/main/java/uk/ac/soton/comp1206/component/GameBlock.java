@@ -62,6 +62,11 @@ public class GameBlock extends Canvas {
     private final double width;
     private final double height;
 
+    /**
+     * The pre-rendered tiles for blocks of this size
+     */
+    private final TileCache tiles;
+
     /**
      * The column this block exists as in the grid
      */
@@ -109,6 +114,7 @@ public class GameBlock extends Canvas {
         this.height = height;
         this.x = x;
         this.y = y;
+        this.tiles = TileCache.get(width, height);
 
         //A canvas needs a fixed width and height
         setWidth(width);
@@ -134,82 +140,17 @@ public class GameBlock extends Canvas {
 
     /**
      * Handle painting of the block canvas
+     * Draws the pre-rendered tile for the current value, or the empty tile when the value is 0
      */
     public void paint() {
-        //If the block is empty, paint as empty
-        if (value.get() == 0) {
-            paintEmpty();
-        } else {
-            //If the block is not empty, paint with the colour represented by the value
-            paintColor(COLOURS[value.get()]);
-        }
-    }
-
-    /**
-     * Paint this canvas empty
-     */
-    private void paintEmpty() {
         var gc = getGraphicsContext2D();
-
-        //Clear
         gc.clearRect(0, 0, width, height);
 
-        //Fill
-        gc.setFill(Color.TRANSPARENT);
-        gc.fillRect(0, 0, width, height);
-
-
-        //Border
-        //gc.setStroke(Color.BLACK);
-        //gc.strokeRect(0,0,width,height);
-
-        gc.setStroke(Color.ANTIQUEWHITE);
-        gc.strokeRoundRect(2, 2, width - 4, height - 4, 10, 10);
-        //String imgPath = "C:/Comp1206/coursework/src/main/resources/images/femboy.jpg";
-        //Image image = new Image(imgPath, width,height ,false,false);
-        //gc.drawImage(image, x, y);
-
-        InnerShadow innerShadow = new InnerShadow();
-        innerShadow.setRadius(5);
-        innerShadow.setColor(Color.GRAY);
-        gc.applyEffect(innerShadow);
-    }
-
-    /**
-     * Paint this canvas with the given colour
-     *
-     * @param colour the colour to paint
-     */
-    private void paintColor(Paint colour) {
-        var gc = getGraphicsContext2D();
-
-        //Clear
-        gc.clearRect(0, 0, width, height);
-
-        //Colour fill
-
-        gc.setFill(colour);
-        gc.fillRoundRect(2, 2, width - 4, height - 4, 10, 10);
-
-        //Border
-        gc.setStroke(colour);
-        gc.strokeRoundRect(2, 2, width - 4, height - 4, 10, 10);
-
-        gc.setFill(darker((Color) colour,0.75));
-        double innerSquareSize = Math.min(width, height) * 0.75;
-        double innerSquareX = (width - innerSquareSize) / 2;
-        double innerSquareY = (height - innerSquareSize) / 2;
-        gc.fillRect(innerSquareX, innerSquareY, innerSquareSize, innerSquareSize);
-
-
-        if (width == 50 && height == 50 && x == 1 && y == 1) {
-            // Draw a circle indicator on the middle block
-            gc.setFill(new Color(0, 0, 0, 0.5));
-            double circleRadius = width / 4; // Adjust the size of the circle as needed
-            gc.fillOval(width / 2 - circleRadius, height / 2 - circleRadius, 2 * circleRadius, 2 * circleRadius);
-        }
-
-
+        int colour = value.get();
+        //The middle block of a piece board is marked with a circle
+        var state = colour != 0 && width == 50 && height == 50 && x == 1 && y == 1
+                ? TileCache.State.CENTRE : TileCache.State.NORMAL;
+        gc.drawImage(tiles.getTile(colour, state), 0, 0, width, height);
     }
 
 
@@ -274,14 +215,4 @@ public class GameBlock extends Canvas {
 
 
     }
-    /**
-     * Darkens the given color by adjusting its brightness.
-     * @param color  the original color to be darkened
-     * @param factor the factor by which to darken the color (0.0 to 1.0, where 0.0 is darkest)
-     * @return the darkened color
-     */
-    private Color darker(Color color, double factor) {
-        // Adjust brightness to make the color darker
-        return color.deriveColor(0, 1, factor, 1);
-    }
 }
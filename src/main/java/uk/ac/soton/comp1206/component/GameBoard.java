@@ -9,8 +9,9 @@ import uk.ac.soton.comp1206.event.BlockClickedListener;
 import uk.ac.soton.comp1206.event.RightClickedListener;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.jfr.FadeOutEvent;
 
-import java.util.HashSet;
+import java.util.Set;
 
 /**
  * A GameBoard is a visual component to represent the visual GameBoard.
@@ -21,11 +22,29 @@ import java.util.HashSet;
  *
  * The GameBoard is only a visual representation and should not contain game logic or model logic in it, which should
  * take place in the Grid.
+ *
+ * A board can instead be drawn in canvas mode, where the whole grid is painted onto a single BoardCanvas rather than
+ * being built from a GameBlock per block. This is used for large boards, where a node per block is too slow.
  */
 public class GameBoard extends GridPane{
 
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
+    /**
+     * The ways a board can be drawn
+     */
+    public enum RenderMode {
+        /**
+         * A GameBlock node for every block
+         */
+        BLOCKS,
+
+        /**
+         * A single BoardCanvas for the whole grid
+         */
+        CANVAS
+    }
+
     /**
      * Number of columns in the board
      */
@@ -52,6 +71,16 @@ public class GameBoard extends GridPane{
     final Grid grid;
     private Game game;
 
+    /**
+     * How this board is drawn
+     */
+    private final RenderMode renderMode;
+
+    /**
+     * The canvas the grid is drawn on in canvas mode, otherwise null
+     */
+    private BoardCanvas canvas;
+
 
 
 
@@ -75,11 +104,24 @@ public class GameBoard extends GridPane{
      * @param height the visual height
      */
     public GameBoard(Grid grid, double width, double height) {
+        this(grid, width, height, RenderMode.BLOCKS);
+    }
+
+    /**
+     * Create a new GameBoard, based off a given grid, with a visual width and height, drawn in the given mode.
+     *
+     * @param grid       linked grid
+     * @param width      the visual width
+     * @param height     the visual height
+     * @param renderMode how the board is drawn
+     */
+    public GameBoard(Grid grid, double width, double height, RenderMode renderMode) {
         this.cols = grid.getCols();
         this.rows = grid.getRows();
         this.width = width;
         this.height = height;
         this.grid = grid;
+        this.renderMode = renderMode;
 
         //Build the GameBoard
         build();
@@ -100,6 +142,7 @@ public class GameBoard extends GridPane{
         this.width = width;
         this.height = height;
         this.grid = new Grid(cols, rows);
+        this.renderMode = RenderMode.BLOCKS;
         //Build the GameBoard
         build();
     }
@@ -109,12 +152,32 @@ public class GameBoard extends GridPane{
      *
      * @param x column
      * @param y row
-     * @return game block at the given column and row
+     * @return game block at the given column and row, or null in canvas mode
      */
     public GameBlock getBlock(int x, int y) {
+        if (blocks == null) {
+            return null;
+        }
         return blocks[x][y];
     }
 
+    /**
+     * Get how this board is drawn
+     * @return render mode
+     */
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * Stop drawing the grid, used when the board is no longer shown. Only a board in canvas mode has anything to stop.
+     */
+    public void stop() {
+        if (canvas != null) {
+            canvas.stop();
+        }
+    }
+
     /**
      * Build the GameBoard by creating a block at every x and y column and row
      */
@@ -124,6 +187,13 @@ public class GameBoard extends GridPane{
         setMaxWidth(width);
         setMaxHeight(height);
 
+        if (renderMode == RenderMode.CANVAS) {
+            canvas = new BoardCanvas(this, grid, width, height);
+            add(canvas, 0, 0);
+            this.setOnMouseClicked(this::handleRightClick);
+            return;
+        }
+
         setGridLinesVisible(true);
 
         blocks = new GameBlock[cols][rows];
@@ -163,7 +233,7 @@ public class GameBoard extends GridPane{
         //Add a mouse click handler to the block to trigger GameBoard blockClicked method
         block.setOnMouseClicked((MouseEvent e) -> {
             if (e.getButton() == MouseButton.PRIMARY) {
-                blockClicked(e, block);
+                blockClicked(x, y);
             }
         });
 
@@ -181,16 +251,16 @@ public class GameBoard extends GridPane{
     }
 
     /**
-     * Triggered when a block is clicked. Call the attached listener.
+     * Triggered when a block is clicked, either a GameBlock or a block on the canvas. Call the attached listener.
      *
-     * @param event mouse event
-     * @param block block clicked on
+     * @param x column of the block clicked on
+     * @param y row of the block clicked on
      */
-    private void blockClicked(MouseEvent event, GameBlock block) {
-        logger.info("Block clicked: {}", block);
+    void blockClicked(int x, int y) {
+        logger.debug("Block clicked: {},{}", x, y);
 
         if (blockClickedListener != null) {
-            blockClickedListener.blockClicked(block);
+            blockClickedListener.blockClicked(new GameBlockCoordinate(x, y));
         }
     }
 
@@ -227,11 +297,23 @@ public class GameBoard extends GridPane{
      * a method which iterates through each block coordinate which needs clearing
      * locates the block on the game board using the coordinates and invokes .fadeout animation on the
      * corresponding game block.
-     * @param blocksToClear takes a HashSet of GameBlockCoordinates to be cleared.
+     * @param blocksToClear takes a Set of GameBlockCoordinates to be cleared.
      */
-    public void fadeOut(HashSet<GameBlockCoordinate> blocksToClear){
+    public void fadeOut(Set<GameBlockCoordinate> blocksToClear){
+        var event = new FadeOutEvent();
+        event.begin();
         for(GameBlockCoordinate blockCoordinate: blocksToClear){
-            blocks[blockCoordinate.getX()][blockCoordinate.getY()].fadeOut();
+            if (canvas != null) {
+                canvas.fadeOut(blockCoordinate.getX(), blockCoordinate.getY());
+            } else {
+                blocks[blockCoordinate.getX()][blockCoordinate.getY()].fadeOut();
+            }
+        }
+        event.end();
+        if(event.shouldCommit()) {
+            event.blocks = blocksToClear.size();
+            event.renderMode = canvas != null ? RenderMode.CANVAS.name() : RenderMode.BLOCKS.name();
+            event.commit();
         }
     }
 
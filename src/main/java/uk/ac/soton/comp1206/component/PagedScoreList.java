@@ -0,0 +1,148 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.scores.ScoreEntry;
+import uk.ac.soton.comp1206.scores.ScorePages;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A PagedScoreList is an observable list of scores that only holds the pages that have been looked at. It is used to
+ * back a ListView, which only asks for the rows it is showing.
+ *
+ * Asking for a score on a page that has not been fetched yet returns null straight away and fetches the page on a
+ * background thread. When the page arrives the rows on it are reported as changed, so the view redraws them. Only a
+ * few pages are kept, so scrolling through a long list does not hold every score in memory.
+ *
+ * The list should only be used on the JavaFX thread.
+ */
+public class PagedScoreList extends ObservableListBase<ScoreEntry> {
+
+    private static final Logger logger = LogManager.getLogger(PagedScoreList.class);
+
+    /**
+     * The number of scores on each page
+     */
+    public static final int PAGE_SIZE = 50;
+
+    /**
+     * The most pages kept at once
+     */
+    private static final int MAX_PAGES = 16;
+
+    /**
+     * Fetches pages for every list, so reading scores never blocks the JavaFX thread
+     */
+    private static final ExecutorService fetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "score-pages");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ScorePages source;
+    private final int size;
+
+    /**
+     * The pages fetched, by page number, least recently used first
+     */
+    private final Map<Integer, List<ScoreEntry>> pages = new LinkedHashMap<>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<ScoreEntry>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * The pages being fetched
+     */
+    private final Set<Integer> pending = new HashSet<>();
+
+    /**
+     * Create a new list over some pages of scores. The number of scores is read once, when the list is created.
+     * @param source the scores to show
+     */
+    public PagedScoreList(ScorePages source) {
+        this.source = source;
+        this.size = source.size();
+    }
+
+    /**
+     * Get a score, fetching its page if it is not held
+     * @param index position in the list
+     * @return the score, or null if its page is still being fetched
+     */
+    @Override
+    public ScoreEntry get(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No score at position " + index + " of " + size);
+        }
+        int pageNumber = index / PAGE_SIZE;
+        List<ScoreEntry> page = pages.get(pageNumber);
+        if(page == null) {
+            fetch(pageNumber);
+            return null;
+        }
+        int offset = index % PAGE_SIZE;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Get the number of scores in the list
+     * @return number of scores
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Fetch a page in the background, unless it is already being fetched
+     * @param pageNumber the page to fetch
+     */
+    private void fetch(int pageNumber) {
+        if(!pending.add(pageNumber)) {
+            return;
+        }
+        fetcher.execute(() -> {
+            List<ScoreEntry> page;
+            try {
+                page = source.page(pageNumber * PAGE_SIZE, PAGE_SIZE);
+            } catch (RuntimeException e) {
+                logger.error("Unable to fetch page {} of scores", pageNumber, e);
+                page = List.of();
+            }
+            List<ScoreEntry> fetched = page;
+            Platform.runLater(() -> loaded(pageNumber, fetched));
+        });
+    }
+
+    /**
+     * Store a fetched page and tell the view its rows have changed
+     * @param pageNumber the page fetched
+     * @param page the scores on it
+     */
+    private void loaded(int pageNumber, List<ScoreEntry> page) {
+        pending.remove(pageNumber);
+        pages.put(pageNumber, page);
+
+        int from = pageNumber * PAGE_SIZE;
+        int to = Math.min(from + page.size(), size);
+        if(from >= to) {
+            return;
+        }
+        beginChange();
+        for(int index = from; index < to; index++) {
+            nextSet(index, null);
+        }
+        endChange();
+    }
+}
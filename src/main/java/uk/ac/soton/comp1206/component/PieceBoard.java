@@ -3,6 +3,7 @@ package uk.ac.soton.comp1206.component;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceShape;
 import uk.ac.soton.comp1206.game.Grid;
 /**
  * Represents a board for managing pieces in a game.
@@ -22,8 +23,8 @@ public class PieceBoard extends GameBoard{
     }
 
     /**
-     * loops through the rows and columns of the GamePiece parsed inand uses the coordinates
-     * for each GameBlock of the GamePiece and sets the block on the grid at that given coordinate
+     * loops through the blocks of the GamePiece parsed in and uses the offset of each block from the centre
+     * of the PieceBoard and sets the block on the grid at that given coordinate
      * to the correct colour value which generates an image for the Piece parsed in.
      * @param piece this is the GamePiece which will be shown on the PieceBoard
      */
@@ -32,13 +33,11 @@ public class PieceBoard extends GameBoard{
         clearBoard(); // Clear the board before setting the new piece
         if (piece != null) {
             // Place the upcoming piece on the board
-            int[][] shape = piece.getBlocks();
-            for (int x = 0; x < grid.getCols(); x++) {
-                for (int y = 0; y < grid.getRows(); y++) {
-                    if (shape[x][y] != 0) {
-                        super.grid.set(x, y, piece.getValue()); // Set cell with appropriate color
-                    }
-                }
+            PieceShape shape = piece.getShape();
+            for (int block = 0; block < shape.getBlockCount(); block++) {
+                int x = 1 + shape.getOffsetX(block);
+                int y = 1 + shape.getOffsetY(block);
+                super.grid.set(x, y, piece.getValue()); // Set cell with appropriate color
             }
         }
     }
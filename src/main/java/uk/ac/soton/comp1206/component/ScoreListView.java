@@ -0,0 +1,73 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.FadeTransition;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.util.Duration;
+import uk.ac.soton.comp1206.scores.ScoreEntry;
+import uk.ac.soton.comp1206.scores.ScorePages;
+
+import java.util.BitSet;
+
+/**
+ * A ScoreListView shows a list of scores, best first. It only creates cells for the rows on screen and reuses them as
+ * the list scrolls, and it is backed by a PagedScoreList, so only the pages being shown are fetched.
+ *
+ * Each score fades in the first time it is shown, so only rows that are actually seen are animated.
+ */
+public class ScoreListView extends ListView<ScoreEntry> {
+
+    /**
+     * How long a score takes to fade in
+     */
+    private static final Duration REVEAL = Duration.seconds(4);
+
+    /**
+     * The rows that have already been revealed
+     */
+    private final BitSet revealed = new BitSet();
+
+    /**
+     * Create a new view of some scores
+     * @param scores the scores to show
+     */
+    public ScoreListView(ScorePages scores) {
+        super(new PagedScoreList(scores));
+        getStyleClass().add("scoreListView");
+        setFocusTraversable(false);
+        setCellFactory(listView -> new ScoreCell());
+    }
+
+    /**
+     * A single row of the list, showing one score
+     */
+    private class ScoreCell extends ListCell<ScoreEntry> {
+
+        private final FadeTransition fadeTransition = new FadeTransition(REVEAL, this);
+
+        ScoreCell() {
+            fadeTransition.setFromValue(0);
+            fadeTransition.setToValue(1);
+        }
+
+        @Override
+        protected void updateItem(ScoreEntry entry, boolean empty) {
+            super.updateItem(entry, empty);
+            fadeTransition.stop();
+            setOpacity(1);
+
+            if(empty) {
+                setText(null);
+            } else if(entry == null) {
+                //The page holding this score is still being fetched
+                setText("...");
+            } else {
+                setText(entry.getName() + ":" + entry.getScore());
+                if(!revealed.get(getIndex())) {
+                    revealed.set(getIndex());
+                    fadeTransition.playFromStart();
+                }
+            }
+        }
+    }
+}
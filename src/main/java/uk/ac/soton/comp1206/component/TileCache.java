@@ -0,0 +1,190 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.InnerShadow;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The TileCache holds a pre-rendered image of every block tile at one size, so painting a block is a single drawImage
+ * rather than redrawing its shapes and effects each time.
+ *
+ * There is a tile for each of the GameBlock colours, where colour 0 is the empty tile, in each State. Tiles are
+ * rasterised the first time they are needed and then reused by every block of the same size. A cache is shared by
+ * all blocks of one size, and caches for sizes no longer in use are dropped, so a board that is resized simply builds
+ * a new cache for its new size.
+ *
+ * Tiles are rendered with a snapshot, so caches must only be used on the JavaFX thread.
+ */
+public class TileCache {
+
+    private static final Logger logger = LogManager.getLogger(TileCache.class);
+
+    /**
+     * The number of different sizes kept at once
+     */
+    private static final int MAX_SIZES = 8;
+
+    /**
+     * The ways a tile can be drawn
+     */
+    public enum State {
+        /**
+         * A plain tile
+         */
+        NORMAL,
+
+        /**
+         * A tile with the indicator marking the centre of a piece
+         */
+        CENTRE
+    }
+
+    /**
+     * The cache for each tile size, least recently used first
+     */
+    private static final Map<String, TileCache> caches = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TileCache> eldest) {
+            return size() > MAX_SIZES;
+        }
+    };
+
+    private final double width;
+    private final double height;
+
+    /**
+     * The rendered tiles, indexed by state then colour
+     */
+    private final WritableImage[][] tiles = new WritableImage[State.values().length][GameBlock.COLOURS.length];
+
+    /**
+     * The canvas tiles are drawn on before being captured
+     */
+    private final Canvas canvas;
+    private final SnapshotParameters parameters = new SnapshotParameters();
+
+    /**
+     * Create a new empty cache for tiles of one size
+     * @param width tile width
+     * @param height tile height
+     */
+    private TileCache(double width, double height) {
+        this.width = width;
+        this.height = height;
+        this.canvas = new Canvas(width, height);
+        parameters.setFill(Color.TRANSPARENT);
+    }
+
+    /**
+     * Get the shared cache for tiles of a given size, creating it if there is not one already
+     * @param width tile width
+     * @param height tile height
+     * @return the cache for that size
+     */
+    public static TileCache get(double width, double height) {
+        String key = width + "x" + height;
+        TileCache cache = caches.get(key);
+        if (cache == null) {
+            logger.info("Creating tile cache for {}", key);
+            cache = new TileCache(width, height);
+            caches.put(key, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Get the tile for a colour, rendering it if it has not been used before
+     * @param value the colour index, 0 for the empty tile
+     * @param state how the tile is drawn
+     * @return the tile image
+     */
+    public WritableImage getTile(int value, State state) {
+        WritableImage tile = tiles[state.ordinal()][value];
+        if (tile == null) {
+            tile = render(value, state);
+            tiles[state.ordinal()][value] = tile;
+        }
+        return tile;
+    }
+
+    /**
+     * Get the width of the tiles in this cache
+     * @return tile width
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the tiles in this cache
+     * @return tile height
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Draw a tile onto the scratch canvas and capture it
+     * @param value the colour index, 0 for the empty tile
+     * @param state how the tile is drawn
+     * @return the captured image
+     */
+    private WritableImage render(int value, State state) {
+        var gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+
+        if (value == 0) {
+            paintEmpty(gc);
+        } else {
+            paintColor(gc, GameBlock.COLOURS[value]);
+        }
+        if (state == State.CENTRE) {
+            //Draw a circle indicator on the middle block
+            gc.setFill(new Color(0, 0, 0, 0.5));
+            double circleRadius = width / 4;
+            gc.fillOval(width / 2 - circleRadius, height / 2 - circleRadius, 2 * circleRadius, 2 * circleRadius);
+        }
+
+        return canvas.snapshot(parameters, null);
+    }
+
+    /**
+     * Draw the empty tile
+     * @param gc graphics context of the scratch canvas
+     */
+    private void paintEmpty(GraphicsContext gc) {
+        gc.setStroke(Color.ANTIQUEWHITE);
+        gc.strokeRoundRect(2, 2, width - 4, height - 4, 10, 10);
+
+        InnerShadow innerShadow = new InnerShadow();
+        innerShadow.setRadius(5);
+        innerShadow.setColor(Color.GRAY);
+        gc.applyEffect(innerShadow);
+    }
+
+    /**
+     * Draw a coloured tile
+     * @param gc graphics context of the scratch canvas
+     * @param colour the colour to paint
+     */
+    private void paintColor(GraphicsContext gc, Color colour) {
+        gc.setFill(colour);
+        gc.fillRoundRect(2, 2, width - 4, height - 4, 10, 10);
+
+        //Border
+        gc.setStroke(colour);
+        gc.strokeRoundRect(2, 2, width - 4, height - 4, 10, 10);
+
+        gc.setFill(colour.deriveColor(0, 1, 0.75, 1));
+        double innerSquareSize = Math.min(width, height) * 0.75;
+        gc.fillRect((width - innerSquareSize) / 2, (height - innerSquareSize) / 2, innerSquareSize, innerSquareSize);
+    }
+}
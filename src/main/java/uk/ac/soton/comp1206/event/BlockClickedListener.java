@@ -1,16 +1,16 @@
 package uk.ac.soton.comp1206.event;
 
-import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 
 /**
  * The Block Clicked listener is used to handle the event when a block in a GameBoard is clicked. It passes the
- * GameBlock that was clicked in the message
+ * coordinate of the block that was clicked in the message
  */
 public interface BlockClickedListener {
 
     /**
      * Handle a block clicked event
-     * @param block the block that was clicked
+     * @param block the coordinate of the block that was clicked
      */
-    public void blockClicked(GameBlock block);
+    public void blockClicked(GameBlockCoordinate block);
 }
@@ -0,0 +1,77 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.LineClear;
+
+/**
+ * The GameEvent Listener is the event sink for a GameEngine. It is told about every change to the state of the game,
+ * so a front end can update its display and play sounds without the engine depending on either.
+ *
+ * Every method does nothing by default, so a listener only needs to handle the events it cares about.
+ */
+public interface GameEventListener {
+
+    /**
+     * A listener which ignores every event
+     */
+    GameEventListener NONE = new GameEventListener() {};
+
+    /**
+     * Handles the current and following pieces changing
+     * @param currentPiece the piece to be played next
+     * @param followingPiece the piece after it
+     */
+    default void piecesChanged(GamePiece currentPiece, GamePiece followingPiece) {}
+
+    /**
+     * Handles a piece being played on the grid
+     * @param piece the piece played
+     * @param x column it was played at
+     * @param y row it was played at
+     */
+    default void piecePlaced(GamePiece piece, int x, int y) {}
+
+    /**
+     * Handles an attempt to play a piece where it does not fit
+     * @param piece the piece that could not be played
+     * @param x column it was tried at
+     * @param y row it was tried at
+     */
+    default void placementRejected(GamePiece piece, int x, int y) {}
+
+    /**
+     * Handles the grid being checked for full lines after a piece. Called after every check, even when no lines were
+     * cleared. The result is only valid for the duration of the call.
+     * @param lines the lines that were cleared
+     */
+    default void linesCleared(LineClear lines) {}
+
+    /**
+     * Handles the score changing
+     * @param score the new score
+     */
+    default void scoreChanged(int score) {}
+
+    /**
+     * Handles the level changing
+     * @param level the new level
+     */
+    default void levelChanged(int level) {}
+
+    /**
+     * Handles the number of lives changing
+     * @param lives the new number of lives
+     */
+    default void livesChanged(int lives) {}
+
+    /**
+     * Handles the multiplier changing
+     * @param multiplier the new multiplier
+     */
+    default void multiplierChanged(int multiplier) {}
+
+    /**
+     * Handles the game ending after the timer runs out with no lives left
+     */
+    default void gameOver() {}
+}
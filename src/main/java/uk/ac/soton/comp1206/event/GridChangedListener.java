@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The GridChanged Listener is used for listening for blocks in a Grid changing value, for example to know which parts
+ * of a board need to be redrawn.
+ */
+public interface GridChangedListener {
+
+    /**
+     * Handle a block in the grid changing value
+     * @param x column of the block
+     * @param y row of the block
+     * @param value the new value
+     */
+    void gridChanged(int x, int y, int value);
+}
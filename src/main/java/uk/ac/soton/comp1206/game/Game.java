@@ -5,30 +5,40 @@ import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.component.GameBlock;
 import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.event.GameEventListener;
 import uk.ac.soton.comp1206.event.GameLoopListener;
 import uk.ac.soton.comp1206.event.LineClearedListener;
 import uk.ac.soton.comp1206.event.NextPieceListener;
+import uk.ac.soton.comp1206.metrics.Counter;
+import uk.ac.soton.comp1206.metrics.Histogram;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.*;
 
 /**
- * The Game class handles the main logic, state and properties of the TetrECS game. Methods to manipulate the game state
- * and to handle actions made by the player should take place inside this class.
+ * The Game class adapts a GameEngine for display in JavaFX. The rules and state of the game live in the engine, while
+ * the Game exposes that state as properties that can be bound to, plays sounds, runs the game timer on the JavaFX
+ * thread and passes events on to the listeners attached by the scene.
  */
 public class Game{
 
     private static final Logger logger = LogManager.getLogger(Game.class);
 
+    //Metrics are looked up once here, so recording them during play does not allocate
+    private static final Counter placementCount = MetricsRegistry.getInstance().counter("game.placements");
+    private static final Counter invalidClickCount = MetricsRegistry.getInstance().counter("game.invalidClicks");
+    private static final Counter linesClearedCount = MetricsRegistry.getInstance().counter("game.linesCleared");
+    private static final Counter timerLifeLossCount = MetricsRegistry.getInstance().counter("game.timerLifeLosses");
+    private static final Histogram placementsPerGame = MetricsRegistry.getInstance().histogram("game.placementsPerGame");
+    private static final Histogram invalidClicksPerGame = MetricsRegistry.getInstance().histogram("game.invalidClicksPerGame");
+    private static final Histogram linesClearedPerGame = MetricsRegistry.getInstance().histogram("game.linesClearedPerGame");
+    private static final Histogram placementNanos = MetricsRegistry.getInstance().histogram("game.placementNanos");
+
     /**
      * Property representing the high score in the game.
      */
-    private final IntegerProperty highScore = new SimpleIntegerProperty(getHighScore());
+    private final IntegerProperty highScore;
 
     /**
      * Property representing the current score in the game.
@@ -43,27 +53,26 @@ public class Game{
     /**
      * Property representing the number of lives remaining in the game.
      */
-    private final IntegerProperty lives = new SimpleIntegerProperty(3);
+    private final IntegerProperty lives = new SimpleIntegerProperty(GameEngine.STARTING_LIVES);
 
     /**
      * Property representing the current score multiplier in the game.
      */
     private final IntegerProperty multiplier = new SimpleIntegerProperty(1);
 
-
-    private int numberOfLines = 0;
-    private int numberOfBlocks = 0;
-
     private NextPieceListener nextPieceListener;
     private LineClearedListener lineClearedListener;
     private GameLoopListener gameLoopListener;
 
-    private GamePiece currentPiece;
-    private GamePiece followingPiece;
+    private final GameTimer gameTimer;
 
-    private final MultiMedia gameMedia = new MultiMedia();
-
-    private Timer gameTimer;
+    /**
+     * What has happened in this game so far, recorded into the per game histograms when it ends
+     */
+    private int placements;
+    private int invalidClicks;
+    private int linesCleared;
+    private boolean ended;
 
     /**
      * The number of rows in the grid.
@@ -75,8 +84,10 @@ public class Game{
      */
     protected final int cols;
 
-
-    private Random random = new Random();
+    /**
+     * The rules engine this game displays
+     */
+    protected final GameEngine engine;
 
     /**
      * The grid model linked to the game
@@ -85,17 +96,22 @@ public class Game{
 
 
     /**
-     * Create a new game with the specified rows and columns. Creates a corresponding grid model.
+     * Create a new game with the specified rows and columns. Creates a corresponding engine and grid model.
      * @param cols number of columns
      * @param rows number of rows
+     * @param highScore the high score to beat
      */
-    public Game(int cols, int rows) {
+    public Game(int cols, int rows, int highScore) {
         this.cols = cols;
         this.rows = rows;
-        followingPiece = spawnPiece();
+        this.highScore = new SimpleIntegerProperty(highScore);
 
-        //Create a new grid model to represent the game state
-        this.grid = new Grid(cols,rows);
+        //Create a new engine to hold the game state, reporting back to this game
+        this.engine = new GameEngine(cols, rows, new EngineEvents());
+        this.grid = engine.getGrid();
+
+        //The countdown for each piece, which hands over to the JavaFX thread when it runs out
+        this.gameTimer = new GameTimer(this::getTimerDelay, this::timerExpired, Platform::runLater);
     }
 
     /**
@@ -111,33 +127,41 @@ public class Game{
      */
     public void initialiseGame() {
         logger.info("Initialising game");
-        nextPiece();
-        gameTimer = new Timer();
+        placements = 0;
+        invalidClicks = 0;
+        linesCleared = 0;
+        ended = false;
+        engine.start();
         runTimer();
-
-
     }
 
     /**
      * Handle what should happen when a particular block is clicked
-     * @param gameBlock the block that was clicked
+     * @param gameBlock the coordinate of the block that was clicked
      */
-    public void blockClicked(GameBlock gameBlock) {
+    public void blockClicked(GameBlockCoordinate gameBlock) {
         //Get the position of this block
         int x = gameBlock.getX();
         int y = gameBlock.getY();
-        if(grid.canPlayPiece(currentPiece,x,y)){
-            grid.playPiece(currentPiece,x,y);
-            gameMedia.playAudioFile("/sounds/place.wav");
-            nextPiece();
-            gameTimer.cancel();
-            gameTimer = new Timer();
-            runTimer();
-        }else{
-            gameMedia.playAudioFile("/sounds/error.mp3");
+        long start = System.nanoTime();
+        if(engine.place(x, y)){
+            gameTimer.reset();
         }
-        afterPiece();
-        score(getNumberOfLines(),getNumberOfBlocks());
+        placementNanos.record(System.nanoTime() - start);
+    }
+
+    /**
+     * End the game, stopping the timer and recording what happened in it. Only the first call has any effect.
+     */
+    public void end() {
+        gameTimer.cancel();
+        if(ended) {
+            return;
+        }
+        ended = true;
+        placementsPerGame.record(placements);
+        invalidClicksPerGame.record(invalidClicks);
+        linesClearedPerGame.record(linesCleared);
     }
 
     /**
@@ -145,10 +169,7 @@ public class Game{
      * @return returns a new GamePiece object with a random color of value between 0-15
      */
     public GamePiece spawnPiece() {
-        int randomNumber = random.nextInt(GamePiece.PIECES);
-        var randomPiece = GamePiece.createPiece(randomNumber);
-        logger.info("Picking random piece: {}", randomPiece);
-        return randomPiece;
+        return engine.spawnPiece();
     }
 
     /**
@@ -156,63 +177,34 @@ public class Game{
      * generates a future piece to be placed too
      */
     public void nextPiece(){
-        currentPiece = followingPiece;
-        followingPiece = spawnPiece();
-        logger.info("The next Piece is: {}",currentPiece);
-        if(nextPieceListener != null) {
-            nextPieceListener.nextPiece(currentPiece, followingPiece);
-        }
+        engine.nextPiece();
     }
 
     /**
      * After a piece has been played on the board
-     * works out which blocks form a line and need to be cleared at which coordinates
+     * works out which rows and columns touched since the last check form a line and need to be cleared
      * invokes the linesClearedListener method to clear those lines/blocks from the board
      */
     public void afterPiece() {
-        HashSet<GameBlockCoordinate> blocksToClearCoordinates = new HashSet<>();
-        for (int x = 0; x < grid.getCols(); x++) {
-            int xBlockCounter = 0;
-            for (int y = 0; y < grid.getRows(); y++) {
-                if(grid.get(x, y) != 0) {
-                    xBlockCounter++;
-                }
-            }
-
-            if (xBlockCounter == grid.getRows()) {
-                numberOfLines++;
-                for (int y = 0; y < grid.getRows(); y++) {
-                    blocksToClearCoordinates.add(new GameBlockCoordinate(x, y));
-                }
-            }
-        }
+        engine.afterPiece();
+    }
 
-        for (int y = 0; y < grid.getRows(); y++) {
-            int yBlockCounter = 0;
-            for (int x = 0; x < grid.getCols(); x++) {
-                if(grid.get(x, y) != 0) {
-                    yBlockCounter++;
-                }
-            }
-            if (yBlockCounter == grid.getCols()) {
-                numberOfLines++;
-                for (int x = 0; x < grid.getCols(); x++) {
-                    blocksToClearCoordinates.add(new GameBlockCoordinate(x, y));
-                }
-            }
-        }
+    /**
+     * Lose a life because the current piece ran out of time
+     */
+    public void loseLife() {
+        engine.loseLife();
+    }
 
-        for (GameBlockCoordinate coordinate: blocksToClearCoordinates){
-            grid.set(coordinate.getX(), coordinate.getY(), 0);
-            numberOfBlocks++;
-        }
-        if(lineClearedListener != null ) {
-            lineClearedListener.onLineCleared(blocksToClearCoordinates);
-        }
 
+    /**
+     * Get the rules engine inside this game
+     * @return game engine
+     */
+    public GameEngine getEngine() {
+        return engine;
     }
 
-
     /**
      * Get the grid model inside this game representing the game state of the board
      * @return game grid model
@@ -242,7 +234,7 @@ public class Game{
      * @param currentPiece GamePiece to be set
      */
     public void setCurrentPiece(GamePiece currentPiece) {
-        this.currentPiece = currentPiece;
+        engine.setCurrentPiece(currentPiece);
     }
 
     /**
@@ -258,7 +250,7 @@ public class Game{
      * @param score score to be set
      */
     public void setScore(int score) {
-        this.score.set(score);
+        engine.setScore(score);
     }
     /**
      * Returns the IntegerProperty object representing the score property.
@@ -280,7 +272,7 @@ public class Game{
      * @param level The new value for the level property.
      */
     public void setLevel(int level) {
-        this.level.set(level);
+        engine.setLevel(level);
     }
 
     /**
@@ -304,7 +296,7 @@ public class Game{
      * @param lives The new value for the lives property.
      */
     public void setLives(int lives) {
-        this.lives.set(lives);
+        engine.setLives(lives);
     }
 
     /**
@@ -328,7 +320,7 @@ public class Game{
      * @param multiplier The new value for the multiplier property.
      */
     public void setMultiplier(int multiplier) {
-        this.multiplier.set(multiplier);
+        engine.setMultiplier(multiplier);
     }
 
     /**
@@ -349,28 +341,14 @@ public class Game{
      * @param numberOfBlocks number of blocks removed
      */
     public void score(int numberOfLines, int numberOfBlocks) {
-        if(numberOfLines > 0) {
-            int scoreToAdd = numberOfLines * numberOfBlocks * 10 * getMultiplier();
-            setScore(getScore() + scoreToAdd);
-            setMultiplier(getMultiplier() + 1);
-            int fixedLevel = (int) Math.floor((double) getScore() /1000);
-            setLevel(fixedLevel);
-            gameMedia.playAudioFile("/sounds/clear.wav");
-
-
-        }else{
-            setMultiplier(1);
-        }
-        setNumberOfLines(0);
-        setNumberOfBlocks(0);
-
+        engine.score(numberOfLines, numberOfBlocks);
     }
     /**
      * gets the number of lines.
      * @return The number of lines in the game.
      */
     public int getNumberOfLines() {
-        return numberOfLines;
+        return engine.getNumberOfLines();
     }
 
     /**
@@ -378,7 +356,7 @@ public class Game{
      * @return The number of blocks in the game.
      */
     public int getNumberOfBlocks() {
-        return numberOfBlocks;
+        return engine.getNumberOfBlocks();
     }
 
     /**
@@ -386,7 +364,7 @@ public class Game{
      * @param numberOfLines The new number of lines in the game.
      */
     public void setNumberOfLines(int numberOfLines) {
-        this.numberOfLines = numberOfLines;
+        engine.setNumberOfLines(numberOfLines);
     }
 
     /**
@@ -394,7 +372,7 @@ public class Game{
      * @param numberOfBlocks The new number of blocks in the game.
      */
     public void setNumberOfBlocks(int numberOfBlocks) {
-        this.numberOfBlocks = numberOfBlocks;
+        engine.setNumberOfBlocks(numberOfBlocks);
     }
 
     /**
@@ -410,21 +388,21 @@ public class Game{
      * @return The current game piece.
      */
     public GamePiece getCurrentPiece() {
-        return currentPiece;
+        return engine.getCurrentPiece();
     }
 
     /**
      * Rotates current piece right
      */
     public void rotateCurrentPiece(){
-        currentPiece.rotate();
+        engine.rotateCurrentPiece();
     }
 
     /**
      * Rotates current piece left.
      */
     public void rotateCurrentPieceLeft(){
-        currentPiece.rotateLeft();
+        engine.rotateCurrentPieceLeft();
     }
 
     /**
@@ -432,7 +410,7 @@ public class Game{
       * @return following GamePiece.
      */
     public GamePiece getFollowingPiece() {
-        return followingPiece;
+        return engine.getFollowingPiece();
     }
 
 
@@ -441,7 +419,7 @@ public class Game{
      * @param followingPiece The game piece that will appear next in the game.
      */
     public void setFollowingPiece(GamePiece followingPiece) {
-        this.followingPiece = followingPiece;
+        engine.setFollowingPiece(followingPiece);
     }
 
     /**
@@ -467,70 +445,37 @@ public class Game{
      * @return time delay between each game loop.
      */
     public int getTimerDelay(){
-        int timeDelay;
-        timeDelay = 12000 - (500 * getLevel());
-        if(timeDelay < 2500) {
-            timeDelay= 2500;
-        }
-        return timeDelay;
+        return engine.getTimerDelay();
     }
     /**
-     * Runs a timer task at a fixed rate, which executes the game loop listener's gameLoop method periodically.
-     * The timer task is scheduled based on the timer delay set by getTimerDelay method.
-     * If the number of lives reaches zero, the timer is canceled and the game loop listener's ScoreScreen method is called.
+     * Starts the countdown for the current piece, which executes the game loop listener's gameLoop method each time it
+     * runs out. The length of each countdown is read from getTimerDelay when it starts.
      */
     public void runTimer() {
-        gameTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                Platform.runLater(() -> {
-                    if (getLives() <= 0) {
-                        gameTimer.cancel();
-                        gameLoopListener.ScoreScreen();
-                    } else {
-                        gameLoopListener.gameLoop();
-                    }
-                });
-            }
-        }, getTimerDelay(), getTimerDelay());
-
+        gameTimer.start();
     }
+
     /**
-     * gets the high score from the scores.txt file.
-     * If the file doesn't exist or is empty, returns 0.
-     * Which is determined by reading the first line
-     * @return the high score read from the scores.txt file
+     * Handles the countdown running out on the JavaFX thread.
+     * If the number of lives reaches zero, the game is ended and the game loop listener's ScoreScreen method is called.
      */
-    public int getHighScore() {
-
-        try {
-            BufferedReader fileReader = new BufferedReader(new FileReader("scores.txt"));
-            String firstLine = fileReader.readLine();
-            if (firstLine == null){
-                return 0;
-            }
-
-            BufferedReader comparisonReader = new BufferedReader(new FileReader("scores.txt"));
-            String line;
-            int highScore = 0;
-            int scoreComparison;
-            while ((line = comparisonReader.readLine()) != null){
-                String[] parts = line.split(":");
-                String name = parts[0];
-                scoreComparison = Integer.parseInt(parts[1]);
-                highScore = Math.max(scoreComparison, highScore);
-
-            }
-            fileReader.close();
-            comparisonReader.close();
-            return highScore;
-
-        } catch (FileNotFoundException e) {
-            return 0;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private void timerExpired() {
+        if (getLives() <= 0) {
+            end();
+            gameLoopListener.ScoreScreen();
+        } else {
+            timerLifeLossCount.increment();
+            gameLoopListener.gameLoop();
         }
+    }
 
+    /**
+     * gets the high score the game was started with.
+     * If there were no scores yet, returns 0.
+     * @return the high score of the local scores
+     */
+    public int getHighScore() {
+        return highScore.get();
     }
     /**
      * gets the property object representing the high score.
@@ -541,13 +486,74 @@ public class Game{
     }
     /**
      * gets the game timer.
-     * @return a Timer object named gameTimer
+     * @return the GameTimer counting down each piece
      */
-    public Timer getGameTimer() {
+    public GameTimer getGameTimer() {
         return gameTimer;
     }
 
+    /**
+     * Receives events from the engine, keeping the properties up to date, playing sounds and passing events on to the
+     * listeners attached to this game.
+     */
+    private class EngineEvents implements GameEventListener {
+
+        @Override
+        public void piecesChanged(GamePiece currentPiece, GamePiece followingPiece) {
+            if(nextPieceListener != null) {
+                nextPieceListener.nextPiece(currentPiece, followingPiece);
+            }
+        }
+
+        @Override
+        public void piecePlaced(GamePiece piece, int x, int y) {
+            placements++;
+            placementCount.increment();
+            SoundEngine.getInstance().play(Sound.PLACE);
+        }
+
+        @Override
+        public void placementRejected(GamePiece piece, int x, int y) {
+            invalidClicks++;
+            invalidClickCount.increment();
+            SoundEngine.getInstance().play(Sound.FAIL);
+        }
+
+        @Override
+        public void linesCleared(LineClear lines) {
+            if(lines.getLines() > 0) {
+                linesCleared += lines.getLines();
+                linesClearedCount.add(lines.getLines());
+                SoundEngine.getInstance().play(Sound.CLEAR);
+            }
+            if(lineClearedListener != null) {
+                //Only build the block coordinates when there is something for the listener to animate
+                Set<GameBlockCoordinate> blocksToClearCoordinates = lines.getLines() > 0
+                        ? lines.toCoordinates()
+                        : Collections.emptySet();
+                lineClearedListener.onLineCleared(blocksToClearCoordinates);
+            }
+        }
+
+        @Override
+        public void scoreChanged(int newScore) {
+            score.set(newScore);
+        }
 
+        @Override
+        public void levelChanged(int newLevel) {
+            level.set(newLevel);
+        }
 
+        @Override
+        public void livesChanged(int newLives) {
+            lives.set(newLives);
+        }
+
+        @Override
+        public void multiplierChanged(int newMultiplier) {
+            multiplier.set(newMultiplier);
+        }
+    }
 
 }
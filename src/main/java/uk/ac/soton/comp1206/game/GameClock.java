@@ -0,0 +1,20 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The GameClock is the source of time for a game. It is injected into the GameEngine so that games can be run against
+ * the system clock when played, or against a controlled clock in simulations and tests.
+ */
+@FunctionalInterface
+public interface GameClock {
+
+    /**
+     * A clock backed by System.nanoTime
+     */
+    GameClock SYSTEM = System::nanoTime;
+
+    /**
+     * Get the current time of this clock. Only the difference between two readings is meaningful.
+     * @return the current time in nanoseconds
+     */
+    long nanoTime();
+}
@@ -0,0 +1,431 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GameEventListener;
+import uk.ac.soton.comp1206.jfr.LineClearEvent;
+import uk.ac.soton.comp1206.jfr.PieceSpawnEvent;
+
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+/**
+ * The GameEngine holds the rules and state of a TetrECS game: the grid, the piece queue, scoring, levels and lives.
+ *
+ * It has no dependency on JavaFX, audio or the file system. Time comes from an injected GameClock, pieces from an
+ * injected random source, and every change of state is reported to a GameEventListener. This lets games be run
+ * headless, for example in simulations, while the Game class adapts an engine for display.
+ *
+ * An engine is not thread safe and should only be used from one thread at a time.
+ */
+public class GameEngine {
+
+    private static final Logger logger = LogManager.getLogger(GameEngine.class);
+
+    /**
+     * The number of lives a game starts with
+     */
+    public static final int STARTING_LIVES = 3;
+
+    /**
+     * The grid model linked to the game
+     */
+    private final Grid grid;
+
+    private final RandomGenerator random;
+    private final GameClock clock;
+    private final GameEventListener listener;
+
+    private int score = 0;
+    private int level = 0;
+    private int lives = STARTING_LIVES;
+    private int multiplier = 1;
+
+    private int numberOfLines = 0;
+    private int numberOfBlocks = 0;
+
+    private GamePiece currentPiece;
+    private GamePiece followingPiece;
+
+    /**
+     * The clock time at which the current piece runs out of time
+     */
+    private long timerDeadline;
+
+    /**
+     * Create a new engine with the specified rows and columns, picking pieces at random and using the system clock.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param listener the listener to report events to
+     */
+    public GameEngine(int cols, int rows, GameEventListener listener) {
+        this(cols, rows, new Random(), GameClock.SYSTEM, listener);
+    }
+
+    /**
+     * Create a new engine with the specified rows and columns. Creates a corresponding grid model.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param random the source of random pieces
+     * @param clock the clock used to time each piece
+     * @param listener the listener to report events to
+     */
+    public GameEngine(int cols, int rows, RandomGenerator random, GameClock clock, GameEventListener listener) {
+        this.random = random;
+        this.clock = clock;
+        this.listener = listener;
+
+        //Create a new grid model to represent the game state
+        this.grid = new Grid(cols, rows);
+        followingPiece = spawnPiece();
+    }
+
+    /**
+     * Start the game by bringing out the first piece and starting its timer
+     */
+    public void start() {
+        logger.info("Starting game engine");
+        nextPiece();
+        resetTimer();
+    }
+
+    /**
+     * Try to play the current piece at a given position. If it fits, the piece is played, the next piece is brought
+     * out and the timer is reset. Either way, lines are then cleared and scored.
+     * @param x column
+     * @param y row
+     * @return true if the piece was played
+     */
+    public boolean place(int x, int y) {
+        boolean placed = grid.canPlayPiece(currentPiece, x, y);
+        if(placed) {
+            GamePiece piece = currentPiece;
+            grid.playPiece(piece, x, y);
+            listener.piecePlaced(piece, x, y);
+            nextPiece();
+            resetTimer();
+        } else {
+            listener.placementRejected(currentPiece, x, y);
+        }
+        afterPiece();
+        score(numberOfLines, numberOfBlocks);
+        return placed;
+    }
+
+    /**
+     * Spawns a GamePiece
+     * @return returns a new GamePiece object with a random color of value between 0-15
+     */
+    public GamePiece spawnPiece() {
+        var randomPiece = GamePiece.createPiece(random.nextInt(GamePiece.PIECES));
+        logger.debug("Picking random piece: {}", randomPiece);
+        return randomPiece;
+    }
+
+    /**
+     * generates the next piece to be placed
+     * generates a future piece to be placed too
+     */
+    public void nextPiece() {
+        var event = new PieceSpawnEvent();
+        event.begin();
+        currentPiece = followingPiece;
+        followingPiece = spawnPiece();
+        logger.debug("The next Piece is: {}", currentPiece);
+        listener.piecesChanged(currentPiece, followingPiece);
+        event.end();
+        if(event.shouldCommit()) {
+            event.piece = String.valueOf(currentPiece);
+            event.rotation = currentPiece == null ? 0 : currentPiece.getRotation();
+            event.followingPiece = followingPiece.toString();
+            event.commit();
+        }
+    }
+
+    /**
+     * After a piece has been played on the board
+     * works out which rows and columns touched since the last check form a line and clears them
+     * @return the lines that were cleared, valid until the next check
+     */
+    public LineClear afterPiece() {
+        var event = new LineClearEvent();
+        event.begin();
+        LineClear linesToClear = grid.detectLines();
+        if(linesToClear.getLines() > 0) {
+            numberOfLines += linesToClear.getLines();
+            numberOfBlocks += grid.clearLines(linesToClear);
+        }
+        listener.linesCleared(linesToClear);
+        event.end();
+        if(event.shouldCommit()) {
+            event.lines = linesToClear.getLines();
+            event.rows = linesToClear.getRowCount();
+            event.columns = linesToClear.getColumnCount();
+            event.blocks = linesToClear.getBlocks();
+            event.commit();
+        }
+        return linesToClear;
+    }
+
+    /**
+     * if a line has been cleared
+     * Uses mathematical equations to calculate the score needed to be added to the current score
+     * handles the multiplier value after a piece has been played
+     * increases the level by 1 for every 1000 score scored
+     * else, multiplier set to 1 and no score added.
+     * @param numberOfLines number of lines removed
+     * @param numberOfBlocks number of blocks removed
+     */
+    public void score(int numberOfLines, int numberOfBlocks) {
+        if(numberOfLines > 0) {
+            int scoreToAdd = numberOfLines * numberOfBlocks * 10 * multiplier;
+            setScore(score + scoreToAdd);
+            setMultiplier(multiplier + 1);
+            setLevel(score / 1000);
+        } else {
+            setMultiplier(1);
+        }
+        this.numberOfLines = 0;
+        this.numberOfBlocks = 0;
+    }
+
+    /**
+     * Lose a life because the current piece ran out of time. The next piece is brought out, the multiplier is reset
+     * and the timer starts again.
+     */
+    public void loseLife() {
+        setLives(lives - 1);
+        nextPiece();
+        setMultiplier(1);
+        resetTimer();
+    }
+
+    /**
+     * Handle the timer for the current piece running out. A life is lost, or if there are none left the game is over.
+     * @return true if the game carries on, false if it is over
+     */
+    public boolean timerExpired() {
+        if(lives <= 0) {
+            logger.info("Game over with score {}", score);
+            listener.gameOver();
+            return false;
+        }
+        loseLife();
+        return true;
+    }
+
+    /**
+     * Check the clock and handle the timer running out if the current piece is past its deadline
+     * @return true if the game carries on, false if it is over
+     */
+    public boolean tick() {
+        if(getTimeRemaining() > 0) {
+            return true;
+        }
+        return timerExpired();
+    }
+
+    /**
+     * Restart the timer for the current piece from the current clock time
+     */
+    public void resetTimer() {
+        timerDeadline = clock.nanoTime() + getTimerDelay() * 1_000_000L;
+    }
+
+    /**
+     * Get how long is left before the current piece runs out of time
+     * @return time remaining in milliseconds, 0 or less if it has run out
+     */
+    public long getTimeRemaining() {
+        return (timerDeadline - clock.nanoTime()) / 1_000_000L;
+    }
+
+    /**
+     * gets the time delay between game loop
+     * ensures it doesn't go below 2500 milliseconds
+     * @return time delay between each game loop.
+     */
+    public int getTimerDelay() {
+        return Math.max(2500, 12000 - (500 * level));
+    }
+
+    /**
+     * Rotates current piece right
+     */
+    public void rotateCurrentPiece() {
+        currentPiece.rotate();
+    }
+
+    /**
+     * Rotates current piece left.
+     */
+    public void rotateCurrentPieceLeft() {
+        currentPiece.rotateLeft();
+    }
+
+    /**
+     * Swaps the current piece with the following piece
+     */
+    public void swapPieces() {
+        GamePiece piece = currentPiece;
+        currentPiece = followingPiece;
+        followingPiece = piece;
+        listener.piecesChanged(currentPiece, followingPiece);
+    }
+
+    /**
+     * Get the grid model inside this game representing the game state of the board
+     * @return game grid model
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the clock this game is timed by
+     * @return game clock
+     */
+    public GameClock getClock() {
+        return clock;
+    }
+
+    /**
+     * gets the current game piece.
+     * @return The current game piece.
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * sets the current piece in game
+     * @param currentPiece GamePiece to be set
+     */
+    public void setCurrentPiece(GamePiece currentPiece) {
+        this.currentPiece = currentPiece;
+    }
+
+    /**
+     * gets the following piece eg.(piece after current piece)
+     * @return following GamePiece.
+     */
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Sets the following game piece, which is the piece that will appear next in the game.
+     * @param followingPiece The game piece that will appear next in the game.
+     */
+    public void setFollowingPiece(GamePiece followingPiece) {
+        this.followingPiece = followingPiece;
+    }
+
+    /**
+     * gets the current score in game
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * sets the score to the integer parameter
+     * @param score score to be set
+     */
+    public void setScore(int score) {
+        if(this.score != score) {
+            this.score = score;
+            listener.scoreChanged(score);
+        }
+    }
+
+    /**
+     * Gets the current level.
+     * @return the level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the current level.
+     * @param level The new level.
+     */
+    public void setLevel(int level) {
+        if(this.level != level) {
+            this.level = level;
+            listener.levelChanged(level);
+        }
+    }
+
+    /**
+     * Gets the number of lives remaining.
+     * @return the number of lives
+     */
+    public int getLives() {
+        return lives;
+    }
+
+    /**
+     * Sets the number of lives remaining.
+     * @param lives The new number of lives.
+     */
+    public void setLives(int lives) {
+        if(this.lives != lives) {
+            this.lives = lives;
+            listener.livesChanged(lives);
+        }
+    }
+
+    /**
+     * Gets the current score multiplier.
+     * @return the multiplier
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Sets the current score multiplier.
+     * @param multiplier The new multiplier.
+     */
+    public void setMultiplier(int multiplier) {
+        if(this.multiplier != multiplier) {
+            this.multiplier = multiplier;
+            listener.multiplierChanged(multiplier);
+        }
+    }
+
+    /**
+     * gets the number of lines cleared and not yet scored.
+     * @return The number of lines.
+     */
+    public int getNumberOfLines() {
+        return numberOfLines;
+    }
+
+    /**
+     * Setter for the number of lines cleared and not yet scored.
+     * @param numberOfLines The new number of lines.
+     */
+    public void setNumberOfLines(int numberOfLines) {
+        this.numberOfLines = numberOfLines;
+    }
+
+    /**
+     * gets the number of blocks cleared and not yet scored.
+     * @return The number of blocks.
+     */
+    public int getNumberOfBlocks() {
+        return numberOfBlocks;
+    }
+
+    /**
+     * Setter for the number of blocks cleared and not yet scored.
+     * @param numberOfBlocks The new number of blocks.
+     */
+    public void setNumberOfBlocks(int numberOfBlocks) {
+        this.numberOfBlocks = numberOfBlocks;
+    }
+}
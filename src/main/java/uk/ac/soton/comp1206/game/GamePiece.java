@@ -5,6 +5,9 @@ package uk.ac.soton.comp1206.game;
  *
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by it's
  * number.
+ *
+ * The shape of every piece in every rotation is built once into a table of immutable PieceShapes. A GamePiece only
+ * holds its piece number and current rotation, so creating and rotating pieces does not allocate any block arrays.
  */
 public class GamePiece {
 
@@ -14,115 +17,138 @@ public class GamePiece {
     public static final int PIECES = 15;
 
     /**
-     * The 2D grid representation of the shape of this piece
+     * The number of distinct rotations of each piece
      */
-    private int[][] blocks;
+    public static final int ROTATIONS = 4;
 
     /**
-     * The value of this piece
+     * Every piece in every rotation, indexed by piece number and then rotation
      */
-    private final int value;
+    private static final PieceShape[][] SHAPES = buildShapes();
 
     /**
-     * The name of this piece
+     * The piece number of this piece
      */
-    private final String name;
+    private final int piece;
 
     /**
-     * Create a new GamePiece of the specified piece number
+     * The current rotation of this piece, between 0 and 3
+     */
+    private int rotation;
+
+    /**
+     * Build the shape table by defining each piece and rotating it into each of its rotations
+     * @return the shape table
+     */
+    private static PieceShape[][] buildShapes() {
+        PieceShape[][] shapes = new PieceShape[PIECES][ROTATIONS];
+        for(int piece = 0; piece < PIECES; piece++) {
+            PieceShape shape = definePiece(piece);
+            int[][] blocks = shape.toBlocks();
+            shapes[piece][0] = shape;
+            for(int rotation = 1; rotation < ROTATIONS; rotation++) {
+                blocks = rotateBlocks(blocks);
+                shapes[piece][rotation] = new PieceShape(shape.getName(), shape.getValue(), rotation, blocks);
+            }
+        }
+        return shapes;
+    }
+
+    /**
+     * Define the unrotated shape of the specified piece number
      * @param piece piece number
-     * @return the created GamePiece
+     * @return the unrotated shape
      */
-    public static GamePiece createPiece(int piece) {
+    private static PieceShape definePiece(int piece) {
         switch (piece) {
             //Line
             case 0 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
+                return new PieceShape("Line", 1, 0, blocks);
             }
 
             //C
             case 1 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
+                return new PieceShape("C", 2, 0, blocks);
             }
 
             //Plus
             case 2 -> {
                 int[][] blocks = {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
+                return new PieceShape("Plus", 3, 0, blocks);
             }
 
             //Dot
             case 3 -> {
                 int[][] blocks = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
+                return new PieceShape("Dot", 4, 0, blocks);
             }
 
             //Square
             case 4 -> {
                 int[][] blocks = {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
+                return new PieceShape("Square", 5, 0, blocks);
             }
 
             //L
             case 5 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
+                return new PieceShape("L", 6, 0, blocks);
             }
 
             //J
             case 6 -> {
                 int[][] blocks = {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
+                return new PieceShape("J", 7, 0, blocks);
             }
 
             //S
             case 7 -> {
                 int[][] blocks = {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
+                return new PieceShape("S", 8, 0, blocks);
             }
 
             //Z
             case 8 -> {
                 int[][] blocks = {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
+                return new PieceShape("Z", 9, 0, blocks);
             }
 
             //T
             case 9 -> {
                 int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("T", blocks, 10);
+                return new PieceShape("T", 10, 0, blocks);
             }
 
             //X
             case 10 -> {
                 int[][] blocks = {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
+                return new PieceShape("X", 11, 0, blocks);
             }
 
             //Corner
             case 11 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("Corner", blocks, 12);
+                return new PieceShape("Corner", 12, 0, blocks);
             }
 
             //Inverse Corner
             case 12 -> {
                 int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
+                return new PieceShape("Inverse Corner", 13, 0, blocks);
             }
 
             //Diagonal
             case 13 -> {
                 int[][] blocks = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
+                return new PieceShape("Diagonal", 14, 0, blocks);
             }
 
             //Double
             case 14 -> {
                 int[][] blocks = {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
+                return new PieceShape("Double", 15, 0, blocks);
             }
         }
 
@@ -130,6 +156,15 @@ public class GamePiece {
         throw new IndexOutOfBoundsException("No such piece: " + piece);
     }
 
+    /**
+     * Create a new GamePiece of the specified piece number
+     * @param piece piece number
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(int piece) {
+        return createPiece(piece, 0);
+    }
+
     /**
      * Create a new GamePiece of the specified piece number and rotation
      * @param piece piece number
@@ -137,31 +172,32 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
+        if(piece < 0 || piece >= PIECES) {
+            //Not a valid piece number
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        return new GamePiece(piece, Math.floorMod(rotation, ROTATIONS));
+    }
 
-        newPiece.rotate(rotation);
-        return newPiece;
+    /**
+     * Get the shape of a piece in a given rotation from the shape table
+     * @param piece piece number
+     * @param rotation rotation between 0 and 3
+     * @return the shared shape
+     */
+    public static PieceShape getShape(int piece, int rotation) {
+        return SHAPES[piece][rotation];
     }
 
     /**
-     * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only via the
+     * Create a new GamePiece with the given piece number and rotation. Should not be called directly, only via the
      * factory.
-     * @param name name of the piece
-     * @param blocks block makeup of the piece
-     * @param value the value of this piece
+     * @param piece piece number
+     * @param rotation rotation between 0 and 3
      */
-    private GamePiece(String name, int[][] blocks, int value) {
-        this.name = name;
-        this.blocks = blocks;
-        this.value = value;
-
-        //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
-        for(int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if(blocks[x][y] == 0) continue;
-                blocks[x][y] = value;
-            }
-        }
+    private GamePiece(int piece, int rotation) {
+        this.piece = piece;
+        this.rotation = rotation;
     }
 
     /**
@@ -169,15 +205,40 @@ public class GamePiece {
      * @return piece value
      */
     public int getValue() {
-        return value;
+        return getShape().getValue();
     }
 
     /**
-     * Get the block makeup of this piece
+     * Get the piece number of this piece
+     * @return piece number
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    /**
+     * Get the current rotation of this piece
+     * @return rotation between 0 and 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the shape of this piece in its current rotation
+     * @return the shared shape
+     */
+    public PieceShape getShape() {
+        return SHAPES[piece][rotation];
+    }
+
+    /**
+     * Get the block makeup of this piece. This builds a new grid on each call, so should not be used on a hot path;
+     * use getShape instead.
      * @return 2D grid of the blocks representing the piece shape
      */
     public int[][] getBlocks() {
-        return blocks;
+        return getShape().toBlocks();
     }
 
     /**
@@ -185,15 +246,29 @@ public class GamePiece {
      * @param rotations number of rotations
      */
     public void rotate(int rotations) {
-        for(int rotated = 0; rotated < rotations; rotated ++) {
-            rotate();
-        }
+        rotation = Math.floorMod(rotation + rotations, ROTATIONS);
     }
 
     /**
-     * Rotate this piece exactly once by rotating it's 3x3 grid
+     * Rotate this piece exactly once to the right
      */
     public void rotate() {
+        rotation = (rotation + 1) & (ROTATIONS - 1);
+    }
+
+    /**
+     * Rotate this piece exactly once to the left.
+     */
+    public void rotateLeft() {
+        rotation = (rotation + ROTATIONS - 1) & (ROTATIONS - 1);
+    }
+
+    /**
+     * Rotate a 3x3 grid once to the right. Only used when building the shape table.
+     * @param blocks grid to rotate
+     * @return new rotated grid
+     */
+    private static int[][] rotateBlocks(int[][] blocks) {
         int[][] rotated = new int[blocks.length][blocks[0].length];
         rotated[2][0] = blocks[0][0];
         rotated[1][0] = blocks[0][1];
@@ -207,26 +282,7 @@ public class GamePiece {
         rotated[1][2] = blocks[2][1];
         rotated[0][2] = blocks[2][2];
 
-        blocks = rotated;
-    }
-    /**
-     * Rotate this piece exactly once by rotating it's 3x3 grid left.
-     */
-    public void rotateLeft() {
-        int[][] rotated = new int[blocks.length][blocks[0].length];
-        rotated[0][0] = blocks[2][0];
-        rotated[0][1] = blocks[1][0];
-        rotated[0][2] = blocks[0][0];
-
-        rotated[1][0] = blocks[2][1];
-        rotated[1][1] = blocks[1][1];
-        rotated[1][2] = blocks[0][1];
-
-        rotated[2][0] = blocks[2][2];
-        rotated[2][1] = blocks[1][2];
-        rotated[2][2] = blocks[0][2];
-
-        blocks = rotated;
+        return rotated;
     }
 
 
@@ -235,7 +291,7 @@ public class GamePiece {
      * @return the name of this piece
      */
     public String toString() {
-        return this.name;
+        return getShape().getName();
     }
 
 
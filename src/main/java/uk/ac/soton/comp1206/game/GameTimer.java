@@ -0,0 +1,235 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The GameTimer counts down the time a player has to play each piece, and calls back whenever it runs out.
+ *
+ * Each expiry is scheduled for an exact deadline on a clock, and the next deadline follows on from the last one rather
+ * than from when the callback happened to run, so the countdown does not drift under load. Resetting, pausing and
+ * resuming only cancel and reschedule a task on a single long lived scheduler thread shared by every timer, so no
+ * threads are created during play.
+ *
+ * A timer can instead be driven by a VirtualClock, in which case it only expires when the clock is advanced past its
+ * deadline, and calls back on the thread advancing the clock. This is used for tests and accelerated simulations.
+ */
+public class GameTimer {
+
+    private static final Logger logger = LogManager.getLogger(GameTimer.class);
+
+    /**
+     * The scheduler thread shared by every timer running on the system clock
+     */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Supplies the length of each countdown in milliseconds, read every time a countdown starts
+     */
+    private final LongSupplier period;
+
+    /**
+     * Called every time the countdown runs out
+     */
+    private final Runnable onExpiry;
+
+    /**
+     * Runs the expiry callback, for example on the JavaFX thread
+     */
+    private final Executor dispatcher;
+
+    /**
+     * The clock deadlines are measured on
+     */
+    private final GameClock clock;
+
+    /**
+     * The virtual clock driving this timer, or null when running on the system scheduler
+     */
+    private final VirtualClock virtualClock;
+
+    private ScheduledFuture<?> pending;
+    private long deadline;
+    private long pausedRemaining;
+    private boolean running;
+    private boolean paused;
+
+    /**
+     * Create a new timer on the system clock
+     * @param period supplies the length of each countdown in milliseconds
+     * @param onExpiry called each time the countdown runs out
+     * @param dispatcher runs the callback, for example Platform::runLater
+     */
+    public GameTimer(LongSupplier period, Runnable onExpiry, Executor dispatcher) {
+        this.period = period;
+        this.onExpiry = onExpiry;
+        this.dispatcher = dispatcher;
+        this.clock = GameClock.SYSTEM;
+        this.virtualClock = null;
+    }
+
+    /**
+     * Create a new timer driven by a virtual clock. The callback runs on whichever thread advances the clock.
+     * @param period supplies the length of each countdown in milliseconds
+     * @param onExpiry called each time the countdown runs out
+     * @param clock the clock to run on
+     */
+    public GameTimer(LongSupplier period, Runnable onExpiry, VirtualClock clock) {
+        this.period = period;
+        this.onExpiry = onExpiry;
+        this.dispatcher = Runnable::run;
+        this.clock = clock;
+        this.virtualClock = clock;
+        clock.register(this);
+    }
+
+    /**
+     * Start counting down from a full period, cancelling any countdown already running
+     */
+    public synchronized void start() {
+        running = true;
+        paused = false;
+        deadline = clock.nanoTime() + periodNanos();
+        schedule();
+    }
+
+    /**
+     * Restart the countdown from a full period, for example when a piece has been played
+     */
+    public void reset() {
+        start();
+    }
+
+    /**
+     * Pause the countdown, keeping the time remaining
+     */
+    public synchronized void pause() {
+        if(!running || paused) {
+            return;
+        }
+        paused = true;
+        pausedRemaining = deadline - clock.nanoTime();
+        unschedule();
+    }
+
+    /**
+     * Carry on a paused countdown from where it stopped
+     */
+    public synchronized void resume() {
+        if(!running || !paused) {
+            return;
+        }
+        paused = false;
+        deadline = clock.nanoTime() + pausedRemaining;
+        schedule();
+    }
+
+    /**
+     * Stop the countdown. The timer can be started again later.
+     */
+    public synchronized void cancel() {
+        running = false;
+        paused = false;
+        unschedule();
+    }
+
+    /**
+     * Check whether the timer is counting down
+     * @return true if started and not paused or cancelled
+     */
+    public synchronized boolean isRunning() {
+        return running && !paused;
+    }
+
+    /**
+     * Get how long is left before the countdown runs out
+     * @return time remaining in milliseconds, or 0 if the timer is not running
+     */
+    public synchronized long getRemaining() {
+        if(!running) {
+            return 0;
+        }
+        long remaining = paused ? pausedRemaining : deadline - clock.nanoTime();
+        return Math.max(0, remaining / 1_000_000L);
+    }
+
+    /**
+     * Get the clock time of the next expiry, used by the virtual clock to decide which timer runs next
+     * @return the deadline in clock nanoseconds, or Long.MAX_VALUE if not counting down
+     */
+    synchronized long getDeadline() {
+        return running && !paused ? deadline : Long.MAX_VALUE;
+    }
+
+    /**
+     * Handle the countdown running out. The next deadline follows on from this one, so late wake ups do not add up.
+     */
+    void expire() {
+        synchronized (this) {
+            if(!running || paused || clock.nanoTime() - deadline < 0) {
+                //Cancelled, paused or reset since this expiry was scheduled
+                return;
+            }
+            deadline += periodNanos();
+            schedule();
+        }
+        dispatcher.execute(onExpiry);
+    }
+
+    /**
+     * Schedule the next expiry at the current deadline
+     */
+    private void schedule() {
+        unschedule();
+        if(virtualClock != null) {
+            //The virtual clock calls expire itself when it is advanced past the deadline
+            return;
+        }
+        long delay = Math.max(0, deadline - clock.nanoTime());
+        pending = scheduler().schedule(this::expire, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cancel the scheduled expiry, if there is one
+     */
+    private void unschedule() {
+        if(pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * Get the length of a countdown
+     * @return period in nanoseconds
+     */
+    private long periodNanos() {
+        return Math.max(1, period.getAsLong()) * 1_000_000L;
+    }
+
+    /**
+     * Get the shared scheduler, creating its thread the first time it is needed
+     * @return the scheduler
+     */
+    private static synchronized ScheduledExecutorService scheduler() {
+        if(scheduler == null) {
+            logger.info("Starting game timer thread");
+            var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "game-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            //Cancelled countdowns are dropped straight away rather than waiting for their deadline
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+}
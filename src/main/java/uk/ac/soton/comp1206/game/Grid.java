@@ -4,13 +4,21 @@ import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GridChangedListener;
+import uk.ac.soton.comp1206.jfr.PiecePlayEvent;
+import uk.ac.soton.comp1206.jfr.PlacementCheckEvent;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
  * arrow, with rows and columns.
  *
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of
- * the grid.
+ * The values are stored in primitive arrays: a packed occupancy bitboard with one bit per block, and a colour array
+ * which packs two 4-bit block values into each byte. An IntegerProperty view of a block is only created when something
+ * asks for it through getGridProperty, so it can be bound to enable display of the contents of the grid without every
+ * grid paying for JavaFX properties.
  *
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  *
@@ -19,6 +27,16 @@ import org.apache.logging.log4j.Logger;
 public class Grid {
     private static final Logger logger = LogManager.getLogger(Grid.class);
 
+    /**
+     * The largest value a block can hold, limited by the 4 bits each block has in the colour array
+     */
+    public static final int MAX_VALUE = 15;
+
+    /**
+     * The widest grid whose rows, and any 3 wide shape row shifted along them, fit in a single 64-bit word
+     */
+    private static final int MASK_COLS = 61;
+
     /**
      * The number of columns in this grid
      */
@@ -30,9 +48,75 @@ public class Grid {
     private final int rows;
 
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties.
+     * The number of 64-bit words used to hold a single row of the occupancy bitboard
+     */
+    private final int wordsPerRow;
+
+    /**
+     * Occupancy bitboard. Row y starts at word y * wordsPerRow, and column x is bit (x % 64) of word x / 64 within it.
+     */
+    private final long[] occupancy;
+
+    /**
+     * The value of every block, two blocks per byte. Block (x,y) has index y * cols + x, and odd indexes use the high
+     * nibble.
+     */
+    private final byte[] colours;
+
+    /**
+     * Property views of blocks, indexed the same as the colour array. Created on demand by getGridProperty.
+     */
+    private SimpleIntegerProperty[] properties;
+
+    /**
+     * Listeners told about every block that changes value
+     */
+    private final List<GridChangedListener> listeners = new ArrayList<>();
+
+    /**
+     * The number of filled blocks in each row
+     */
+    private final int[] rowCounts;
+
+    /**
+     * The number of filled blocks in each column
+     */
+    private final int[] colCounts;
+
+    /**
+     * Bitmask of the rows which have had a block filled since lines were last detected
+     */
+    private final long[] touchedRows;
+
+    /**
+     * Bitmask of the columns which have had a block filled since lines were last detected
+     */
+    private final long[] touchedCols;
+
+    /**
+     * The result of the last line detection, reused each time
+     */
+    private final LineClear lineClear;
+
+    /**
+     * Counts changes to the occupancy bitboard, used to tell when a cached placement mask is out of date
+     */
+    private long occupancyVersion;
+
+    /**
+     * Cached placement masks, indexed by piece number * GamePiece.ROTATIONS + rotation. Created on demand.
+     */
+    private PlacementMask[] placementMasks;
+
+    /**
+     * The occupancy version each cached placement mask was built at
+     */
+    private long[] placementVersions;
+
+    /**
+     * Scratch row used while building placement masks
      */
-    private final SimpleIntegerProperty[][] grid;
+    private long[] freeRow;
 
     /**
      * Create a new Grid with the specified number of columns and rows and initialise them
@@ -43,25 +127,56 @@ public class Grid {
         this.cols = cols;
         this.rows = rows;
 
-        //Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        //Create the grid itself, every block starts empty
+        wordsPerRow = (cols + 63) >>> 6;
+        occupancy = new long[wordsPerRow * rows];
+        colours = new byte[(cols * rows + 1) >>> 1];
 
-        //Add a SimpleIntegerProperty to every block in the grid
-        for(var y = 0; y < rows; y++) {
-            for(var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
-            }
-        }
+        //Keep a count of the filled blocks in every line so full lines can be found without scanning the grid
+        rowCounts = new int[rows];
+        colCounts = new int[cols];
+        touchedRows = new long[(rows + 63) >>> 6];
+        touchedCols = new long[(cols + 63) >>> 6];
+        lineClear = new LineClear(cols, rows);
     }
 
     /**
      * Get the Integer property contained inside the grid at a given row and column index. Can be used for binding.
+     * The property is created the first time it is requested and is kept in step with the grid from then on.
      * @param x column
      * @param y row
      * @return the IntegerProperty at the given x and y in this grid
      */
     public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+        int index = index(x, y);
+        if(properties == null) {
+            properties = new SimpleIntegerProperty[cols * rows];
+        }
+
+        var property = properties[index];
+        if(property == null) {
+            property = new SimpleIntegerProperty(read(index));
+            //Anything written straight to the property is written back into the grid
+            property.addListener((observable, oldValue, newValue) -> store(x, y, newValue.intValue()));
+            properties[index] = property;
+        }
+        return property;
+    }
+
+    /**
+     * Add a listener to be told about every block that changes value
+     * @param listener the listener to add
+     */
+    public void addGridChangedListener(GridChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added with addGridChangedListener
+     * @param listener the listener to remove
+     */
+    public void removeGridChangedListener(GridChangedListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -71,7 +186,13 @@ public class Grid {
      * @param value the new value
      */
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        int index = index(x, y);
+        store(x, y, value);
+
+        //Keep any property view of this block up to date
+        if(properties != null && properties[index] != null) {
+            properties[index].set(value);
+        }
     }
 
     /**
@@ -81,13 +202,117 @@ public class Grid {
      * @return the value
      */
     public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
+        if(!inBounds(x, y)) {
             //No such index
             return -1;
         }
+        return read(y * cols + x);
+    }
+
+    /**
+     * Check whether the block at the given x and y index is filled. Blocks outside the grid are never filled.
+     * @param x column
+     * @param y row
+     * @return true if the block holds a value other than 0
+     */
+    public boolean isOccupied(int x, int y) {
+        if(!inBounds(x, y)) {
+            return false;
+        }
+        return (occupancy[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Check whether every block in a row is filled
+     * @param y row
+     * @return true if the row is full
+     */
+    public boolean isRowFull(int y) {
+        return rowCounts[y] == cols;
+    }
+
+    /**
+     * Check whether every block in a column is filled
+     * @param x column
+     * @return true if the column is full
+     */
+    public boolean isColumnFull(int x) {
+        return colCounts[x] == rows;
+    }
+
+    /**
+     * Get the number of filled blocks in a row
+     * @param y row
+     * @return number of filled blocks
+     */
+    public int getRowFill(int y) {
+        return rowCounts[y];
+    }
+
+    /**
+     * Get the number of filled blocks in a column
+     * @param x column
+     * @return number of filled blocks
+     */
+    public int getColumnFill(int x) {
+        return colCounts[x];
+    }
+
+    /**
+     * Find the full rows and columns among the lines which have had a block filled since this was last called. Only
+     * those lines are checked, so the cost depends on the size of the pieces played rather than the size of the grid.
+     *
+     * The returned result is owned by this grid and is overwritten by the next call.
+     * @return the full lines
+     */
+    public LineClear detectLines() {
+        lineClear.reset();
+        for(int word = 0; word < touchedRows.length; word++) {
+            long touched = touchedRows[word];
+            touchedRows[word] = 0;
+            while(touched != 0) {
+                int y = (word << 6) + Long.numberOfTrailingZeros(touched);
+                touched &= touched - 1;
+                if(rowCounts[y] == cols) {
+                    lineClear.addRow(y);
+                }
+            }
+        }
+        for(int word = 0; word < touchedCols.length; word++) {
+            long touched = touchedCols[word];
+            touchedCols[word] = 0;
+            while(touched != 0) {
+                int x = (word << 6) + Long.numberOfTrailingZeros(touched);
+                touched &= touched - 1;
+                if(colCounts[x] == rows) {
+                    lineClear.addColumn(x);
+                }
+            }
+        }
+        return lineClear;
+    }
+
+    /**
+     * Empty every block in the full rows and columns of a line detection result
+     * @param lines the lines to clear
+     * @return the number of blocks cleared
+     */
+    public int clearLines(LineClear lines) {
+        for(int y = 0; y < rows; y++) {
+            if(lines.isRowCleared(y)) {
+                for(int x = 0; x < cols; x++) {
+                    set(x, y, 0);
+                }
+            }
+        }
+        for(int x = 0; x < cols; x++) {
+            if(lines.isColumnCleared(x)) {
+                for(int y = 0; y < rows; y++) {
+                    set(x, y, 0);
+                }
+            }
+        }
+        return lines.getBlocks();
     }
 
     /**
@@ -115,21 +340,71 @@ public class Grid {
      * @return whether the piece can be played true or false
      */
     public boolean canPlayPiece(GamePiece gamePiece, int placeX, int placeY) {
-        int[][] blocks = gamePiece.getBlocks();
-        int topX = placeX - 1;
-        int topY = placeY - 1;
-
-        logger.info("checking if we can play a piece at a given x, y");
-        for(int i = 0; i < blocks.length; i++) {
-            for (int j = 0; j < blocks.length; j++) {
-                var blockValue = blocks[i][j];
-                if(blockValue > 0) {
-                    var gridValue = get(i + topX, j + topY);
-                    if(gridValue != 0){
+        var event = new PlacementCheckEvent();
+        event.begin();
+        boolean playable = fits(gamePiece, placeX, placeY);
+        event.end();
+        if(event.shouldCommit()) {
+            event.piece = gamePiece.toString();
+            event.rotation = gamePiece.getRotation();
+            event.x = placeX;
+            event.y = placeY;
+            event.playable = playable;
+            event.commit();
+        }
+        return playable;
+    }
+
+    /**
+     * Work out whether a game piece fits in the grid at a given x,y
+     * @param gamePiece the piece to play
+     * @param placeX x location
+     * @param placeY y location
+     * @return whether every block of the piece lands inside the grid on an empty block
+     */
+    private boolean fits(GamePiece gamePiece, int placeX, int placeY) {
+        PieceShape shape = gamePiece.getShape();
+
+        //Checked on every hover and simulated move, so only build the message when tracing
+        if(logger.isTraceEnabled()) {
+            logger.trace("Checking if {} can be played at {},{}", gamePiece, placeX, placeY);
+        }
+        if(cols <= MASK_COLS) {
+            //Every row and any shape row shifted along it fits in a single word, so check each row with one mask
+            int left = placeX - 1;
+            for(int row = 0; row < 3; row++) {
+                int rowMask = shape.getRowMask(row);
+                if(rowMask == 0) continue;
+
+                int y = placeY - 1 + row;
+                if(y < 0 || y >= rows || left < -2 || left >= cols) {
+                    return false;
+                }
+                long bits;
+                if(left < 0) {
+                    //Blocks hanging off the left edge cannot be played
+                    if((rowMask & ((1 << -left) - 1)) != 0) {
                         return false;
                     }
+                    bits = rowMask >>> -left;
+                } else {
+                    bits = (long) rowMask << left;
+                }
+                //Blocks hanging off the right edge, or on a filled block, cannot be played
+                if((bits >>> cols) != 0 || (occupancy[y] & bits) != 0) {
+                    return false;
                 }
             }
+            return true;
+        }
+
+        for(int block = 0; block < shape.getBlockCount(); block++) {
+            int x = placeX + shape.getOffsetX(block);
+            int y = placeY + shape.getOffsetY(block);
+            //Blocks falling outside the grid or on a filled block cannot be played
+            if(!inBounds(x, y) || (occupancy[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0) {
+                return false;
+            }
         }
 
         return true;
@@ -142,24 +417,197 @@ public class Grid {
      * @param placeY the y position of where it will be placed
      */
     public void playPiece(GamePiece piece, int placeX, int placeY){
-        logger.info("placing the piece at a given x, y");
-          int colorValue = piece.getValue();
-          int[][] blocks = piece.getBlocks();
-          int topX = placeX - 1;
-          int topY = placeY - 1;
-
-          if(!canPlayPiece(piece, placeX, placeY)) return;
-
-        for(int i = 0; i < blocks.length; i++) {
-            for (int j = 0; j < blocks.length; j++) {
-                //have the coordinate for a given block in the 3x3 blocks array
-                var blockValue = blocks[i][j];
-                if(blockValue > 0) {
-                    set(topX + i, topY + j, colorValue);
+        if(logger.isTraceEnabled()) {
+            logger.trace("Playing {} at {},{}", piece, placeX, placeY);
+        }
+        var event = new PiecePlayEvent();
+        event.begin();
+        PieceShape shape = piece.getShape();
+        int colorValue = shape.getValue();
+
+        boolean played = fits(piece, placeX, placeY);
+        if(played) {
+            for(int block = 0; block < shape.getBlockCount(); block++) {
+                set(placeX + shape.getOffsetX(block), placeY + shape.getOffsetY(block), colorValue);
+            }
+        }
+
+        event.end();
+        if(event.shouldCommit()) {
+            event.piece = piece.toString();
+            event.rotation = piece.getRotation();
+            event.x = placeX;
+            event.y = placeY;
+            event.played = played;
+            event.commit();
+        }
+    }
+
+    /**
+     * Get every position a piece, in its current rotation, can legally be played at. The whole grid is worked out in
+     * one pass by shifting the empty blocks of each row under each block of the piece and combining them with AND, so
+     * this is far cheaper than calling canPlayPiece for every block.
+     *
+     * The mask is cached until the grid next changes. It is owned by this grid and refreshed in place, so it should be
+     * read straight away rather than kept.
+     * @param piece the piece to play
+     * @return mask of the legal positions
+     */
+    public PlacementMask getLegalPlacements(GamePiece piece) {
+        if(placementMasks == null) {
+            placementMasks = new PlacementMask[GamePiece.PIECES * GamePiece.ROTATIONS];
+            placementVersions = new long[placementMasks.length];
+            freeRow = new long[wordsPerRow];
+        }
+
+        int index = piece.getPiece() * GamePiece.ROTATIONS + piece.getRotation();
+        var mask = placementMasks[index];
+        if(mask == null) {
+            mask = new PlacementMask(cols, rows);
+            placementMasks[index] = mask;
+        } else if(placementVersions[index] == occupancyVersion) {
+            return mask;
+        }
+
+        buildPlacements(piece.getShape(), mask.words);
+        placementVersions[index] = occupancyVersion;
+        return mask;
+    }
+
+    /**
+     * Fill a placement bitboard for a shape. Bit x of row y ends up set only if, for every block in the shape, the grid
+     * block at x,y plus that block's offset exists and is empty.
+     * @param shape the shape to play
+     * @param placements bitboard to fill
+     */
+    private void buildPlacements(PieceShape shape, long[] placements) {
+        for(int y = 0; y < rows; y++) {
+            int start = y * wordsPerRow;
+            for(int word = 0; word < wordsPerRow; word++) {
+                placements[start + word] = rowMask(word);
+            }
+
+            for(int row = 0; row < 3; row++) {
+                int rowMask = shape.getRowMask(row);
+                if(rowMask == 0) continue;
+
+                int targetY = y - 1 + row;
+                if(targetY < 0 || targetY >= rows) {
+                    //Part of the shape would hang off the top or bottom, so nothing in this row is legal
+                    for(int word = 0; word < wordsPerRow; word++) {
+                        placements[start + word] = 0;
+                    }
+                    break;
+                }
+
+                int target = targetY * wordsPerRow;
+                for(int word = 0; word < wordsPerRow; word++) {
+                    freeRow[word] = ~occupancy[target + word] & rowMask(word);
+                }
+
+                for(int word = 0; word < wordsPerRow; word++) {
+                    long free = freeRow[word];
+                    long allowed = -1L;
+                    if((rowMask & 0b001) != 0) {
+                        //Block to the left: x is legal only if x - 1 is free
+                        long carry = word > 0 ? freeRow[word - 1] >>> 63 : 0;
+                        allowed &= (free << 1) | carry;
+                    }
+                    if((rowMask & 0b010) != 0) {
+                        allowed &= free;
+                    }
+                    if((rowMask & 0b100) != 0) {
+                        //Block to the right: x is legal only if x + 1 is free
+                        long carry = word + 1 < wordsPerRow ? freeRow[word + 1] << 63 : 0;
+                        allowed &= (free >>> 1) | carry;
+                    }
+                    placements[start + word] &= allowed;
                 }
             }
         }
+    }
+
+    /**
+     * Write a value into the primitive storage without touching any property view
+     * @param x column
+     * @param y row
+     * @param value the new value
+     */
+    private void store(int x, int y, int value) {
+        if(value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException("Grid values must be between 0 and " + MAX_VALUE + ": " + value);
+        }
+        int index = index(x, y);
+        if(read(index) == value) {
+            return;
+        }
+
+        //Write the nibble for this block
+        int shift = (index & 1) << 2;
+        colours[index >>> 1] = (byte) ((colours[index >>> 1] & ~(0xF << shift)) | (value << shift));
+
+        //Update the occupancy bit and line counts when the block changes between empty and filled
+        int word = y * wordsPerRow + (x >>> 6);
+        boolean wasFilled = (occupancy[word] & (1L << x)) != 0;
+        if(value == 0 && wasFilled) {
+            occupancy[word] &= ~(1L << x);
+            occupancyVersion++;
+            rowCounts[y]--;
+            colCounts[x]--;
+        } else if(value != 0 && !wasFilled) {
+            occupancy[word] |= 1L << x;
+            occupancyVersion++;
+            rowCounts[y]++;
+            colCounts[x]++;
+            touchedRows[y >>> 6] |= 1L << y;
+            touchedCols[x >>> 6] |= 1L << x;
+        }
 
+        for(int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).gridChanged(x, y, value);
+        }
+    }
+
+    /**
+     * Read the value of a block from the colour array
+     * @param index block index, y * cols + x
+     * @return the value
+     */
+    private int read(int index) {
+        return (colours[index >>> 1] >>> ((index & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * Get the index of a block in the colour array, checking it is inside the grid
+     * @param x column
+     * @param y row
+     * @return block index
+     */
+    private int index(int x, int y) {
+        if(!inBounds(x, y)) {
+            throw new IndexOutOfBoundsException("No such block: " + x + "," + y);
+        }
+        return y * cols + x;
+    }
+
+    /**
+     * Check whether the given x and y index is inside this grid
+     * @param x column
+     * @param y row
+     * @return true if it is inside the grid
+     */
+    private boolean inBounds(int x, int y) {
+        return x >= 0 && x < cols && y >= 0 && y < rows;
+    }
+
+    /**
+     * Get the bits which are part of the grid for one word of a row
+     * @param word the word within the row
+     * @return mask with a bit set for every column in that word
+     */
+    private long rowMask(int word) {
+        int remaining = cols - (word << 6);
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
     }
 
     /**
@@ -0,0 +1,168 @@
+package uk.ac.soton.comp1206.game;
+
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The LineClear holds the result of checking a Grid for full lines, as a bitmask of the full rows and a bitmask of the
+ * full columns.
+ *
+ * Each Grid owns a single LineClear which is reused every time lines are detected, so checking for lines does not
+ * allocate. The result is only valid until the next time lines are detected on the same grid.
+ */
+public class LineClear {
+
+    /**
+     * The number of columns in the grid this result belongs to
+     */
+    private final int cols;
+
+    /**
+     * The number of rows in the grid this result belongs to
+     */
+    private final int rows;
+
+    /**
+     * Bitmask of the full rows, bit y of word y / 64
+     */
+    private final long[] fullRows;
+
+    /**
+     * Bitmask of the full columns, bit x of word x / 64
+     */
+    private final long[] fullCols;
+
+    private int rowCount;
+    private int colCount;
+
+    /**
+     * Create an empty result for a grid of the given size
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    LineClear(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.fullRows = new long[(rows + 63) >>> 6];
+        this.fullCols = new long[(cols + 63) >>> 6];
+    }
+
+    /**
+     * Empty this result ready to be filled again
+     */
+    void reset() {
+        for(int i = 0; i < fullRows.length; i++) {
+            fullRows[i] = 0;
+        }
+        for(int i = 0; i < fullCols.length; i++) {
+            fullCols[i] = 0;
+        }
+        rowCount = 0;
+        colCount = 0;
+    }
+
+    /**
+     * Mark a row as full
+     * @param y row
+     */
+    void addRow(int y) {
+        fullRows[y >>> 6] |= 1L << y;
+        rowCount++;
+    }
+
+    /**
+     * Mark a column as full
+     * @param x column
+     */
+    void addColumn(int x) {
+        fullCols[x >>> 6] |= 1L << x;
+        colCount++;
+    }
+
+    /**
+     * Get the total number of full lines, rows and columns together
+     * @return number of lines
+     */
+    public int getLines() {
+        return rowCount + colCount;
+    }
+
+    /**
+     * Get the number of full rows
+     * @return number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get the number of full columns
+     * @return number of columns
+     */
+    public int getColumnCount() {
+        return colCount;
+    }
+
+    /**
+     * Get the number of blocks covered by the full lines. A block where a full row and a full column cross is only
+     * counted once.
+     * @return number of blocks
+     */
+    public int getBlocks() {
+        return rowCount * cols + colCount * rows - rowCount * colCount;
+    }
+
+    /**
+     * Check whether a row is full
+     * @param y row
+     * @return true if the row is full
+     */
+    public boolean isRowCleared(int y) {
+        return (fullRows[y >>> 6] & (1L << y)) != 0;
+    }
+
+    /**
+     * Check whether a column is full
+     * @param x column
+     * @return true if the column is full
+     */
+    public boolean isColumnCleared(int x) {
+        return (fullCols[x >>> 6] & (1L << x)) != 0;
+    }
+
+    /**
+     * Check whether a block is part of a full row or column
+     * @param x column
+     * @param y row
+     * @return true if the block is cleared
+     */
+    public boolean isCleared(int x, int y) {
+        return isRowCleared(y) || isColumnCleared(x);
+    }
+
+    /**
+     * Build the set of coordinates of every block covered by the full lines. This allocates, so should only be used
+     * when the coordinates are actually needed, for example to animate the blocks being cleared.
+     * @return set of block coordinates
+     */
+    public Set<GameBlockCoordinate> toCoordinates() {
+        HashSet<GameBlockCoordinate> coordinates = new HashSet<>();
+        for(int y = 0; y < rows; y++) {
+            if(isRowCleared(y)) {
+                for(int x = 0; x < cols; x++) {
+                    coordinates.add(new GameBlockCoordinate(x, y));
+                }
+            }
+        }
+        for(int x = 0; x < cols; x++) {
+            if(isColumnCleared(x)) {
+                for(int y = 0; y < rows; y++) {
+                    coordinates.add(new GameBlockCoordinate(x, y));
+                }
+            }
+        }
+        return coordinates;
+    }
+}
@@ -0,0 +1,188 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A PieceShape is the immutable block makeup of one piece in one rotation. Every shape is built once by GamePiece and
+ * shared between all pieces of that type, so rotating or spawning a piece never allocates.
+ *
+ * The shape fits in a 3x3 grid centred on the block the piece is played at. It is held both as a 9 bit mask, with bit
+ * (x * 3 + y) set for each block in the 3x3 grid, and as a list of block offsets from the centre.
+ */
+public final class PieceShape {
+
+    /**
+     * The name of the piece this shape belongs to
+     */
+    private final String name;
+
+    /**
+     * The value of the piece this shape belongs to
+     */
+    private final int value;
+
+    /**
+     * The rotation of this shape, between 0 and 3
+     */
+    private final int rotation;
+
+    /**
+     * Bit (x * 3 + y) is set for each block in the 3x3 grid
+     */
+    private final int mask;
+
+    /**
+     * For each row of the 3x3 grid, bit x is set for each block in that row
+     */
+    private final int[] rowMasks;
+
+    /**
+     * The column offset of each block from the centre, between -1 and 1
+     */
+    private final int[] offsetX;
+
+    /**
+     * The row offset of each block from the centre, between -1 and 1
+     */
+    private final int[] offsetY;
+
+    /**
+     * Create a new shape from a 3x3 grid of blocks. Should only be called by GamePiece when building the shape table.
+     * @param name name of the piece
+     * @param value value of the piece
+     * @param rotation rotation of this shape
+     * @param blocks 3x3 grid, any value above 0 is a block
+     */
+    PieceShape(String name, int value, int rotation, int[][] blocks) {
+        this.name = name;
+        this.value = value;
+        this.rotation = rotation;
+
+        int mask = 0;
+        int count = 0;
+        for(int x = 0; x < 3; x++) {
+            for(int y = 0; y < 3; y++) {
+                if(blocks[x][y] > 0) {
+                    mask |= 1 << (x * 3 + y);
+                    count++;
+                }
+            }
+        }
+        this.mask = mask;
+
+        rowMasks = new int[3];
+        offsetX = new int[count];
+        offsetY = new int[count];
+        int block = 0;
+        for(int y = 0; y < 3; y++) {
+            for(int x = 0; x < 3; x++) {
+                if(contains(x, y)) {
+                    rowMasks[y] |= 1 << x;
+                    offsetX[block] = x - 1;
+                    offsetY[block] = y - 1;
+                    block++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the name of the piece this shape belongs to
+     * @return piece name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the value of the piece this shape belongs to
+     * @return piece value
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Get the rotation of this shape
+     * @return rotation between 0 and 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the 9 bit mask of this shape, with bit (x * 3 + y) set for each block in the 3x3 grid
+     * @return shape mask
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Get the blocks in one row of the 3x3 grid, with bit x set for each block in that row
+     * @param y row of the 3x3 grid, between 0 and 2
+     * @return row mask
+     */
+    public int getRowMask(int y) {
+        return rowMasks[y];
+    }
+
+    /**
+     * Check whether this shape has a block at a position in the 3x3 grid
+     * @param x column of the 3x3 grid
+     * @param y row of the 3x3 grid
+     * @return true if there is a block there
+     */
+    public boolean contains(int x, int y) {
+        return (mask & (1 << (x * 3 + y))) != 0;
+    }
+
+    /**
+     * Get the number of blocks in this shape
+     * @return number of blocks
+     */
+    public int getBlockCount() {
+        return offsetX.length;
+    }
+
+    /**
+     * Get the column offset of a block from the centre of the shape
+     * @param block block number, less than getBlockCount
+     * @return column offset between -1 and 1
+     */
+    public int getOffsetX(int block) {
+        return offsetX[block];
+    }
+
+    /**
+     * Get the row offset of a block from the centre of the shape
+     * @param block block number, less than getBlockCount
+     * @return row offset between -1 and 1
+     */
+    public int getOffsetY(int block) {
+        return offsetY[block];
+    }
+
+    /**
+     * Build a new 3x3 grid of this shape, with either 0 (empty) or the value of the piece for each block
+     * @return 2D grid of the blocks
+     */
+    public int[][] toBlocks() {
+        int[][] blocks = new int[3][3];
+        for(int x = 0; x < 3; x++) {
+            for(int y = 0; y < 3; y++) {
+                if(contains(x, y)) {
+                    blocks[x][y] = value;
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Return the string representation of this shape
+     * @return the name of the piece
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
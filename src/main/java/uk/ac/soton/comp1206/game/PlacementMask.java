@@ -0,0 +1,106 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A PlacementMask holds every position a piece, in one rotation, could legally be played at in a Grid. It is a bitboard
+ * laid out the same way as the grid's occupancy, with a bit set for each legal x,y.
+ *
+ * Masks are built and cached by the Grid, and are refreshed in place when the grid changes, so a mask should be read
+ * straight away rather than kept.
+ */
+public class PlacementMask {
+
+    /**
+     * The number of columns in the grid
+     */
+    private final int cols;
+
+    /**
+     * The number of rows in the grid
+     */
+    private final int rows;
+
+    /**
+     * The number of 64-bit words used to hold a single row
+     */
+    private final int wordsPerRow;
+
+    /**
+     * Row y starts at word y * wordsPerRow, and column x is bit (x % 64) of word x / 64 within it
+     */
+    final long[] words;
+
+    /**
+     * Create a new empty mask for a grid of the given size
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    PlacementMask(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.wordsPerRow = (cols + 63) >>> 6;
+        this.words = new long[wordsPerRow * rows];
+    }
+
+    /**
+     * Check whether the piece can be played at a given x,y
+     * @param x column
+     * @param y row
+     * @return true if the piece can be played there
+     */
+    public boolean isLegal(int x, int y) {
+        if(x < 0 || x >= cols || y < 0 || y >= rows) {
+            return false;
+        }
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Count the positions the piece can be played at
+     * @return number of legal positions
+     */
+    public int count() {
+        int count = 0;
+        for(long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Check whether there is nowhere the piece can be played
+     * @return true if there are no legal positions
+     */
+    public boolean isEmpty() {
+        for(long word : words) {
+            if(word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the next legal position at or after a block index, where the index of x,y is y * cols + x. Can be used to
+     * walk every legal position without allocating.
+     * @param index block index to start from
+     * @return the block index of the next legal position, or -1 if there is none
+     */
+    public int nextLegal(int index) {
+        if(index < 0) {
+            index = 0;
+        }
+        for(int y = index / cols; y < rows; y++) {
+            int fromX = y == index / cols ? index % cols : 0;
+            for(int word = fromX >>> 6; word < wordsPerRow; word++) {
+                long bits = words[y * wordsPerRow + word];
+                if(word == fromX >>> 6) {
+                    bits &= -1L << fromX;
+                }
+                if(bits != 0) {
+                    return y * cols + (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,34 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The sound effects the game can play, each backed by a file under /sounds. Sounds are played by id through the
+ * SoundEngine rather than by resource path.
+ */
+public enum Sound {
+    CLEAR("clear.wav"),
+    EXPLODE("explode.wav"),
+    FAIL("fail.wav"),
+    INTRO("intro.mp3"),
+    LEVEL("level.wav"),
+    LIFE_GAIN("lifegain.wav"),
+    LIFE_LOSE("lifelose.wav"),
+    MESSAGE("message.wav"),
+    PLACE("place.wav"),
+    PLING("pling.wav"),
+    ROTATE("rotate.wav"),
+    TRANSITION("transition.wav");
+
+    private final String file;
+
+    Sound(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Get the resource path of the file this sound plays
+     * @return resource path
+     */
+    public String getResource() {
+        return "/sounds/" + file;
+    }
+}
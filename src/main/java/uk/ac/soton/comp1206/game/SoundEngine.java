@@ -0,0 +1,310 @@
+package uk.ac.soton.comp1206.game;
+
+import javafx.scene.media.AudioClip;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.metrics.Counter;
+import uk.ac.soton.comp1206.metrics.Histogram;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The SoundEngine plays the game's sound effects. Every sound is decoded once into an AudioClip in the background when
+ * the game starts, and each trigger after that just replays the decoded clip. Sounds are never decoded on the thread
+ * that plays them: a sound triggered before it has been decoded is skipped.
+ *
+ * To keep fast play from turning into noise, the same sound triggered more than once within a frame is only played
+ * once, and no more than a fixed number of voices play at the same time; triggers beyond that are dropped. AudioClip
+ * cannot say when one play of a clip ends, so each play holds its voice for the length of the sound, read from the
+ * WAV header when the sound is loaded.
+ *
+ * The time spent handing each sound to the audio system is recorded, along with how many triggers were played,
+ * coalesced, dropped and skipped.
+ */
+public class SoundEngine {
+
+    private static final Logger logger = LogManager.getLogger(SoundEngine.class);
+
+    /**
+     * The most sounds that can play at once
+     */
+    public static final int MAX_VOICES = 6;
+
+    /**
+     * Triggers of the same sound closer together than this are played once, in nanoseconds
+     */
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    /**
+     * How long a voice is held for a sound whose length cannot be read, in nanoseconds
+     */
+    private static final long DEFAULT_SOUND_NANOS = 1_000_000_000L;
+
+    private static final SoundEngine instance = new SoundEngine();
+
+    /**
+     * A decoded sound and how long it plays for
+     */
+    private static class LoadedSound {
+        final AudioClip clip;
+        final long nanos;
+
+        LoadedSound(AudioClip clip, long nanos) {
+            this.clip = clip;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * The decoded clip for each sound, filled in as sounds are loaded
+     */
+    private final AtomicReferenceArray<LoadedSound> sounds = new AtomicReferenceArray<>(Sound.values().length);
+
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    /**
+     * When each sound was last played, for coalescing
+     */
+    private final long[] lastPlayed = new long[Sound.values().length];
+
+    /**
+     * When the play holding each voice ends, from System.nanoTime, or 0 if the voice is free
+     */
+    private final long[] voiceEnds = new long[MAX_VOICES];
+
+    /**
+     * Time from trigger until the clip has been handed to the audio system, in microseconds
+     */
+    private final Histogram dispatchLatency = new Histogram();
+
+    /**
+     * How many times each sound has been triggered, whether or not it was played
+     */
+    private final Counter[] triggers = new Counter[Sound.values().length];
+
+    private long played;
+    private long coalesced;
+    private long dropped;
+    private long notLoaded;
+
+    private SoundEngine() {
+        for(Sound sound : Sound.values()) {
+            triggers[sound.ordinal()] = MetricsRegistry.getInstance().counter("sound." + sound.name().toLowerCase() + ".triggers");
+        }
+    }
+
+    /**
+     * Get the shared sound engine
+     * @return the sound engine
+     */
+    public static SoundEngine getInstance() {
+        return instance;
+    }
+
+    /**
+     * Decode every sound on a background thread, unless that has already started
+     */
+    public void preload() {
+        if(!loading.compareAndSet(false, true)) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            long start = System.nanoTime();
+            for(Sound sound : Sound.values()) {
+                load(sound);
+            }
+            logger.info("Loaded {} sounds in {}ms", sounds.length(), (System.nanoTime() - start) / 1_000_000L);
+        }, "sound-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Play a sound, unless it was already played this frame, every voice is in use or it has not been decoded yet
+     * @param sound the sound to play
+     */
+    public synchronized void play(Sound sound) {
+        long triggered = System.nanoTime();
+        int id = sound.ordinal();
+        triggers[id].increment();
+
+        if(lastPlayed[id] != 0 && triggered - lastPlayed[id] < FRAME_NANOS) {
+            coalesced++;
+            return;
+        }
+
+        LoadedSound loaded = sounds.get(id);
+        if(loaded == null) {
+            notLoaded++;
+            logger.debug("Skipping sound {}, not decoded yet", sound);
+            preload();
+            return;
+        }
+
+        int voice = freeVoice(triggered);
+        if(voice < 0) {
+            dropped++;
+            logger.debug("Dropping sound {}, all {} voices in use", sound, MAX_VOICES);
+            return;
+        }
+
+        loaded.clip.play();
+        long dispatched = System.nanoTime();
+        voiceEnds[voice] = dispatched + loaded.nanos;
+        lastPlayed[id] = triggered;
+        played++;
+        dispatchLatency.record((dispatched - triggered) / 1_000L);
+    }
+
+    /**
+     * Stop every sound that is playing
+     */
+    public synchronized void stopAll() {
+        for(int i = 0; i < sounds.length(); i++) {
+            LoadedSound loaded = sounds.get(i);
+            if(loaded != null) {
+                loaded.clip.stop();
+            }
+        }
+        Arrays.fill(voiceEnds, 0);
+    }
+
+    /**
+     * Get the time from a sound being triggered until its clip has been handed to the audio system. AudioClip plays
+     * asynchronously and gives no sign of when the sound is heard, so the audio output's own delay is not included.
+     * @return dispatch latency histogram in microseconds
+     */
+    public Histogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    /**
+     * Get the number of sounds played
+     * @return sounds played
+     */
+    public synchronized long getPlayed() {
+        return played;
+    }
+
+    /**
+     * Get the number of triggers skipped because the same sound was already played that frame
+     * @return triggers coalesced
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Get the number of triggers skipped because every voice was in use
+     * @return triggers dropped
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Get the number of triggers skipped because the sound had not been decoded yet
+     * @return triggers skipped
+     */
+    public synchronized long getNotLoaded() {
+        return notLoaded;
+    }
+
+    /**
+     * Find a voice that is free
+     * @param now the time, from System.nanoTime
+     * @return the voice, or -1 if every voice is still playing
+     */
+    private int freeVoice(long now) {
+        for(int i = 0; i < voiceEnds.length; i++) {
+            if(voiceEnds[i] - now <= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decode a sound and read its length, unless it has been already
+     * @param sound the sound
+     */
+    private void load(Sound sound) {
+        if(sounds.get(sound.ordinal()) != null) {
+            return;
+        }
+        URL url = getClass().getResource(sound.getResource());
+        long nanos = DEFAULT_SOUND_NANOS;
+        if(sound.getResource().endsWith(".wav")) {
+            try (InputStream in = url.openStream()) {
+                nanos = wavNanos(in);
+            } catch (IOException e) {
+                logger.warn("Unable to read the length of sound {}", sound, e);
+            }
+        }
+        sounds.compareAndSet(sound.ordinal(), null, new LoadedSound(new AudioClip(url.toExternalForm()), nanos));
+    }
+
+    /**
+     * Read how long a WAV file plays for from its header
+     * @param in the file, from the start
+     * @return the length in nanoseconds
+     * @throws IOException if the file could not be read or is not a WAV file
+     */
+    static long wavNanos(InputStream in) throws IOException {
+        var data = new DataInputStream(in);
+        byte[] id = new byte[4];
+        data.readFully(id);
+        if(!new String(id, StandardCharsets.US_ASCII).equals("RIFF")) {
+            throw new IOException("Not a RIFF file");
+        }
+        littleEndianInt(data);
+        data.readFully(id);
+        if(!new String(id, StandardCharsets.US_ASCII).equals("WAVE")) {
+            throw new IOException("Not a WAV file");
+        }
+
+        long byteRate = 0;
+        while(true) {
+            try {
+                data.readFully(id);
+            } catch (EOFException e) {
+                throw new IOException("No data chunk");
+            }
+            long size = littleEndianInt(data) & 0xFFFFFFFFL;
+            String chunk = new String(id, StandardCharsets.US_ASCII);
+            if(chunk.equals("data")) {
+                if(byteRate <= 0) {
+                    throw new IOException("No format before the data chunk");
+                }
+                return size * 1_000_000_000L / byteRate;
+            }
+            long skip = size + (size & 1);
+            if(chunk.equals("fmt ")) {
+                //Format, channels and sample rate come before the byte rate
+                data.skipNBytes(8);
+                byteRate = littleEndianInt(data) & 0xFFFFFFFFL;
+                skip -= 12;
+            }
+            data.skipNBytes(skip);
+        }
+    }
+
+    /**
+     * Read a little endian int
+     * @param data the stream
+     * @return the int
+     * @throws IOException if the stream could not be read
+     */
+    private static int littleEndianInt(DataInputStream data) throws IOException {
+        return Integer.reverseBytes(data.readInt());
+    }
+}
@@ -0,0 +1,73 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A VirtualClock is a GameClock which only moves when it is told to. It lets simulations and tests run a game's
+ * timers as fast as they like, or step through them exactly.
+ *
+ * GameTimers created on a virtual clock expire while the clock is being advanced, in deadline order, on the thread
+ * advancing it. A virtual clock is not thread safe and should only be advanced from one thread.
+ */
+public class VirtualClock implements GameClock {
+
+    /**
+     * The current time of this clock in nanoseconds
+     */
+    private long now;
+
+    /**
+     * The timers running on this clock
+     */
+    private final List<GameTimer> timers = new ArrayList<>();
+
+    /**
+     * Get the current time of this clock
+     * @return the current time in nanoseconds
+     */
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    /**
+     * Move this clock forwards, expiring any timers whose deadlines are passed on the way. A timer which expires more
+     * than once in the time advanced is called back once for each expiry. Callbacks may advance the clock themselves,
+     * for example to stand for work that takes time.
+     * @param millis the number of milliseconds to move forwards by, ignored if not positive
+     */
+    public void advance(long millis) {
+        if(millis <= 0) {
+            return;
+        }
+        long target = now + millis * 1_000_000L;
+        while(true) {
+            //Find the timer due to expire first, if any are due before the target
+            GameTimer next = null;
+            long nextDeadline = target;
+            for(GameTimer timer : timers) {
+                long deadline = timer.getDeadline();
+                if(deadline != Long.MAX_VALUE && deadline - nextDeadline <= 0) {
+                    next = timer;
+                    nextDeadline = deadline;
+                }
+            }
+            if(next == null) {
+                break;
+            }
+            now = Math.max(now, nextDeadline);
+            next.expire();
+        }
+        //A callback may have advanced the clock itself, and time never goes backwards
+        now = Math.max(now, target);
+    }
+
+    /**
+     * Add a timer to be expired by this clock. Called by GameTimer when it is created.
+     * @param timer the timer
+     */
+    void register(GameTimer timer) {
+        timers.add(timer);
+    }
+}
@@ -0,0 +1,23 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Starting the animation of cleared blocks fading out on a game board
+ */
+@Name("uk.ac.soton.comp1206.FadeOut")
+@Label("Fade Out")
+@Category({ "TetrECS", "UI" })
+@Description("Starting the animation of cleared blocks fading out on a game board")
+public class FadeOutEvent extends Event {
+
+    @Label("Blocks")
+    public int blocks;
+
+    @Label("Render Mode")
+    public String renderMode;
+}
@@ -0,0 +1,29 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Finding the full lines after a piece, and clearing them from the grid
+ */
+@Name("uk.ac.soton.comp1206.LineClear")
+@Label("Line Clear")
+@Category({ "TetrECS", "Game" })
+@Description("Finding the full lines after a piece, and clearing them from the grid")
+public class LineClearEvent extends Event {
+
+    @Label("Lines")
+    public int lines;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int columns;
+
+    @Label("Blocks")
+    public int blocks;
+}
@@ -0,0 +1,23 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A message from the TetrECS server, handled by every listener
+ */
+@Name("uk.ac.soton.comp1206.MessageReceived")
+@Label("Message Received")
+@Category({ "TetrECS", "Network" })
+@Description("A message from the TetrECS server, handled by every listener")
+public class MessageReceivedEvent extends Event {
+
+    @Label("Message")
+    public String message;
+
+    @Label("Listeners")
+    public int listeners;
+}
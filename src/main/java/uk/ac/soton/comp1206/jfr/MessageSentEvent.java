@@ -0,0 +1,24 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A message written to the TetrECS server
+ */
+@Name("uk.ac.soton.comp1206.MessageSent")
+@Label("Message Sent")
+@Category({ "TetrECS", "Network" })
+@Description("A message written to the TetrECS server")
+public class MessageSentEvent extends Event {
+
+    @Label("Message")
+    public String message;
+
+    @Label("Queue Depth")
+    @Description("Messages still waiting to be sent")
+    public int queueDepth;
+}
@@ -0,0 +1,36 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A piece played onto the grid, including checking it can be played there.
+ *
+ * Like PlacementCheckEvent, only plays slower than the threshold are recorded by default.
+ */
+@Name("uk.ac.soton.comp1206.PiecePlay")
+@Label("Piece Play")
+@Category({ "TetrECS", "Game" })
+@Description("A piece played onto the grid, including checking it can be played there")
+@Threshold("20 us")
+public class PiecePlayEvent extends Event {
+
+    @Label("Piece")
+    public String piece;
+
+    @Label("Rotation")
+    public int rotation;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Played")
+    public boolean played;
+}
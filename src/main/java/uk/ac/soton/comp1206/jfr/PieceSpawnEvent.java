@@ -0,0 +1,26 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A new current piece, moved up from following, and a new following piece spawned
+ */
+@Name("uk.ac.soton.comp1206.PieceSpawn")
+@Label("Piece Spawn")
+@Category({ "TetrECS", "Game" })
+@Description("A new current piece, moved up from following, and a new following piece spawned")
+public class PieceSpawnEvent extends Event {
+
+    @Label("Piece")
+    public String piece;
+
+    @Label("Rotation")
+    public int rotation;
+
+    @Label("Following Piece")
+    public String followingPiece;
+}
@@ -0,0 +1,37 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A check of whether a piece can be played at a position on the grid.
+ *
+ * Placements are checked on every mouse move and every simulated move, so by default only checks slower than the
+ * threshold are recorded. Set the threshold to 0 ms in the recording's settings to record every one.
+ */
+@Name("uk.ac.soton.comp1206.PlacementCheck")
+@Label("Placement Check")
+@Category({ "TetrECS", "Game" })
+@Description("A check of whether a piece can be played at a position on the grid")
+@Threshold("20 us")
+public class PlacementCheckEvent extends Event {
+
+    @Label("Piece")
+    public String piece;
+
+    @Label("Rotation")
+    public int rotation;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Playable")
+    public boolean playable;
+}
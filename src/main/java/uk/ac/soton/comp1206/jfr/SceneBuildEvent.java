@@ -0,0 +1,20 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Cleaning up the old scene, then building and showing a new one
+ */
+@Name("uk.ac.soton.comp1206.SceneBuild")
+@Label("Scene Build")
+@Category({ "TetrECS", "UI" })
+@Description("Cleaning up the old scene, then building and showing a new one")
+public class SceneBuildEvent extends Event {
+
+    @Label("Scene")
+    public String scene;
+}
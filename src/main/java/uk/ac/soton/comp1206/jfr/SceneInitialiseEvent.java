@@ -0,0 +1,20 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Initialising a scene once it is showing
+ */
+@Name("uk.ac.soton.comp1206.SceneInitialise")
+@Label("Scene Initialise")
+@Category({ "TetrECS", "UI" })
+@Description("Initialising a scene once it is showing")
+public class SceneInitialiseEvent extends Event {
+
+    @Label("Scene")
+    public String scene;
+}
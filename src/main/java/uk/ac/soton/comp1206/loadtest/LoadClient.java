@@ -0,0 +1,513 @@
+package uk.ac.soton.comp1206.loadtest;
+
+import uk.ac.soton.comp1206.server.WebSocketFrames;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.SplittableRandom;
+
+/**
+ * A LoadClient is one simulated player in a load test. It connects with a non-blocking socket, does the WebSocket
+ * handshake, names itself and joins its group's channel, then makes a request on a schedule, timing how long each
+ * takes to be answered.
+ *
+ * Answers to each kind of request come back in the order they were asked, so each kind keeps a queue of send times
+ * and an answer is matched to the oldest. Chat messages are matched by the client's own nickname, as everyone in the
+ * channel receives them.
+ *
+ * Requests still waiting when the connection closes, for whatever reason, are counted as unanswered. A client that has
+ * not finished the handshake within the request timeout is counted as a failed connection.
+ *
+ * A client is only used on the load tester's thread.
+ */
+class LoadClient {
+
+    /**
+     * The kinds of request that are timed
+     */
+    enum Request {
+        HISCORES,
+        HISCORE,
+        MSG
+    }
+
+    private enum State {
+        CONNECTING,
+        HANDSHAKE,
+        OPEN,
+        CLOSED
+    }
+
+    /**
+     * The most a client will buffer from the server
+     */
+    private static final int MAX_INPUT = 1 << 20;
+
+    private final String nickname;
+    private final String channel;
+    private final LoadStats stats;
+    private final SplittableRandom random;
+
+    private SocketChannel socket;
+    private SelectionKey key;
+    private State state = State.CONNECTING;
+    private long connectStart;
+    private String handshakeKey;
+    private boolean joined;
+
+    private ByteBuffer input = ByteBuffer.allocate(4096);
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+
+    /**
+     * When each request still waiting for an answer was sent, one queue per kind
+     */
+    private final TimeQueue[] pending = new TimeQueue[Request.values().length];
+
+    private long nextAction;
+
+    /**
+     * Create a new client
+     * @param index the client's number
+     * @param channel the channel to join
+     * @param stats where to record measurements
+     * @param random random stream for this client
+     */
+    LoadClient(int index, String channel, LoadStats stats, SplittableRandom random) {
+        this.nickname = "load" + index;
+        this.channel = channel;
+        this.stats = stats;
+        this.random = random;
+        for(int i = 0; i < pending.length; i++) {
+            pending[i] = new TimeQueue();
+        }
+    }
+
+    /**
+     * Start connecting
+     * @param selector the tester's selector
+     * @param address the server
+     * @param now the time in nanoseconds
+     */
+    void connect(Selector selector, InetSocketAddress address, long now) {
+        connectStart = now;
+        stats.attempted++;
+        try {
+            socket = SocketChannel.open();
+            socket.configureBlocking(false);
+            socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            key = socket.register(selector, SelectionKey.OP_CONNECT, this);
+            if(socket.connect(address)) {
+                connected();
+            }
+        } catch (IOException e) {
+            stats.connectFailures++;
+            abort();
+        }
+    }
+
+    /**
+     * Handle the socket being ready
+     * @param now the time in nanoseconds
+     */
+    void ready(long now) {
+        try {
+            if(key.isConnectable()) {
+                if(!socket.finishConnect()) {
+                    return;
+                }
+                connected();
+            }
+            if(key.isValid() && key.isWritable()) {
+                flush();
+            }
+            if(key.isValid() && key.isReadable()) {
+                read(now);
+            }
+        } catch (IOException e) {
+            if(state == State.OPEN) {
+                stats.disconnects++;
+            } else {
+                stats.connectFailures++;
+            }
+            abort();
+        }
+    }
+
+    /**
+     * Give up on requests that have waited too long, then make the next request if it is due
+     * @param now the time in nanoseconds
+     * @param interval nanoseconds between requests
+     * @param timeout nanoseconds to wait for an answer
+     * @param mix the relative weight of each kind of request
+     */
+    void tick(long now, long interval, long timeout, int[] mix) {
+        expire(now, timeout);
+        if(state != State.OPEN || now < nextAction) {
+            return;
+        }
+        nextAction += interval;
+        if(nextAction < now) {
+            //Fallen behind, so start the schedule again from now rather than sending a burst
+            nextAction = now + interval;
+        }
+
+        Request request = choose(mix);
+        switch (request) {
+            case HISCORES -> send("HISCORES");
+            case HISCORE -> send("HISCORE " + nickname + ":" + random.nextInt(100_000));
+            case MSG -> send("MSG ping " + now);
+        }
+        pending[request.ordinal()].add(now);
+    }
+
+    /**
+     * Give up on requests that have waited too long, and on a connection whose handshake has
+     * @param now the time in nanoseconds
+     * @param timeout nanoseconds to wait for an answer
+     */
+    void expire(long now, long timeout) {
+        if((state == State.CONNECTING || state == State.HANDSHAKE) && now - connectStart > timeout) {
+            stats.connectFailures++;
+            abort();
+            return;
+        }
+        for(TimeQueue queue : pending) {
+            while(!queue.isEmpty() && now - queue.peek() > timeout) {
+                queue.poll();
+                stats.timeouts++;
+            }
+        }
+    }
+
+    /**
+     * Get the number of requests still waiting for an answer
+     * @return waiting requests
+     */
+    int getPending() {
+        int waiting = 0;
+        for(TimeQueue queue : pending) {
+            waiting += queue.size();
+        }
+        return waiting;
+    }
+
+    /**
+     * Close the connection, counting anything still unanswered. A client still connecting never connected while the
+     * test ran, so it is counted as a failed connection.
+     */
+    void close() {
+        if(state == State.OPEN) {
+            send(WebSocketFrames.maskedClose(WebSocketFrames.CLOSE_NORMAL, random.nextInt()));
+        } else if(state == State.CONNECTING || state == State.HANDSHAKE) {
+            stats.connectFailures++;
+        }
+        abort();
+    }
+
+    /**
+     * Check whether the client is connected and past the handshake
+     * @return true if open
+     */
+    boolean isOpen() {
+        return state == State.OPEN;
+    }
+
+    /**
+     * Send the WebSocket upgrade request once the socket connects
+     */
+    private void connected() {
+        byte[] nonce = new byte[16];
+        for(int i = 0; i < nonce.length; i++) {
+            nonce[i] = (byte) random.nextInt(256);
+        }
+        handshakeKey = Base64.getEncoder().encodeToString(nonce);
+        String request = "GET / HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + handshakeKey + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        state = State.HANDSHAKE;
+        key.interestOps(SelectionKey.OP_READ);
+        send(ByteBuffer.wrap(request.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    /**
+     * Read whatever has arrived
+     * @param now the time in nanoseconds
+     * @throws IOException if the socket could not be read, or was closed
+     */
+    private void read(long now) throws IOException {
+        if(socket.read(input) < 0) {
+            throw new IOException("Closed by server");
+        }
+        input.flip();
+        if(state == State.HANDSHAKE) {
+            handshake(now);
+        }
+        while(state == State.OPEN && frame(now)) {
+            //Keep going while whole frames are waiting
+        }
+        input.compact();
+        if(!input.hasRemaining()) {
+            if(input.capacity() >= MAX_INPUT) {
+                stats.protocolErrors++;
+                abort();
+                return;
+            }
+            input = ByteBuffer.allocate(input.capacity() * 2).put(input.flip());
+        }
+    }
+
+    /**
+     * Check the server's answer to the upgrade request, once it has all arrived
+     * @param now the time in nanoseconds
+     */
+    private void handshake(long now) {
+        int end = -1;
+        for(int i = input.position(); i + 3 < input.limit(); i++) {
+            if(input.get(i) == '\r' && input.get(i + 1) == '\n' && input.get(i + 2) == '\r' && input.get(i + 3) == '\n') {
+                end = i + 4;
+                break;
+            }
+        }
+        if(end < 0) {
+            return;
+        }
+        byte[] response = new byte[end - input.position()];
+        input.get(response);
+        String text = new String(response, StandardCharsets.ISO_8859_1);
+        String expected = "Sec-WebSocket-Accept: " + WebSocketFrames.acceptKey(handshakeKey);
+        if(!text.startsWith("HTTP/1.1 101") || !text.contains(expected)) {
+            stats.protocolErrors++;
+            abort();
+            return;
+        }
+
+        state = State.OPEN;
+        stats.established++;
+        stats.setup.record(now - connectStart);
+        send("NICK " + nickname);
+        send("JOIN " + channel);
+        //The first request goes now, so clients keep the spread the ramp gave them
+        nextAction = now;
+    }
+
+    /**
+     * Decode one frame from the server, if it has all arrived
+     * @param now the time in nanoseconds
+     * @return true if a frame was decoded
+     */
+    private boolean frame(long now) {
+        WebSocketFrames.Frame frame;
+        try {
+            frame = WebSocketFrames.decode(input, MAX_INPUT);
+        } catch (ProtocolException e) {
+            stats.protocolErrors++;
+            abort();
+            return false;
+        }
+        if(frame == null) {
+            return false;
+        }
+        int opcode = frame.getOpcode();
+        byte[] payload = frame.getPayload();
+
+        if(opcode == WebSocketFrames.TEXT) {
+            receive(new String(payload, StandardCharsets.UTF_8), now);
+        } else if(opcode == WebSocketFrames.CLOSE) {
+            stats.disconnects++;
+            abort();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Act on a message from the server, timing it if it answers a request
+     * @param message the message
+     * @param now the time in nanoseconds
+     */
+    private void receive(String message, long now) {
+        stats.received++;
+        if(message.startsWith("HISCORES")) {
+            answered(Request.HISCORES, now);
+        } else if(message.startsWith("NEWSCORE ")) {
+            answered(Request.HISCORE, now);
+        } else if(message.startsWith("MSG " + nickname + ":")) {
+            answered(Request.MSG, now);
+        } else if(message.startsWith("JOIN ")) {
+            joined = true;
+        } else if(message.startsWith("ERROR No such channel")) {
+            //The first of the group to arrive makes the channel
+            send("CREATE " + channel);
+        } else if(message.startsWith("ERROR Channel already exists")) {
+            send("JOIN " + channel);
+        } else if(message.startsWith("ERROR")) {
+            stats.serverErrors++;
+        }
+    }
+
+    /**
+     * Record the round trip of the oldest request of a kind
+     * @param request the kind of request answered
+     * @param now the time in nanoseconds
+     */
+    private void answered(Request request, long now) {
+        TimeQueue queue = pending[request.ordinal()];
+        if(queue.isEmpty()) {
+            //Already given up on as timed out
+            return;
+        }
+        long rtt = now - queue.poll();
+        stats.rtt[request.ordinal()].record(rtt);
+        stats.allRtt.record(rtt);
+    }
+
+    /**
+     * Choose the next request at random by weight. Chat is only chosen once the channel has been joined.
+     * @param mix the relative weight of each kind of request
+     * @return the request
+     */
+    private Request choose(int[] mix) {
+        int total = 0;
+        for(Request request : Request.values()) {
+            if(request != Request.MSG || joined) {
+                total += mix[request.ordinal()];
+            }
+        }
+        if(total == 0) {
+            return Request.HISCORES;
+        }
+        int pick = random.nextInt(total);
+        for(Request request : Request.values()) {
+            if(request != Request.MSG || joined) {
+                pick -= mix[request.ordinal()];
+                if(pick < 0) {
+                    return request;
+                }
+            }
+        }
+        return Request.HISCORES;
+    }
+
+    /**
+     * Send a text message
+     * @param message the message
+     */
+    private void send(String message) {
+        stats.sent++;
+        send(WebSocketFrames.maskedText(message, random.nextInt()));
+    }
+
+    /**
+     * Queue a frame and write as much as the socket will take
+     * @param frame the frame
+     */
+    private void send(ByteBuffer frame) {
+        if(state == State.CLOSED) {
+            return;
+        }
+        output.add(frame);
+        try {
+            flush();
+        } catch (IOException e) {
+            stats.disconnects++;
+            abort();
+        }
+    }
+
+    /**
+     * Write queued output, and ask to be told when the socket can take more
+     * @throws IOException if the socket could not be written
+     */
+    private void flush() throws IOException {
+        while(!output.isEmpty()) {
+            ByteBuffer next = output.peek();
+            socket.write(next);
+            if(next.hasRemaining()) {
+                break;
+            }
+            output.poll();
+        }
+        if(key.isValid()) {
+            key.interestOps(output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Close the socket straight away, counting any requests still waiting as unanswered
+     */
+    private void abort() {
+        state = State.CLOSED;
+        output.clear();
+        stats.unanswered += getPending();
+        for(TimeQueue queue : pending) {
+            queue.clear();
+        }
+        if(key != null) {
+            key.cancel();
+        }
+        if(socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //Already gone
+            }
+        }
+    }
+
+    /**
+     * A growable ring buffer of times, so timing requests does not box them
+     */
+    private static class TimeQueue {
+        private long[] times = new long[8];
+        private int head;
+        private int size;
+
+        void add(long time) {
+            if(size == times.length) {
+                long[] grown = new long[size * 2];
+                for(int i = 0; i < size; i++) {
+                    grown[i] = times[(head + i) % times.length];
+                }
+                times = grown;
+                head = 0;
+            }
+            times[(head + size++) % times.length] = time;
+        }
+
+        long peek() {
+            return times[head];
+        }
+
+        long poll() {
+            long time = times[head];
+            head = (head + 1) % times.length;
+            size--;
+            return time;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
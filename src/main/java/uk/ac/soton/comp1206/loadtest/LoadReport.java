@@ -0,0 +1,214 @@
+package uk.ac.soton.comp1206.loadtest;
+
+import uk.ac.soton.comp1206.metrics.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The results of a load test: how long connections took to set up, how long requests took to be answered, how many
+ * messages went each way, and what went wrong. The report can be printed for people or written as JSON for tools to
+ * compare between runs.
+ */
+public class LoadReport {
+
+    private final String server;
+    private final int clients;
+    private final int group;
+    private final long intervalMillis;
+    private final int[] mix;
+    private final long elapsedNanos;
+    private final LoadStats stats;
+
+    /**
+     * Create a new report
+     * @param server the server tested, as host:port
+     * @param clients the number of clients started
+     * @param group the number of clients sharing each channel
+     * @param intervalMillis time between each client's requests
+     * @param mix the relative weight of each kind of request
+     * @param elapsedNanos time spent sending requests
+     * @param stats the measurements
+     */
+    LoadReport(String server, int clients, int group, long intervalMillis, int[] mix, long elapsedNanos,
+               LoadStats stats) {
+        this.server = server;
+        this.clients = clients;
+        this.group = group;
+        this.intervalMillis = intervalMillis;
+        this.mix = mix.clone();
+        this.elapsedNanos = elapsedNanos;
+        this.stats = stats;
+    }
+
+    /**
+     * Get the number of connections that completed the handshake
+     * @return established connections
+     */
+    public long getEstablished() {
+        return stats.established;
+    }
+
+    /**
+     * Get the round trip times of every request, in nanoseconds
+     * @return round trip times
+     */
+    public Histogram getRoundTrips() {
+        return stats.allRtt;
+    }
+
+    /**
+     * Get the number of messages received from the server each second
+     * @return messages per second
+     */
+    public double getReceivedPerSecond() {
+        return elapsedNanos == 0 ? 0 : stats.received * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Get the number of messages sent to the server each second
+     * @return messages per second
+     */
+    public double getSentPerSecond() {
+        return elapsedNanos == 0 ? 0 : stats.sent * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Get the share of connections and requests that failed
+     * @return errors over connections attempted plus requests sent, from 0 to 1
+     */
+    public double getErrorRate() {
+        long attempts = stats.attempted + stats.sent;
+        return attempts == 0 ? 0 : (double) stats.getErrors() / attempts;
+    }
+
+    /**
+     * Write this report out in a human readable form
+     * @param out stream to write to
+     */
+    public void print(PrintStream out) {
+        out.printf("server:          %s, %d clients in channels of %d, every %d ms for %.3f s%n",
+                server, clients, group, intervalMillis, elapsedNanos / 1e9);
+        out.printf("connections:     %d of %d established, %d failed%n",
+                stats.established, stats.attempted, stats.connectFailures + stats.protocolErrors);
+        out.printf("setup ms:        %s%n", summary(stats.setup));
+        out.printf("messages:        %d sent (%.0f/sec), %d received (%.0f/sec)%n",
+                stats.sent, getSentPerSecond(), stats.received, getReceivedPerSecond());
+        out.printf("rtt ms:          %s%n", summary(stats.allRtt));
+        for(LoadClient.Request request : LoadClient.Request.values()) {
+            String label = request.name().toLowerCase(Locale.ROOT) + " ms:";
+            out.printf("  %-15s%s%n", label, summary(stats.rtt[request.ordinal()]));
+        }
+        out.printf("errors:          %d (%.3f%%): %d timeouts, %d unanswered, %d server, %d disconnects%n",
+                stats.getErrors(), getErrorRate() * 100, stats.timeouts, stats.unanswered, stats.serverErrors,
+                stats.disconnects);
+    }
+
+    /**
+     * Write this report to a file as JSON
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    public void write(Path file) throws IOException {
+        Files.writeString(file, toJson(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get this report as JSON. Times are in milliseconds.
+     * @return the JSON
+     */
+    public String toJson() {
+        var json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"config\": {");
+        json.append("\"server\": \"").append(server).append("\", ");
+        json.append("\"clients\": ").append(clients).append(", ");
+        json.append("\"group\": ").append(group).append(", ");
+        json.append("\"intervalMs\": ").append(intervalMillis).append(", ");
+        json.append("\"mix\": {");
+        for(LoadClient.Request request : LoadClient.Request.values()) {
+            if(request.ordinal() > 0) {
+                json.append(", ");
+            }
+            json.append('"').append(request.name().toLowerCase(Locale.ROOT)).append("\": ")
+                    .append(mix[request.ordinal()]);
+        }
+        json.append("}, ");
+        json.append("\"durationSec\": ").append(number(elapsedNanos / 1e9)).append("},\n");
+
+        json.append("  \"connections\": {");
+        json.append("\"attempted\": ").append(stats.attempted).append(", ");
+        json.append("\"established\": ").append(stats.established).append(", ");
+        json.append("\"failed\": ").append(stats.connectFailures + stats.protocolErrors).append(", ");
+        json.append("\"setupMs\": ").append(json(stats.setup)).append("},\n");
+
+        json.append("  \"messages\": {");
+        json.append("\"sent\": ").append(stats.sent).append(", ");
+        json.append("\"received\": ").append(stats.received).append(", ");
+        json.append("\"sentPerSec\": ").append(number(getSentPerSecond())).append(", ");
+        json.append("\"receivedPerSec\": ").append(number(getReceivedPerSecond())).append("},\n");
+
+        json.append("  \"rttMs\": {\n");
+        json.append("    \"all\": ").append(json(stats.allRtt));
+        for(LoadClient.Request request : LoadClient.Request.values()) {
+            json.append(",\n    \"").append(request.name().toLowerCase(Locale.ROOT)).append("\": ")
+                    .append(json(stats.rtt[request.ordinal()]));
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"errors\": {");
+        json.append("\"connectFailures\": ").append(stats.connectFailures).append(", ");
+        json.append("\"protocolErrors\": ").append(stats.protocolErrors).append(", ");
+        json.append("\"serverErrors\": ").append(stats.serverErrors).append(", ");
+        json.append("\"timeouts\": ").append(stats.timeouts).append(", ");
+        json.append("\"unanswered\": ").append(stats.unanswered).append(", ");
+        json.append("\"disconnects\": ").append(stats.disconnects).append(", ");
+        json.append("\"total\": ").append(stats.getErrors()).append(", ");
+        json.append("\"rate\": ").append(number(getErrorRate())).append("}\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * Summarise a histogram of nanoseconds in milliseconds for printing
+     * @param histogram the histogram
+     * @return the summary
+     */
+    private static String summary(Histogram histogram) {
+        if(histogram.getCount() == 0) {
+            return "none";
+        }
+        return String.format(Locale.ROOT, "p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f, mean %.2f (%d)",
+                histogram.getPercentile(50) / 1e6, histogram.getPercentile(90) / 1e6,
+                histogram.getPercentile(99) / 1e6, histogram.getPercentile(99.9) / 1e6,
+                histogram.getMax() / 1e6, histogram.getMean() / 1e6, histogram.getCount());
+    }
+
+    /**
+     * Get a histogram of nanoseconds as a JSON object in milliseconds
+     * @param histogram the histogram
+     * @return the JSON
+     */
+    private static String json(Histogram histogram) {
+        return "{\"count\": " + histogram.getCount()
+                + ", \"p50\": " + number(histogram.getPercentile(50) / 1e6)
+                + ", \"p90\": " + number(histogram.getPercentile(90) / 1e6)
+                + ", \"p99\": " + number(histogram.getPercentile(99) / 1e6)
+                + ", \"p999\": " + number(histogram.getPercentile(99.9) / 1e6)
+                + ", \"max\": " + number(histogram.getMax() / 1e6)
+                + ", \"mean\": " + number(histogram.getMean() / 1e6) + "}";
+    }
+
+    /**
+     * Format a number for JSON, which always uses a point for decimals
+     * @param value the value
+     * @return the formatted value
+     */
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
@@ -0,0 +1,50 @@
+package uk.ac.soton.comp1206.loadtest;
+
+import uk.ac.soton.comp1206.metrics.Histogram;
+
+/**
+ * LoadStats collects what the clients of a load test measure. The clients all run on the tester's one thread, so the
+ * counts are plain fields.
+ */
+class LoadStats {
+
+    /**
+     * Time from starting to connect to finishing the WebSocket handshake, in nanoseconds
+     */
+    final Histogram setup = new Histogram();
+
+    /**
+     * Round trip time of each kind of request, indexed by Request ordinal, in nanoseconds
+     */
+    final Histogram[] rtt = new Histogram[LoadClient.Request.values().length];
+
+    /**
+     * Round trip time of every request, in nanoseconds
+     */
+    final Histogram allRtt = new Histogram();
+
+    long attempted;
+    long established;
+    long sent;
+    long received;
+    long connectFailures;
+    long protocolErrors;
+    long serverErrors;
+    long timeouts;
+    long unanswered;
+    long disconnects;
+
+    LoadStats() {
+        for(int i = 0; i < rtt.length; i++) {
+            rtt[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Get the total number of errors of every kind
+     * @return errors
+     */
+    long getErrors() {
+        return connectFailures + protocolErrors + serverErrors + timeouts + unanswered + disconnects;
+    }
+}
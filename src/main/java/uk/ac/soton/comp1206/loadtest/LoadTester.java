@@ -0,0 +1,305 @@
+package uk.ac.soton.comp1206.loadtest;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.server.TetrECSServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LoadTester runs many simulated players against a TetrECS server to measure how it copes. Each client connects,
+ * joins a channel shared with a group of others, then asks for the high scores, submits a high score or sends a chat
+ * message on a fixed interval, in a chosen mix.
+ *
+ * Clients are started evenly over the ramp so the server is not hit by every handshake at once. All of them run on one
+ * thread with a selector, so tens of thousands can be simulated without a thread each. When the time is up, requests
+ * still in flight are given until the timeout to be answered before the clients disconnect.
+ *
+ * Run with: Launcher loadtest [--host H] [--port N] [--local] [--clients N] [--duration SECONDS] [--interval MS]
+ * [--ramp MS] [--group N] [--mix hiscores=1,hiscore=1,msg=2] [--timeout MS] [--seed N] [--out report.json]
+ */
+public class LoadTester {
+
+    private static final Logger logger = LogManager.getLogger(LoadTester.class);
+
+    /**
+     * The longest the selector waits before the clients' schedules are checked
+     */
+    private static final long TICK_MILLIS = 5;
+
+    private String host = "localhost";
+    private int port = TetrECSServer.DEFAULT_PORT;
+    private boolean local;
+    private int clients = 1000;
+    private long durationMillis = 30_000;
+    private long intervalMillis = 1000;
+    private long rampMillis = 5000;
+    private int group = 10;
+    private int[] mix = { 1, 1, 2 };
+    private long timeoutMillis = 5000;
+    private long seed = 1;
+
+    /**
+     * Run a load test from the command line, print the report and optionally write it as JSON. Launcher picks the
+     * quieter logging configuration before this class is loaded, keeping per-message logging from a local server out of
+     * the measurements.
+     * @param args commandline arguments
+     * @throws IOException if the local server could not be started or the report could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        var tester = new LoadTester();
+        Path out = null;
+        for(int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--host" -> tester.setHost(value);
+                case "--port" -> tester.setPort(Integer.parseInt(value));
+                case "--local" -> {
+                    tester.setLocal(true);
+                    continue;
+                }
+                case "--clients" -> tester.setClients(Integer.parseInt(value));
+                case "--duration" -> tester.setDurationMillis(Long.parseLong(value) * 1000);
+                case "--interval" -> tester.setIntervalMillis(Long.parseLong(value));
+                case "--ramp" -> tester.setRampMillis(Long.parseLong(value));
+                case "--group" -> tester.setGroup(Integer.parseInt(value));
+                case "--mix" -> tester.setMix(value);
+                case "--timeout" -> tester.setTimeoutMillis(Long.parseLong(value));
+                case "--seed" -> tester.setSeed(Long.parseLong(value));
+                case "--out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        LoadReport report = tester.run();
+        report.print(System.out);
+        if(out != null) {
+            report.write(out);
+        }
+    }
+
+    /**
+     * Parse a request mix such as hiscores=1,hiscore=1,msg=2. Kinds left out are not sent.
+     * @param text the mix
+     * @return the weight of each kind of request, indexed by Request ordinal
+     */
+    private static int[] parseMix(String text) {
+        int[] weights = new int[LoadClient.Request.values().length];
+        for(String part : text.split(",")) {
+            int equals = part.indexOf('=');
+            if(equals < 0) {
+                throw new IllegalArgumentException("Expected kind=weight: " + part);
+            }
+            var request = LoadClient.Request.valueOf(part.substring(0, equals).trim().toUpperCase(Locale.ROOT));
+            int weight = Integer.parseInt(part.substring(equals + 1).trim());
+            if(weight < 0) {
+                throw new IllegalArgumentException("Weight must not be negative: " + part);
+            }
+            weights[request.ordinal()] = weight;
+        }
+        return weights;
+    }
+
+    /**
+     * Run the load test, starting a local server first if asked to
+     * @return the report for this run
+     * @throws IOException if the local server could not be started or the selector could not be opened
+     */
+    public LoadReport run() throws IOException {
+        if(!local) {
+            return run(new InetSocketAddress(host, port));
+        }
+
+        Path scoresFile = Files.createTempFile("tetrecs-load", ".dat");
+        var server = TetrECSServer.open(new InetSocketAddress("localhost", 0), scoresFile);
+        try {
+            server.start();
+            return run(new InetSocketAddress("localhost", server.getPort()));
+        } finally {
+            server.close();
+            Files.deleteIfExists(scoresFile);
+            Files.deleteIfExists(scoresFile.resolveSibling(scoresFile.getFileName() + ".journal"));
+        }
+    }
+
+    /**
+     * Run the clients against a server
+     * @param address the server
+     * @return the report for this run
+     * @throws IOException if the selector could not be opened
+     */
+    private LoadReport run(InetSocketAddress address) throws IOException {
+        logger.info("Starting {} clients against {}:{}", clients, address.getHostString(), address.getPort());
+        var stats = new LoadStats();
+        var random = new SplittableRandom(seed);
+        var all = new LoadClient[clients];
+        for(int i = 0; i < clients; i++) {
+            all[i] = new LoadClient(i, "load-" + (i / group), stats, random.split());
+        }
+
+        long interval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        long timeout = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long ramp = TimeUnit.MILLISECONDS.toNanos(rampMillis);
+        int started = 0;
+
+        try (Selector selector = Selector.open()) {
+            long start = System.nanoTime();
+            long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            long now = start;
+            while(now < end) {
+                //Start the clients due by now, evenly over the ramp
+                int due = ramp <= 0 ? clients : (int) Math.min(clients, (now - start) * clients / ramp + 1);
+                while(started < due) {
+                    all[started++].connect(selector, address, now);
+                }
+
+                now = poll(selector);
+                for(int i = 0; i < started; i++) {
+                    all[i].tick(now, interval, timeout, mix);
+                }
+            }
+            long elapsed = now - start;
+
+            //Give requests still in flight until the timeout to be answered
+            long drainEnd = now + timeout;
+            int waiting = Integer.MAX_VALUE;
+            while(waiting > 0 && now < drainEnd) {
+                now = poll(selector);
+                waiting = 0;
+                for(int i = 0; i < started; i++) {
+                    all[i].expire(now, timeout);
+                    waiting += all[i].getPending();
+                }
+            }
+
+            for(int i = 0; i < started; i++) {
+                all[i].close();
+            }
+            logger.info("Finished: {} of {} clients connected", stats.established, stats.attempted);
+            return new LoadReport(address.getHostString() + ":" + address.getPort(), clients, group, intervalMillis,
+                    mix, elapsed, stats);
+        }
+    }
+
+    /**
+     * Wait briefly for sockets to be ready and handle them
+     * @param selector the selector
+     * @return the time afterwards in nanoseconds
+     * @throws IOException if the selector failed
+     */
+    private static long poll(Selector selector) throws IOException {
+        selector.select(TICK_MILLIS);
+        long now = System.nanoTime();
+        for(SelectionKey key : selector.selectedKeys()) {
+            ((LoadClient) key.attachment()).ready(now);
+        }
+        selector.selectedKeys().clear();
+        return now;
+    }
+
+    /**
+     * Set the server host
+     * @param host host name or address
+     */
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Set the server port
+     * @param port port
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Set whether to start a server in this process to test against, on any free port
+     * @param local true to test a local server
+     */
+    public void setLocal(boolean local) {
+        this.local = local;
+    }
+
+    /**
+     * Set the number of clients
+     * @param clients number of clients
+     */
+    public void setClients(int clients) {
+        if(clients < 1) {
+            throw new IllegalArgumentException("Clients must be at least 1");
+        }
+        this.clients = clients;
+    }
+
+    /**
+     * Set how long to send requests for, including the ramp
+     * @param durationMillis duration in milliseconds
+     */
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Set the time between each client's requests
+     * @param intervalMillis interval in milliseconds
+     */
+    public void setIntervalMillis(long intervalMillis) {
+        if(intervalMillis < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1 ms");
+        }
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Set the time over which clients are started
+     * @param rampMillis ramp in milliseconds, or 0 to start every client at once
+     */
+    public void setRampMillis(long rampMillis) {
+        this.rampMillis = rampMillis;
+    }
+
+    /**
+     * Set the number of clients that share each channel
+     * @param group clients per channel
+     */
+    public void setGroup(int group) {
+        if(group < 1) {
+            throw new IllegalArgumentException("Group must be at least 1");
+        }
+        this.group = group;
+    }
+
+    /**
+     * Set the relative weight of each kind of request
+     * @param mix the mix, such as hiscores=1,hiscore=1,msg=2
+     */
+    public void setMix(String mix) {
+        this.mix = parseMix(mix);
+    }
+
+    /**
+     * Set how long to wait for an answer before counting a request as timed out
+     * @param timeoutMillis timeout in milliseconds
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Set the seed for the clients' random choices
+     * @param seed seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
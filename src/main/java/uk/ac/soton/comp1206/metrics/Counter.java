@@ -0,0 +1,35 @@
+package uk.ac.soton.comp1206.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Counter counts events, such as pieces placed. Incrementing is lock free and does not allocate, and threads
+ * incrementing the same counter do not contend on a single value.
+ */
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Count one event
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Count a number of events
+     * @param events the number of events
+     */
+    public void add(long events) {
+        count.add(events);
+    }
+
+    /**
+     * Get the number of events counted
+     * @return event count
+     */
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,158 @@
+package uk.ac.soton.comp1206.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Histogram records the distribution of non-negative long values, such as latencies in nanoseconds, in log-linear
+ * buckets in the style of HdrHistogram. Values below 32 are recorded exactly; above that each power of two is split
+ * into 32 buckets, so a value is reported to within about 3%.
+ *
+ * Recording is lock free and does not allocate, so a histogram can be shared between threads and used on hot paths.
+ */
+public class Histogram {
+
+    /**
+     * The number of bits of precision kept for each value
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * The number of buckets each power of two is split into
+     */
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * Enough buckets to hold any positive long value
+     */
+    private static final int BUCKETS = SUB_COUNT * (64 - SUB_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a single value. Negative values are recorded as 0.
+     * @param value the value to record
+     */
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while(value > (current = max.get())) {
+            if(max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Add every value recorded in another histogram to this one
+     * @param other the histogram to add
+     */
+    public void add(Histogram other) {
+        for(int i = 0; i < BUCKETS; i++) {
+            long bucketCount = other.counts.get(i);
+            if(bucketCount != 0) {
+                counts.addAndGet(i, bucketCount);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        max.accumulateAndGet(otherMax, Math::max);
+    }
+
+    /**
+     * Forget every value recorded so far
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Get the number of values recorded
+     * @return value count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the largest value recorded
+     * @return the maximum, or 0 if nothing has been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the mean of the values recorded
+     * @return the mean, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        long values = count.get();
+        return values == 0 ? 0 : (double) sum.get() / values;
+    }
+
+    /**
+     * Get the value at a given percentile. The value returned is the top of the bucket the percentile falls in, capped
+     * at the largest value recorded.
+     * @param percentile percentile between 0 and 100
+     * @return the value at that percentile, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long values = count.get();
+        if(values == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(values * percentile / 100.0));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= target) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Work out which bucket a value belongs in
+     * @param value non-negative value
+     * @return bucket index
+     */
+    private static int bucket(long value) {
+        if(value < SUB_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BITS;
+        int top = (int) (value >>> shift);
+        return SUB_COUNT + shift * SUB_COUNT + (top - SUB_COUNT);
+    }
+
+    /**
+     * Get the largest value that belongs in a bucket
+     * @param bucket bucket index
+     * @return the top of the bucket
+     */
+    private static long highestValue(int bucket) {
+        if(bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_COUNT) / SUB_COUNT;
+        int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+    }
+}
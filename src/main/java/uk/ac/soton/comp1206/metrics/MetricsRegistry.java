@@ -0,0 +1,157 @@
+package uk.ac.soton.comp1206.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The MetricsRegistry holds the game's named counters and histograms, so they can be read over JMX while the game
+ * runs and written to a file when it shuts down.
+ *
+ * Looking a metric up by name is not free, so code that records on a hot path should look its metrics up once and keep
+ * them in a field. Recording into a counter or histogram after that does not lock or allocate.
+ *
+ * Histograms are reported by their count, mean, maximum and 50th, 99th and 99.9th percentiles, each as its own value
+ * named after the histogram, such as game.placementNanos.p99.
+ */
+public class MetricsRegistry {
+
+    private static final Logger logger = LogManager.getLogger(MetricsRegistry.class);
+
+    /**
+     * The name the metrics are registered under in JMX
+     */
+    public static final String OBJECT_NAME = "uk.ac.soton.comp1206:type=Metrics";
+
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Get the shared metrics registry
+     * @return the metrics registry
+     */
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get the counter with a given name, creating it the first time
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Get the histogram with a given name, creating it the first time
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Get the current value of every metric, sorted by name. Each histogram gives several values.
+     * @return the value of each metric by name
+     */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.get()));
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean", histogram.getMean());
+            values.put(name + ".max", histogram.getMax());
+            values.put(name + ".p50", histogram.getPercentile(50));
+            values.put(name + ".p99", histogram.getPercentile(99));
+            values.put(name + ".p999", histogram.getPercentile(99.9));
+        });
+        return values;
+    }
+
+    /**
+     * Get the current value of a single metric, as named in the snapshot
+     * @param name the name of the value
+     * @return the value, or null if there is no metric with that name
+     */
+    public Number value(String name) {
+        Counter counter = counters.get(name);
+        if(counter != null) {
+            return counter.get();
+        }
+        int dot = name.lastIndexOf('.');
+        if(dot < 0) {
+            return null;
+        }
+        Histogram histogram = histograms.get(name.substring(0, dot));
+        if(histogram == null) {
+            return null;
+        }
+        switch(name.substring(dot + 1)) {
+            case "count": return histogram.getCount();
+            case "mean": return histogram.getMean();
+            case "max": return histogram.getMax();
+            case "p50": return histogram.getPercentile(50);
+            case "p99": return histogram.getPercentile(99);
+            case "p999": return histogram.getPercentile(99.9);
+            default: return null;
+        }
+    }
+
+    /**
+     * Write every metric to a file, one "name value" line each, sorted by name
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    public void dump(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        snapshot().forEach((name, value) -> lines.add(name + " " + value));
+        Files.write(file, lines);
+    }
+
+    /**
+     * Make the metrics readable over JMX, as the attributes of a single MBean
+     */
+    public void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if(!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(this), name);
+            }
+        } catch (JMException e) {
+            logger.error("Unable to register metrics with JMX: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Write the metrics to a file when the JVM shuts down
+     * @param file the file to write
+     */
+    public void dumpOnShutdown(Path file) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                dump(file);
+            } catch (IOException e) {
+                System.err.println("Unable to write metrics to " + file + ": " + e.getMessage());
+            }
+        }, "metrics-dump"));
+    }
+}
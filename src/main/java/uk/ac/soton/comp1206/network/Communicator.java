@@ -1,97 +1,244 @@
 package uk.ac.soton.comp1206.network;
 
 import com.neovisionaries.ws.client.*;
-import javafx.scene.control.Alert;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.CommunicationsListener;
+import uk.ac.soton.comp1206.jfr.MessageReceivedEvent;
+import uk.ac.soton.comp1206.jfr.MessageSentEvent;
+import uk.ac.soton.comp1206.scores.ScoreEntry;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Uses web sockets to talk to a web socket server and relays communication to attached listeners
  *
- * YOU DO NOT NEED TO WORRY ABOUT THIS CLASS! Leave it be :-)
+ * Nothing here blocks the caller on the network. Connecting and sending both happen on a background "communicator"
+ * thread: messages are put on a bounded outbound queue, and the thread sends them in batches, flushing the socket once
+ * per batch. When the queue is full, send returns false rather than waiting, so callers can back off. A request for
+ * the high scores that is already waiting to be sent is not queued again.
+ *
+ * If the connection cannot be made or is lost, the communicator keeps trying again, waiting twice as long after each
+ * failure up to a limit, with some randomness so that many games do not all retry at once. A lost connection only
+ * starts the wait again from the shortest if it stayed up for a while or heard from the server, so a server that keeps
+ * dropping the game as soon as it connects is not reconnected to in a tight loop. Messages queued while it is
+ * disconnected are sent once it is back. HISCORE submissions are also kept in an OfflineQueue file until the server
+ * confirms them with NEWSCORE, and any still unconfirmed are sent again, once each, after every reconnect and the next
+ * time the game starts.
+ *
+ * Messages received are passed to listeners on the web socket's own thread, so listeners that touch the UI must hand
+ * the work over to the JavaFX thread.
  */
 public class Communicator {
 
     private static final Logger logger = LogManager.getLogger(Communicator.class);
 
+    /**
+     * The default number of messages that can wait to be sent
+     */
+    public static final int QUEUE_CAPACITY = 256;
+
+    /**
+     * The most messages sent before the socket is flushed
+     */
+    private static final int MAX_BATCH = 32;
+
+    /**
+     * How long to wait for the server to accept a connection
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * The request for the online high scores, which only needs to be sent once however often it is asked for
+     */
+    private static final String HISCORES = "HISCORES";
+
+    /**
+     * The start of a score submission, which is kept until the server confirms it
+     */
+    private static final String HISCORE = "HISCORE ";
+
+    /**
+     * The server's confirmation of a score submission
+     */
+    private static final String NEWSCORE = "NEWSCORE ";
+
+    /**
+     * The file unconfirmed score submissions are kept in
+     */
+    public static final Path OFFLINE_FILE = Path.of("hiscores.offline");
+
+    /**
+     * The wait before the first retry, doubled after each failure
+     */
+    private static final long RETRY_BASE_MILLIS = 500;
+
+    /**
+     * The longest wait between retries
+     */
+    private static final long RETRY_MAX_MILLIS = 30_000;
+
+    /**
+     * How long a connection must stay up, if nothing is received on it, before it no longer counts as a failure
+     */
+    private static final long STABLE_MILLIS = 10_000;
+
+    /**
+     * Queued to wake the sender when the connection drops. Compared by identity, so it is never confused with a real
+     * message.
+     */
+    private static final String WAKE = new String("WAKE");
+
     /**
      * Attached communication listeners listening to messages on this Communicator. Each will be sent any messages.
      */
-    private final List<CommunicationsListener> handlers = new ArrayList<>();
+    private final List<CommunicationsListener> handlers = new CopyOnWriteArrayList<>();
 
-    private WebSocket ws = null;
+    private final String server;
+    private final BlockingQueue<String> outbound;
+    private final OfflineQueue offline;
 
     /**
-     * Create a new communicator to the given web socket server
-     *
-     * @param server server to connect to
+     * Whether a HISCORES request is waiting in the queue
      */
+    private final AtomicBoolean hiscoresQueued = new AtomicBoolean();
+
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    private final Thread sender;
+    private volatile boolean running = true;
 
+    private volatile WebSocket ws = null;
 
+    private final ReadOnlyObjectWrapper<ConnectionState> connectionState =
+            new ReadOnlyObjectWrapper<>(ConnectionState.CONNECTING);
+    private volatile ConnectionState state = ConnectionState.CONNECTING;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Create a new communicator to the given web socket server and start connecting in the background
+     *
+     * @param server server to connect to
+     */
     public Communicator(String server) {
+        this(server, QUEUE_CAPACITY, OFFLINE_FILE);
+    }
 
-        try {
-            var socketFactory = new WebSocketFactory();
-
-            //Connect to the server
-            ws = socketFactory.createSocket(server);
-            ws.connect();
-            logger.info("Connected to " + server);
-
-            //When a message is received, call the receive method
-            ws.addListener(new WebSocketAdapter() {
-                @Override
-                public void onTextMessage(WebSocket websocket, String message) throws Exception {
-                    Communicator.this.receive(websocket, message);
-                }
-                @Override
-                public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame) throws Exception {
-                    logger.info("Ping? Pong!");
-                }
-            });
-
-            //Error handling
-            ws.addListener(new WebSocketAdapter() {
-                @Override
-                public void onTextMessage(WebSocket websocket, String message) throws Exception {
-                    if(message.startsWith("ERROR")) {
-                        logger.error(message);
-                    }
-                }
-                @Override
-                public void handleCallbackError(WebSocket webSocket, Throwable throwable) throws Exception {
-                    logger.error("Callback Error:" + throwable.getMessage());
-                    throwable.printStackTrace();
-                }
-                @Override
-                public void onError(WebSocket webSocket, WebSocketException e) throws Exception {
-                    logger.error("Error:" + e.getMessage());
-                    e.printStackTrace();
+    /**
+     * Create a new communicator to the given web socket server and start connecting in the background
+     *
+     * @param server server to connect to
+     * @param capacity the most messages that can wait to be sent
+     * @param offlineFile the file to keep unconfirmed score submissions in
+     */
+    public Communicator(String server, int capacity, Path offlineFile) {
+        this.server = server;
+        this.outbound = new ArrayBlockingQueue<>(capacity);
+        this.offline = new OfflineQueue(offlineFile);
+
+        //Submissions kept by earlier versions may not be in the form the server confirms
+        for(String message : offline.getPending()) {
+            String submission = normaliseSubmission(message);
+            if(!message.equals(submission)) {
+                offline.remove(message);
+                if(submission != null) {
+                    offline.add(submission);
                 }
-            });
+            }
+        }
 
-        } catch (Exception e){
-            logger.error("Socket error: " + e.getMessage());
-            e.printStackTrace();
+        sender = new Thread(this::run, "communicator");
+        sender.setDaemon(true);
+        sender.start();
+    }
 
-            Alert error = new Alert(Alert.AlertType.ERROR,"Unable to communicate with the TetrECS server\n\n" + e.getMessage() + "\n\nPlease ensure you are connected to the VPN");
-            error.showAndWait();
-            System.exit(1);
-        }
+    /**
+     * Get a future that completes the first time the connection is made, or completes exceptionally if the
+     * communicator is closed first
+     * @return the connection future
+     */
+    public CompletableFuture<Void> getConnected() {
+        return connected;
+    }
+
+    /**
+     * Check whether the communicator is connected to the server
+     * @return true if connected
+     */
+    public boolean isConnected() {
+        return state == ConnectionState.CONNECTED;
     }
 
-    /** Send a message to the server
+    /**
+     * Get the state of the connection
+     * @return connection state
+     */
+    public ConnectionState getConnectionState() {
+        return state;
+    }
+
+    /**
+     * The state of the connection, for the UI to bind to. It is only updated on the JavaFX thread.
+     * @return connection state property
+     */
+    public ReadOnlyObjectProperty<ConnectionState> connectionStateProperty() {
+        return connectionState.getReadOnlyProperty();
+    }
+
+    /** Queue a message to be sent to the server. Never blocks.
      *
      * @param message Message to send
+     * @return true if the message was queued, or false if the queue is full or the communicator has stopped. A HISCORE
+     * submission that is not queued is still kept, and sent after the next reconnect.
      */
-    public void send(String message) {
-        logger.info("Sending message: " + message);
-
-        ws.sendText(message);
+    public boolean send(String message) {
+        if(message.startsWith(HISCORE)) {
+            String submission = normaliseSubmission(message);
+            if(submission == null) {
+                //The server will reject it, so it would never be confirmed
+                logger.warn("Not keeping invalid score submission: {}", message);
+            } else {
+                message = submission;
+                offline.add(message);
+            }
+        }
+        boolean hiscores = message.equals(HISCORES);
+        if(hiscores && !hiscoresQueued.compareAndSet(false, true)) {
+            //The request already waiting will fetch the same scores
+            coalesced.increment();
+            return true;
+        }
+        if(!running || !outbound.offer(message)) {
+            if(hiscores) {
+                hiscoresQueued.set(false);
+            }
+            rejected.increment();
+            logger.warn("Outbound queue full or closed, not sending: {}", message);
+            return false;
+        }
+        maxQueueDepth.accumulate(outbound.size());
+        return true;
     }
 
     /**
@@ -109,16 +256,329 @@ public class Communicator {
         this.handlers.clear();
     }
 
+    /**
+     * Stop sending, drop any messages still queued and disconnect. Unconfirmed score submissions are kept for next
+     * time. Does not wait for the network.
+     */
+    public void close() {
+        running = false;
+        sender.interrupt();
+    }
+
+    /**
+     * Get the number of messages waiting to be sent
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return outbound.size();
+    }
+
+    /**
+     * Get the most messages that have been waiting to be sent at once
+     * @return highest queue depth
+     */
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Get the number of messages sent
+     * @return messages sent
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Get the number of messages received
+     * @return messages received
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * Get the number of messages that could not be queued
+     * @return messages rejected
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Get the number of HISCORES requests that were folded into one already queued
+     * @return requests coalesced
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Get the number of times the connection has been made again after being lost
+     * @return reconnects
+     */
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    /**
+     * Get the number of score submissions not yet confirmed by the server
+     * @return unconfirmed submissions
+     */
+    public int getUnconfirmed() {
+        return offline.size();
+    }
+
+    /**
+     * Connect, then send queued messages in batches, connecting again whenever the connection is lost, until closed
+     */
+    private void run() {
+        //Messages taken off the queue but not yet sent when the connection was lost
+        var batch = new ArrayList<String>(MAX_BATCH);
+        int failures = 0;
+        try {
+            while(running) {
+                setState(ConnectionState.CONNECTING);
+                WebSocket socket;
+                try {
+                    socket = open();
+                } catch (Exception e) {
+                    setState(ConnectionState.DISCONNECTED);
+                    long delay = retryDelay(failures++);
+                    logger.warn("Unable to communicate with the TetrECS server {}, retrying in {}ms: {}", server, delay,
+                            e.getMessage());
+                    Thread.sleep(delay);
+                    continue;
+                }
+
+                ws = socket;
+                if(connected.isDone()) {
+                    reconnects.increment();
+                }
+                long opened = System.currentTimeMillis();
+                long receivedBefore = received.sum();
+                setState(ConnectionState.CONNECTED);
+                connected.complete(null);
+
+                sendUntilLost(socket, batch);
+                if(running) {
+                    setState(ConnectionState.DISCONNECTED);
+                    if(received.sum() > receivedBefore || System.currentTimeMillis() - opened >= STABLE_MILLIS) {
+                        failures = 0;
+                    }
+                    long delay = retryDelay(failures++);
+                    logger.warn("Lost connection to {}, reconnecting in {}ms", server, delay);
+                    Thread.sleep(delay);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.info("Communicator closed with {} messages unsent", outbound.size() + batch.size());
+        } finally {
+            running = false;
+            outbound.clear();
+            WebSocket socket = ws;
+            if(socket != null) {
+                socket.disconnect();
+            }
+            connected.completeExceptionally(new IOException("Communicator closed"));
+            setState(ConnectionState.CLOSED);
+        }
+    }
+
+    /**
+     * Send unconfirmed submissions, then queued messages in batches, until the connection is lost
+     * @param socket the connected socket
+     * @param batch messages left over from the last connection, and where each batch is collected
+     * @throws InterruptedException if the communicator is closed
+     */
+    private void sendUntilLost(WebSocket socket, List<String> batch) throws InterruptedException {
+        //Each submission is sent at most once per connection, however many times it was queued
+        Set<String> submitted = new HashSet<>();
+        for(String message : offline.getPending()) {
+            transmit(socket, message, submitted);
+        }
+        socket.flush();
+
+        while(running && socket.isOpen()) {
+            if(batch.isEmpty()) {
+                batch.add(outbound.take());
+                outbound.drainTo(batch, MAX_BATCH - 1);
+            }
+            if(!socket.isOpen()) {
+                //Keep the batch for the next connection
+                return;
+            }
+            for(String message : batch) {
+                transmit(socket, message, submitted);
+            }
+            socket.flush();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Send a single message, unless it is a submission already sent on this connection
+     * @param socket the connected socket
+     * @param message the message
+     * @param submitted the submissions sent on this connection
+     */
+    private void transmit(WebSocket socket, String message, Set<String> submitted) {
+        if(message == WAKE) {
+            return;
+        }
+        if(message.equals(HISCORES)) {
+            //Taken off the queue, so a new request after this point must be sent again
+            hiscoresQueued.set(false);
+        }
+        if(message.startsWith(HISCORE) && !submitted.add(message)) {
+            return;
+        }
+        var event = new MessageSentEvent();
+        event.begin();
+        logger.debug("Sending message: {}", message);
+        socket.sendText(message);
+        sent.increment();
+        event.end();
+        if(event.shouldCommit()) {
+            event.message = message;
+            event.queueDepth = outbound.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Get how long to wait before the next retry: exponential backoff with jitter, between half and all of a limit that
+     * doubles with each failure
+     * @param failures the number of failures in a row so far
+     * @return the wait in milliseconds
+     */
+    private static long retryDelay(int failures) {
+        long limit = Math.min(RETRY_MAX_MILLIS, RETRY_BASE_MILLIS << Math.min(failures, 16));
+        return limit / 2 + ThreadLocalRandom.current().nextLong(limit / 2 + 1);
+    }
+
+    /**
+     * Put a score submission in the form the server confirms it in, so the confirmation can be matched to it: the name
+     * cleaned as the server cleans it, and the score written as a plain number
+     * @param message a HISCORE message
+     * @return the submission as the server will confirm it, or null if it is not a valid score
+     */
+    static String normaliseSubmission(String message) {
+        ScoreEntry entry;
+        try {
+            entry = ScoreEntry.parse(message.substring(HISCORE.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        String name = ScoreEntry.cleanName(entry.getName());
+        if(name.isEmpty()) {
+            return null;
+        }
+        return HISCORE + name + ":" + entry.getScore();
+    }
+
+    /**
+     * Record a new connection state, and update the property on the JavaFX thread
+     * @param newState the new state
+     */
+    private void setState(ConnectionState newState) {
+        state = newState;
+        try {
+            Platform.runLater(() -> connectionState.set(newState));
+        } catch (IllegalStateException e) {
+            //JavaFX is not running, as when used headless, so there is nothing bound to the property
+            connectionState.set(newState);
+        }
+    }
+
+    /**
+     * Open the web socket and attach the listeners
+     * @return the connected socket
+     * @throws Exception if the connection could not be made
+     */
+    private WebSocket open() throws Exception {
+        var socketFactory = new WebSocketFactory();
+        socketFactory.setConnectionTimeout(CONNECT_TIMEOUT_MILLIS);
+
+        //Connect to the server
+        WebSocket socket = socketFactory.createSocket(server);
+
+        //Frames are flushed once per batch rather than once per message
+        socket.setAutoFlush(false);
+
+        //When a message is received, call the receive method
+        socket.addListener(new WebSocketAdapter() {
+            @Override
+            public void onTextMessage(WebSocket websocket, String message) throws Exception {
+                Communicator.this.receive(websocket, message);
+            }
+            @Override
+            public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame) throws Exception {
+                logger.debug("Ping? Pong!");
+            }
+            @Override
+            public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame,
+                                       WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+                //Wake the sender, so it notices and reconnects
+                outbound.offer(WAKE);
+            }
+        });
+
+        //Error handling
+        socket.addListener(new WebSocketAdapter() {
+            @Override
+            public void onTextMessage(WebSocket websocket, String message) throws Exception {
+                if(message.startsWith("ERROR")) {
+                    logger.error("Server error: {}", message);
+                }
+            }
+            @Override
+            public void handleCallbackError(WebSocket webSocket, Throwable throwable) throws Exception {
+                logger.error("Callback Error: {}", throwable.getMessage());
+                throwable.printStackTrace();
+            }
+            @Override
+            public void onError(WebSocket webSocket, WebSocketException e) throws Exception {
+                logger.error("Error: {}", e.getMessage());
+                e.printStackTrace();
+            }
+        });
+
+        socket.connect();
+        logger.info("Connected to {}", server);
+        return socket;
+    }
+
     /** Receive a message from the server. Relay to any attached listeners
      *
      * @param websocket the socket
      * @param message the message that was received
      */
     private void receive(WebSocket websocket, String message) {
-        logger.info("Received: " + message);
+        var event = new MessageReceivedEvent();
+        event.begin();
+        logger.debug("Received: {}", message);
+        received.increment();
+
+        if(message.startsWith(NEWSCORE)) {
+            //The server has the score, so it no longer needs sending again
+            String submission = normaliseSubmission(HISCORE + message.substring(NEWSCORE.length()));
+            if(submission != null) {
+                offline.remove(submission);
+            }
+        }
 
+        int listeners = 0;
         for(CommunicationsListener handler : handlers) {
             handler.receiveCommunication(message);
+            listeners++;
+        }
+
+        event.end();
+        if(event.shouldCommit()) {
+            event.message = message;
+            event.listeners = listeners;
+            event.commit();
         }
     }
 
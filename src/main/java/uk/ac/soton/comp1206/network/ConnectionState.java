@@ -0,0 +1,27 @@
+package uk.ac.soton.comp1206.network;
+
+/**
+ * The state of the Communicator's connection to the server
+ */
+public enum ConnectionState {
+
+    /**
+     * Trying to connect
+     */
+    CONNECTING,
+
+    /**
+     * Connected, and sending messages as they are queued
+     */
+    CONNECTED,
+
+    /**
+     * Not connected, and waiting before trying again
+     */
+    DISCONNECTED,
+
+    /**
+     * Closed, and not going to connect again
+     */
+    CLOSED
+}
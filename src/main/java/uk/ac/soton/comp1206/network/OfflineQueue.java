@@ -0,0 +1,136 @@
+package uk.ac.soton.comp1206.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The OfflineQueue keeps the score submissions that the server has not yet confirmed, in a file, so they are not lost
+ * if the connection drops or the game is closed before they are sent.
+ *
+ * Each submission is held once however many times it is added, in the order it was first added. The file is rewritten
+ * in the background whenever the queue changes, by writing a new copy and moving it over the old one, so it is never
+ * left half written.
+ */
+public class OfflineQueue {
+
+    private static final Logger logger = LogManager.getLogger(OfflineQueue.class);
+
+    /**
+     * Saves every queue, so adding a submission never waits on the disk
+     */
+    private static final ExecutorService saver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "offline-queue");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path file;
+    private final Set<String> pending = new LinkedHashSet<>();
+
+    /**
+     * Whether a save has been asked for and not yet started
+     */
+    private final AtomicBoolean saveQueued = new AtomicBoolean();
+
+    /**
+     * Create a new queue, loading any submissions left in the file by an earlier run
+     * @param file the file to keep the queue in
+     */
+    public OfflineQueue(Path file) {
+        this.file = file;
+        try {
+            for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if(!line.isBlank()) {
+                    pending.add(line);
+                }
+            }
+            if(!pending.isEmpty()) {
+                logger.info("Loaded {} unsent submissions from {}", pending.size(), file);
+            }
+        } catch (NoSuchFileException e) {
+            //Nothing was left unsent
+        } catch (IOException e) {
+            logger.error("Unable to read offline queue {}", file, e);
+        }
+    }
+
+    /**
+     * Add a submission, unless it is already queued
+     * @param message the message to send
+     * @return true if it was added, false if it was already queued
+     */
+    public synchronized boolean add(String message) {
+        if(!pending.add(message)) {
+            return false;
+        }
+        save();
+        return true;
+    }
+
+    /**
+     * Remove a submission once the server has confirmed it
+     * @param message the message that was sent
+     * @return true if it was queued
+     */
+    public synchronized boolean remove(String message) {
+        if(!pending.remove(message)) {
+            return false;
+        }
+        save();
+        return true;
+    }
+
+    /**
+     * Get every submission still waiting to be confirmed
+     * @return the submissions, oldest first
+     */
+    public synchronized List<String> getPending() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * Get the number of submissions still waiting to be confirmed
+     * @return number of submissions
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Save the queue in the background, unless a save is already waiting to start
+     */
+    private void save() {
+        if(saveQueued.compareAndSet(false, true)) {
+            saver.execute(this::write);
+        }
+    }
+
+    /**
+     * Write the queue as it is now to the file
+     */
+    private void write() {
+        saveQueued.set(false);
+        List<String> lines = getPending();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(temporary, lines, StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Unable to save offline queue {}", file, e);
+        }
+    }
+}
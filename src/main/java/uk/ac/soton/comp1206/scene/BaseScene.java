@@ -44,6 +44,13 @@ public abstract class BaseScene {
      */
     public abstract void build();
 
+    /**
+     * Clean up when another scene replaces this one, such as stopping anything still animating. Does nothing unless
+     * overridden.
+     */
+    public void cleanup() {
+    }
+
     /**
      * Create a new JavaFX scene using the root contained within this scene
      * @return JavaFX scene
@@ -25,6 +25,9 @@ import uk.ac.soton.comp1206.event.RightClickedListener;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.game.MultiMedia;
+import uk.ac.soton.comp1206.game.Sound;
+import uk.ac.soton.comp1206.game.SoundEngine;
+import uk.ac.soton.comp1206.scores.HighScoreService;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -41,6 +44,12 @@ import javafx.animation.Timeline;
 public class ChallengeScene extends BaseScene implements NextPieceListener,RightClickedListener,LineClearedListener, GameLoopListener {
 
     private static final Logger logger = LogManager.getLogger(MenuScene.class);
+
+    /**
+     * Boards with more blocks than this are drawn on a single canvas
+     */
+    private static final int CANVAS_BOARD_BLOCKS = 100;
+
     /**
      * The instance of the Game class associated with this class.
      */
@@ -48,6 +57,7 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
 
     private GameBoard board;
     private final MultiMedia challengeMusic = new MultiMedia();
+    private final SoundEngine sounds = SoundEngine.getInstance();
 
     private final PieceBoard pieceBoard = new PieceBoard(3,3, 150, 150);
     private final PieceBoard smallerPieceBoard = new PieceBoard(3,3, 90, 90);
@@ -76,7 +86,7 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
      */
     @Override
     public void build() {
-        logger.info("Building " + this.getClass().getName());
+        logger.info("Building {}", this.getClass().getName());
 
         setupGame();
         this.colorTimeline = createColorTimeline();
@@ -96,7 +106,10 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
         mainPane.setMaxHeight(challengePane.getMaxHeight());
         challengePane.getChildren().add(mainPane);
 
-        board = new GameBoard(game.getGrid(),gameWindow.getWidth()/2,gameWindow.getWidth()/2);
+        //Large boards are drawn on a single canvas rather than a node per block
+        var renderMode = game.getGrid().getCols() * game.getGrid().getRows() > CANVAS_BOARD_BLOCKS
+                ? GameBoard.RenderMode.CANVAS : GameBoard.RenderMode.BLOCKS;
+        board = new GameBoard(game.getGrid(),gameWindow.getWidth()/2,gameWindow.getWidth()/2, renderMode);
         mainPane.setCenter(board);
 
         //Handle block on gameboard grid being clicked
@@ -105,23 +118,26 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
         board.setOnRightClicked(this);
 
 
-        for (int x = 0; x < game.getGrid().getCols(); x++) {
-            for (int y = 0; y < game.getGrid().getRows(); y++) {
-                GameBlock block = board.getBlock(x, y);
-                int placeX = x;
-                int placeY = y;
-                int originalValue = block.getValue(); // Store the original value of the block
-                block.setOnMouseEntered(event -> {
-                    // Highlight the block on mouse enter
-                    block.valueProperty().unbind();
-                    block.setValue(1); // Set the value to the desired color index
-                });
-
-                block.setOnMouseExited(event -> {
-                    // Revert the block to its original value on mouse exit
-                    block.setValue(originalValue);
-                    block.valueProperty().bind(game.getGrid().getGridProperty(placeX,placeY));
-                });
+        //The canvas highlights the block under the mouse itself
+        if (renderMode == GameBoard.RenderMode.BLOCKS) {
+            for (int x = 0; x < game.getGrid().getCols(); x++) {
+                for (int y = 0; y < game.getGrid().getRows(); y++) {
+                    GameBlock block = board.getBlock(x, y);
+                    int placeX = x;
+                    int placeY = y;
+                    int originalValue = block.getValue(); // Store the original value of the block
+                    block.setOnMouseEntered(event -> {
+                        // Highlight the block on mouse enter
+                        block.valueProperty().unbind();
+                        block.setValue(1); // Set the value to the desired color index
+                    });
+
+                    block.setOnMouseExited(event -> {
+                        // Revert the block to its original value on mouse exit
+                        block.setValue(originalValue);
+                        block.valueProperty().bind(game.getGrid().getGridProperty(placeX,placeY));
+                    });
+                }
             }
         }
 
@@ -204,9 +220,9 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
 
     /**
      * Handle when a block is clicked
-     * @param gameBlock the Game Block that was clocked
+     * @param gameBlock the coordinate of the Game Block that was clocked
      */
-    private void blockClicked(GameBlock gameBlock) {
+    private void blockClicked(GameBlockCoordinate gameBlock) {
         if(game.getGrid().canPlayPiece(game.getCurrentPiece(),gameBlock.getX(),gameBlock.getY())) {
             resetTimerBarAnimation();
         }
@@ -223,7 +239,15 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
         logger.info("Starting a new challenge");
 
         //Start new game
-        game = new Game(5, 5);
+        game = new Game(5, 5, HighScoreService.getInstance().getHighScore());
+    }
+
+    /**
+     * Get the game being played
+     * @return game
+     */
+    public Game getGame() {
+        return game;
     }
 
     /**
@@ -266,12 +290,12 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
                     break;
                 case Q, OPEN_BRACKET, Z:
                     game.rotateCurrentPieceLeft();
-                    challengeMusic.playAudioFile("/sounds/rotate.wav");
+                    sounds.play(Sound.ROTATE);
                     pieceBoard.setNextPiece(game.getCurrentPiece());
                     break;
                 case E, CLOSE_BRACKET, C:
                     game.rotateCurrentPiece();
-                    challengeMusic.playAudioFile("/sounds/rotate.wav");
+                    sounds.play(Sound.ROTATE);
                     pieceBoard.setNextPiece(game.getCurrentPiece());
                     break;
                 default:
@@ -284,7 +308,7 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
         pieceBoard.setOnMouseClicked(event -> {
             if (event.getButton() == MouseButton.PRIMARY ) {
                 game.rotateCurrentPiece();
-                challengeMusic.playAudioFile("/sounds/rotate.wav");
+                sounds.play(Sound.ROTATE);
                 pieceBoard.setNextPiece(game.getCurrentPiece());
             }
         });
@@ -293,11 +317,18 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
 
     }
     /**
-     * Shuts down the game by stopping background music, canceling the game timer, and returning to the main menu.
+     * Stop drawing the board once another scene replaces this one
+     */
+    @Override
+    public void cleanup() {
+        board.stop();
+    }
+    /**
+     * Shuts down the game by stopping background music, ending the game, and returning to the main menu.
      */
     public void shutdownGame() {
         challengeMusic.stopBackgroundMusic();
-        game.getGameTimer().cancel();
+        game.end();
         gameWindow.startMenu();
     }
     /**
@@ -327,7 +358,7 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
         game.setFollowingPiece(mediator);
         GamePiece bigPeace = game.getCurrentPiece();
         GamePiece littePiece = game.getFollowingPiece();
-        challengeMusic.playAudioFile("/sounds/rotate.wav");
+        sounds.play(Sound.ROTATE);
         this.nextPiece(bigPeace,littePiece);
 
 
@@ -340,10 +371,10 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
      */
     @Override
     public void onRightClicked(MouseEvent event) {
-        logger.info("Right clicked on GameBoard");
+        logger.debug("Right clicked on GameBoard");
         if (event.getButton() == MouseButton.SECONDARY) {
             game.rotateCurrentPiece();
-            challengeMusic.playAudioFile("/sounds/rotate.wav");
+            sounds.play(Sound.ROTATE);
             pieceBoard.setNextPiece(game.getCurrentPiece());
 
         }
@@ -357,26 +388,24 @@ public class ChallengeScene extends BaseScene implements NextPieceListener,Right
     @Override
     public void onLineCleared(Set<GameBlockCoordinate> coordinates) {
         if(game.getNumberOfLines() > 0){
-            logger.info(" Lines have been cleared");
-            board.fadeOut((HashSet<GameBlockCoordinate>) coordinates);
+            logger.debug("Lines have been cleared");
+            board.fadeOut(coordinates);
         }else{
-            logger.info("No lines have been cleared");
+            logger.debug("No lines have been cleared");
         }
 
 
     }
     /**
-     * The game loop logic executed in each iteration of the game loop. Decreases the player's lives, advances to the next
-     * game piece, resets the multiplier, triggers a timer bar animation reset, and plays a sound effect indicating the
-     * player lost a life.
+     * The game loop logic executed in each iteration of the game loop. Loses the player a life, which advances to the
+     * next game piece and resets the multiplier, triggers a timer bar animation reset, and plays a sound effect
+     * indicating the player lost a life.
      */
     @Override
     public void gameLoop(){
-        game.setLives(game.getLives() - 1);
-        game.nextPiece();
-        game.setMultiplier(1);
+        game.loseLife();
         resetTimerBarAnimation();
-        challengeMusic.playAudioFile("/sounds/lostlife.wav");
+        sounds.play(Sound.LIFE_LOSE);
     }
     /**
      * Resets the animation of the timer bar, restarting both the color timeline and scale transition. The scale transition
@@ -61,7 +61,7 @@ public class InstructionScene extends BaseScene {
         var mainPane = new BorderPane();
         instructionPane.getChildren().add(mainPane);
 
-        Image instructionsImage = new Image("C:\\Comp1206\\coursework\\src\\main\\resources\\images\\instructions.png");
+        Image instructionsImage = new Image(getClass().getResource("/images/Instructions.png").toExternalForm());
         ImageView imageView = new ImageView(instructionsImage);
         imageView.setPreserveRatio(true);
         imageView.fitWidthProperty().bind(gameWindow.getScene().widthProperty());
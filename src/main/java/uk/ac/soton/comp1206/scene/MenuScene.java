@@ -41,7 +41,7 @@ public class MenuScene extends BaseScene {
      */
     @Override
     public void build() {
-        logger.info("Building " + this.getClass().getName());
+        logger.info("Building {}", this.getClass().getName());
 
         root = new GamePane(gameWindow.getWidth(),gameWindow.getHeight());
 
@@ -58,7 +58,7 @@ public class MenuScene extends BaseScene {
         menuPane.getChildren().add(mainPane);
 
         //Awful title + animations + GUI + Sound
-        Image titleImage = new Image("C:\\Comp1206\\coursework\\src\\main\\resources\\images\\TetrECS.png");
+        Image titleImage = new Image(getClass().getResource("/images/TetrECS.png").toExternalForm());
         ImageView title = new ImageView(titleImage);
         title.setFitHeight(40);
         title.setFitWidth(180);
@@ -1,6 +1,6 @@
 package uk.ac.soton.comp1206.scene;
 
-import javafx.animation.FadeTransition;
+import javafx.application.Platform;
 import javafx.beans.property.ListProperty;
 import javafx.beans.property.SimpleListProperty;
 import javafx.collections.FXCollections;
@@ -12,19 +12,22 @@ import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
-import javafx.util.Duration;
-import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.ScoreListView;
 import uk.ac.soton.comp1206.event.CommunicationsListener;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.MultiMedia;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.scores.HighScoreService;
+import uk.ac.soton.comp1206.scores.ScoreEntry;
+import uk.ac.soton.comp1206.scores.ScorePages;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 /**
  * Represents a scene for displaying scores in the game.
  * This scene extends the {@link BaseScene} class to inherit basic scene functionalities
@@ -35,12 +38,13 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
     MultiMedia scoresMedia = new MultiMedia();
 
     private final Game endOfGame;
-    private final List<Pair<String, Integer>> remoteScoreList = new ArrayList<>();
-    private final List<Pair<String, Integer>> scorePairList = new ArrayList<>();
+    private final List<ScoreEntry> remoteScoreList = new ArrayList<>();
+    private final HighScoreService highScores = HighScoreService.getInstance();
     private BorderPane mainPane;
-   // private final Communicator communicator = new Communicator("ws://ofb-labs.soton.ac.uk:9700");
+    private final Communicator communicator;
     private final CommunicationsListener communicationsListener = this;
     private final VBox onlineScores = new VBox();
+    private final Text connectionText = new Text();
     private final AnchorPane anchorPane = new AnchorPane();
 
     /**
@@ -51,7 +55,7 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
     public ScoresScene(GameWindow gameWindow, Game currentGameState) {
         super(gameWindow);
         this.endOfGame = currentGameState;
-        //communicator.addListener(this::receiveCommunication);
+        this.communicator = gameWindow.getCommunicator();
     }
     /**
      * Initializes the scene.
@@ -65,6 +69,11 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
                 shutdownResults();
             }
         });
+
+        //Listeners are cleared when the scene changes, so this is added once the scene is loaded
+        communicator.addListener(communicationsListener);
+        connectionText.textProperty().bind(communicator.connectionStateProperty().asString("Server: %s"));
+        loadOnlineScores();
     }
     /**
      * Builds the ScoreScene, including a brief pause using Thread.sleep(10) to allow the scene to fully initialize.
@@ -83,7 +92,7 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
         var scoresPane = new StackPane();
         scoresPane.setMaxWidth(gameWindow.getWidth());
         scoresPane.setMaxHeight(gameWindow.getHeight());
-        Image backgroundImage = new Image("C:\\Comp1206\\coursework\\src\\main\\resources\\images\\5.jpg");
+        Image backgroundImage = new Image(getClass().getResource("/images/5.jpg").toExternalForm());
         // Create a BackgroundImage
         BackgroundImage background = new BackgroundImage(
                 backgroundImage,
@@ -100,7 +109,7 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
         mainPane.setCenter(anchorPane);
 
         //title
-        Image titleImage = new Image("C:\\Comp1206\\coursework\\src\\main\\resources\\images\\TetrECS.png");
+        Image titleImage = new Image(getClass().getResource("/images/TetrECS.png").toExternalForm());
         ImageView title = new ImageView(titleImage);
         title.setFitHeight(70);
         title.setFitWidth(300);
@@ -113,6 +122,8 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
         onlineScores.setMaxHeight(200);
         onlineScores.setTranslateX(-100);
         onlineScores.setTranslateY(1);
+        connectionText.getStyleClass().add("scoreitem");
+        onlineScores.getChildren().add(connectionText);
         mainPane.setRight(onlineScores);
 
         int usersScore = endOfGame.getScore();
@@ -134,83 +145,49 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
             submitButton.setDisable(true);
 
             String name = nameField.getText();
-            scorePairList.add(new Pair<>(name,usersScore));
-            writeScores(scorePairList);
-            loadScores("scores.txt");
+            //Show the scores once the new one is saved
+            writeScore(name, usersScore).whenComplete((entry, e) -> Platform.runLater(this::loadScores));
+            writeOnlineScore(name, usersScore);
             mainPane.setBottom(null);
 
         });
 
     }
     /**
-     * Reveals a Text node by fading it in over a specified duration.
-     * @param text the Text node to reveal
-     */
-    public void reveal(Text text) {
-        FadeTransition fadeTransition = new FadeTransition(Duration.seconds(4),text);
-        fadeTransition.setFromValue(0);
-        fadeTransition.setToValue(1);
-        fadeTransition.play();
-
-
-    }
-    /**
-     * Loads scores from a file and displays them in a VBox within an AnchorPane.
-     * @param scoresFile the file containing the scores to load
+     * Loads the local scores and displays them in a VBox within an AnchorPane.
      */
-    public void loadScores(String scoresFile) {
-        try {
-            Text localScoreText = new Text("Local Scores");
-            localScoreText.getStyleClass().add("scorelist");
-            VBox vBox = new VBox(localScoreText);
-            vBox.setAlignment(Pos.TOP_CENTER);
-
+    public void loadScores() {
+        Text localScoreText = new Text("Local Scores");
+        localScoreText.getStyleClass().add("scorelist");
+        VBox vBox = new VBox(localScoreText);
+        vBox.setAlignment(Pos.TOP_CENTER);
 
-            anchorPane.getChildren().add(vBox);
-            AnchorPane.setTopAnchor(vBox, 0.0); // Set top anchor to 0
-            AnchorPane.setBottomAnchor(vBox, 0.0); // Set bottom anchor to 0
-            AnchorPane.setLeftAnchor(vBox, 0.0); // Set left anchor to 0
-            AnchorPane.setRightAnchor(vBox, 0.0); // Set right anchor to 0
 
-            scorePairList.clear();
-            BufferedReader scoresReader = new BufferedReader(new FileReader(scoresFile));
-            String line;
-            while ((line = scoresReader.readLine()) != null) {
-                String[] parts = line.split(":");
-                String name = parts[0];
-                int score = Integer.parseInt(parts[1]);
-                scorePairList.add(new Pair<>(name, score));
-            }
-            scorePairList.sort((p1, p2) -> p2.getValue().compareTo(p1.getValue()));
-            for(Pair<String,Integer> pair:scorePairList){
-                String name = pair.getKey();
-                int score = pair.getValue();
-                Text pairText = new Text(name + ":" + score);
-                pairText.getStyleClass().add("channelItem");
-                vBox.getChildren().add(pairText);
-                reveal(pairText);
-            }
+        anchorPane.getChildren().add(vBox);
+        AnchorPane.setTopAnchor(vBox, 0.0); // Set top anchor to 0
+        AnchorPane.setBottomAnchor(vBox, 0.0); // Set bottom anchor to 0
+        AnchorPane.setLeftAnchor(vBox, 0.0); // Set left anchor to 0
+        AnchorPane.setRightAnchor(vBox, 0.0); // Set right anchor to 0
 
-
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        //Only the rows on screen are created, and their scores fetched, as the list scrolls
+        ScoreListView scoreList = new ScoreListView(highScores);
+        VBox.setVgrow(scoreList, Priority.ALWAYS);
+        vBox.getChildren().add(scoreList);
 
     }
     /**
-     * Writes the provided score list to a file.
-     * @param scoreList the list of scores to write
+     * Saves a new score to the local scores.
+     * @param name the name associated with the score
+     * @param score the score to write
+     * @return a future completed once the score has been saved
      */
-    public void writeScores(List<Pair<String, Integer>> scoreList) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("scores.txt", true))){
-            for (Pair<String, Integer> pair : scoreList) {
-                writer.write(pair.getKey() + ":" + pair.getValue()+"\n");
+    public CompletableFuture<ScoreEntry> writeScore(String name, int score) {
+        //Saved in the background, so the scene never waits on the disk
+        return highScores.submit(name, score).whenComplete((entry, e) -> {
+            if (e != null) {
+                logger.error("Unable to save score", e);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        });
     }
     /**
      * Shuts down the results display and returns to the main menu.
@@ -222,24 +199,22 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
     /**
      * Loads online scores by sending a request to the server.
      */
-
-    /**
     public void loadOnlineScores() {
-        communicator.send("HISCORES");
+        if (!communicator.send("HISCORES")) {
+            logger.warn("Unable to request online scores");
+        }
     }
-     */
 
     /**
      * Writes an online score to the server.
      * @param name the name associated with the score
      * @param score the score to write
      */
-
-    /**
     public void writeOnlineScore(String name, int score) {
-        communicator.send("HISCORE " + name + ":" + score);
+        if (!communicator.send("HISCORE " + name + ":" + score)) {
+            logger.warn("Unable to send online score");
+        }
     }
-    */
 
     /**
      * Receives communication responses from the server and processes them, updating the UI with
@@ -249,35 +224,43 @@ public class ScoresScene extends BaseScene implements CommunicationsListener{
     @Override
     public void receiveCommunication(String response) {
         logger.info("Response received!");
-        if (response.startsWith("NEWSCORE") || response.startsWith("HISCORES")) {
-            logger.info("Response received!");
-
-            String[] lines = response.substring(9).split("\n");
+        if (response.startsWith("NEWSCORE")) {
+            //Fetch the whole list again, so the new score is shown in place
+            loadOnlineScores();
+        } else if (response.startsWith("HISCORES")) {
+            var scores = new ArrayList<ScoreEntry>();
+            //The list is empty when the server has no scores yet
+            String[] lines = response.length() > 9 ? response.substring(9).split("\n") : new String[0];
             for (String line : lines) {
-                String[] parts = line.split(":");
-                String name = parts[0];
-                int score;
+                if (line.isBlank()) {
+                    continue;
+                }
                 try {
-                    score = Integer.parseInt(parts[1]);
-                } catch (NumberFormatException e) {
-                    score = 0; // Handle non-integer scores by setting them to zero
+                    scores.add(ScoreEntry.parse(line));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping invalid online score: {}", line);
                 }
-                remoteScoreList.add(new Pair<>(name, score));
             }
-            logger.info(remoteScoreList);
 
-            Text onlineScoreText = new Text("Online Scores");
-            onlineScoreText.getStyleClass().add("scorelist");
-            onlineScores.getChildren().add(onlineScoreText);
-            for(Pair<String,Integer> pair:remoteScoreList){
-                String name = pair.getKey();
-                int score = pair.getValue();
-                Text pairText = new Text(name + ":" + score);
-                pairText.getStyleClass().add("channelItem");
-                onlineScores.getChildren().add(pairText);
-                reveal(pairText);
-            }
-            logger.info(onlineScores.toString());
+            //Messages arrive on the communicator's thread, so the UI is updated on the JavaFX thread
+            Platform.runLater(() -> showOnlineScores(scores));
         }
     }
+
+    /**
+     * Shows the online scores, replacing any shown before.
+     * @param scores the online scores
+     */
+    private void showOnlineScores(List<ScoreEntry> scores) {
+        remoteScoreList.clear();
+        remoteScoreList.addAll(scores);
+        logger.info(remoteScoreList);
+
+        Text onlineScoreText = new Text("Online Scores");
+        onlineScoreText.getStyleClass().add("scorelist");
+        ScoreListView onlineList = new ScoreListView(ScorePages.of(remoteScoreList));
+        VBox.setVgrow(onlineList, Priority.ALWAYS);
+        onlineScores.getChildren().setAll(connectionText, onlineScoreText, onlineList);
+        logger.info(onlineScores.toString());
+    }
 }
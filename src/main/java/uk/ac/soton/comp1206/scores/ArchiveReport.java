@@ -0,0 +1,91 @@
+package uk.ac.soton.comp1206.scores;
+
+import java.io.PrintStream;
+
+/**
+ * The ArchiveReport holds the results of importing score archives: the leaderboard they were merged into, how much was
+ * read, and how long parsing and merging took.
+ */
+public class ArchiveReport {
+
+    private final Leaderboard leaderboard;
+    private final int files;
+    private final int chunks;
+    private final int threads;
+    private final long bytes;
+    private final long records;
+    private final long rejected;
+    private final long parseNanos;
+    private final long mergeNanos;
+
+    /**
+     * Create a new report
+     * @param leaderboard the leaderboard every score was merged into
+     * @param files number of files read
+     * @param chunks number of chunks the files were split into
+     * @param threads number of threads the chunks were parsed on
+     * @param bytes total size of the files
+     * @param records number of scores read from the files
+     * @param rejected number of lines that were not valid scores
+     * @param parseNanos wall clock time spent parsing
+     * @param mergeNanos wall clock time spent merging
+     */
+    public ArchiveReport(Leaderboard leaderboard, int files, int chunks, int threads, long bytes, long records,
+                         long rejected, long parseNanos, long mergeNanos) {
+        this.leaderboard = leaderboard;
+        this.files = files;
+        this.chunks = chunks;
+        this.threads = threads;
+        this.bytes = bytes;
+        this.records = records;
+        this.rejected = rejected;
+        this.parseNanos = parseNanos;
+        this.mergeNanos = mergeNanos;
+    }
+
+    /**
+     * Get the leaderboard every score was merged into
+     * @return the leaderboard
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Get the number of scores read from the files
+     * @return number of scores
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Get the number of lines that were not valid scores
+     * @return number of lines skipped
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Get the number of scores read per second of wall clock time, parsing and merging included
+     * @return records per second
+     */
+    public double getRecordsPerSecond() {
+        return records / ((parseNanos + mergeNanos) / 1e9);
+    }
+
+    /**
+     * Write this report out in a human readable form
+     * @param out stream to write to
+     */
+    public void print(PrintStream out) {
+        double seconds = (parseNanos + mergeNanos) / 1e9;
+        out.printf("files:           %d, %.1f MB in %d chunks on %d threads%n", files, bytes / 1e6, chunks, threads);
+        out.printf("records:         %d, %d lines rejected%n", records, rejected);
+        out.printf("leaderboard:     %d scores, high score %d%n", leaderboard.size(), leaderboard.getHighScore());
+        out.printf("time:            parse %.3f s, merge %.3f s%n", parseNanos / 1e9, mergeNanos / 1e9);
+        out.printf("records/sec:     %.0f%n", getRecordsPerSecond());
+        out.printf("MB/sec:          %.1f%n", bytes / 1e6 / seconds);
+    }
+}
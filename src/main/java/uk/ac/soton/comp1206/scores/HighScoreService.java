@@ -0,0 +1,288 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * The HighScoreService holds the local scores. Scores are kept in a ScoreLog, which is read once, the first time the
+ * scores themselves are needed, into a Leaderboard. New scores are added to the leaderboard straight away and saved to
+ * the log in the background by a ScoreWriter, so the log is never read again and submitting a score never waits on
+ * the disk. The high score alone comes from the log header, without reading any scores.
+ *
+ * The high score, ranks, pages of scores and each player's best are all looked up from the leaderboard in O(log n),
+ * so they stay quick however many scores have been saved.
+ *
+ * The leaderboard is guarded by a read-write lock, held only while it is looked up or added to. The log is read on
+ * the writer thread and the leaderboard built outside the lock, so reading the scores never holds up the high score,
+ * submitting a score or any other thread. Scores submitted while the log is being read are kept aside and added once
+ * it has been.
+ */
+public class HighScoreService implements ScorePages {
+
+    private static final Logger logger = LogManager.getLogger(HighScoreService.class);
+
+    /**
+     * The binary log local scores are kept in
+     */
+    public static final Path LOG_FILE = Path.of("scores.dat");
+
+    /**
+     * The text file local scores used to be kept in, imported into the log on first run
+     */
+    public static final Path SCORES_FILE = Path.of("scores.txt");
+
+    /**
+     * The write-ahead journal of scores being saved to the log
+     */
+    public static final Path JOURNAL_FILE = Path.of("scores.journal");
+
+    private static HighScoreService instance;
+
+    /**
+     * The log scores are saved in, or null if it could not be opened and scores are only kept in memory
+     */
+    private final ScoreLog log;
+
+    /**
+     * Saves new scores to the log, or null if scores are only kept in memory
+     */
+    private final ScoreWriter writer;
+
+    /**
+     * Guards the leaderboard and loading state below
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Every score, highest first, or null until the log has been read. Equal scores are kept in the order they were
+     * saved.
+     */
+    private Leaderboard index;
+
+    /**
+     * The log being read, or null if reading has not started
+     */
+    private CompletableFuture<Leaderboard> loading;
+
+    /**
+     * Scores submitted after the log started being read, so not read from it
+     */
+    private final List<ScoreEntry> submittedWhileLoading = new ArrayList<>();
+
+    /**
+     * Create a new service for a score log. The scores are not read until they are first needed.
+     * @param log the score log, or null to keep scores in memory only
+     * @param writer the writer saving scores to the log, or null to keep scores in memory only
+     */
+    public HighScoreService(ScoreLog log, ScoreWriter writer) {
+        this.log = writer == null ? null : log;
+        this.writer = writer;
+        if(writer == null) {
+            index = new Leaderboard();
+            loading = CompletableFuture.completedFuture(index);
+        }
+    }
+
+    /**
+     * Get the shared service for the local scores file
+     * @return the high score service
+     */
+    public static synchronized HighScoreService getInstance() {
+        if(instance == null) {
+            ScoreLog log = null;
+            ScoreWriter writer = null;
+            try {
+                log = ScoreLog.open(LOG_FILE, SCORES_FILE);
+                //Replays anything left in the journal before the log is read
+                writer = new ScoreWriter(log, JOURNAL_FILE);
+            } catch (IOException e) {
+                logger.error("Unable to open score log {}, scores will not be saved", LOG_FILE, e);
+            }
+            instance = new HighScoreService(log, writer);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the highest score saved
+     * @return the high score, or 0 if there are no scores
+     */
+    public int getHighScore() {
+        lock.readLock().lock();
+        try {
+            if(index != null) {
+                return index.getHighScore();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return log.getMaxScore();
+    }
+
+    /**
+     * Get the highest scores, best first
+     * @param count the most scores to return
+     * @return up to count scores
+     */
+    public List<ScoreEntry> topK(int count) {
+        return read(leaderboard -> leaderboard.page(0, count));
+    }
+
+    /**
+     * Get a page of scores, best first
+     * @param from position of the first score, where 0 is the high score
+     * @param count the most scores to return
+     * @return up to count scores
+     */
+    @Override
+    public List<ScoreEntry> page(int from, int count) {
+        return read(leaderboard -> leaderboard.page(from, count));
+    }
+
+    /**
+     * Get a player's best score
+     * @param name the player's name
+     * @return their best score, or null if they have not saved one
+     */
+    public ScoreEntry getBest(String name) {
+        return read(leaderboard -> leaderboard.getBest(name));
+    }
+
+    /**
+     * Get the rank a score would have, where the high score is rank 1 and equal scores share a rank
+     * @param score the score
+     * @return the rank, 1 more than the number of scores above it
+     */
+    public int rank(int score) {
+        return read(leaderboard -> leaderboard.rank(score));
+    }
+
+    /**
+     * Get the number of scores saved
+     * @return number of scores
+     */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            if(index != null) {
+                return index.size();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return log.getCount();
+    }
+
+    /**
+     * Save a new score. It is added to the scores straight away if they have been read, and saved to the score log in
+     * the background.
+     * @param name the player's name
+     * @param score the score
+     * @return a future completed once the score is safely saved, or completed exceptionally if it could not be
+     */
+    public CompletableFuture<ScoreEntry> submit(String name, int score) {
+        var entry = new ScoreEntry(name, score);
+        lock.writeLock().lock();
+        try {
+            if(index != null) {
+                index.add(entry);
+                logger.info("Added score {}, now rank {} of {}", entry, index.rank(score), index.size());
+            } else if(loading != null) {
+                submittedWhileLoading.add(entry);
+            }
+            if(writer == null) {
+                return CompletableFuture.completedFuture(entry);
+            }
+            //Queued under the lock, so it is either read from the log or kept aside while loading, never both
+            return writer.write(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start reading the scores in the background, if they have not been already, so later lookups need not wait
+     * @return a future completed once the scores have been read
+     */
+    public CompletableFuture<Void> preload() {
+        return load().thenApply(leaderboard -> null);
+    }
+
+    /**
+     * Look something up on the leaderboard, waiting for the log to be read first if it has not been. The lock is only
+     * held for the lookup.
+     * @param query the lookup
+     * @param <T> the type of the result
+     * @return the result of the lookup
+     */
+    private <T> T read(Function<Leaderboard, T> query) {
+        Leaderboard leaderboard = load().join();
+        lock.readLock().lock();
+        try {
+            return query.apply(leaderboard);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Start reading the score log onto a leaderboard, unless it already has been or is being read
+     * @return a future completed with the leaderboard once the log has been read
+     */
+    private CompletableFuture<Leaderboard> load() {
+        lock.writeLock().lock();
+        try {
+            if(loading == null) {
+                //Scores submitted from here on are queued after the read, so are kept aside instead
+                loading = writer.readAll()
+                        .exceptionally(e -> {
+                            logger.error("Unable to read scores", e);
+                            return List.of();
+                        })
+                        .thenApplyAsync(this::build);
+            }
+            return loading;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Build the leaderboard from the scores read from the log and those submitted since, and start compacting the log
+     * if it is mostly copies
+     * @param entries the scores read from the log
+     * @return the leaderboard
+     */
+    private Leaderboard build(List<ScoreEntry> entries) {
+        var leaderboard = new Leaderboard(entries.size() + 16);
+        for(ScoreEntry entry : entries) {
+            leaderboard.add(entry);
+        }
+        lock.writeLock().lock();
+        try {
+            for(ScoreEntry entry : submittedWhileLoading) {
+                leaderboard.add(entry);
+            }
+            submittedWhileLoading.clear();
+            index = leaderboard;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Loaded {} scores", leaderboard.size());
+
+        if(log.needsCompaction()) {
+            writer.compact();
+        }
+        return leaderboard;
+    }
+}
@@ -0,0 +1,449 @@
+package uk.ac.soton.comp1206.scores;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A Leaderboard keeps scores ordered from highest to lowest, with equal scores in the order they were added. It is an
+ * order statistics treap: a binary search tree balanced by random priorities, where every node also counts the nodes
+ * beneath it. That lets a score be added, ranked or found by rank in O(log n), and the best score of each player is
+ * kept as scores are added.
+ *
+ * Nodes are held in parallel int arrays rather than as objects, and each name is stored once, so a leaderboard with
+ * millions of scores stays compact and quick to walk.
+ *
+ * A leaderboard is not thread safe.
+ */
+public class Leaderboard {
+
+    private static final int NONE = -1;
+
+    /**
+     * The fields of each node, stored together so a node is read in one go
+     */
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int PRIORITY = 2;
+    private static final int SIZE = 3;
+    private static final int SCORE = 4;
+    private static final int NAME = 5;
+    private static final int STRIDE = 6;
+
+    /**
+     * Node n's fields start at n * STRIDE
+     */
+    private int[] nodes;
+
+    private int count;
+    private int root = NONE;
+
+    /**
+     * The two halves of the last split
+     */
+    private int splitHigh;
+    private int splitLow;
+
+    /**
+     * Each name, indexed by its id
+     */
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    /**
+     * The node holding each name's best score, indexed by name id
+     */
+    private int[] best = new int[16];
+
+    private final SplittableRandom random = new SplittableRandom();
+
+    /**
+     * Create a new empty leaderboard
+     */
+    public Leaderboard() {
+        this(16);
+    }
+
+    /**
+     * Create a new empty leaderboard with room for a number of scores before it has to grow
+     * @param capacity expected number of scores
+     */
+    public Leaderboard(int capacity) {
+        nodes = new int[Math.max(capacity, 1) * STRIDE];
+    }
+
+    /**
+     * Add a score, after any equal scores already on the leaderboard
+     * @param entry the score to add
+     */
+    public void add(ScoreEntry entry) {
+        add(entry.getName(), entry.getScore());
+    }
+
+    /**
+     * Add a score, after any equal scores already on the leaderboard
+     * @param playerName the player's name
+     * @param playerScore the score
+     */
+    public void add(String playerName, int playerScore) {
+        root = insert(root, newNode(playerName, playerScore));
+    }
+
+    /**
+     * Get the number of scores on the leaderboard
+     * @return number of scores
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the highest score
+     * @return the high score, or 0 if the leaderboard is empty
+     */
+    public int getHighScore() {
+        if(root == NONE) {
+            return 0;
+        }
+        int node = root;
+        while(left(node) != NONE) {
+            node = left(node);
+        }
+        return score(node);
+    }
+
+    /**
+     * Get the rank a score would have, where the high score is rank 1 and equal scores share a rank
+     * @param playerScore the score
+     * @return the rank, 1 more than the number of scores above it
+     */
+    public int rank(int playerScore) {
+        int above = 0;
+        int node = root;
+        while(node != NONE) {
+            if(score(node) > playerScore) {
+                above += sizeOf(left(node)) + 1;
+                node = right(node);
+            } else {
+                node = left(node);
+            }
+        }
+        return above + 1;
+    }
+
+    /**
+     * Get the score at a position on the leaderboard
+     * @param index position, where 0 is the high score
+     * @return the score at that position
+     * @throws IndexOutOfBoundsException if there is no score at that position
+     */
+    public ScoreEntry get(int index) {
+        if(index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("No score at position " + index + " of " + count);
+        }
+        int node = root;
+        while(true) {
+            int leftSize = sizeOf(left(node));
+            if(index < leftSize) {
+                node = left(node);
+            } else if(index == leftSize) {
+                return entry(node);
+            } else {
+                index -= leftSize + 1;
+                node = right(node);
+            }
+        }
+    }
+
+    /**
+     * Get a page of scores in leaderboard order. Finding the start of the page is O(log n), then each score on it is
+     * O(1) on average.
+     * @param from position of the first score, where 0 is the high score
+     * @param length the most scores to return
+     * @return up to length scores starting at from
+     */
+    public List<ScoreEntry> page(int from, int length) {
+        from = Math.max(from, 0);
+        int end = (int) Math.min((long) from + Math.max(length, 0), count);
+        var page = new ArrayList<ScoreEntry>(Math.max(end - from, 0));
+        if(from >= end) {
+            return page;
+        }
+
+        //Walk down to the first score, remembering the nodes still to visit after it
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = root;
+        int index = from;
+        while(node != NONE) {
+            int leftSize = sizeOf(left(node));
+            if(index < leftSize) {
+                if(depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = left(node);
+            } else if(index == leftSize) {
+                break;
+            } else {
+                index -= leftSize + 1;
+                node = right(node);
+            }
+        }
+
+        //Then walk the tree in order from there
+        while(page.size() < end - from) {
+            page.add(entry(node));
+            node = right(node);
+            while(node != NONE) {
+                if(depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = left(node);
+            }
+            if(depth == 0) {
+                break;
+            }
+            node = stack[--depth];
+        }
+        return page;
+    }
+
+    /**
+     * Get a player's best score
+     * @param playerName the player's name
+     * @return their best score, or null if they have no scores
+     */
+    public ScoreEntry getBest(String playerName) {
+        Integer id = nameIds.get(playerName);
+        if(id == null) {
+            return null;
+        }
+        return entry(best[id]);
+    }
+
+    /**
+     * Remove every score
+     */
+    public void clear() {
+        count = 0;
+        root = NONE;
+        names.clear();
+        nameIds.clear();
+    }
+
+    /**
+     * Create a node for a score that is not yet in the tree, and track it as the player's best if it is
+     * @param playerName the player's name
+     * @param playerScore the score
+     * @return the new node
+     */
+    private int newNode(String playerName, int playerScore) {
+        if(count * STRIDE == nodes.length) {
+            grow();
+        }
+        int node = count++;
+        nodes[node * STRIDE + LEFT] = NONE;
+        nodes[node * STRIDE + RIGHT] = NONE;
+        nodes[node * STRIDE + PRIORITY] = random.nextInt();
+        nodes[node * STRIDE + SIZE] = 1;
+        nodes[node * STRIDE + SCORE] = playerScore;
+        nodes[node * STRIDE + NAME] = nameId(playerName);
+
+        int id = nodes[node * STRIDE + NAME];
+        if(best[id] == NONE || score(best[id]) < playerScore) {
+            best[id] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Insert a node into a subtree, after any equal scores
+     * @param subtree root of the subtree
+     * @param node the node to insert
+     * @return the new root of the subtree
+     */
+    private int insert(int subtree, int node) {
+        if(subtree == NONE) {
+            return node;
+        }
+        if(nodes[node * STRIDE + PRIORITY] > nodes[subtree * STRIDE + PRIORITY]) {
+            //The new node becomes the root of this subtree, with the scores above it on its left
+            split(subtree, score(node));
+            nodes[node * STRIDE + LEFT] = splitHigh;
+            nodes[node * STRIDE + RIGHT] = splitLow;
+            update(node);
+            return node;
+        }
+        //The new node ends up somewhere beneath this one
+        nodes[subtree * STRIDE + SIZE]++;
+        if(score(subtree) >= score(node)) {
+            nodes[subtree * STRIDE + RIGHT] = insert(right(subtree), node);
+        } else {
+            nodes[subtree * STRIDE + LEFT] = insert(left(subtree), node);
+        }
+        return subtree;
+    }
+
+    /**
+     * Split a subtree into the nodes with a score at or above a value, left in splitHigh, and the rest, left in
+     * splitLow
+     * @param subtree root of the subtree
+     * @param at the value to split at
+     */
+    private void split(int subtree, int at) {
+        if(subtree == NONE) {
+            splitHigh = NONE;
+            splitLow = NONE;
+            return;
+        }
+        if(score(subtree) >= at) {
+            split(right(subtree), at);
+            nodes[subtree * STRIDE + RIGHT] = splitHigh;
+            update(subtree);
+            splitHigh = subtree;
+        } else {
+            split(left(subtree), at);
+            nodes[subtree * STRIDE + LEFT] = splitLow;
+            update(subtree);
+            splitLow = subtree;
+        }
+    }
+
+    /**
+     * Recount the nodes beneath a node after its children change
+     * @param node the node
+     */
+    private void update(int node) {
+        nodes[node * STRIDE + SIZE] = sizeOf(left(node)) + sizeOf(right(node)) + 1;
+    }
+
+    private int left(int node) {
+        return nodes[node * STRIDE + LEFT];
+    }
+
+    private int right(int node) {
+        return nodes[node * STRIDE + RIGHT];
+    }
+
+    private int score(int node) {
+        return nodes[node * STRIDE + SCORE];
+    }
+
+    private int sizeOf(int node) {
+        return node == NONE ? 0 : nodes[node * STRIDE + SIZE];
+    }
+
+    private ScoreEntry entry(int node) {
+        return new ScoreEntry(names.get(nodes[node * STRIDE + NAME]), score(node));
+    }
+
+    /**
+     * Get the id of a name, giving it a new one if it has not been seen before
+     * @param playerName the name
+     * @return the name id
+     */
+    private int nameId(String playerName) {
+        Integer id = nameIds.get(playerName);
+        if(id == null) {
+            id = names.size();
+            names.add(playerName);
+            nameIds.put(playerName, id);
+            if(id == best.length) {
+                best = Arrays.copyOf(best, id * 2);
+            }
+            best[id] = NONE;
+        }
+        return id;
+    }
+
+    /**
+     * Double the room for nodes
+     */
+    private void grow() {
+        nodes = Arrays.copyOf(nodes, nodes.length * 2);
+    }
+
+    /**
+     * A SortedBuilder makes a new leaderboard from scores that are already in order, highest first, in O(1) per score
+     * rather than O(log n).
+     *
+     * Scores arriving in order always join the right hand edge of the tree, so only that edge is kept. A new node takes
+     * the place of the nodes on the edge with a lower priority, which become its left subtree. A node that leaves the
+     * edge never gains any more children, so its size is counted then.
+     */
+    public static class SortedBuilder {
+
+        private final Leaderboard board;
+
+        /**
+         * The right hand edge of the tree, from the root down
+         */
+        private int[] edge = new int[64];
+        private int depth;
+
+        private boolean built;
+
+        /**
+         * Create a new builder
+         * @param capacity expected number of scores
+         */
+        public SortedBuilder(int capacity) {
+            board = new Leaderboard(capacity);
+        }
+
+        /**
+         * Add the next score, which must be no higher than the score added before it
+         * @param playerName the player's name
+         * @param playerScore the score
+         * @throws IllegalArgumentException if the score is higher than the one before it
+         * @throws IllegalStateException if the leaderboard has already been built
+         */
+        public void add(String playerName, int playerScore) {
+            if(built) {
+                throw new IllegalStateException("Leaderboard already built");
+            }
+            if(depth > 0 && board.score(edge[depth - 1]) < playerScore) {
+                throw new IllegalArgumentException("Score " + playerScore + " is higher than the score before it");
+            }
+            int node = board.newNode(playerName, playerScore);
+            int[] nodes = board.nodes;
+            int priority = nodes[node * STRIDE + PRIORITY];
+
+            //Nodes on the edge with a lower priority move beneath the new node, and are now complete
+            int below = NONE;
+            while(depth > 0 && nodes[edge[depth - 1] * STRIDE + PRIORITY] < priority) {
+                below = edge[--depth];
+                board.update(below);
+            }
+            nodes[node * STRIDE + LEFT] = below;
+            if(depth > 0) {
+                nodes[edge[depth - 1] * STRIDE + RIGHT] = node;
+            } else {
+                board.root = node;
+            }
+            if(depth == edge.length) {
+                edge = Arrays.copyOf(edge, depth * 2);
+            }
+            edge[depth++] = node;
+        }
+
+        /**
+         * Finish the leaderboard
+         * @return the leaderboard holding every score added
+         */
+        public Leaderboard build() {
+            if(!built) {
+                built = true;
+                while(depth > 0) {
+                    board.update(edge[--depth]);
+                }
+            }
+            return board;
+        }
+    }
+}
@@ -0,0 +1,710 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The ScoreArchive imports and exports large files of name:score lines, such as the score dumps gathered from many
+ * cabinets, so they can be merged into one Leaderboard.
+ *
+ * Importing splits each file into chunks that end on a line break and parses the chunks in parallel on a fork join
+ * pool. Each chunk is mapped into memory and scanned byte by byte without making a String per line: a name is only
+ * decoded the first time it is seen in a chunk, and each score is packed with its line number into a long, so a chunk
+ * is sorted as a primitive array. The sorted chunks are then combined with a k-way merge into a Leaderboard built in
+ * order, with equal scores kept in the order they appear in the files.
+ *
+ * Exporting writes a leaderboard back out as name:score lines, best first, a page at a time.
+ *
+ * Run with: Launcher scores import FILE... [--log FILE] [--out FILE] [--threads N] [--chunk-mb N] [--top N]
+ * or: Launcher scores export [--log FILE] --out FILE
+ */
+public class ScoreArchive {
+
+    private static final Logger logger = LogManager.getLogger(ScoreArchive.class);
+
+    /**
+     * The default size of each chunk
+     */
+    public static final int CHUNK_BYTES = 64 << 20;
+
+    /**
+     * The number of scores exported at a time
+     */
+    private static final int EXPORT_PAGE = 4096;
+
+    /**
+     * Equal scores come from the earlier run first, so the order of the files is kept
+     */
+    private static final Comparator<Run> RUN_ORDER = (a, b) -> a.score() != b.score()
+            ? Integer.compare(b.score(), a.score())
+            : Integer.compare(a.order, b.order);
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkBytes = CHUNK_BYTES;
+
+    /**
+     * Import or export score archives from the command line. Launcher picks the logging configuration before this class
+     * is loaded.
+     * @param args commandline arguments
+     * @throws IOException if a file could not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0 || !(args[0].equals("import") || args[0].equals("export"))) {
+            throw new IllegalArgumentException("Expected import or export");
+        }
+
+        var archive = new ScoreArchive();
+        var files = new ArrayList<Path>();
+        Path logFile = null;
+        Path outFile = null;
+        int top = 10;
+        for(int i = 1; i < args.length; i++) {
+            if(!args[i].startsWith("--")) {
+                files.add(Path.of(args[i]));
+                continue;
+            }
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--log" -> logFile = Path.of(value);
+                case "--out" -> outFile = Path.of(value);
+                case "--threads" -> archive.setThreads(Integer.parseInt(value));
+                case "--chunk-mb" -> archive.setChunkBytes(Integer.parseInt(value) << 20);
+                case "--top" -> top = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        Leaderboard leaderboard;
+        if(args[0].equals("import")) {
+            var report = archive.importFiles(files, logFile == null ? null : load(logFile));
+            report.print(System.out);
+            leaderboard = report.getLeaderboard();
+            for(ScoreEntry entry : leaderboard.page(0, top)) {
+                System.out.println("  " + entry);
+            }
+        } else {
+            if(outFile == null) {
+                throw new IllegalArgumentException("Export needs --out");
+            }
+            leaderboard = load(logFile == null ? HighScoreService.LOG_FILE : logFile);
+        }
+
+        if(outFile != null) {
+            long start = System.nanoTime();
+            long exported = export(leaderboard, outFile);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("exported:        %d scores to %s in %.3f s, %.0f records/sec%n",
+                    exported, outFile, seconds, exported / seconds);
+        }
+    }
+
+    /**
+     * Import score files into a new leaderboard
+     * @param files the files to import, each made of name:score lines
+     * @return the report, holding the leaderboard
+     * @throws IOException if a file could not be read
+     */
+    public ArchiveReport importFiles(List<Path> files) throws IOException {
+        return importFiles(files, null);
+    }
+
+    /**
+     * Import score files, merged with the scores already on a leaderboard, into a new leaderboard
+     * @param files the files to import, each made of name:score lines
+     * @param existing scores to merge in, ahead of equal scores from the files, or null
+     * @return the report, holding the new leaderboard
+     * @throws IOException if a file could not be read
+     */
+    public ArchiveReport importFiles(List<Path> files, Leaderboard existing) throws IOException {
+        var channels = new ArrayList<FileChannel>();
+        try {
+            long parseStart = System.nanoTime();
+            var spans = new ArrayList<Span>();
+            long bytes = 0;
+            for(Path file : files) {
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                channels.add(channel);
+                bytes += channel.size();
+                split(channel, spans);
+            }
+
+            Chunk[] chunks = parseAll(spans);
+            long records = 0;
+            long rejected = 0;
+            for(Chunk chunk : chunks) {
+                records += chunk.size;
+                rejected += chunk.rejected;
+            }
+            long mergeStart = System.nanoTime();
+
+            Leaderboard leaderboard = merge(chunks, existing, records);
+            long mergeEnd = System.nanoTime();
+
+            logger.info("Imported {} scores from {} files in {} chunks", records, files.size(), chunks.length);
+            return new ArchiveReport(leaderboard, files.size(), chunks.length, threads, bytes, records, rejected,
+                    mergeStart - parseStart, mergeEnd - mergeStart);
+        } finally {
+            for(FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Export a leaderboard as name:score lines, best first
+     * @param leaderboard the scores to export
+     * @param file the file to write
+     * @return the number of scores written
+     * @throws IOException if the file could not be written
+     */
+    public static long export(Leaderboard leaderboard, Path file) throws IOException {
+        byte[] digits = new byte[11];
+        int size = leaderboard.size();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 20)) {
+            for(int from = 0; from < size; from += EXPORT_PAGE) {
+                for(ScoreEntry entry : leaderboard.page(from, EXPORT_PAGE)) {
+                    out.write(entry.getName().getBytes(StandardCharsets.UTF_8));
+                    out.write(':');
+                    writeInt(out, entry.getScore(), digits);
+                    out.write('\n');
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Load every score in a score log into a leaderboard
+     * @param logFile the score log
+     * @return the leaderboard
+     * @throws IOException if the log could not be read
+     */
+    public static Leaderboard load(Path logFile) throws IOException {
+        try (var log = new ScoreLog(logFile)) {
+            var leaderboard = new Leaderboard(log.getCount());
+            for(ScoreEntry entry : log.readAll()) {
+                leaderboard.add(entry);
+            }
+            return leaderboard;
+        }
+    }
+
+    /**
+     * Set the number of threads to parse chunks on
+     * @param threads number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Set the size of each chunk. Chunks are made a little longer so they end on a line break.
+     * @param chunkBytes chunk size in bytes
+     */
+    public void setChunkBytes(int chunkBytes) {
+        if(chunkBytes <= 0 || chunkBytes > 1 << 30) {
+            throw new IllegalArgumentException("Chunk size must be between 1 byte and 1GB: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Split a file into spans of about the chunk size, each ending just after a line break or at the end of the file
+     * @param channel the file
+     * @param spans list to add the spans to
+     * @throws IOException if the file could not be read
+     */
+    private void split(FileChannel channel, List<Span> spans) throws IOException {
+        long size = channel.size();
+        var scan = ByteBuffer.allocate(8192);
+        long start = 0;
+        while(start < size) {
+            long end = start + chunkBytes >= size ? size : lineEnd(channel, start + chunkBytes - 1, size, scan);
+            if(end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line too long at byte " + start);
+            }
+            spans.add(new Span(channel, start, (int) (end - start), spans.size()));
+            start = end;
+        }
+    }
+
+    /**
+     * Find the end of the line holding a byte
+     * @param channel the file
+     * @param from position of the byte
+     * @param size size of the file
+     * @param scan buffer to read into
+     * @return position just after the next line break at or after from, or the size of the file if there is none
+     * @throws IOException if the file could not be read
+     */
+    private static long lineEnd(FileChannel channel, long from, long size, ByteBuffer scan) throws IOException {
+        long position = from;
+        while(position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if(read <= 0) {
+                break;
+            }
+            for(int i = 0; i < read; i++) {
+                if(scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parse every span in parallel
+     * @param spans the spans to parse
+     * @return the parsed chunks, in the same order as the spans
+     * @throws IOException if a span could not be read
+     */
+    private Chunk[] parseAll(List<Span> spans) throws IOException {
+        Chunk[] chunks = new Chunk[spans.size()];
+        var pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, chunks.length).parallel().forEach(i -> {
+                try {
+                    chunks[i] = Chunk.parse(spans.get(i));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            throw new IllegalStateException("Import failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return chunks;
+    }
+
+    /**
+     * Merge sorted chunks, and any existing leaderboard, into a new leaderboard
+     * @param chunks the chunks, each sorted
+     * @param existing scores already on a leaderboard, or null
+     * @param records number of scores in the chunks
+     * @return the new leaderboard
+     */
+    private static Leaderboard merge(Chunk[] chunks, Leaderboard existing, long records) {
+        long capacity = records + (existing == null ? 0 : existing.size());
+        if(capacity > Integer.MAX_VALUE / 6) {
+            throw new IllegalStateException("Too many scores for one leaderboard: " + capacity);
+        }
+        var builder = new Leaderboard.SortedBuilder((int) capacity);
+
+        var queue = new PriorityQueue<Run>(Math.max(chunks.length + 1, 1), RUN_ORDER);
+        if(existing != null && existing.size() > 0) {
+            queue.add(new LeaderboardRun(existing));
+        }
+        for(Chunk chunk : chunks) {
+            if(chunk.size > 0) {
+                queue.add(new ChunkRun(chunk));
+            }
+        }
+
+        while(!queue.isEmpty()) {
+            Run run = queue.poll();
+            Run next = queue.peek();
+            //Keep taking from the same run while it is still ahead, which is most of the time for nearly sorted files
+            boolean more;
+            do {
+                builder.add(run.name(), run.score());
+                more = run.advance();
+            } while(more && (next == null || RUN_ORDER.compare(run, next) < 0));
+            if(more) {
+                queue.add(run);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Write an int as decimal digits
+     * @param out stream to write to
+     * @param value the value
+     * @param digits scratch space for at least 11 bytes
+     * @throws IOException if the stream could not be written
+     */
+    private static void writeInt(OutputStream out, int value, byte[] digits) throws IOException {
+        long remaining = Math.abs((long) value);
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while(remaining > 0);
+        if(value < 0) {
+            digits[--start] = '-';
+        }
+        out.write(digits, start, digits.length - start);
+    }
+
+    /**
+     * A part of a file to parse as one chunk
+     */
+    private static class Span {
+        final FileChannel channel;
+        final long start;
+        final int length;
+        final int order;
+
+        Span(FileChannel channel, long start, int length, int order) {
+            this.channel = channel;
+            this.start = start;
+            this.length = length;
+            this.order = order;
+        }
+    }
+
+    /**
+     * The scores parsed from one span, sorted best first
+     */
+    private static class Chunk {
+
+        final int order;
+
+        /**
+         * Each score, packed as the score's complement in the high half and its line number in the low half, so
+         * sorting the keys puts the best scores first and keeps equal scores in line order
+         */
+        long[] keys;
+
+        /**
+         * The name id of each line number
+         */
+        int[] nameIds;
+
+        int size;
+        int rejected;
+
+        /**
+         * Each name in the chunk, indexed by its id
+         */
+        final List<String> names = new ArrayList<>();
+
+        /**
+         * Name ids + 1 in an open addressing table, 0 for an empty slot
+         */
+        private int[] slots = new int[1024];
+
+        /**
+         * Where each name is in the mapped span, and its hash
+         */
+        private int[] nameStart = new int[64];
+        private int[] nameLength = new int[64];
+        private int[] nameHash = new int[64];
+
+        private MappedByteBuffer buffer;
+
+        private Chunk(MappedByteBuffer buffer, int order, int expected) {
+            this.buffer = buffer;
+            this.order = order;
+            this.keys = new long[expected];
+            this.nameIds = new int[expected];
+        }
+
+        /**
+         * Parse a span into a sorted chunk
+         * @param span the span
+         * @return the chunk
+         * @throws IOException if the span could not be mapped
+         */
+        static Chunk parse(Span span) throws IOException {
+            MappedByteBuffer buffer = span.channel.map(FileChannel.MapMode.READ_ONLY, span.start, span.length);
+            //Score lines are rarely shorter than this, so the arrays seldom need to grow
+            var chunk = new Chunk(buffer, span.order, span.length / 16 + 16);
+
+            int end = span.length;
+            int lineStart = 0;
+            while(lineStart < end) {
+                int colon = -1;
+                int i = lineStart;
+                while(i < end) {
+                    byte b = buffer.get(i);
+                    if(b == '\n') {
+                        break;
+                    }
+                    if(b == ':') {
+                        colon = i;
+                    }
+                    i++;
+                }
+                chunk.addLine(lineStart, colon, i);
+                lineStart = i + 1;
+            }
+
+            //The mapping is no longer needed once every name has been decoded
+            chunk.buffer = null;
+            Arrays.sort(chunk.keys, 0, chunk.size);
+            return chunk;
+        }
+
+        /**
+         * Add the score on one line, splitting on the last colon like ScoreEntry.parse
+         * @param start position of the start of the line
+         * @param colon position of the last colon, or -1 if there is none
+         * @param end position of the end of the line
+         */
+        private void addLine(int start, int colon, int end) {
+            if(colon < 0) {
+                if(!isBlank(start, end)) {
+                    rejected++;
+                }
+                return;
+            }
+            long score = parseScore(colon + 1, end);
+            if(score == Long.MIN_VALUE) {
+                rejected++;
+                return;
+            }
+            if(size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nameIds = Arrays.copyOf(nameIds, size * 2);
+            }
+            nameIds[size] = nameId(start, colon - start);
+            keys[size] = ((long) ~(int) score << 32) | size;
+            size++;
+        }
+
+        /**
+         * Parse a score in the same way as Integer.parseInt, ignoring whitespace around it
+         * @param start position of the first byte
+         * @param end position after the last byte
+         * @return the score, or Long.MIN_VALUE if it is not a valid int
+         */
+        private long parseScore(int start, int end) {
+            while(start < end && (buffer.get(start) & 0xff) <= ' ') {
+                start++;
+            }
+            while(end > start && (buffer.get(end - 1) & 0xff) <= ' ') {
+                end--;
+            }
+            boolean negative = false;
+            if(start < end && (buffer.get(start) == '-' || buffer.get(start) == '+')) {
+                negative = buffer.get(start) == '-';
+                start++;
+            }
+            if(start == end) {
+                return Long.MIN_VALUE;
+            }
+            long value = 0;
+            for(int i = start; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if(digit < 0 || digit > 9) {
+                    return Long.MIN_VALUE;
+                }
+                value = value * 10 + digit;
+                if(value > 1L << 31) {
+                    return Long.MIN_VALUE;
+                }
+            }
+            value = negative ? -value : value;
+            return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+        }
+
+        /**
+         * Check whether a line is only whitespace
+         * @param start position of the start of the line
+         * @param end position of the end of the line
+         * @return true if there is nothing on the line
+         */
+        private boolean isBlank(int start, int end) {
+            for(int i = start; i < end; i++) {
+                if((buffer.get(i) & 0xff) > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Get the id of the name at a position in the span, decoding it only if it has not been seen before
+         * @param start position of the name
+         * @param length length of the name in bytes
+         * @return the name id
+         */
+        private int nameId(int start, int length) {
+            int hash = 0;
+            for(int i = start; i < start + length; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = slots.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while(slots[slot] != 0) {
+                int id = slots[slot] - 1;
+                if(nameHash[id] == hash && sameName(id, start, length)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int id = names.size();
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+            if(id == nameStart.length) {
+                nameStart = Arrays.copyOf(nameStart, id * 2);
+                nameLength = Arrays.copyOf(nameLength, id * 2);
+                nameHash = Arrays.copyOf(nameHash, id * 2);
+            }
+            nameStart[id] = start;
+            nameLength[id] = length;
+            nameHash[id] = hash;
+            slots[slot] = id + 1;
+            if(names.size() * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        /**
+         * Check whether the bytes at a position are the same as a name already seen
+         * @param id the name id
+         * @param start position of the bytes
+         * @param length number of bytes
+         * @return true if they are the same name
+         */
+        private boolean sameName(int id, int start, int length) {
+            if(nameLength[id] != length) {
+                return false;
+            }
+            int other = nameStart[id];
+            for(int i = 0; i < length; i++) {
+                if(buffer.get(start + i) != buffer.get(other + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Double the name table
+         */
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for(int id = 0; id < names.size(); id++) {
+                int slot = (nameHash[id] ^ (nameHash[id] >>> 16)) & mask;
+                while(slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+    }
+
+    /**
+     * A sorted run of scores being merged, positioned on its current score
+     */
+    private abstract static class Run {
+        final int order;
+
+        Run(int order) {
+            this.order = order;
+        }
+
+        abstract int score();
+
+        abstract String name();
+
+        /**
+         * Move on to the next score
+         * @return false if the run has no more scores
+         */
+        abstract boolean advance();
+    }
+
+    /**
+     * A run over a parsed chunk
+     */
+    private static class ChunkRun extends Run {
+        private final Chunk chunk;
+        private int position;
+
+        ChunkRun(Chunk chunk) {
+            //Existing scores are order 0, so they come before equal scores from the files
+            super(chunk.order + 1);
+            this.chunk = chunk;
+        }
+
+        @Override
+        int score() {
+            return ~(int) (chunk.keys[position] >> 32);
+        }
+
+        @Override
+        String name() {
+            return chunk.names.get(chunk.nameIds[(int) chunk.keys[position]]);
+        }
+
+        @Override
+        boolean advance() {
+            return ++position < chunk.size;
+        }
+    }
+
+    /**
+     * A run over an existing leaderboard, read a page at a time
+     */
+    private static class LeaderboardRun extends Run {
+        private final Leaderboard leaderboard;
+        private List<ScoreEntry> page;
+        private int from;
+        private int position;
+
+        LeaderboardRun(Leaderboard leaderboard) {
+            super(0);
+            this.leaderboard = leaderboard;
+            this.page = leaderboard.page(0, EXPORT_PAGE);
+        }
+
+        @Override
+        int score() {
+            return page.get(position).getScore();
+        }
+
+        @Override
+        String name() {
+            return page.get(position).getName();
+        }
+
+        @Override
+        boolean advance() {
+            if(++position < page.size()) {
+                return true;
+            }
+            from += page.size();
+            page = leaderboard.page(from, EXPORT_PAGE);
+            position = 0;
+            return !page.isEmpty();
+        }
+    }
+}
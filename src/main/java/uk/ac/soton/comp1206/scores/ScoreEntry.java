@@ -0,0 +1,73 @@
+package uk.ac.soton.comp1206.scores;
+
+/**
+ * A single score on a leaderboard: the name of the player and the score they got.
+ */
+public class ScoreEntry {
+
+    private final String name;
+    private final int score;
+
+    /**
+     * Create a new score entry
+     * @param name the player's name
+     * @param score the score
+     */
+    public ScoreEntry(String name, int score) {
+        this.name = name;
+        this.score = score;
+    }
+
+    /**
+     * Parse an entry from a line of a scores file, in the form name:score
+     * @param line the line to parse
+     * @return the entry
+     * @throws IllegalArgumentException if the line is not a valid score
+     */
+    public static ScoreEntry parse(String line) {
+        //Split on the last colon, so names containing one still parse
+        int colon = line.lastIndexOf(':');
+        if(colon < 0) {
+            throw new IllegalArgumentException("Missing ':' in score line: " + line);
+        }
+        try {
+            return new ScoreEntry(line.substring(0, colon), Integer.parseInt(line.substring(colon + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid score in score line: " + line, e);
+        }
+    }
+
+    /**
+     * Keep a name to one line and trim it, as names are stored and sent one per line
+     * @param name the name
+     * @return the name on one line, trimmed
+     */
+    public static String cleanName(String name) {
+        return name.replace('\n', ' ').replace('\r', ' ').trim();
+    }
+
+    /**
+     * Get the player's name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the score
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Return the entry in the form it is stored in a scores file
+     * @return name:score
+     */
+    @Override
+    public String toString() {
+        return name + ":" + score;
+    }
+}
@@ -0,0 +1,584 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ScoreLog is an append-only binary file of scores, replacing the name:score text file.
+ *
+ * The log file starts with a fixed header holding the number of records and the highest score, followed by one fixed
+ * width record per score: the id of the player's name, the score, and when it was saved. Names are kept once each in
+ * a separate string table file, so a name is not repeated for every score. Reading the log reads each file in one go
+ * rather than parsing text, and the high score can be read from the header alone. The files are never memory mapped,
+ * so nothing keeps the log file open while compaction replaces it.
+ *
+ * Every score appended is saved at a later time than the one before it, so a player scoring the same again is never
+ * mistaken for a copy. Compaction rewrites the log without copies, records with the same name, score and time, and
+ * scores can still be added while it runs. When a log is opened for the first time, any scores in an old text scores
+ * file are imported into it, all saved at the same time. Until an import succeeds a marker file is kept next to the
+ * log, and the import is tried again each time the log is opened.
+ *
+ * A log should only be opened by one process at a time.
+ */
+public class ScoreLog implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ScoreLog.class);
+
+    /**
+     * Identifies a score log file, "TSCL"
+     */
+    private static final int MAGIC = 0x5453434C;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Header: magic, version, record count, max score
+     */
+    static final int HEADER_BYTES = 16;
+
+    /**
+     * Record: name id, score, time saved in milliseconds
+     */
+    static final int RECORD_BYTES = 16;
+
+    /**
+     * Compact once more than this share of the records are copies
+     */
+    private static final double COMPACT_WASTE = 0.25;
+
+    /**
+     * Never bother compacting logs with fewer wasted records than this
+     */
+    private static final int COMPACT_MIN_WASTE = 64;
+
+    private final Path file;
+    private final Path namesFile;
+
+    private FileChannel records;
+    private FileChannel names;
+
+    /**
+     * The id of each name in the string table
+     */
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> nameTable = new ArrayList<>();
+
+    //Read without the lock, so the high score never waits on a write or a compaction
+    private volatile int count;
+    private volatile int maxScore;
+
+    /**
+     * When the last score was saved, in milliseconds
+     */
+    private long lastTime;
+
+    /**
+     * The number of copied records found when the log was last read
+     */
+    private int wasted;
+
+    /**
+     * Open a score log, creating it if it does not exist
+     * @param file the log file. The string table is kept next to it, with .names added to the name.
+     * @throws IOException if the log cannot be opened or is not a score log
+     */
+    public ScoreLog(Path file) throws IOException {
+        this.file = file;
+        this.namesFile = namesFile(file);
+        open();
+    }
+
+    /**
+     * Open a score log, importing the scores from a text scores file if the log is being created
+     * @param file the log file
+     * @param textFile a file of name:score lines to import on first run
+     * @return the open log
+     * @throws IOException if the log cannot be opened or the scores cannot be imported
+     */
+    public static ScoreLog open(Path file, Path textFile) throws IOException {
+        Path importing = file.resolveSibling(file.getFileName() + ".import");
+        if(!Files.exists(file) && Files.exists(textFile)) {
+            //Marks the import as unfinished, and is only removed once it succeeds
+            Files.write(importing, new byte[0]);
+        }
+        var log = new ScoreLog(file);
+        if(Files.exists(importing)) {
+            try {
+                if(Files.exists(textFile)) {
+                    log.importText(textFile);
+                }
+                Files.delete(importing);
+            } catch (IOException e) {
+                logger.error("Unable to import scores from {}, trying again next time", textFile, e);
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Get the number of records in the log
+     * @return record count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the highest score in the log, read from the header
+     * @return the high score, or 0 if the log is empty
+     */
+    public int getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * Add a score to the end of the log
+     * @param entry the score to add
+     * @throws IOException if the score could not be written
+     */
+    public synchronized void append(ScoreEntry entry) throws IOException {
+        append(List.of(entry));
+    }
+
+    /**
+     * Add scores to the end of the log, writing the header once for all of them
+     * @param entries the scores to add, in order
+     * @throws IOException if the scores could not be written
+     */
+    public synchronized void append(List<ScoreEntry> entries) throws IOException {
+        append(entries, Math.max(System.currentTimeMillis(), lastTime + 1), 1);
+    }
+
+    /**
+     * Force every score appended so far out to the disk
+     * @throws IOException if the log could not be synced
+     */
+    public synchronized void sync() throws IOException {
+        names.force(false);
+        records.force(false);
+    }
+
+    /**
+     * Read every score in the log, in the order they were added
+     * @return the scores
+     * @throws IOException if the log could not be read
+     */
+    public synchronized List<ScoreEntry> readAll() throws IOException {
+        var scores = new ArrayList<ScoreEntry>(count);
+        Set<Key> seen = new HashSet<>();
+        wasted = 0;
+        if(count > 0) {
+            ByteBuffer buffer = readRecords(0, count);
+            for(int i = 0; i < count; i++) {
+                int nameId = buffer.getInt();
+                int score = buffer.getInt();
+                long time = buffer.getLong();
+                if(nameId < 0 || nameId >= nameTable.size()) {
+                    logger.warn("Skipping score {} in {} with unknown name id {}", i, file, nameId);
+                    continue;
+                }
+                if(!seen.add(new Key(nameId, score, time))) {
+                    wasted++;
+                }
+                scores.add(new ScoreEntry(nameTable.get(nameId), score));
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Check whether enough of the log was found to be copies when it was last read that compaction is worthwhile
+     * @return true if the log should be compacted
+     */
+    public synchronized boolean needsCompaction() {
+        return wasted >= COMPACT_MIN_WASTE && wasted > count * COMPACT_WASTE;
+    }
+
+    /**
+     * Rewrite the log keeping only the first of each copied record, with the same name, score and time. Scores saved
+     * again at a different time are kept. The new log is written alongside the old one and
+     * moved over it once complete, so a crash part way through leaves the old log in place. The string table is left
+     * as it is, so name ids stay the same in both.
+     *
+     * Compaction renumbers the records, so a log saved to by a ScoreWriter must be compacted with ScoreWriter.compact,
+     * which keeps the writer's journal in step.
+     * @throws IOException if the log could not be compacted
+     */
+    public void compact() throws IOException {
+        int snapshot;
+        ByteBuffer old;
+        synchronized (this) {
+            snapshot = count;
+            old = readRecords(0, snapshot);
+        }
+
+        //Pick out the records to keep without holding the lock, so scores can still be added
+        ByteBuffer kept = ByteBuffer.allocate(snapshot * RECORD_BYTES);
+        Set<Key> seen = new HashSet<>();
+        int keptCount = 0;
+        int keptMax = 0;
+        for(int i = 0; i < snapshot; i++) {
+            int nameId = old.getInt();
+            int score = old.getInt();
+            long time = old.getLong();
+            if(seen.add(new Key(nameId, score, time))) {
+                kept.putInt(nameId).putInt(score).putLong(time);
+                keptMax = keptCount == 0 ? score : Math.max(keptMax, score);
+                keptCount++;
+            }
+        }
+        kept.flip();
+
+        Path compactFile = file.resolveSibling(file.getFileName() + ".compact");
+        synchronized (this) {
+            int before = count;
+            try (FileChannel out = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long position = HEADER_BYTES;
+                writeFully(out, kept, position);
+                position += (long) keptCount * RECORD_BYTES;
+
+                //Copy across anything added while compacting
+                if(count > snapshot) {
+                    ByteBuffer added = readRecords(snapshot, count - snapshot);
+                    for(int i = snapshot; i < count; i++) {
+                        added.getInt();
+                        int score = added.getInt();
+                        added.getLong();
+                        keptMax = keptCount == 0 ? score : Math.max(keptMax, score);
+                        keptCount++;
+                    }
+                    added.rewind();
+                    writeFully(out, added, position);
+                }
+
+                writeFully(out, header(keptCount, keptMax), 0);
+                out.force(true);
+            } catch (IOException e) {
+                Files.deleteIfExists(compactFile);
+                throw e;
+            }
+
+            close();
+            try {
+                replace(compactFile, file);
+            } catch (IOException e) {
+                logger.error("Unable to replace score log {} with its compacted copy, keeping the old log", file, e);
+                Files.deleteIfExists(compactFile);
+                throw e;
+            } finally {
+                //Reopen whichever log is in place, so scores can still be added if the swap failed
+                open();
+            }
+            wasted = 0;
+            logger.info("Compacted score log {} from {} to {} records", file, before, count);
+        }
+    }
+
+    /**
+     * Import every score from a text file of name:score lines. Lines that are not valid scores are skipped. The scores
+     * are only counted once every one of them is written, so an import that fails part way adds nothing.
+     * @param textFile the file to import
+     * @return the number of scores imported
+     * @throws IOException if the file could not be read or the scores could not be written
+     */
+    public synchronized int importText(Path textFile) throws IOException {
+        var entries = new ArrayList<ScoreEntry>();
+        long time = Files.getLastModifiedTime(textFile).toMillis();
+        try (BufferedReader reader = Files.newBufferedReader(textFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if(line.isBlank()) {
+                    continue;
+                }
+                try {
+                    entries.add(ScoreEntry.parse(line));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping invalid score: {}", e.getMessage());
+                }
+            }
+        }
+        append(entries, time, 0);
+        logger.info("Imported {} scores from {} into {}", entries.size(), textFile, file);
+        return entries.size();
+    }
+
+    /**
+     * Close the log files
+     * @throws IOException if the files could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(records != null) {
+            records.close();
+            records = null;
+        }
+        if(names != null) {
+            names.close();
+            names = null;
+        }
+    }
+
+    /**
+     * Add scores to the end of the log, saved from a given time. The header is only updated once every record is
+     * written, so if writing fails or is torn none of them are counted.
+     * @param entries the scores to add
+     * @param time when the first score was saved, in milliseconds
+     * @param step how much later each score is saved than the one before, or 0 to save them all at the same time
+     * @throws IOException if the scores could not be written
+     */
+    private synchronized void append(List<ScoreEntry> entries, long time, long step) throws IOException {
+        if(entries.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(entries.size() * RECORD_BYTES);
+        int newMax = count == 0 ? Integer.MIN_VALUE : maxScore;
+        long saved = time;
+        for(ScoreEntry entry : entries) {
+            buffer.putInt(nameId(entry.getName()));
+            buffer.putInt(entry.getScore());
+            buffer.putLong(saved);
+            newMax = Math.max(newMax, entry.getScore());
+            saved += step;
+        }
+        buffer.flip();
+        writeFully(records, buffer, HEADER_BYTES + (long) count * RECORD_BYTES);
+
+        maxScore = newMax;
+        count += entries.size();
+        lastTime = Math.max(lastTime, saved - step);
+        writeHeader();
+    }
+
+    /**
+     * Get the id of a name in the string table, adding it to the table if it is new
+     * @param name the name
+     * @return the name id
+     * @throws IOException if a new name could not be written
+     */
+    private int nameId(String name) throws IOException {
+        Integer id = nameIds.get(name);
+        if(id != null) {
+            return id;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        entry.putInt(bytes.length);
+        entry.put(bytes);
+        entry.flip();
+        writeFully(names, entry, names.size());
+
+        id = nameTable.size();
+        nameTable.add(name);
+        nameIds.put(name, id);
+        return id;
+    }
+
+    /**
+     * Open the log and string table files, reading the header and the string table
+     * @throws IOException if the files cannot be opened or the log is not valid
+     */
+    private void open() throws IOException {
+        records = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        names = FileChannel.open(namesFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if(records.size() < HEADER_BYTES) {
+            count = 0;
+            maxScore = 0;
+            records.truncate(0);
+            writeHeader();
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(records, header, 0);
+            header.flip();
+            if(header.getInt() != MAGIC) {
+                close();
+                throw new IOException("Not a score log: " + file);
+            }
+            int version = header.getInt();
+            if(version != VERSION) {
+                close();
+                throw new IOException("Unsupported score log version " + version + ": " + file);
+            }
+            count = header.getInt();
+            maxScore = header.getInt();
+
+            //Ignore any records past the end of the file, in case the file was cut short
+            long stored = (records.size() - HEADER_BYTES) / RECORD_BYTES;
+            if(count > stored) {
+                logger.warn("Score log {} header counts {} records but only {} are stored", file, count, stored);
+                count = (int) stored;
+                writeHeader();
+            }
+        }
+
+        readNames();
+        lastTime = 0;
+        if(count > 0) {
+            ByteBuffer last = readRecords(count - 1, 1);
+            lastTime = last.getLong(2 * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Read every name in the string table
+     * @throws IOException if the string table cannot be read
+     */
+    private void readNames() throws IOException {
+        nameTable.clear();
+        nameIds.clear();
+        long size = names.size();
+        if(size == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+        readFully(names, buffer, 0);
+        buffer.flip();
+        while(buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt();
+            if(length < 0 || length > buffer.remaining()) {
+                //A name cut short by a crash, drop it
+                logger.warn("Truncating damaged string table {} at {}", namesFile, buffer.position() - Integer.BYTES);
+                names.truncate(buffer.position() - Integer.BYTES);
+                break;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            String name = new String(bytes, StandardCharsets.UTF_8);
+            nameIds.put(name, nameTable.size());
+            nameTable.add(name);
+        }
+    }
+
+    /**
+     * Read a run of records into memory
+     * @param from index of the first record
+     * @param length number of records
+     * @return the records, ready to read
+     * @throws IOException if the records could not be read
+     */
+    private ByteBuffer readRecords(int from, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length * RECORD_BYTES);
+        readFully(records, buffer, HEADER_BYTES + (long) from * RECORD_BYTES);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Move a file over another, atomically where the file system allows it
+     * @param source the file to move
+     * @param target the file to replace
+     * @throws IOException if the file could not be moved
+     */
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Write the current record count and high score into the header
+     * @throws IOException if the header could not be written
+     */
+    private void writeHeader() throws IOException {
+        writeFully(records, header(count, maxScore), 0);
+    }
+
+    /**
+     * Build a header
+     * @param count number of records
+     * @param maxScore highest score
+     * @return the header, ready to write
+     */
+    private static ByteBuffer header(int count, int maxScore) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(count);
+        header.putInt(maxScore);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Get the string table file that goes with a log file
+     * @param file the log file
+     * @return the string table file
+     */
+    private static Path namesFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".names");
+    }
+
+    /**
+     * A record's name, score and time, for finding copies
+     */
+    private static class Key {
+        final int nameId;
+        final int score;
+        final long time;
+
+        Key(int nameId, int score, long time) {
+            this.nameId = nameId;
+            this.score = score;
+            this.time = time;
+        }
+
+        @Override public boolean equals(Object obj) {
+            return obj instanceof Key other && nameId == other.nameId && score == other.score && time == other.time;
+        }
+
+        @Override public int hashCode() {
+            return 31 * (31 * nameId + score) + Long.hashCode(time);
+        }
+    }
+
+    /**
+     * Write the whole of a buffer at a position in a file
+     * @param channel the file
+     * @param buffer the bytes to write
+     * @param position where to write them
+     * @throws IOException if the bytes could not be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Fill a buffer from a position in a file
+     * @param channel the file
+     * @param buffer the buffer to fill
+     * @param position where to read from
+     * @throws IOException if the file ends before the buffer is full
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+}
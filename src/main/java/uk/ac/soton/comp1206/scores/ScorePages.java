@@ -0,0 +1,47 @@
+package uk.ac.soton.comp1206.scores;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A ScorePages is a list of scores, best first, that can be read a page at a time, so a view only needs to fetch the
+ * scores it is showing.
+ */
+public interface ScorePages {
+
+    /**
+     * Get the number of scores
+     * @return number of scores
+     */
+    int size();
+
+    /**
+     * Get a page of scores, best first
+     * @param from position of the first score, where 0 is the best
+     * @param count the most scores to return
+     * @return up to count scores
+     */
+    List<ScoreEntry> page(int from, int count);
+
+    /**
+     * Serve pages from a list of scores already held in memory. The list is copied and sorted best first.
+     * @param scores the scores
+     * @return pages of those scores
+     */
+    static ScorePages of(List<ScoreEntry> scores) {
+        var sorted = new ArrayList<>(scores);
+        sorted.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+        return new ScorePages() {
+            @Override
+            public int size() {
+                return sorted.size();
+            }
+
+            @Override
+            public List<ScoreEntry> page(int from, int count) {
+                from = Math.min(Math.max(from, 0), sorted.size());
+                return new ArrayList<>(sorted.subList(from, (int) Math.min((long) from + count, sorted.size())));
+            }
+        };
+    }
+}
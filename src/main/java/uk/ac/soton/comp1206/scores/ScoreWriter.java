@@ -0,0 +1,395 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * The ScoreWriter saves scores to a ScoreLog on a background thread, so saving a score never blocks the caller on the
+ * disk.
+ *
+ * Scores waiting to be saved are written in batches. Each batch is first appended to a write-ahead journal and synced,
+ * then appended to the log and the log synced, and only then is the journal cleared and the batch reported as saved.
+ * If the game stops part way through, the journal still holds the batch, and it is replayed into the log the next time
+ * a writer is created. A batch that fails to save is likewise kept in the journal and replayed before the next batch, so
+ * its scores still reach the log, and the journal is only cleared once nothing in it is waiting to be replayed. Each batch records where in the log it starts, so scores that did reach the log are not added
+ * twice. Batches in the journal that were only partly written are ignored, as are any lines that cannot be read.
+ *
+ * Compaction renumbers the log, which would make those positions wrong, so a log with a writer must only be compacted
+ * through the writer. It runs on the writer thread between batches, once anything left in the journal has been
+ * replayed and the journal cleared, so no batch in the journal ever refers to the log from before a compaction.
+ *
+ * Reading every score through the writer also runs on the writer thread, in queue order, so the scores read are
+ * exactly those queued before the read.
+ */
+public class ScoreWriter implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ScoreWriter.class);
+
+    /**
+     * The most scores written in one batch
+     */
+    private static final int MAX_BATCH = 256;
+
+    private final ScoreLog log;
+    private final Path journalFile;
+    private final FileChannel journal;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Tells the writer thread to stop once everything before it is saved
+     */
+    private static final Pending STOP = new Pending(null, null);
+
+    /**
+     * A score waiting to be saved, a marker used to wait for every score before it, or a task to run on the log
+     */
+    private static class Pending {
+        final ScoreEntry entry;
+        final Task task;
+        final CompletableFuture<Object> saved = new CompletableFuture<>();
+
+        Pending(ScoreEntry entry, Task task) {
+            this.entry = entry;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Work on the log run on the writer thread, after every score queued before it is saved
+     */
+    private interface Task {
+
+        /**
+         * Run the task
+         * @return its result
+         * @throws IOException if the log could not be used
+         */
+        Object run() throws IOException;
+    }
+
+    /**
+     * Create a new writer for a log, first replaying any scores left in the journal by an earlier run
+     * @param log the log to save scores to
+     * @param journalFile the write-ahead journal
+     * @throws IOException if the journal cannot be opened or replayed
+     */
+    public ScoreWriter(ScoreLog log, Path journalFile) throws IOException {
+        this.log = log;
+        this.journalFile = journalFile;
+        recover();
+        this.journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        journal.truncate(0);
+        journal.force(true);
+
+        thread = new Thread(this::run, "score-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a score to be saved
+     * @param entry the score
+     * @return a future completed once the score is safely on disk, or completed exceptionally if it could not be saved
+     */
+    public CompletableFuture<ScoreEntry> write(ScoreEntry entry) {
+        var pending = new Pending(entry, null);
+        if(!running) {
+            pending.saved.completeExceptionally(new IOException("Score writer is closed"));
+        } else {
+            queue.add(pending);
+        }
+        return pending.saved.thenApply(saved -> entry);
+    }
+
+    /**
+     * Wait for every score queued so far to be saved
+     * @return a future completed once every score queued before it has been written or failed
+     */
+    public CompletableFuture<Void> flush() {
+        var marker = new Pending(null, null);
+        if(!running) {
+            return CompletableFuture.completedFuture(null);
+        }
+        queue.add(marker);
+        return marker.saved.handle((entry, e) -> null);
+    }
+
+    /**
+     * Compact the log on the writer thread, once every score queued so far is saved. Scores queued while it runs are
+     * saved after it.
+     * @return a future completed once the log is compacted, or completed exceptionally if it could not be
+     */
+    public CompletableFuture<Void> compact() {
+        return queue(this::compactLog).thenApply(result -> null);
+    }
+
+    /**
+     * Read every score in the log on the writer thread, once every score queued so far is saved. Scores queued after
+     * this are not read.
+     * @return a future completed with every score in the log, or completed exceptionally if they could not be read
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<ScoreEntry>> readAll() {
+        return queue(log::readAll).thenApply(result -> (List<ScoreEntry>) result);
+    }
+
+    /**
+     * Queue a task to run on the writer thread
+     * @param task the task
+     * @return a future completed with the task's result, or completed exceptionally if it failed
+     */
+    private CompletableFuture<Object> queue(Task task) {
+        var marker = new Pending(null, task);
+        if(!running) {
+            return CompletableFuture.failedFuture(new IOException("Score writer is closed"));
+        }
+        queue.add(marker);
+        return marker.saved;
+    }
+
+    /**
+     * Save every queued score and stop the writer thread
+     * @throws IOException if the journal could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if(!running) {
+            return;
+        }
+        running = false;
+        queue.add(STOP);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //Anything queued while closing is not saved
+        for(Pending pending : queue) {
+            pending.saved.completeExceptionally(new IOException("Score writer is closed"));
+        }
+        journal.close();
+    }
+
+    /**
+     * Take batches of scores from the queue and save them until told to stop
+     */
+    private void run() {
+        var batch = new ArrayList<Pending>();
+        while(true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                logger.warn("Score writer interrupted, queued scores will not be saved");
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            boolean stop = batch.remove(STOP);
+            //Tasks run between the scores queued before and after them
+            int start = 0;
+            for(int i = 0; i < batch.size(); i++) {
+                Pending pending = batch.get(i);
+                if(pending.task != null) {
+                    save(batch.subList(start, i));
+                    run(pending);
+                    start = i + 1;
+                }
+            }
+            save(batch.subList(start, batch.size()));
+            batch.clear();
+            if(stop) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Save a batch of scores, journal first, and complete their futures
+     * @param batch the scores to save, which may include flush markers
+     */
+    private void save(List<Pending> batch) {
+        var entries = new ArrayList<ScoreEntry>(batch.size());
+        for(Pending pending : batch) {
+            if(pending.entry != null) {
+                entries.add(pending.entry);
+            }
+        }
+
+        try {
+            if(!entries.isEmpty()) {
+                replayJournal();
+                int position = log.getCount();
+                appendJournal(position, entries);
+                log.append(entries);
+                log.sync();
+
+                //The batch is in the log, so it no longer needs replaying
+                journal.truncate(0);
+                journal.force(true);
+                logger.debug("Saved batch of {} scores", entries.size());
+            }
+            for(Pending pending : batch) {
+                pending.saved.complete(pending.entry);
+            }
+        } catch (IOException e) {
+            //The journal is kept, so anything that reached it is replayed before the next batch
+            logger.error("Unable to save {} scores", entries.size(), e);
+            for(Pending pending : batch) {
+                pending.saved.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Run a task and complete its future
+     * @param pending the task
+     */
+    private void run(Pending pending) {
+        try {
+            pending.saved.complete(pending.task.run());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to run task on score log", e);
+            pending.saved.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Compact the log. Anything left in the journal by a batch that failed to save is replayed first, while its
+     * positions still match the log, and the journal cleared.
+     * @return nothing
+     * @throws IOException if the journal could not be replayed or the log could not be compacted
+     */
+    private Object compactLog() throws IOException {
+        replayJournal();
+        log.compact();
+        return null;
+    }
+
+    /**
+     * Replay anything left in the journal by a batch that failed to save, then clear the journal
+     * @throws IOException if the journal could not be replayed or cleared, in which case it is kept
+     */
+    private void replayJournal() throws IOException {
+        if(journal.size() > 0) {
+            recover();
+            journal.truncate(0);
+            journal.force(true);
+        }
+    }
+
+    /**
+     * Append a batch to the journal and sync it
+     * @param position the number of scores in the log before the batch
+     * @param entries the scores in the batch
+     * @throws IOException if the journal could not be written
+     */
+    private void appendJournal(int position, List<ScoreEntry> entries) throws IOException {
+        var text = new StringBuilder();
+        text.append("BATCH ").append(position).append(' ').append(entries.size()).append('\n');
+        var crc = new CRC32();
+        for(ScoreEntry entry : entries) {
+            //Names are kept to one line, so a name can never look like the end of a batch
+            String line = entry.getName().replace('\n', ' ').replace('\r', ' ') + ":" + entry.getScore();
+            crc.update(line.getBytes(StandardCharsets.UTF_8));
+            text.append(line).append('\n');
+        }
+        text.append("END ").append(crc.getValue()).append('\n');
+
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(text.toString());
+        long end = journal.size();
+        while(buffer.hasRemaining()) {
+            end += journal.write(buffer, end);
+        }
+        journal.force(true);
+    }
+
+    /**
+     * Replay every complete batch left in the journal into the log
+     * @throws IOException if the journal could not be read or the scores could not be written
+     */
+    private void recover() throws IOException {
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if(!line.startsWith("BATCH ")) {
+                    logger.warn("Skipping unreadable journal line: {}", line);
+                    continue;
+                }
+                String[] header = line.split(" ");
+                int position;
+                int count;
+                try {
+                    position = Integer.parseInt(header[1]);
+                    count = Integer.parseInt(header[2]);
+                } catch (RuntimeException e) {
+                    logger.warn("Skipping unreadable journal batch: {}", line);
+                    continue;
+                }
+
+                List<ScoreEntry> entries = readBatch(reader, count);
+                if(entries == null) {
+                    logger.warn("Skipping incomplete journal batch at log position {}", position);
+                    continue;
+                }
+                //Only add the scores from the batch that did not reach the log
+                int from = Math.min(entries.size(), Math.max(0, log.getCount() - position));
+                log.append(entries.subList(from, entries.size()));
+                replayed += entries.size() - from;
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if(replayed > 0) {
+            log.sync();
+            logger.info("Recovered {} scores from journal {}", replayed, journalFile);
+        }
+    }
+
+    /**
+     * Read the scores of one batch from the journal
+     * @param reader the journal, just after the batch header
+     * @param count the number of scores in the batch
+     * @return the scores, or null if the batch was not completely written or is damaged
+     * @throws IOException if the journal could not be read
+     */
+    private static List<ScoreEntry> readBatch(BufferedReader reader, int count) throws IOException {
+        var entries = new ArrayList<ScoreEntry>(count);
+        var crc = new CRC32();
+        for(int i = 0; i < count; i++) {
+            String line = reader.readLine();
+            if(line == null) {
+                return null;
+            }
+            crc.update(line.getBytes(StandardCharsets.UTF_8));
+            try {
+                entries.add(ScoreEntry.parse(line));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        String end = reader.readLine();
+        if(end == null || !end.equals("END " + crc.getValue())) {
+            return null;
+        }
+        return entries;
+    }
+}
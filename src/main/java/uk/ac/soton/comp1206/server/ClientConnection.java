@@ -0,0 +1,394 @@
+package uk.ac.soton.comp1206.server;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * A ClientConnection is one client of the TetrECS server. It reads the HTTP upgrade request, then decodes WebSocket
+ * frames into text messages, and queues frames to write back without ever blocking the server's selector thread.
+ *
+ * It also holds the client's place in the lobby: their nickname, channel, and game state.
+ *
+ * A connection is only used on the server's selector thread.
+ */
+class ClientConnection {
+
+    /**
+     * The longest message accepted, including one split into fragments
+     */
+    static final int MAX_MESSAGE = 64 * 1024;
+
+    /**
+     * The longest upgrade request accepted
+     */
+    private static final int MAX_HANDSHAKE = 8 * 1024;
+
+    /**
+     * The most bytes waiting to be written before the client is treated as too slow and dropped
+     */
+    private static final long MAX_PENDING = 1 << 20;
+
+    private final int id;
+    private final SocketChannel socket;
+    private final SelectionKey key;
+
+    private ByteBuffer input = ByteBuffer.allocate(1024);
+    private boolean upgraded;
+
+    /**
+     * Fragments of a message split across several frames
+     */
+    private byte[] fragments;
+    private int fragmentLength;
+
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+    private long pending;
+
+    /**
+     * Set once a close frame has been sent or the client misbehaves. The connection ends once the output is written.
+     */
+    private boolean closing;
+    private boolean failed;
+
+    private String nickname;
+    private GameChannel channel;
+    private int score;
+    private int lives;
+    private boolean dead;
+
+    /**
+     * Create a new connection for an accepted socket
+     * @param id connection number
+     * @param socket the socket, non-blocking
+     * @param key the socket's key with the server's selector
+     */
+    ClientConnection(int id, SocketChannel socket, SelectionKey key) {
+        this.id = id;
+        this.socket = socket;
+        this.key = key;
+        this.nickname = "Guest" + id;
+    }
+
+    /**
+     * Read whatever has arrived and pass each complete text message to a handler
+     * @param handler receives each message
+     * @return false if the client has closed the socket
+     * @throws IOException if the socket could not be read
+     */
+    boolean read(Consumer<String> handler) throws IOException {
+        if(socket.read(input) < 0) {
+            return false;
+        }
+        input.flip();
+        if(!upgraded) {
+            handshake();
+        }
+        while(upgraded && !closing && frame(handler)) {
+            //Keep going while whole frames are waiting
+        }
+        input.compact();
+
+        if(!input.hasRemaining() && !closing) {
+            //Make room for the rest of a long frame, up to the longest message allowed
+            if(input.capacity() >= MAX_MESSAGE + 14) {
+                close(WebSocketFrames.CLOSE_TOO_BIG);
+            } else {
+                input = ByteBuffer.allocate(Math.min(input.capacity() * 2, MAX_MESSAGE + 14)).put(input.flip());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queue a frame to send, and write as much as the socket will take now
+     * @param frame the frame, which is not changed
+     */
+    void send(ByteBuffer frame) {
+        if(closing || failed) {
+            return;
+        }
+        ByteBuffer copy = frame.duplicate();
+        output.add(copy);
+        pending += copy.remaining();
+        if(pending > MAX_PENDING) {
+            //The client is not reading, so stop sending to it rather than holding ever more in memory
+            output.clear();
+            failed = true;
+            return;
+        }
+        flush();
+    }
+
+    /**
+     * Write as much queued output as the socket will take, and ask to be told when it can take more
+     */
+    void flush() {
+        try {
+            while(!output.isEmpty()) {
+                ByteBuffer next = output.peek();
+                pending -= socket.write(next);
+                if(next.hasRemaining()) {
+                    break;
+                }
+                output.poll();
+            }
+            if(key.isValid()) {
+                key.interestOps(output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            output.clear();
+            failed = true;
+        }
+    }
+
+    /**
+     * Check whether the connection should now be closed: it failed, or it is closing and everything has been written
+     * @return true if finished
+     */
+    boolean isFinished() {
+        return failed || (closing && output.isEmpty());
+    }
+
+    /**
+     * Start closing with a close frame
+     * @param code the close code
+     */
+    void close(int code) {
+        if(closing) {
+            return;
+        }
+        if(upgraded) {
+            send(WebSocketFrames.close(code));
+        }
+        closing = true;
+    }
+
+    /**
+     * Close the socket straight away
+     */
+    void closeSocket() {
+        key.cancel();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //Already gone
+        }
+    }
+
+    /**
+     * Read the HTTP upgrade request, if it has all arrived, and answer it
+     */
+    private void handshake() {
+        int end = indexOf(input, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        if(end < 0) {
+            if(input.remaining() >= MAX_HANDSHAKE) {
+                reject();
+            }
+            return;
+        }
+        byte[] request = new byte[end + 4 - input.position()];
+        input.get(request);
+
+        String key = null;
+        for(String line : new String(request, StandardCharsets.ISO_8859_1).split("\r\n")) {
+            int colon = line.indexOf(':');
+            if(colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.ROOT).equals("sec-websocket-key")) {
+                key = line.substring(colon + 1).trim();
+            }
+        }
+        if(key == null) {
+            reject();
+            return;
+        }
+
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + WebSocketFrames.acceptKey(key) + "\r\n\r\n";
+        send(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        upgraded = true;
+    }
+
+    /**
+     * Refuse a request that is not a WebSocket upgrade
+     */
+    private void reject() {
+        String response = "HTTP/1.1 400 Bad Request\r\nConnection: close\r\n\r\n";
+        send(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        closing = true;
+    }
+
+    /**
+     * Decode one frame, if it has all arrived
+     * @param handler receives the message if the frame completes one
+     * @return true if a frame was decoded
+     */
+    private boolean frame(Consumer<String> handler) {
+        WebSocketFrames.Frame frame;
+        try {
+            frame = WebSocketFrames.decode(input, MAX_MESSAGE);
+        } catch (ProtocolException e) {
+            close(WebSocketFrames.CLOSE_TOO_BIG);
+            return false;
+        }
+        if(frame == null) {
+            return false;
+        }
+        boolean fin = frame.isFinal();
+        byte[] payload = frame.getPayload();
+
+        switch (frame.getOpcode()) {
+            case WebSocketFrames.TEXT -> {
+                if(fin) {
+                    handler.accept(new String(payload, StandardCharsets.UTF_8));
+                } else {
+                    fragments = payload;
+                    fragmentLength = payload.length;
+                }
+            }
+            case WebSocketFrames.CONTINUATION -> {
+                if(fragments == null) {
+                    close(WebSocketFrames.CLOSE_PROTOCOL_ERROR);
+                    return false;
+                }
+                if(fragmentLength + payload.length > MAX_MESSAGE) {
+                    close(WebSocketFrames.CLOSE_TOO_BIG);
+                    return false;
+                }
+                if(fragmentLength + payload.length > fragments.length) {
+                    int capacity = Math.max(fragments.length * 2, fragmentLength + payload.length);
+                    fragments = Arrays.copyOf(fragments, capacity);
+                }
+                System.arraycopy(payload, 0, fragments, fragmentLength, payload.length);
+                fragmentLength += payload.length;
+                if(fin) {
+                    handler.accept(new String(fragments, 0, fragmentLength, StandardCharsets.UTF_8));
+                    fragments = null;
+                }
+            }
+            case WebSocketFrames.PING -> send(WebSocketFrames.frame(WebSocketFrames.PONG, payload));
+            case WebSocketFrames.PONG -> {
+                //Nothing to do
+            }
+            case WebSocketFrames.CLOSE -> close(WebSocketFrames.CLOSE_NORMAL);
+            case WebSocketFrames.BINARY -> close(WebSocketFrames.CLOSE_UNSUPPORTED);
+            default -> close(WebSocketFrames.CLOSE_PROTOCOL_ERROR);
+        }
+        return true;
+    }
+
+    /**
+     * Find a sequence of bytes in the readable part of a buffer
+     * @param buffer the buffer
+     * @param target the bytes to find
+     * @return the absolute position of the first match, or -1
+     */
+    private static int indexOf(ByteBuffer buffer, byte[] target) {
+        for(int i = buffer.position(); i <= buffer.limit() - target.length; i++) {
+            int j = 0;
+            while(j < target.length && buffer.get(i + j) == target[j]) {
+                j++;
+            }
+            if(j == target.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the connection number
+     * @return id
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Get the client's nickname
+     * @return nickname
+     */
+    String getNickname() {
+        return nickname;
+    }
+
+    /**
+     * Set the client's nickname
+     * @param nickname nickname
+     */
+    void setNickname(String nickname) {
+        this.nickname = nickname;
+    }
+
+    /**
+     * Get the channel the client is in
+     * @return the channel, or null if not in one
+     */
+    GameChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Set the channel the client is in
+     * @param channel the channel, or null
+     */
+    void setChannel(GameChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Get the client's score in the current game
+     * @return score
+     */
+    int getScore() {
+        return score;
+    }
+
+    /**
+     * Set the client's score in the current game
+     * @param score score
+     */
+    void setScore(int score) {
+        this.score = score;
+    }
+
+    /**
+     * Get the client's lives in the current game
+     * @return lives
+     */
+    int getLives() {
+        return lives;
+    }
+
+    /**
+     * Set the client's lives in the current game
+     * @param lives lives
+     */
+    void setLives(int lives) {
+        this.lives = lives;
+    }
+
+    /**
+     * Check whether the client is out of the current game
+     * @return true if dead
+     */
+    boolean isDead() {
+        return dead;
+    }
+
+    /**
+     * Set whether the client is out of the current game
+     * @param dead true if dead
+     */
+    void setDead(boolean dead) {
+        this.dead = dead;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.ac.soton.comp1206.server;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A GameChannel is a lobby channel that players join to chat and start a game together. The player who created it is
+ * the host, and when the host leaves the next player to have joined takes over.
+ */
+class GameChannel {
+
+    private final String name;
+    private final Set<ClientConnection> members = new LinkedHashSet<>();
+    private ClientConnection host;
+    private boolean started;
+
+    /**
+     * Create a new channel
+     * @param name channel name
+     */
+    GameChannel(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the channel's name
+     * @return name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the players in the channel, in the order they joined
+     * @return the members
+     */
+    Set<ClientConnection> getMembers() {
+        return members;
+    }
+
+    /**
+     * Add a player, making them host if they are the first
+     * @param client the player
+     */
+    void add(ClientConnection client) {
+        members.add(client);
+        if(host == null) {
+            host = client;
+        }
+    }
+
+    /**
+     * Remove a player, passing the host on if they were host
+     * @param client the player
+     */
+    void remove(ClientConnection client) {
+        members.remove(client);
+        if(host == client) {
+            host = members.isEmpty() ? null : members.iterator().next();
+        }
+    }
+
+    /**
+     * Get the host
+     * @return the host, or null if the channel is empty
+     */
+    ClientConnection getHost() {
+        return host;
+    }
+
+    /**
+     * Check whether the game in this channel has started
+     * @return true if started
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Mark the game in this channel as started
+     */
+    void start() {
+        started = true;
+    }
+}
@@ -0,0 +1,717 @@
+package uk.ac.soton.comp1206.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.scores.HighScoreService;
+import uk.ac.soton.comp1206.scores.ScoreEntry;
+import uk.ac.soton.comp1206.scores.ScoreLog;
+import uk.ac.soton.comp1206.scores.ScoreWriter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TetrECSServer is a local server that speaks the same text protocol over WebSockets as the old university server,
+ * so online scores and the lobby work without it.
+ *
+ * It runs on a single thread with a NIO selector, so thousands of clients cost only their buffers. Nothing on that
+ * thread waits on the disk: high scores are held in a HighScoreService, read once when the server starts and saved by
+ * its ScoreWriter in the background.
+ *
+ * Supported messages: HISCORES, HISCORE name:score, LIST, CREATE channel, JOIN channel, PART, NICK name, USERS,
+ * MSG message, START, SCORE n, LIVES n, DIE, SCORES, BOARD values, PIECE and QUIT.
+ *
+ * The game runs a server inside itself unless given another with --server, or one can be run on its own with:
+ * Launcher server [--port N] [--scores FILE] [--bind ADDRESS]
+ */
+public class TetrECSServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(TetrECSServer.class);
+
+    /**
+     * The port the game's own server listens on, the same one the university server used
+     */
+    public static final int DEFAULT_PORT = 9700;
+
+    /**
+     * The scores file used by the server, kept apart from the game's local scores
+     */
+    public static final Path SCORES_FILE = Path.of("server-scores.dat");
+
+    /**
+     * The number of scores sent in reply to HISCORES
+     */
+    private static final int HISCORES_SHOWN = 10;
+
+    /**
+     * The number of different pieces handed out by PIECE
+     */
+    private static final int PIECES = 15;
+
+    private final InetSocketAddress address;
+    private final HighScoreService scores;
+
+    /**
+     * The score log and writer behind the scores, if the server opened them and so must close them
+     */
+    private ScoreLog log;
+    private ScoreWriter writer;
+
+    private Selector selector;
+    private ServerSocketChannel listener;
+    private Thread thread;
+    private volatile boolean running;
+    private int port;
+
+    private final Set<ClientConnection> clients = new HashSet<>();
+    private final Map<String, GameChannel> channels = new LinkedHashMap<>();
+
+    /**
+     * Clients that failed while being sent to, disconnected once the current events are handled
+     */
+    private final List<ClientConnection> failed = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private int nextId = 1;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private volatile int connected;
+
+    /**
+     * Create a new server, which does not listen until started
+     * @param address the address to listen on. Port 0 picks any free port.
+     * @param scores the high scores to serve
+     */
+    public TetrECSServer(InetSocketAddress address, HighScoreService scores) {
+        this.address = address;
+        this.scores = scores;
+    }
+
+    /**
+     * Create a new server that keeps its high scores in a score log, which it closes when it stops
+     * @param address the address to listen on. Port 0 picks any free port.
+     * @param scoresFile the score log
+     * @return the server, not yet started
+     * @throws IOException if the score log could not be opened
+     */
+    public static TetrECSServer open(InetSocketAddress address, Path scoresFile) throws IOException {
+        var log = new ScoreLog(scoresFile);
+        var writer = new ScoreWriter(log, scoresFile.resolveSibling(scoresFile.getFileName() + ".journal"));
+        var server = new TetrECSServer(address, new HighScoreService(log, writer));
+        server.log = log;
+        server.writer = writer;
+        return server;
+    }
+
+    /**
+     * Run the server on its own from the command line, until the process is stopped
+     * @param args commandline arguments
+     * @throws IOException if the server could not be started
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        Path scoresFile = SCORES_FILE;
+        String bind = "0.0.0.0";
+        for(int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(value);
+                case "--scores" -> scoresFile = Path.of(value);
+                case "--bind" -> bind = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        var server = open(new InetSocketAddress(bind, port), scoresFile);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "tetrecs-server-shutdown"));
+        server.start();
+        System.out.println("TetrECS server listening on " + bind + ":" + server.getPort());
+        server.awaitTermination();
+    }
+
+    /**
+     * Read the high scores, start listening and start the server thread
+     * @throws IOException if the server could not listen on its address
+     */
+    public synchronized void start() throws IOException {
+        if(thread != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        //Read the scores now, so the selector thread never has to
+        scores.topK(0);
+
+        selector = Selector.open();
+        listener = ServerSocketChannel.open();
+        try {
+            listener.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            listener.bind(address, 4096);
+            listener.configureBlocking(false);
+            listener.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            listener.close();
+            selector.close();
+            throw e;
+        }
+
+        port = ((InetSocketAddress) listener.getLocalAddress()).getPort();
+        running = true;
+        thread = new Thread(this::run, "tetrecs-server");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Listening on {}:{}", address.getHostString(), port);
+    }
+
+    /**
+     * Get the port the server is listening on
+     * @return the port, or 0 if it has not been started
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Wait for the server thread to stop
+     */
+    public void awaitTermination() {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop the server, disconnecting every client, and close the score log if the server opened it
+     */
+    @Override
+    public void close() {
+        Thread serverThread;
+        synchronized (this) {
+            if(!running) {
+                return;
+            }
+            running = false;
+            serverThread = thread;
+        }
+        selector.wakeup();
+        try {
+            serverThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if(writer != null) {
+                writer.close();
+            }
+            if(log != null) {
+                log.close();
+            }
+        } catch (IOException e) {
+            logger.error("Unable to close server scores", e);
+        }
+        logger.info("Server stopped after {} connections, {} messages in, {} out",
+                getAccepted(), getReceived(), getSent());
+    }
+
+    /**
+     * Get the number of clients connected now
+     * @return connected clients
+     */
+    public int getConnected() {
+        return connected;
+    }
+
+    /**
+     * Get the number of clients that have connected since the server started
+     * @return connections accepted
+     */
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * Get the number of messages received from clients
+     * @return messages received
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * Get the number of messages sent to clients
+     * @return messages sent
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Handle socket events until stopped
+     */
+    private void run() {
+        try {
+            while(running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()) {
+                        continue;
+                    }
+                    if(key.isAcceptable()) {
+                        accept();
+                    } else {
+                        service((ClientConnection) key.attachment(), key);
+                    }
+                }
+                //Disconnecting can tell others in a channel, who may fail in turn, so the list can grow here
+                for(int i = 0; i < failed.size(); i++) {
+                    disconnect(failed.get(i));
+                }
+                failed.clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.error("Server stopped unexpectedly", e);
+        } finally {
+            for(ClientConnection client : new ArrayList<>(clients)) {
+                client.close(WebSocketFrames.CLOSE_NORMAL);
+                disconnect(client);
+            }
+            try {
+                listener.close();
+                selector.close();
+            } catch (IOException e) {
+                logger.error("Unable to close server socket", e);
+            }
+            running = false;
+        }
+    }
+
+    /**
+     * Accept every client waiting to connect
+     * @throws IOException if the listening socket fails
+     */
+    private void accept() throws IOException {
+        SocketChannel socket;
+        while((socket = listener.accept()) != null) {
+            socket.configureBlocking(false);
+            socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = socket.register(selector, SelectionKey.OP_READ);
+            var client = new ClientConnection(nextId++, socket, key);
+            key.attach(client);
+            clients.add(client);
+            accepted.increment();
+            connected = clients.size();
+            logger.debug("Client {} connected from {}", client.getId(), socket.getRemoteAddress());
+        }
+    }
+
+    /**
+     * Read from and write to a client the selector says is ready
+     * @param client the client
+     * @param key the client's key
+     */
+    private void service(ClientConnection client, SelectionKey key) {
+        try {
+            if(key.isWritable()) {
+                client.flush();
+            }
+            if(key.isValid() && key.isReadable() && !client.read(message -> handle(client, message))) {
+                disconnect(client);
+                return;
+            }
+        } catch (IOException e) {
+            logger.debug("Client {} failed: {}", client.getId(), e.getMessage());
+            disconnect(client);
+            return;
+        }
+        if(client.isFinished()) {
+            disconnect(client);
+        }
+    }
+
+    /**
+     * Remove a client from the server and its channel, and close its socket
+     * @param client the client
+     */
+    private void disconnect(ClientConnection client) {
+        if(!clients.remove(client)) {
+            return;
+        }
+        connected = clients.size();
+        leave(client);
+        client.flush();
+        client.closeSocket();
+        logger.debug("Client {} disconnected", client.getId());
+    }
+
+    /**
+     * Act on a message from a client
+     * @param client the client
+     * @param message the message
+     */
+    private void handle(ClientConnection client, String message) {
+        received.increment();
+        int space = message.indexOf(' ');
+        String command = space < 0 ? message : message.substring(0, space);
+        String argument = space < 0 ? "" : message.substring(space + 1).trim();
+
+        switch (command) {
+            case "HISCORES" -> sendHiscores(client);
+            case "HISCORE" -> submitHiscore(client, argument);
+            case "LIST" -> send(client, "CHANNELS " + String.join("\n", channels.keySet()));
+            case "CREATE" -> create(client, argument);
+            case "JOIN" -> join(client, argument);
+            case "PART" -> {
+                leave(client);
+                send(client, "PARTED");
+            }
+            case "NICK" -> nick(client, argument);
+            case "USERS" -> sendUsers(client);
+            case "MSG" -> message(client, argument);
+            case "START" -> startGame(client);
+            case "SCORE" -> setScore(client, argument);
+            case "LIVES" -> setLives(client, argument);
+            case "DIE" -> {
+                client.setDead(true);
+                broadcastScores(client.getChannel());
+            }
+            case "SCORES" -> send(client, scores(client.getChannel()));
+            case "BOARD" -> broadcastOthers(client, "BOARD " + client.getNickname() + ":" + argument);
+            case "PIECE" -> send(client, "PIECE " + random.nextInt(PIECES));
+            case "QUIT" -> client.close(WebSocketFrames.CLOSE_NORMAL);
+            default -> error(client, "Unknown command: " + command);
+        }
+    }
+
+    /**
+     * Send the top high scores
+     * @param client the client asking
+     */
+    private void sendHiscores(ClientConnection client) {
+        var reply = new StringJoiner("\n", "HISCORES ", "");
+        for(ScoreEntry entry : scores.topK(HISCORES_SHOWN)) {
+            reply.add(entry.toString());
+        }
+        send(client, reply.toString());
+    }
+
+    /**
+     * Save a new high score and confirm it
+     * @param client the client submitting
+     * @param argument the score, as name:score
+     */
+    private void submitHiscore(ClientConnection client, String argument) {
+        ScoreEntry entry;
+        try {
+            entry = ScoreEntry.parse(argument);
+        } catch (IllegalArgumentException e) {
+            error(client, "Invalid score: " + argument);
+            return;
+        }
+        String name = ScoreEntry.cleanName(entry.getName());
+        if(name.isEmpty()) {
+            error(client, "Invalid score: " + argument);
+            return;
+        }
+        //Added to the scores now and saved in the background
+        scores.submit(name, entry.getScore());
+        send(client, "NEWSCORE " + name + ":" + entry.getScore());
+    }
+
+    /**
+     * Create a new channel and join it as host
+     * @param client the client creating it
+     * @param name the channel name
+     */
+    private void create(ClientConnection client, String name) {
+        name = clean(name);
+        if(name.isEmpty()) {
+            error(client, "Channel name required");
+            return;
+        }
+        if(channels.containsKey(name)) {
+            error(client, "Channel already exists: " + name);
+            return;
+        }
+        leave(client);
+        var channel = new GameChannel(name);
+        channels.put(name, channel);
+        enter(client, channel);
+        send(client, "HOST");
+    }
+
+    /**
+     * Join an existing channel
+     * @param client the client joining
+     * @param name the channel name
+     */
+    private void join(ClientConnection client, String name) {
+        GameChannel channel = channels.get(clean(name));
+        if(channel == null) {
+            error(client, "No such channel: " + name);
+            return;
+        }
+        if(channel.isStarted()) {
+            error(client, "Game already started in channel: " + name);
+            return;
+        }
+        if(channel == client.getChannel()) {
+            return;
+        }
+        leave(client);
+        enter(client, channel);
+    }
+
+    /**
+     * Put a client in a channel and tell everyone in it
+     * @param client the client
+     * @param channel the channel
+     */
+    private void enter(ClientConnection client, GameChannel channel) {
+        channel.add(client);
+        client.setChannel(channel);
+        client.setScore(0);
+        client.setLives(3);
+        client.setDead(false);
+        send(client, "JOIN " + channel.getName());
+        broadcast(channel, users(channel));
+    }
+
+    /**
+     * Take a client out of their channel, if they are in one, removing the channel once it is empty
+     * @param client the client
+     */
+    private void leave(ClientConnection client) {
+        GameChannel channel = client.getChannel();
+        if(channel == null) {
+            return;
+        }
+        ClientConnection host = channel.getHost();
+        channel.remove(client);
+        client.setChannel(null);
+        if(channel.getMembers().isEmpty()) {
+            channels.remove(channel.getName());
+            return;
+        }
+        broadcast(channel, users(channel));
+        if(host == client) {
+            send(channel.getHost(), "HOST");
+        }
+    }
+
+    /**
+     * Change a client's nickname, or tell them it if none is given
+     * @param client the client
+     * @param nickname the new nickname
+     */
+    private void nick(ClientConnection client, String nickname) {
+        nickname = clean(nickname).replace(':', ' ');
+        if(!nickname.isEmpty()) {
+            client.setNickname(nickname);
+            if(client.getChannel() != null) {
+                broadcast(client.getChannel(), users(client.getChannel()));
+            }
+        }
+        send(client, "NICK " + client.getNickname());
+    }
+
+    /**
+     * Send the players in a client's channel
+     * @param client the client asking
+     */
+    private void sendUsers(ClientConnection client) {
+        if(client.getChannel() == null) {
+            error(client, "Not in a channel");
+            return;
+        }
+        send(client, users(client.getChannel()));
+    }
+
+    /**
+     * Send a chat message to everyone in a client's channel
+     * @param client the client sending
+     * @param text the message
+     */
+    private void message(ClientConnection client, String text) {
+        if(client.getChannel() == null) {
+            error(client, "Not in a channel");
+            return;
+        }
+        broadcast(client.getChannel(), "MSG " + client.getNickname() + ":" + clean(text));
+    }
+
+    /**
+     * Start the game in a client's channel, if they are the host
+     * @param client the client asking
+     */
+    private void startGame(ClientConnection client) {
+        GameChannel channel = client.getChannel();
+        if(channel == null || channel.getHost() != client) {
+            error(client, "Only the host can start the game");
+            return;
+        }
+        channel.start();
+        broadcast(channel, "START");
+    }
+
+    /**
+     * Record a client's score in a game
+     * @param client the client
+     * @param argument the score
+     */
+    private void setScore(ClientConnection client, String argument) {
+        try {
+            client.setScore(Integer.parseInt(argument));
+        } catch (NumberFormatException e) {
+            error(client, "Invalid score: " + argument);
+            return;
+        }
+        broadcastScores(client.getChannel());
+    }
+
+    /**
+     * Record a client's lives in a game
+     * @param client the client
+     * @param argument the number of lives
+     */
+    private void setLives(ClientConnection client, String argument) {
+        try {
+            client.setLives(Integer.parseInt(argument));
+        } catch (NumberFormatException e) {
+            error(client, "Invalid lives: " + argument);
+            return;
+        }
+        broadcastScores(client.getChannel());
+    }
+
+    /**
+     * Send the scores of everyone in a channel to everyone in it
+     * @param channel the channel, or null
+     */
+    private void broadcastScores(GameChannel channel) {
+        if(channel != null) {
+            broadcast(channel, scores(channel));
+        }
+    }
+
+    /**
+     * Build a SCORES message for a channel, with each player's name, score and lives, or DEAD
+     * @param channel the channel, or null
+     * @return the message
+     */
+    private static String scores(GameChannel channel) {
+        var reply = new StringJoiner("\n", "SCORES ", "");
+        if(channel != null) {
+            for(ClientConnection member : channel.getMembers()) {
+                reply.add(member.getNickname() + ":" + member.getScore() + ":"
+                        + (member.isDead() ? "DEAD" : member.getLives()));
+            }
+        }
+        return reply.toString();
+    }
+
+    /**
+     * Build a USERS message for a channel
+     * @param channel the channel
+     * @return the message
+     */
+    private static String users(GameChannel channel) {
+        var reply = new StringJoiner("\n", "USERS ", "");
+        for(ClientConnection member : channel.getMembers()) {
+            reply.add(member.getNickname());
+        }
+        return reply.toString();
+    }
+
+    /**
+     * Send a message to every player in a channel. The frame is built once and shared.
+     * @param channel the channel
+     * @param message the message
+     */
+    private void broadcast(GameChannel channel, String message) {
+        ByteBuffer frame = WebSocketFrames.text(message);
+        for(ClientConnection member : channel.getMembers()) {
+            send(member, frame);
+        }
+    }
+
+    /**
+     * Send a message to every other player in a client's channel
+     * @param client the client sending
+     * @param message the message
+     */
+    private void broadcastOthers(ClientConnection client, String message) {
+        GameChannel channel = client.getChannel();
+        if(channel == null) {
+            return;
+        }
+        ByteBuffer frame = WebSocketFrames.text(message);
+        for(ClientConnection member : channel.getMembers()) {
+            if(member != client) {
+                send(member, frame);
+            }
+        }
+    }
+
+    /**
+     * Send a message to one client
+     * @param client the client
+     * @param message the message
+     */
+    private void send(ClientConnection client, String message) {
+        send(client, WebSocketFrames.text(message));
+    }
+
+    /**
+     * Send a frame to one client, dropping the client later if it can no longer be sent to
+     * @param client the client
+     * @param frame the frame, which may be shared between clients
+     */
+    private void send(ClientConnection client, ByteBuffer frame) {
+        client.send(frame);
+        sent.increment();
+        if(client.isFinished()) {
+            failed.add(client);
+        }
+    }
+
+    /**
+     * Send an error to one client
+     * @param client the client
+     * @param message what went wrong
+     */
+    private void error(ClientConnection client, String message) {
+        send(client, "ERROR " + message);
+    }
+
+    /**
+     * Keep text from a client to one line, as the protocol splits lists on line breaks
+     * @param text the text
+     * @return the text on one line, trimmed
+     */
+    private static String clean(String text) {
+        return text.replace('\n', ' ').replace('\r', ' ').trim();
+    }
+}
@@ -0,0 +1,243 @@
+package uk.ac.soton.comp1206.server;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * WebSocketFrames holds the small parts of the WebSocket protocol (RFC 6455) the server needs: the handshake key,
+ * building frames and decoding them. Only what the TetrECS protocol uses is supported, which is text messages plus the
+ * control frames.
+ */
+public final class WebSocketFrames {
+
+    /**
+     * Added to the client's key in the handshake, as fixed by the protocol
+     */
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    public static final int CONTINUATION = 0x0;
+    public static final int TEXT = 0x1;
+    public static final int BINARY = 0x2;
+    public static final int CLOSE = 0x8;
+    public static final int PING = 0x9;
+    public static final int PONG = 0xA;
+
+    /**
+     * Close codes
+     */
+    public static final int CLOSE_NORMAL = 1000;
+    public static final int CLOSE_PROTOCOL_ERROR = 1002;
+    public static final int CLOSE_UNSUPPORTED = 1003;
+    public static final int CLOSE_TOO_BIG = 1009;
+
+    /**
+     * A decoded frame
+     */
+    public static final class Frame {
+        private final boolean fin;
+        private final int opcode;
+        private final byte[] payload;
+
+        private Frame(boolean fin, int opcode, byte[] payload) {
+            this.fin = fin;
+            this.opcode = opcode;
+            this.payload = payload;
+        }
+
+        /**
+         * Get whether this is the last frame of a message
+         * @return true if the message is complete
+         */
+        public boolean isFinal() {
+            return fin;
+        }
+
+        /**
+         * Get the frame type
+         * @return the opcode
+         */
+        public int getOpcode() {
+            return opcode;
+        }
+
+        /**
+         * Get the payload, already unmasked
+         * @return the payload
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private WebSocketFrames() {
+    }
+
+    /**
+     * Get the Sec-WebSocket-Accept value for a client's Sec-WebSocket-Key
+     * @param key the client's key
+     * @return the value to accept it with
+     */
+    public static String acceptKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key.trim() + GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Build a text frame, as sent by a server
+     * @param message the message
+     * @return the frame, ready to write
+     */
+    public static ByteBuffer text(String message) {
+        return frame(TEXT, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Build a close frame, as sent by a server
+     * @param code the close code
+     * @return the frame, ready to write
+     */
+    public static ByteBuffer close(int code) {
+        return frame(CLOSE, new byte[] { (byte) (code >> 8), (byte) code });
+    }
+
+    /**
+     * Build a masked text frame, as sent by a client
+     * @param message the message
+     * @param mask the masking key
+     * @return the frame, ready to write
+     */
+    public static ByteBuffer maskedText(String message, int mask) {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(headerLength(payload.length, true) + payload.length);
+        putHeader(frame, TEXT, payload.length, true);
+        frame.putInt(mask);
+        for(int i = 0; i < payload.length; i++) {
+            frame.put((byte) (payload[i] ^ (mask >>> (24 - 8 * (i & 3)))));
+        }
+        return frame.flip();
+    }
+
+    /**
+     * Build a masked close frame, as sent by a client
+     * @param code the close code
+     * @param mask the masking key
+     * @return the frame, ready to write
+     */
+    public static ByteBuffer maskedClose(int code, int mask) {
+        ByteBuffer frame = ByteBuffer.allocate(headerLength(2, true) + 2);
+        putHeader(frame, CLOSE, 2, true);
+        frame.putInt(mask);
+        frame.put((byte) ((code >> 8) ^ (mask >>> 24)));
+        frame.put((byte) (code ^ (mask >>> 16)));
+        return frame.flip();
+    }
+
+    /**
+     * Build a single unmasked frame, as sent by a server
+     * @param opcode the frame type
+     * @param payload the payload
+     * @return the frame, ready to write
+     */
+    public static ByteBuffer frame(int opcode, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(headerLength(payload.length, false) + payload.length);
+        putHeader(frame, opcode, payload.length, false);
+        frame.put(payload);
+        return frame.flip();
+    }
+
+    /**
+     * Decode one frame from the readable part of a buffer, unmasking it if it is masked. The buffer is only moved past
+     * the frame once all of it has arrived.
+     * @param input the buffer
+     * @param maxLength the longest payload allowed
+     * @return the frame, or null if it has not all arrived yet
+     * @throws ProtocolException if the payload is longer than maxLength
+     */
+    public static Frame decode(ByteBuffer input, int maxLength) throws ProtocolException {
+        int start = input.position();
+        int available = input.remaining();
+        if(available < 2) {
+            return null;
+        }
+        int first = input.get(start) & 0xFF;
+        int second = input.get(start + 1) & 0xFF;
+        boolean masked = (second & 0x80) != 0;
+
+        long length = second & 0x7F;
+        int header = 2;
+        if(length == 126) {
+            if(available < 4) {
+                return null;
+            }
+            length = input.getShort(start + 2) & 0xFFFF;
+            header = 4;
+        } else if(length == 127) {
+            if(available < 10) {
+                return null;
+            }
+            length = input.getLong(start + 2);
+            header = 10;
+        }
+        if(length < 0 || length > maxLength) {
+            throw new ProtocolException("Frame of " + length + " bytes is longer than " + maxLength);
+        }
+        int maskAt = start + header;
+        if(masked) {
+            header += 4;
+        }
+        if(available < header + length) {
+            return null;
+        }
+
+        byte[] payload = new byte[(int) length];
+        input.position(start + header);
+        input.get(payload);
+        if(masked) {
+            for(int i = 0; i < payload.length; i++) {
+                payload[i] ^= input.get(maskAt + (i & 3));
+            }
+        }
+        return new Frame((first & 0x80) != 0, first & 0x0F, payload);
+    }
+
+    /**
+     * Get the length of a frame header
+     * @param length payload length
+     * @param masked whether the frame carries a mask
+     * @return header length in bytes
+     */
+    static int headerLength(int length, boolean masked) {
+        int header = length < 126 ? 2 : length <= 0xFFFF ? 4 : 10;
+        return masked ? header + 4 : header;
+    }
+
+    /**
+     * Write a final frame's header, without the mask
+     * @param frame buffer to write to
+     * @param opcode the frame type
+     * @param length payload length
+     * @param masked whether the mask follows
+     */
+    static void putHeader(ByteBuffer frame, int opcode, int length, boolean masked) {
+        int mask = masked ? 0x80 : 0;
+        frame.put((byte) (0x80 | opcode));
+        if(length < 126) {
+            frame.put((byte) (mask | length));
+        } else if(length <= 0xFFFF) {
+            frame.put((byte) (mask | 126));
+            frame.putShort((short) length);
+        } else {
+            frame.put((byte) (mask | 127));
+            frame.putLong(length);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PieceShape;
+import uk.ac.soton.comp1206.game.PlacementMask;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A PlacementPolicy which plays wherever the current piece completes the most lines, using the grid's line fill counts
+ * rather than trying each placement. Ties go to the position that packs blocks into the fullest lines, and then
+ * to the first position found.
+ */
+public class GreedyPolicy implements PlacementPolicy {
+
+    @Override
+    public int choose(GameEngine engine, RandomGenerator random) {
+        Grid grid = engine.getGrid();
+        GamePiece piece = engine.getCurrentPiece();
+
+        int bestIndex = -1;
+        int bestRotation = 0;
+        long bestValue = Long.MIN_VALUE;
+        for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            PlacementMask mask = grid.getLegalPlacements(piece);
+            PieceShape shape = piece.getShape();
+            for(int index = mask.nextLegal(0); index >= 0; index = mask.nextLegal(index + 1)) {
+                long value = evaluate(grid, shape, index % grid.getCols(), index / grid.getCols());
+                if(value > bestValue) {
+                    bestValue = value;
+                    bestIndex = index;
+                    bestRotation = piece.getRotation();
+                }
+            }
+            piece.rotate();
+        }
+
+        //Leave the piece in the rotation that scored best
+        piece.rotate(bestRotation - piece.getRotation());
+        return bestIndex;
+    }
+
+    /**
+     * Value playing a shape at a position by the lines it would complete, and then by how full it leaves the lines it
+     * touches
+     * @param grid the grid to play in
+     * @param shape the shape to play
+     * @param x column
+     * @param y row
+     * @return the value of the placement, higher is better
+     */
+    private long evaluate(Grid grid, PieceShape shape, int x, int y) {
+        int lines = 0;
+        int fill = 0;
+        for(int row = 0; row < 3; row++) {
+            int blocks = Integer.bitCount(shape.getRowMask(row));
+            if(blocks == 0) continue;
+            int filled = grid.getRowFill(y - 1 + row) + blocks;
+            fill += filled * filled;
+            if(filled == grid.getCols()) {
+                lines++;
+            }
+        }
+        for(int column = 0; column < 3; column++) {
+            int blocks = Integer.bitCount((shape.getMask() >>> (column * 3)) & 0b111);
+            if(blocks == 0) continue;
+            int filled = grid.getColumnFill(x - 1 + column) + blocks;
+            fill += filled * filled;
+            if(filled == grid.getRows()) {
+                lines++;
+            }
+        }
+        return ((long) lines << 32) + fill;
+    }
+}
@@ -0,0 +1,35 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A PlacementPolicy decides where a simulated player plays each piece.
+ *
+ * A policy may rotate the engine's current piece as it likes while choosing, but must leave it in the rotation it wants
+ * to play. Policies are shared between games running on different threads, so should not hold any state of their own.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Choose where to play the engine's current piece
+     * @param engine the game to play in
+     * @param random random source for this game
+     * @return the block index to play at, y * cols + x, or -1 to play nothing and let the timer run out
+     */
+    int choose(GameEngine engine, RandomGenerator random);
+
+    /**
+     * Find a policy by its command line name
+     * @param name policy name
+     * @return the policy
+     */
+    static PlacementPolicy forName(String name) {
+        return switch (name) {
+            case "random" -> new RandomPolicy();
+            case "greedy" -> new GreedyPolicy();
+            default -> throw new IllegalArgumentException("No such policy: " + name);
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PlacementMask;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A PlacementPolicy which picks uniformly between every legal position of the current piece in every rotation.
+ */
+public class RandomPolicy implements PlacementPolicy {
+
+    @Override
+    public int choose(GameEngine engine, RandomGenerator random) {
+        var grid = engine.getGrid();
+        GamePiece piece = engine.getCurrentPiece();
+
+        //Count the legal positions in every rotation, leaving the piece back where it started
+        int total = 0;
+        for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            total += grid.getLegalPlacements(piece).count();
+            piece.rotate();
+        }
+        if(total == 0) {
+            return -1;
+        }
+
+        //Walk the rotations again until the chosen position is reached
+        int chosen = random.nextInt(total);
+        for(int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            PlacementMask mask = grid.getLegalPlacements(piece);
+            int count = mask.count();
+            if(chosen < count) {
+                int index = mask.nextLegal(0);
+                while(chosen-- > 0) {
+                    index = mask.nextLegal(index + 1);
+                }
+                return index;
+            }
+            chosen -= count;
+            piece.rotate();
+        }
+        return -1;
+    }
+}
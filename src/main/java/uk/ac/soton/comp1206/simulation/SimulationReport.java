@@ -0,0 +1,94 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.metrics.Histogram;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The SimulationReport holds the results of a simulation run: how many games and placements were played, how long it
+ * took, the distribution of final scores and the latency of each move.
+ */
+public class SimulationReport {
+
+    private final int games;
+    private final int threads;
+    private final long placements;
+    private final long elapsedNanos;
+    private final int[] scores;
+    private final Histogram moveLatency;
+
+    /**
+     * Create a new report
+     * @param games number of games played
+     * @param threads number of threads the games were played on
+     * @param placements total number of pieces played
+     * @param elapsedNanos wall clock time the run took
+     * @param scores final score of every game, in any order
+     * @param moveLatency latency of choosing and playing each piece, in nanoseconds
+     */
+    public SimulationReport(int games, int threads, long placements, long elapsedNanos, int[] scores, Histogram moveLatency) {
+        this.games = games;
+        this.threads = threads;
+        this.placements = placements;
+        this.elapsedNanos = elapsedNanos;
+        this.scores = scores.clone();
+        Arrays.sort(this.scores);
+        this.moveLatency = moveLatency;
+    }
+
+    /**
+     * Get the number of pieces played per second of wall clock time
+     * @return placements per second
+     */
+    public double getPlacementsPerSecond() {
+        return placements / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Get the number of games played per second of wall clock time
+     * @return games per second
+     */
+    public double getGamesPerSecond() {
+        return games / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Get the final score at a given percentile of all games
+     * @param percentile percentile between 0 and 100
+     * @return the score
+     */
+    public int getScorePercentile(double percentile) {
+        if(scores.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(scores.length * percentile / 100.0) - 1;
+        return scores[Math.max(0, Math.min(scores.length - 1, index))];
+    }
+
+    /**
+     * Get the latency of each move
+     * @return move latency histogram, in nanoseconds
+     */
+    public Histogram getMoveLatency() {
+        return moveLatency;
+    }
+
+    /**
+     * Write this report out in a human readable form
+     * @param out stream to write to
+     */
+    public void print(PrintStream out) {
+        double meanScore = Arrays.stream(scores).average().orElse(0);
+        out.printf("games:           %d on %d threads in %.3f s%n", games, threads, elapsedNanos / 1e9);
+        out.printf("placements:      %d%n", placements);
+        out.printf("placements/sec:  %.0f%n", getPlacementsPerSecond());
+        out.printf("games/sec:       %.1f%n", getGamesPerSecond());
+        out.printf("score:           min %d, p50 %d, p90 %d, p99 %d, max %d, mean %.1f%n",
+                getScorePercentile(0), getScorePercentile(50), getScorePercentile(90), getScorePercentile(99),
+                getScorePercentile(100), meanScore);
+        out.printf("move latency us: p50 %.2f, p99 %.2f, max %.2f, mean %.2f%n",
+                moveLatency.getPercentile(50) / 1e3, moveLatency.getPercentile(99) / 1e3,
+                moveLatency.getMax() / 1e3, moveLatency.getMean() / 1e3);
+    }
+}
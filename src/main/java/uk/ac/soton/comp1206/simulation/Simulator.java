@@ -0,0 +1,187 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.event.GameEventListener;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.VirtualClock;
+import uk.ac.soton.comp1206.metrics.Histogram;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The Simulator plays many TetrECS games at once with no display or audio, to measure how fast the game rules run.
+ *
+ * Each game runs on a GameEngine with a VirtualClock, so the timer runs out instantly whenever the policy has nowhere
+ * to play, and gets its own random streams seeded from the game number so a run can be repeated exactly. Games are
+ * spread across a fork join pool with a parallel stream.
+ *
+ * Run with: Launcher simulate [--games N] [--threads N] [--seed N] [--policy random|greedy] [--cols N] [--rows N]
+ * [--max-moves N]
+ */
+public class Simulator {
+
+    /**
+     * Mixed into the seed for each game so that neighbouring games get unrelated streams
+     */
+    private static final long GAME_SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private int games = 1000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 1;
+    private int cols = 5;
+    private int rows = 5;
+    private int maxMoves = 10_000;
+    private PlacementPolicy policy = new GreedyPolicy();
+
+    /**
+     * Run a simulation from the command line and print the report
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) {
+        //Keep per-move logging out of the measurements unless another configuration has been asked for
+        if(System.getProperty("log4j.configurationFile") == null) {
+            System.setProperty("log4j.configurationFile", "log4j2-simulation.xml");
+        }
+
+        var simulator = new Simulator();
+        for(int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--games" -> simulator.setGames(Integer.parseInt(value));
+                case "--threads" -> simulator.setThreads(Integer.parseInt(value));
+                case "--seed" -> simulator.setSeed(Long.parseLong(value));
+                case "--policy" -> simulator.setPolicy(PlacementPolicy.forName(value));
+                case "--cols" -> simulator.setCols(Integer.parseInt(value));
+                case "--rows" -> simulator.setRows(Integer.parseInt(value));
+                case "--max-moves" -> simulator.setMaxMoves(Integer.parseInt(value));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        simulator.run().print(System.out);
+    }
+
+    /**
+     * Play every game and collect the results
+     * @return the report for this run
+     */
+    public SimulationReport run() {
+        int[] scores = new int[games];
+        LongAdder placements = new LongAdder();
+        Histogram moveLatency = new Histogram();
+
+        var pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.submit(() -> IntStream.range(0, games).parallel().forEach(game -> {
+                Histogram gameLatency = new Histogram();
+                int[] moves = new int[1];
+                scores[game] = playGame(game, gameLatency, moves);
+                placements.add(moves[0]);
+                moveLatency.add(gameLatency);
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return new SimulationReport(games, threads, placements.sum(), elapsed, scores, moveLatency);
+    }
+
+    /**
+     * Play a single game until it is over or the move limit is reached
+     * @param game the game number, used to seed its random streams
+     * @param latency histogram to record the latency of each move in
+     * @param moves single element array to return the number of pieces played in
+     * @return the final score
+     */
+    private int playGame(int game, Histogram latency, int[] moves) {
+        var pieceRandom = new SplittableRandom(seed + game * GAME_SEED_STEP);
+        var policyRandom = pieceRandom.split();
+        var clock = new VirtualClock();
+        var engine = new GameEngine(cols, rows, pieceRandom, clock, GameEventListener.NONE);
+        engine.start();
+
+        while(moves[0] < maxMoves) {
+            long moveStart = System.nanoTime();
+            int index = policy.choose(engine, policyRandom);
+            if(index < 0) {
+                //Nowhere to play, so wait for the timer to run out
+                clock.advance(engine.getTimeRemaining());
+                if(!engine.tick()) {
+                    break;
+                }
+                continue;
+            }
+            engine.place(index % cols, index / cols);
+            latency.record(System.nanoTime() - moveStart);
+            moves[0]++;
+        }
+        return engine.getScore();
+    }
+
+    /**
+     * Set the number of games to play
+     * @param games number of games
+     */
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    /**
+     * Set the number of threads to play games on
+     * @param threads number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Set the seed the random streams of every game are derived from
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Set the policy used to choose where to play
+     * @param policy the policy
+     */
+    public void setPolicy(PlacementPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Set the number of columns in each game's grid
+     * @param cols number of columns
+     */
+    public void setCols(int cols) {
+        this.cols = cols;
+    }
+
+    /**
+     * Set the number of rows in each game's grid
+     * @param rows number of rows
+     */
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Set the most pieces a single game may play before it is stopped
+     * @param maxMoves move limit
+     */
+    public void setMaxMoves(int maxMoves) {
+        this.maxMoves = maxMoves;
+    }
+}
@@ -10,8 +10,12 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
 import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.jfr.SceneBuildEvent;
+import uk.ac.soton.comp1206.jfr.SceneInitialiseEvent;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
 import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.scene.*;
+import uk.ac.soton.comp1206.server.TetrECSServer;
 
 /**
  * The GameWindow is the single window for the game where everything takes place. To move between screens in the game,
@@ -24,6 +28,12 @@ public class GameWindow {
 
     private static final Logger logger = LogManager.getLogger(GameWindow.class);
 
+    /**
+     * The TetrECS server the game starts on this machine. The university server it used to connect to has been shut
+     * down.
+     */
+    public static final String DEFAULT_SERVER = "ws://localhost:" + TetrECSServer.DEFAULT_PORT;
+
     private final int width;
     private final int height;
 
@@ -32,7 +42,7 @@ public class GameWindow {
     private BaseScene currentScene;
     private Scene scene;
 
-    //final Communicator communicator;
+    final Communicator communicator;
 
     /**
      * Create a new GameWindow attached to the given stage with the specified width and height
@@ -41,6 +51,18 @@ public class GameWindow {
      * @param height height
      */
     public GameWindow(Stage stage, int width, int height) {
+        this(stage, width, height, DEFAULT_SERVER);
+    }
+
+    /**
+     * Create a new GameWindow attached to the given stage with the specified width and height, talking to a given
+     * TetrECS server
+     * @param stage stage
+     * @param width width
+     * @param height height
+     * @param server web socket address of the server
+     */
+    public GameWindow(Stage stage, int width, int height, String server) {
         this.width = width;
         this.height = height;
 
@@ -55,8 +77,8 @@ public class GameWindow {
         //Setup default scene
         setupDefaultScene();
 
-        //Setup communicator
-        //communicator = new Communicator("ws://ofb-labs.soton.ac.uk:9700");
+        //Setup communicator, which connects in the background
+        communicator = new Communicator(server);
 
         //Go to menu
         startMenu();
@@ -114,8 +136,12 @@ public class GameWindow {
      * @param newScene new scene to load
      */
     public void loadScene(BaseScene newScene) {
+        long start = System.nanoTime();
+        var buildEvent = new SceneBuildEvent();
+        buildEvent.begin();
+
         //Cleanup remains of the previous scene
-       // cleanup();
+        cleanup();
 
         //Create the new scene and set it up
         newScene.build();
@@ -123,8 +149,26 @@ public class GameWindow {
         scene = newScene.setScene();
         stage.setScene(scene);
 
-        //Initialise the scene when ready
-        Platform.runLater(() -> currentScene.initialise());
+        buildEvent.end();
+        if(buildEvent.shouldCommit()) {
+            buildEvent.scene = newScene.getClass().getSimpleName();
+            buildEvent.commit();
+        }
+
+        //Initialise the scene when ready, timing the whole change once it has been
+        Platform.runLater(() -> {
+            var initialiseEvent = new SceneInitialiseEvent();
+            initialiseEvent.begin();
+            currentScene.initialise();
+            initialiseEvent.end();
+            if(initialiseEvent.shouldCommit()) {
+                initialiseEvent.scene = currentScene.getClass().getSimpleName();
+                initialiseEvent.commit();
+            }
+            MetricsRegistry.getInstance()
+                    .histogram("scene." + newScene.getClass().getSimpleName() + ".transitionMicros")
+                    .record((System.nanoTime() - start) / 1_000L);
+        });
     }
 
     /**
@@ -138,13 +182,13 @@ public class GameWindow {
     /**
      * When switching scenes, perform any cleanup needed, such as removing previous listeners
      */
-
-    /**
     public void cleanup() {
         logger.info("Clearing up previous scene");
+        if (currentScene != null) {
+            currentScene.cleanup();
+        }
         communicator.clearListeners();
     }
-     */
 
     /**
      * Get the current scene being displayed
@@ -154,6 +198,14 @@ public class GameWindow {
         return scene;
     }
 
+    /**
+     * Get the game scene being displayed
+     * @return the current game scene, or null before the first is loaded
+     */
+    public BaseScene getCurrentScene() {
+        return currentScene;
+    }
+
     /**
      * Get the width of the Game Window
      * @return width
@@ -174,4 +226,7 @@ public class GameWindow {
      * Get the communicator
      * @return communicator
      */
+    public Communicator getCommunicator() {
+        return communicator;
+    }
 }
@@ -0,0 +1,167 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Checks a GameBoard in canvas mode, which the challenge scene only uses for boards larger than its own, on the
+ * headless Monocle platform: the canvas follows its grid, passes clicks on as blocks, and stops for good when the
+ * board is stopped.
+ */
+class BoardCanvasTest {
+
+    private static final int COLS = 12;
+    private static final int ROWS = 10;
+    private static final double SIZE = 240;
+
+    /**
+     * Start JavaFX without a display
+     * @throws Exception if the toolkit did not start
+     */
+    @BeforeAll
+    static void startToolkit() throws Exception {
+        System.setProperty("glass.platform", "Monocle");
+        System.setProperty("monocle.platform", "Headless");
+        System.setProperty("prism.order", "sw");
+        var started = new CompletableFuture<Void>();
+        try {
+            Platform.startup(() -> started.complete(null));
+        } catch (IllegalStateException e) {
+            //Already started by another test
+            started.complete(null);
+        }
+        started.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Changed blocks are repainted on the next pulses, until the board is stopped
+     * @throws Exception if a step failed
+     */
+    @Test
+    void followsGridUntilStopped() throws Exception {
+        var grid = new Grid(COLS, ROWS);
+        var board = fx(() -> new GameBoard(grid, SIZE, SIZE, GameBoard.RenderMode.CANVAS));
+        var canvas = (BoardCanvas) board.getChildren().get(0);
+        int empty = fx(() -> pixel(canvas, 3, 4));
+
+        fx(() -> {
+            grid.set(3, 4, 2);
+            return null;
+        });
+        awaitPulses(3);
+        assertNotEquals(empty, (int) fx(() -> pixel(canvas, 3, 4)));
+        assertEquals(empty, (int) fx(() -> pixel(canvas, 8, 7)));
+
+        fx(() -> {
+            board.stop();
+            grid.set(8, 7, 2);
+            board.fadeOut(Set.of(new GameBlockCoordinate(3, 4)));
+            return null;
+        });
+        awaitPulses(3);
+        assertEquals(empty, (int) fx(() -> pixel(canvas, 8, 7)));
+    }
+
+    /**
+     * A primary click on the canvas is passed on as a click on the block underneath
+     * @throws Exception if a step failed
+     */
+    @Test
+    void passesClicksOnAsBlocks() throws Exception {
+        var board = fx(() -> new GameBoard(new Grid(COLS, ROWS), SIZE, SIZE, GameBoard.RenderMode.CANVAS));
+        var canvas = (BoardCanvas) board.getChildren().get(0);
+        var clicked = new CompletableFuture<GameBlockCoordinate>();
+        board.setOnBlockClick(clicked::complete);
+
+        double x = (7 + 0.5) * SIZE / COLS;
+        double y = (2 + 0.5) * SIZE / ROWS;
+        fx(() -> {
+            canvas.fireEvent(new MouseEvent(MouseEvent.MOUSE_CLICKED, x, y, x, y, MouseButton.PRIMARY, 1,
+                    false, false, false, false, true, false, false, false, false, false, null));
+            return null;
+        });
+        var block = clicked.get(5, TimeUnit.SECONDS);
+        assertEquals(7, block.getX());
+        assertEquals(2, block.getY());
+        fx(() -> {
+            board.stop();
+            return null;
+        });
+    }
+
+    /**
+     * Get the colour at the centre of a block, as drawn so far
+     * @param canvas the canvas
+     * @param x column
+     * @param y row
+     * @return the colour as ARGB
+     */
+    private static int pixel(BoardCanvas canvas, int x, int y) {
+        var image = canvas.snapshot(null, null);
+        return image.getPixelReader().getArgb((int) ((x + 0.5) * SIZE / COLS), (int) ((y + 0.5) * SIZE / ROWS));
+    }
+
+    /**
+     * Wait for a number of pulses to pass
+     * @param pulses number of pulses
+     * @throws Exception if the pulses did not come
+     */
+    private static void awaitPulses(int pulses) throws Exception {
+        var done = new CompletableFuture<Void>();
+        fx(() -> {
+            new AnimationTimer() {
+                private int seen;
+
+                @Override
+                public void handle(long now) {
+                    if(++seen == pulses) {
+                        stop();
+                        done.complete(null);
+                    }
+                }
+            }.start();
+            return null;
+        });
+        done.get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Run a task on the JavaFX thread and wait for its result
+     * @param task the task
+     * @param <T> result type
+     * @return the result
+     * @throws Exception if the task failed
+     */
+    private static <T> T fx(Callable<T> task) throws Exception {
+        var result = new CompletableFuture<T>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            return result.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package uk.ac.soton.comp1206.game;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.soton.comp1206.event.GameEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the GameEngine keeps the rules of the original Game: scoring with a multiplier, levels and the timer delay
+ * they give, losing a life when a piece runs out of time, game over, and the order pieces come out in.
+ */
+class GameEngineTest {
+
+    /**
+     * The Dot piece, which fills only the block it is played on
+     */
+    private static final int DOT = 3;
+
+    private final VirtualClock clock = new VirtualClock();
+    private final Events events = new Events();
+    private final GameEngine engine = new GameEngine(5, 5, new Random(1), clock, events);
+
+    /**
+     * Records what the engine reports
+     */
+    private static class Events implements GameEventListener {
+        final List<Integer> scores = new ArrayList<>();
+        final List<Integer> multipliers = new ArrayList<>();
+        final List<Integer> levels = new ArrayList<>();
+        final List<Integer> lives = new ArrayList<>();
+        int gameOvers;
+
+        @Override
+        public void scoreChanged(int score) {
+            scores.add(score);
+        }
+
+        @Override
+        public void multiplierChanged(int multiplier) {
+            multipliers.add(multiplier);
+        }
+
+        @Override
+        public void levelChanged(int level) {
+            levels.add(level);
+        }
+
+        @Override
+        public void livesChanged(int lives) {
+            this.lives.add(lives);
+        }
+
+        @Override
+        public void gameOver() {
+            gameOvers++;
+        }
+    }
+
+    /**
+     * Each clear scores lines times blocks times 10 times the multiplier, then raises the multiplier. A piece that
+     * clears nothing, or cannot be played, puts the multiplier back to 1.
+     */
+    @Test
+    void scoresClearsWithMultiplier() {
+        engine.start();
+        Grid grid = engine.getGrid();
+
+        //One row of 5 blocks
+        for(int x = 0; x < 4; x++) {
+            grid.set(x, 0, 1);
+        }
+        playDot(4, 0);
+        assertEquals(50, engine.getScore());
+        assertEquals(2, engine.getMultiplier());
+
+        //A row and a column crossing, 9 blocks, at double
+        for(int x = 0; x < 4; x++) {
+            grid.set(x, 1, 1);
+        }
+        for(int y = 0; y < 5; y++) {
+            if(y != 1) {
+                grid.set(4, y, 1);
+            }
+        }
+        playDot(4, 1);
+        assertEquals(50 + 2 * 9 * 10 * 2, engine.getScore());
+        assertEquals(3, engine.getMultiplier());
+
+        //Nothing cleared
+        playDot(0, 4);
+        assertEquals(410, engine.getScore());
+        assertEquals(1, engine.getMultiplier());
+
+        //Back up from 1, next to the Dot just played
+        for(int x = 1; x < 4; x++) {
+            grid.set(x, 4, 1);
+        }
+        playDot(4, 4);
+        assertEquals(460, engine.getScore());
+        assertEquals(2, engine.getMultiplier());
+
+        //Rejected, as the block is taken
+        grid.set(2, 2, 1);
+        engine.setCurrentPiece(GamePiece.createPiece(DOT));
+        assertFalse(engine.place(2, 2));
+        assertEquals(460, engine.getScore());
+        assertEquals(1, engine.getMultiplier());
+
+        assertEquals(List.of(50, 410, 460), events.scores);
+        assertEquals(List.of(2, 3, 1, 2, 1), events.multipliers);
+    }
+
+    /**
+     * The level is the score in thousands, and each level takes half a second off the timer, down to 2.5 seconds
+     */
+    @Test
+    void levelsShortenTimer() {
+        assertEquals(12000, engine.getTimerDelay());
+        engine.score(4, 24);
+        assertEquals(0, engine.getLevel());
+
+        engine.score(1, 1);
+        assertEquals(960 + 20, engine.getScore());
+        assertEquals(0, engine.getLevel());
+
+        engine.score(1, 1);
+        assertEquals(1010, engine.getScore());
+        assertEquals(1, engine.getLevel());
+        assertEquals(11500, engine.getTimerDelay());
+
+        engine.score(5, 40);
+        assertEquals(1010 + 5 * 40 * 10 * 4, engine.getScore());
+        assertEquals(9, engine.getLevel());
+        assertEquals(7500, engine.getTimerDelay());
+        assertEquals(List.of(1, 9), events.levels);
+
+        engine.setLevel(19);
+        assertEquals(2500, engine.getTimerDelay());
+        engine.setLevel(40);
+        assertEquals(2500, engine.getTimerDelay());
+    }
+
+    /**
+     * Running out of time loses a life, brings out the next piece, resets the multiplier and restarts the timer
+     */
+    @Test
+    void losesLifeWhenTimeRunsOut() {
+        engine.start();
+        engine.setMultiplier(3);
+        GamePiece following = engine.getFollowingPiece();
+
+        clock.advance(11_999);
+        assertTrue(engine.tick());
+        assertEquals(GameEngine.STARTING_LIVES, engine.getLives());
+
+        clock.advance(1);
+        assertTrue(engine.tick());
+        assertEquals(GameEngine.STARTING_LIVES - 1, engine.getLives());
+        assertSame(following, engine.getCurrentPiece());
+        assertEquals(1, engine.getMultiplier());
+        assertEquals(12000, engine.getTimeRemaining());
+
+        //Playing a piece restarts the timer
+        clock.advance(6000);
+        engine.setCurrentPiece(GamePiece.createPiece(DOT));
+        assertTrue(engine.place(2, 2));
+        assertEquals(12000, engine.getTimeRemaining());
+    }
+
+    /**
+     * The game is over when time runs out with no lives left, and not before
+     */
+    @Test
+    void gameOverAfterLastLife() {
+        engine.start();
+        for(int life = GameEngine.STARTING_LIVES - 1; life >= 0; life--) {
+            clock.advance(engine.getTimerDelay());
+            assertTrue(engine.tick());
+            assertEquals(life, engine.getLives());
+        }
+        assertEquals(0, events.gameOvers);
+
+        clock.advance(engine.getTimerDelay());
+        assertFalse(engine.tick());
+        assertEquals(1, events.gameOvers);
+        assertEquals(List.of(2, 1, 0), events.lives);
+    }
+
+    /**
+     * Pieces come out in the order the random source picks them, so the same seed always gives the same game
+     */
+    @Test
+    void piecesFollowSeed() {
+        var expected = new Random(42);
+        var seeded = new GameEngine(5, 5, new Random(42), clock, events);
+        seeded.start();
+        int current = expected.nextInt(GamePiece.PIECES);
+        for(int i = 0; i < 100; i++) {
+            int following = expected.nextInt(GamePiece.PIECES);
+            assertEquals(GamePiece.createPiece(current).getValue(), seeded.getCurrentPiece().getValue());
+            assertEquals(GamePiece.createPiece(following).getValue(), seeded.getFollowingPiece().getValue());
+            seeded.nextPiece();
+            current = following;
+        }
+    }
+
+    /**
+     * Play a Dot, which always fits an empty block
+     * @param x column
+     * @param y row
+     */
+    private void playDot(int x, int y) {
+        engine.setCurrentPiece(GamePiece.createPiece(DOT));
+        assertTrue(engine.place(x, y));
+    }
+}
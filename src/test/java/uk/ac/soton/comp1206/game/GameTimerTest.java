@@ -0,0 +1,110 @@
+package uk.ac.soton.comp1206.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks GameTimer countdowns on a VirtualClock: deadlines that do not drift, pausing, resetting, and several timers
+ * expiring in order within one advance.
+ */
+class GameTimerTest {
+
+    private final VirtualClock clock = new VirtualClock();
+
+    /**
+     * Each deadline follows on from the last rather than from when the callback finished, so a callback that takes
+     * time does not push later expiries back
+     */
+    @Test
+    void expiresOnEveryPeriodWhenCallbackIsSlow() {
+        var times = new ArrayList<Long>();
+        var timer = new GameTimer(() -> 100, () -> {
+            times.add(millis());
+            //The callback takes 30ms
+            clock.advance(30);
+        }, clock);
+        timer.start();
+
+        clock.advance(1000);
+        assertEquals(List.of(100L, 200L, 300L, 400L, 500L, 600L, 700L, 800L, 900L, 1000L), times);
+        assertEquals(70, timer.getRemaining());
+    }
+
+    /**
+     * A paused timer keeps its remaining time however long it is paused, and carries on from it when resumed
+     */
+    @Test
+    void pauseKeepsRemainingTime() {
+        var expiries = new int[1];
+        var timer = new GameTimer(() -> 100, () -> expiries[0]++, clock);
+        timer.start();
+        clock.advance(60);
+
+        timer.pause();
+        assertFalse(timer.isRunning());
+        clock.advance(500);
+        assertEquals(0, expiries[0]);
+        assertEquals(40, timer.getRemaining());
+
+        timer.resume();
+        assertTrue(timer.isRunning());
+        clock.advance(39);
+        assertEquals(0, expiries[0]);
+        clock.advance(1);
+        assertEquals(1, expiries[0]);
+        assertEquals(100, timer.getRemaining());
+    }
+
+    /**
+     * Resetting starts a full countdown, so the expiry due before the reset never happens, and cancelling stops it
+     */
+    @Test
+    void resetCancelsPendingExpiry() {
+        var expiries = new int[1];
+        var timer = new GameTimer(() -> 100, () -> expiries[0]++, clock);
+        timer.start();
+        clock.advance(90);
+
+        timer.reset();
+        assertEquals(100, timer.getRemaining());
+        clock.advance(90);
+        assertEquals(0, expiries[0]);
+        clock.advance(10);
+        assertEquals(1, expiries[0]);
+
+        timer.cancel();
+        clock.advance(1000);
+        assertEquals(1, expiries[0]);
+        assertEquals(0, timer.getRemaining());
+    }
+
+    /**
+     * Timers on one clock expire in deadline order, each as many times as its deadline is passed in one advance
+     */
+    @Test
+    void expiresTimersInDeadlineOrder() {
+        var expiries = new ArrayList<String>();
+        var fast = new GameTimer(() -> 30, () -> expiries.add("fast@" + millis()), clock);
+        var slow = new GameTimer(() -> 50, () -> expiries.add("slow@" + millis()), clock);
+        fast.start();
+        slow.start();
+
+        clock.advance(140);
+        assertEquals(List.of("fast@30", "slow@50", "fast@60", "fast@90", "slow@100", "fast@120"), expiries);
+        assertEquals(140, millis());
+    }
+
+    /**
+     * Get the clock's time
+     * @return time in milliseconds
+     */
+    private long millis() {
+        return clock.nanoTime() / 1_000_000L;
+    }
+}
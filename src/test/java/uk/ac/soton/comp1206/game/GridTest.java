@@ -0,0 +1,214 @@
+package uk.ac.soton.comp1206.game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the bitboard Grid against the original implementation, which kept a 2D array of values and checked every block
+ * of every row and column for lines.
+ */
+class GridTest {
+
+    /**
+     * The original grid: a 2D array, with pieces checked block by block and lines found by scanning the whole grid
+     */
+    private static class ArrayGrid {
+        final int cols;
+        final int rows;
+        final int[][] grid;
+
+        ArrayGrid(int cols, int rows) {
+            this.cols = cols;
+            this.rows = rows;
+            this.grid = new int[cols][rows];
+        }
+
+        int get(int x, int y) {
+            if(x < 0 || x >= cols || y < 0 || y >= rows) {
+                return -1;
+            }
+            return grid[x][y];
+        }
+
+        boolean canPlayPiece(GamePiece piece, int placeX, int placeY) {
+            int[][] blocks = piece.getBlocks();
+            for(int i = 0; i < blocks.length; i++) {
+                for(int j = 0; j < blocks.length; j++) {
+                    if(blocks[i][j] > 0 && get(i + placeX - 1, j + placeY - 1) != 0) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        void playPiece(GamePiece piece, int placeX, int placeY) {
+            if(!canPlayPiece(piece, placeX, placeY)) {
+                return;
+            }
+            int[][] blocks = piece.getBlocks();
+            for(int i = 0; i < blocks.length; i++) {
+                for(int j = 0; j < blocks.length; j++) {
+                    if(blocks[i][j] > 0) {
+                        grid[i + placeX - 1][j + placeY - 1] = piece.getValue();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Clear every full row and column
+         * @return lines and blocks cleared
+         */
+        int[] afterPiece() {
+            boolean[][] clear = new boolean[cols][rows];
+            int lines = 0;
+            for(int x = 0; x < cols; x++) {
+                int filled = 0;
+                for(int y = 0; y < rows; y++) {
+                    if(grid[x][y] != 0) filled++;
+                }
+                if(filled == rows) {
+                    lines++;
+                    for(int y = 0; y < rows; y++) clear[x][y] = true;
+                }
+            }
+            for(int y = 0; y < rows; y++) {
+                int filled = 0;
+                for(int x = 0; x < cols; x++) {
+                    if(grid[x][y] != 0) filled++;
+                }
+                if(filled == cols) {
+                    lines++;
+                    for(int x = 0; x < cols; x++) clear[x][y] = true;
+                }
+            }
+            int blocks = 0;
+            for(int x = 0; x < cols; x++) {
+                for(int y = 0; y < rows; y++) {
+                    if(clear[x][y]) {
+                        grid[x][y] = 0;
+                        blocks++;
+                    }
+                }
+            }
+            return new int[] { lines, blocks };
+        }
+    }
+
+    /**
+     * Play random pieces at random positions, and check that both grids agree on every check, every block and every
+     * line cleared along the way
+     * @param cols grid width
+     * @param rows grid height
+     */
+    @ParameterizedTest
+    @CsvSource({ "5,5", "3,3", "1,7", "10,10", "63,4", "64,3", "65,5", "70,70", "130,6" })
+    void matchesArrayGrid(int cols, int rows) {
+        var random = new SplittableRandom(cols * 1000L + rows);
+        var grid = new Grid(cols, rows);
+        var expected = new ArrayGrid(cols, rows);
+
+        for(int move = 0; move < 400; move++) {
+            var piece = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(GamePiece.ROTATIONS));
+            int x = random.nextInt(-1, cols + 1);
+            int y = random.nextInt(-1, rows + 1);
+
+            assertEquals(expected.canPlayPiece(piece, x, y), grid.canPlayPiece(piece, x, y),
+                    () -> piece + " at " + x + "," + y);
+            checkLegalPlacements(grid, expected, piece);
+
+            grid.playPiece(piece, x, y);
+            expected.playPiece(piece, x, y);
+            assertSameBlocks(expected, grid);
+
+            LineClear lines = grid.detectLines();
+            int blocks = grid.clearLines(lines);
+            int[] expectedLines = expected.afterPiece();
+            assertEquals(expectedLines[0], lines.getLines(), "lines after move " + move);
+            assertEquals(expectedLines[1], blocks, "blocks after move " + move);
+            assertSameBlocks(expected, grid);
+        }
+    }
+
+    /**
+     * Blocks set directly, not through a piece, are still picked up by line detection
+     */
+    @Test
+    void detectsLinesFilledBySet() {
+        var grid = new Grid(4, 3);
+        for(int x = 0; x < 4; x++) {
+            grid.set(x, 1, 2);
+        }
+        grid.set(2, 0, 1);
+        grid.set(2, 2, 1);
+
+        LineClear lines = grid.detectLines();
+        assertEquals(2, lines.getLines());
+        assertTrue(lines.isRowCleared(1));
+        assertTrue(lines.isColumnCleared(2));
+        assertEquals(6, grid.clearLines(lines));
+        for(int x = 0; x < 4; x++) {
+            for(int y = 0; y < 3; y++) {
+                assertFalse(grid.isOccupied(x, y));
+            }
+        }
+
+        //Lines are only reported once
+        assertEquals(0, grid.detectLines().getLines());
+    }
+
+    /**
+     * Property views follow the blocks they were taken from
+     */
+    @Test
+    void propertiesFollowSet() {
+        var grid = new Grid(5, 5);
+        var property = grid.getGridProperty(3, 4);
+        grid.set(3, 4, 7);
+        assertEquals(7, property.get());
+        grid.set(3, 4, 0);
+        assertEquals(0, property.get());
+        assertEquals(-1, grid.get(5, 0));
+    }
+
+    /**
+     * Check the legal placement mask against the array grid at every position
+     * @param grid the grid
+     * @param expected the array grid
+     * @param piece the piece
+     */
+    private static void checkLegalPlacements(Grid grid, ArrayGrid expected, GamePiece piece) {
+        PlacementMask mask = grid.getLegalPlacements(piece);
+        int count = 0;
+        for(int x = 0; x < expected.cols; x++) {
+            for(int y = 0; y < expected.rows; y++) {
+                boolean legal = expected.canPlayPiece(piece, x, y);
+                assertEquals(legal, mask.isLegal(x, y), piece + " mask at " + x + "," + y);
+                if(legal) count++;
+            }
+        }
+        assertEquals(count, mask.count());
+    }
+
+    /**
+     * Check both grids hold the same value in every block
+     * @param expected the array grid
+     * @param grid the grid
+     */
+    private static void assertSameBlocks(ArrayGrid expected, Grid grid) {
+        for(int x = 0; x < expected.cols; x++) {
+            for(int y = 0; y < expected.rows; y++) {
+                assertEquals(expected.grid[x][y], grid.get(x, y), "block " + x + "," + y);
+                assertEquals(expected.grid[x][y] != 0, grid.isOccupied(x, y));
+            }
+        }
+    }
+}
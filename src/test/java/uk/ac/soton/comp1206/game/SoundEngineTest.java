@@ -0,0 +1,84 @@
+package uk.ac.soton.comp1206.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the SoundEngine reads how long each sound plays for, which is how long a play holds its voice.
+ */
+class SoundEngineTest {
+
+    /**
+     * The length comes from the byte rate and data size, past any other chunks, including odd sized ones
+     * @throws IOException if the header could not be read
+     */
+    @Test
+    void readsWavLength() throws IOException {
+        var wav = new ByteArrayOutputStream();
+        wav.writeBytes("RIFF".getBytes(StandardCharsets.US_ASCII));
+        wav.writeBytes(littleEndian(0));
+        wav.writeBytes("WAVE".getBytes(StandardCharsets.US_ASCII));
+        chunk(wav, "bext", new byte[3]);
+        //An 18 byte format chunk, as some of the game's sounds have
+        var format = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort((short) 1).putShort((short) 2).putInt(44100).putInt(176400).putShort((short) 4)
+                .putShort((short) 16);
+        chunk(wav, "fmt ", format.array());
+        chunk(wav, "data", new byte[88200]);
+
+        assertEquals(500_000_000L, SoundEngine.wavNanos(new ByteArrayInputStream(wav.toByteArray())));
+        assertThrows(IOException.class, () -> SoundEngine.wavNanos(new ByteArrayInputStream(new byte[12])));
+    }
+
+    /**
+     * Every WAV sound the game ships can be read, and none is implausibly long
+     * @throws IOException if a sound could not be read
+     */
+    @Test
+    void readsEverySound() throws IOException {
+        for(Sound sound : Sound.values()) {
+            if(!sound.getResource().endsWith(".wav")) {
+                continue;
+            }
+            try (InputStream in = SoundEngine.class.getResourceAsStream(sound.getResource())) {
+                long nanos = SoundEngine.wavNanos(in);
+                assertTrue(nanos > 0 && nanos < 30_000_000_000L, sound + " plays for " + nanos + "ns");
+            }
+        }
+    }
+
+    /**
+     * Write a chunk, padded to an even length
+     * @param out stream to write to
+     * @param id chunk id
+     * @param body chunk body
+     */
+    private static void chunk(ByteArrayOutputStream out, String id, byte[] body) {
+        out.writeBytes(id.getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(littleEndian(body.length));
+        out.writeBytes(body);
+        if(body.length % 2 == 1) {
+            out.write(0);
+        }
+    }
+
+    /**
+     * Get an int as little endian bytes
+     * @param value the int
+     * @return the bytes
+     */
+    private static byte[] littleEndian(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+}
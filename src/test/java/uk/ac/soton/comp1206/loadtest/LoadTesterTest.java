@@ -0,0 +1,134 @@
+package uk.ac.soton.comp1206.loadtest;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.soton.comp1206.server.WebSocketFrames;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the load tester counts requests lost with a dropped connection, and clients that never finish the
+ * handshake, as errors.
+ */
+class LoadTesterTest {
+
+    /**
+     * Requests waiting when the server drops the connection are counted as unanswered
+     * @throws Exception if the server could not be started
+     */
+    @Test
+    void countsRequestsLostWithConnection() throws Exception {
+        try (var listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            start(() -> {
+                try (Socket socket = listener.accept()) {
+                    handshake(socket);
+                    //Take a few requests without answering them, then hang up
+                    Thread.sleep(300);
+                }
+                return null;
+            });
+            String json = run(listener.getLocalPort(), 2000).toJson();
+            assertEquals(1, count(json, "disconnects"));
+            assertEquals(0, count(json, "timeouts"));
+            assertTrue(count(json, "unanswered") > 0, json);
+        }
+    }
+
+    /**
+     * A client whose handshake is never answered is counted as a failed connection once the timeout passes
+     * @throws Exception if the server could not be started
+     */
+    @Test
+    void countsStuckHandshakeAsFailed() throws Exception {
+        try (var listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            start(() -> {
+                try (Socket socket = listener.accept()) {
+                    Thread.sleep(2000);
+                }
+                return null;
+            });
+            LoadReport report = run(listener.getLocalPort(), 300);
+            assertEquals(0, report.getEstablished());
+            assertEquals(1, count(report.toJson(), "connectFailures"));
+        }
+    }
+
+    /**
+     * Run one client asking for the high scores every 100ms for a second
+     * @param port the server's port
+     * @param timeoutMillis how long to wait for the handshake and each answer
+     * @return the report
+     * @throws IOException if the selector could not be opened
+     */
+    private static LoadReport run(int port, long timeoutMillis) throws IOException {
+        var tester = new LoadTester();
+        tester.setPort(port);
+        tester.setClients(1);
+        tester.setDurationMillis(1000);
+        tester.setIntervalMillis(100);
+        tester.setRampMillis(0);
+        tester.setTimeoutMillis(timeoutMillis);
+        tester.setMix("hiscores=1");
+        return tester.run();
+    }
+
+    /**
+     * Answer a client's WebSocket upgrade request
+     * @param socket the client's socket
+     * @throws IOException if the socket could not be used
+     */
+    private static void handshake(Socket socket) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        String key = "";
+        String line;
+        while((line = reader.readLine()) != null && !line.isEmpty()) {
+            if(line.toLowerCase(Locale.ROOT).startsWith("sec-websocket-key:")) {
+                key = line.substring(line.indexOf(':') + 1);
+            }
+        }
+        String response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + WebSocketFrames.acceptKey(key) + "\r\n\r\n";
+        socket.getOutputStream().write(response.getBytes(StandardCharsets.ISO_8859_1));
+        socket.getOutputStream().flush();
+    }
+
+    /**
+     * Run a fake server on a background thread
+     * @param server the server
+     */
+    private static void start(Callable<Void> server) {
+        var thread = new Thread(() -> {
+            try {
+                server.call();
+            } catch (Exception e) {
+                //The test has finished with the server
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Read a count from a report's JSON
+     * @param json the report
+     * @param name the count's name
+     * @return the count
+     */
+    private static long count(String json, String name) {
+        Matcher matcher = Pattern.compile("\"" + name + "\": (\\d+)").matcher(json);
+        assertTrue(matcher.find(), name + " missing from " + json);
+        return Long.parseLong(matcher.group(1));
+    }
+}
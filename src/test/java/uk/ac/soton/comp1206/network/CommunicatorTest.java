@@ -0,0 +1,150 @@
+package uk.ac.soton.comp1206.network;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.soton.comp1206.server.TetrECSServer;
+import uk.ac.soton.comp1206.server.WebSocketFrames;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that score submissions are matched to the server's confirmations, however the name and score were written,
+ * and that reconnecting backs off when the server keeps dropping the game.
+ */
+class CommunicatorTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Submissions are put in the form the server confirms them in
+     */
+    @Test
+    void normalisesSubmissions() {
+        assertEquals("HISCORE bob:12", Communicator.normaliseSubmission("HISCORE  bob \n:+012"));
+        assertEquals("HISCORE a:b:5", Communicator.normaliseSubmission("HISCORE a:b:5"));
+        assertNull(Communicator.normaliseSubmission("HISCORE bob"));
+        assertNull(Communicator.normaliseSubmission("HISCORE bob:twelve"));
+        assertNull(Communicator.normaliseSubmission("HISCORE  \r:5"));
+    }
+
+    /**
+     * A submission with a padded name and a padded score is confirmed by the local server, and so no longer kept
+     * @throws Exception if the server could not be started
+     */
+    @Test
+    void confirmedByServer() throws Exception {
+        var server = TetrECSServer.open(new InetSocketAddress("localhost", 0), dir.resolve("server.dat"));
+        server.start();
+        var communicator = new Communicator("ws://localhost:" + server.getPort(), 16, dir.resolve("offline"));
+        try {
+            communicator.send("HISCORE  alice :+012");
+            communicator.send("HISCORE carol\r:007");
+            awaitUnconfirmed(communicator, 0);
+        } finally {
+            communicator.close();
+            server.close();
+        }
+    }
+
+    /**
+     * Submissions kept by an earlier run are normalised when loaded, and invalid ones dropped
+     * @throws IOException if the offline file could not be written
+     */
+    @Test
+    void normalisesKeptSubmissions() throws IOException {
+        Path offline = dir.resolve("offline");
+        Files.write(offline, List.of("HISCORE  dave :0042", "HISCORE dave:42", "HISCORE nobody"));
+        //Nothing is listening here, so nothing is confirmed
+        var communicator = new Communicator("ws://localhost:1", 16, offline);
+        try {
+            assertEquals(1, communicator.getUnconfirmed());
+        } finally {
+            communicator.close();
+        }
+    }
+
+    /**
+     * A server that accepts the game and then drops it at once is reconnected to with a growing wait, not in a loop
+     * @throws Exception if the server could not be started
+     */
+    @Test
+    void backsOffWhenDroppedAtOnce() throws Exception {
+        var accepted = new AtomicInteger();
+        try (var listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            var server = new Thread(() -> dropEveryConnection(listener, accepted));
+            server.setDaemon(true);
+            server.start();
+
+            var communicator = new Communicator("ws://localhost:" + listener.getLocalPort(), 16,
+                    dir.resolve("offline"));
+            try {
+                communicator.getConnected().get(10, TimeUnit.SECONDS);
+                Thread.sleep(2000);
+            } finally {
+                communicator.close();
+            }
+        }
+        //Waits of at least 0.25s, 0.5s and 1s leave time for four connections at most
+        assertTrue(accepted.get() <= 4, accepted.get() + " connections in 2s");
+    }
+
+    /**
+     * Accept each web socket handshake, then close the connection straight away
+     * @param listener the server socket
+     * @param accepted counts the connections accepted
+     */
+    private static void dropEveryConnection(ServerSocket listener, AtomicInteger accepted) {
+        while(!listener.isClosed()) {
+            try (Socket socket = listener.accept()) {
+                accepted.incrementAndGet();
+                var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.ISO_8859_1));
+                String key = "";
+                String line;
+                while((line = reader.readLine()) != null && !line.isEmpty()) {
+                    if(line.toLowerCase(Locale.ROOT).startsWith("sec-websocket-key:")) {
+                        key = line.substring(line.indexOf(':') + 1);
+                    }
+                }
+                String response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                        + "Sec-WebSocket-Accept: " + WebSocketFrames.acceptKey(key) + "\r\n\r\n";
+                socket.getOutputStream().write(response.getBytes(StandardCharsets.ISO_8859_1));
+                socket.getOutputStream().flush();
+            } catch (IOException e) {
+                //Closed when the test ends
+            }
+        }
+    }
+
+    /**
+     * Wait for the number of unconfirmed submissions to reach a value
+     * @param communicator the communicator
+     * @param expected the number to wait for
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitUnconfirmed(Communicator communicator, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while(communicator.getUnconfirmed() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, communicator.getUnconfirmed());
+    }
+}
@@ -0,0 +1,82 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static uk.ac.soton.comp1206.scores.ScoreLogTest.text;
+
+/**
+ * Checks that the HighScoreService keeps every score exactly once, including scores submitted while the log is being
+ * read.
+ */
+class HighScoreServiceTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Scores submitted before, during and after reading the log are each on the leaderboard and in the log once
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void keepsScoresSubmittedWhileLoading() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        Path journal = dir.resolve("scores.journal");
+        var expected = new ArrayList<ScoreEntry>();
+        try (var log = new ScoreLog(file)) {
+            for(int i = 0; i < 20000; i++) {
+                var entry = new ScoreEntry("saved" + i, i % 1000);
+                log.append(entry);
+                expected.add(entry);
+            }
+        }
+
+        try (var log = new ScoreLog(file); var writer = new ScoreWriter(log, journal)) {
+            var scores = new HighScoreService(log, writer);
+            assertEquals(999, scores.getHighScore());
+            scores.submit("before", 5000);
+            expected.add(new ScoreEntry("before", 5000));
+
+            var loaded = scores.preload();
+            for(int i = 0; i < 200; i++) {
+                scores.submit("during", i * 7);
+                expected.add(new ScoreEntry("during", i * 7));
+            }
+            loaded.join();
+            scores.submit("after", 1500).join();
+            expected.add(new ScoreEntry("after", 1500));
+
+            expected.sort(Comparator.comparingInt(ScoreEntry::getScore).reversed());
+            assertEquals(expected.size(), scores.size());
+            assertEquals(text(expected), text(scores.page(0, expected.size())));
+            assertEquals(5000, scores.getHighScore());
+            assertEquals(2, scores.rank(1500));
+            assertEquals(1393, scores.getBest("during").getScore());
+            assertNull(scores.getBest("nobody"));
+        }
+
+        try (var log = new ScoreLog(file)) {
+            assertEquals(expected.size(), log.getCount());
+        }
+    }
+
+    /**
+     * Without a log, scores are kept in memory
+     */
+    @Test
+    void keepsScoresInMemoryWithoutLog() {
+        var scores = new HighScoreService(null, null);
+        scores.submit("alice", 10).join();
+        scores.submit("bob", 30).join();
+        assertEquals(30, scores.getHighScore());
+        assertEquals(List.of("bob:30", "alice:10"), text(scores.topK(5)));
+    }
+}
@@ -0,0 +1,140 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.ac.soton.comp1206.scores.ScoreLogTest.text;
+
+/**
+ * Checks the Leaderboard against a list kept sorted by stable sorting, highest first, which is what it replaced.
+ */
+class LeaderboardTest {
+
+    /**
+     * Adding random scores gives the same order, ranks, pages and bests as the sorted list, checked as it grows
+     * @param count number of scores to add
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 2, 10, 1000, 5000 })
+    void matchesSortedList(int count) {
+        var random = new SplittableRandom(count);
+        var leaderboard = new Leaderboard(1);
+        var expected = new ArrayList<ScoreEntry>();
+        for(int i = 0; i < count; i++) {
+            //A narrow range of scores, so there are plenty of equal scores
+            var entry = new ScoreEntry("p" + random.nextInt(50), random.nextInt(-20, 200));
+            leaderboard.add(entry);
+            expected.add(entry);
+            if(Integer.bitCount(i) == 1) {
+                check(leaderboard, sorted(expected), random);
+            }
+        }
+        check(leaderboard, sorted(expected), random);
+    }
+
+    /**
+     * A leaderboard built from sorted scores matches one built by adding them
+     * @param count number of scores
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 2, 3, 100, 10000 })
+    void sortedBuilderMatchesAdding(int count) {
+        var random = new SplittableRandom(count);
+        var entries = new ArrayList<ScoreEntry>();
+        for(int i = 0; i < count; i++) {
+            entries.add(new ScoreEntry("p" + random.nextInt(30), random.nextInt(100)));
+        }
+        var expected = sorted(entries);
+
+        var builder = new Leaderboard.SortedBuilder(1);
+        for(ScoreEntry entry : expected) {
+            builder.add(entry.getName(), entry.getScore());
+        }
+        var built = builder.build();
+        check(built, expected, random);
+
+        //A built leaderboard can still be added to
+        built.add("late", 50);
+        var added = new ArrayList<>(entries);
+        added.add(new ScoreEntry("late", 50));
+        check(built, sorted(added), random);
+    }
+
+    /**
+     * The builder only takes scores in order, and only until it has built
+     */
+    @Test
+    void sortedBuilderRejectsScoresOutOfOrder() {
+        var builder = new Leaderboard.SortedBuilder(4);
+        builder.add("a", 10);
+        builder.add("b", 10);
+        assertThrows(IllegalArgumentException.class, () -> builder.add("c", 11));
+        builder.build();
+        assertThrows(IllegalStateException.class, () -> builder.add("d", 1));
+    }
+
+    /**
+     * Sort scores as the leaderboard should hold them
+     * @param entries the scores, in the order added
+     * @return the scores highest first, equal scores in the order added
+     */
+    private static List<ScoreEntry> sorted(List<ScoreEntry> entries) {
+        var sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(ScoreEntry::getScore).reversed());
+        return sorted;
+    }
+
+    /**
+     * Check every lookup on a leaderboard against the sorted list
+     * @param leaderboard the leaderboard
+     * @param expected the scores, sorted
+     * @param random source of pages to check
+     */
+    private static void check(Leaderboard leaderboard, List<ScoreEntry> expected, SplittableRandom random) {
+        int size = expected.size();
+        assertEquals(size, leaderboard.size());
+        assertEquals(size == 0 ? 0 : expected.get(0).getScore(), leaderboard.getHighScore());
+        assertEquals(text(expected), text(leaderboard.page(0, size)));
+        for(int i = 0; i < size; i++) {
+            assertEquals(text(expected.subList(i, i + 1)), text(List.of(leaderboard.get(i))));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> leaderboard.get(size));
+
+        for(int i = 0; i < 20; i++) {
+            int from = random.nextInt(-2, size + 3);
+            int length = random.nextInt(-1, 40);
+            int start = Math.max(from, 0);
+            int end = Math.max(start, Math.min(size, start + Math.max(length, 0)));
+            var page = start >= size ? List.<ScoreEntry>of() : expected.subList(start, end);
+            assertEquals(text(page), text(leaderboard.page(from, length)), "page " + from + " " + length);
+        }
+
+        for(int score = -25; score <= 205; score++) {
+            int above = 0;
+            while(above < size && expected.get(above).getScore() > score) {
+                above++;
+            }
+            assertEquals(above + 1, leaderboard.rank(score), "rank of " + score);
+        }
+
+        for(int player = 0; player < 50; player++) {
+            String name = "p" + player;
+            ScoreEntry best = expected.stream().filter(entry -> entry.getName().equals(name)).findFirst().orElse(null);
+            ScoreEntry found = leaderboard.getBest(name);
+            if(best == null) {
+                assertNull(found);
+            } else {
+                assertEquals(best.getScore(), found.getScore(), "best of " + name);
+            }
+        }
+    }
+}
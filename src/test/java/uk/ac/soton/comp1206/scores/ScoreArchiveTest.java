@@ -0,0 +1,132 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.ac.soton.comp1206.scores.ScoreLogTest.text;
+
+/**
+ * Checks that importing a score archive gives the same scores, in the same order, however the files are split into
+ * chunks, including when lines straddle the chunk boundaries.
+ */
+class ScoreArchiveTest {
+
+    private static final String[] NAMES = { "alice", "bob", "zoë", "a:b", "", " spaced " };
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Every chunk size gives the scores ScoreEntry.parse reads from the same lines, sorted best first with equal scores
+     * in file order
+     * @param chunkBytes the chunk size
+     * @throws IOException if the files could not be used
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 3, 5, 7, 13, 64, 4096, ScoreArchive.CHUNK_BYTES })
+    void matchesLineByLineParse(int chunkBytes) throws IOException {
+        var random = new SplittableRandom(42);
+        Path first = write("first.txt", lines(random, 500), false);
+        Path second = write("second.txt", lines(random, 300), true);
+
+        var archive = new ScoreArchive();
+        archive.setThreads(4);
+        archive.setChunkBytes(chunkBytes);
+        var report = archive.importFiles(List.of(first, second));
+
+        var expected = new ArrayList<ScoreEntry>();
+        int rejected = parse(first, expected) + parse(second, expected);
+        expected.sort(Comparator.comparingInt(ScoreEntry::getScore).reversed());
+
+        assertEquals(rejected, report.getRejected());
+        assertEquals(expected.size(), report.getRecords());
+        var leaderboard = report.getLeaderboard();
+        assertEquals(text(expected), text(leaderboard.page(0, leaderboard.size())));
+    }
+
+    /**
+     * Scores already on a leaderboard come before equal scores from the files
+     * @throws IOException if the file could not be used
+     */
+    @Test
+    void keepsExistingScoresFirst() throws IOException {
+        Path file = write("scores.txt", List.of("new:5", "new:9", "new:1"), true);
+        var existing = new Leaderboard();
+        existing.add("old", 5);
+        existing.add("old", 7);
+
+        var archive = new ScoreArchive();
+        archive.setChunkBytes(4);
+        var leaderboard = archive.importFiles(List.of(file), existing).getLeaderboard();
+        assertEquals(List.of("new:9", "old:7", "old:5", "new:5", "new:1"), text(leaderboard.page(0, 10)));
+    }
+
+    /**
+     * Make random score lines, with some blank and some invalid
+     * @param random source of randomness
+     * @param count number of lines
+     * @return the lines
+     */
+    private static List<String> lines(SplittableRandom random, int count) {
+        var lines = new ArrayList<String>();
+        for(int i = 0; i < count; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            lines.add(switch (random.nextInt(20)) {
+                case 0 -> "";
+                case 1 -> "no colon";
+                case 2 -> name + ":not a score";
+                case 3 -> name + ":99999999999";
+                case 4 -> name + ": -" + random.nextInt(100) + " \r";
+                default -> name + ":" + random.nextInt(50);
+            });
+        }
+        return lines;
+    }
+
+    /**
+     * Write lines to a file
+     * @param name file name
+     * @param lines the lines
+     * @param finalBreak whether the last line ends with a line break
+     * @return the file
+     * @throws IOException if the file could not be written
+     */
+    private Path write(String name, List<String> lines, boolean finalBreak) throws IOException {
+        String text = String.join("\n", lines) + (finalBreak ? "\n" : "");
+        return Files.writeString(dir.resolve(name), text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse a file line by line with ScoreEntry.parse
+     * @param file the file
+     * @param entries list to add the scores to
+     * @return number of lines rejected
+     * @throws IOException if the file could not be read
+     */
+    private static int parse(Path file, List<ScoreEntry> entries) throws IOException {
+        int rejected = 0;
+        for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if(line.isBlank()) {
+                continue;
+            }
+            try {
+                entries.add(ScoreEntry.parse(line));
+            } catch (IllegalArgumentException e) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+}
@@ -0,0 +1,177 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a ScoreLog keeps its scores across reopening, compaction and imports, including when they fail, and that
+ * compaction only drops copies.
+ */
+class ScoreLogTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Scores appended are read back in order after the log is reopened
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void reopensWithEveryScore() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        try (var log = new ScoreLog(file)) {
+            log.append(new ScoreEntry("alice", 300));
+            log.append(new ScoreEntry("bob", 500));
+            log.append(new ScoreEntry("alice", 100));
+        }
+        try (var log = new ScoreLog(file)) {
+            assertEquals(3, log.getCount());
+            assertEquals(500, log.getMaxScore());
+            assertEquals(List.of("alice:300", "bob:500", "alice:100"), text(log.readAll()));
+        }
+    }
+
+    /**
+     * Compaction drops copies imported from a text file, and the compacted log can be added to and reopened
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void reopensAfterCompaction() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        Path textFile = dir.resolve("scores.txt");
+        var lines = new ArrayList<String>();
+        var expected = new ArrayList<String>();
+        for(int i = 0; i < 200; i++) {
+            lines.add("player" + (i % 5) + ":" + (i % 20) * 10);
+        }
+        for(int i = 0; i < 20; i++) {
+            expected.add("player" + (i % 5) + ":" + i * 10);
+        }
+        Files.write(textFile, lines);
+
+        try (var log = new ScoreLog(file)) {
+            log.importText(textFile);
+            log.readAll();
+            assertTrue(log.needsCompaction());
+
+            log.compact();
+            assertEquals(20, log.getCount());
+            assertEquals(190, log.getMaxScore());
+            assertFalse(Files.exists(dir.resolve("scores.dat.compact")));
+
+            log.append(new ScoreEntry("carol", 1000));
+            expected.add("carol:1000");
+            assertEquals(expected, text(log.readAll()));
+        }
+        try (var log = new ScoreLog(file)) {
+            assertEquals(21, log.getCount());
+            assertEquals(1000, log.getMaxScore());
+            assertEquals(expected, text(log.readAll()));
+        }
+    }
+
+    /**
+     * A player scoring the same again, alone or in one batch, is kept through compaction and is not counted as a copy
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void keepsEqualScoresByOnePlayer() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        var expected = new ArrayList<String>();
+        try (var log = new ScoreLog(file)) {
+            for(int i = 0; i < 100; i++) {
+                log.append(new ScoreEntry("alice", 0));
+                expected.add("alice:0");
+            }
+            var batch = new ArrayList<ScoreEntry>();
+            for(int i = 0; i < 100; i++) {
+                batch.add(new ScoreEntry("alice", 500));
+                expected.add("alice:500");
+            }
+            log.append(batch);
+
+            assertEquals(expected, text(log.readAll()));
+            assertFalse(log.needsCompaction());
+            log.compact();
+            assertEquals(expected, text(log.readAll()));
+        }
+        try (var log = new ScoreLog(file)) {
+            log.append(new ScoreEntry("alice", 500));
+            expected.add("alice:500");
+            log.compact();
+            assertEquals(expected, text(log.readAll()));
+        }
+    }
+
+    /**
+     * A compaction that fails leaves the original log open and usable, and removes its partial copy
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void staysUsableWhenCompactionFails() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        //A directory in the way stops the compacted copy being written
+        Path compactFile = Files.createDirectory(dir.resolve("scores.dat.compact"));
+        Files.write(compactFile.resolve("blocker"), new byte[1]);
+
+        try (var log = new ScoreLog(file)) {
+            log.append(new ScoreEntry("alice", 10));
+            log.append(new ScoreEntry("alice", 10));
+            assertThrows(IOException.class, log::compact);
+
+            log.append(new ScoreEntry("bob", 20));
+            log.sync();
+            assertEquals(List.of("alice:10", "alice:10", "bob:20"), text(log.readAll()));
+        }
+    }
+
+    /**
+     * An import that fails is tried again the next time the log is opened, and one that succeeds is not repeated
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void retriesImportUntilItSucceeds() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        Path textFile = dir.resolve("scores.txt");
+        //A directory cannot be read as a text file, so the first import fails
+        Files.createDirectory(textFile);
+
+        try (var log = ScoreLog.open(file, textFile)) {
+            assertEquals(0, log.getCount());
+            log.append(new ScoreEntry("new", 5));
+        }
+
+        Files.delete(textFile);
+        Files.write(textFile, List.of("alice:300", "not a score", "bob:200"));
+        try (var log = ScoreLog.open(file, textFile)) {
+            assertEquals(List.of("new:5", "alice:300", "bob:200"), text(log.readAll()));
+        }
+        try (var log = ScoreLog.open(file, textFile)) {
+            assertEquals(3, log.getCount());
+        }
+    }
+
+    /**
+     * Get each score as name:score, for comparing
+     * @param entries the scores
+     * @return the scores as text
+     */
+    static List<String> text(List<ScoreEntry> entries) {
+        var text = new ArrayList<String>();
+        for(ScoreEntry entry : entries) {
+            text.add(entry.getName() + ":" + entry.getScore());
+        }
+        return text;
+    }
+}
@@ -0,0 +1,205 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.ac.soton.comp1206.scores.ScoreLogTest.text;
+
+/**
+ * Checks that a ScoreWriter saves every score exactly once, including when the game stopped part way through a batch,
+ * when a batch failed to save and when the log has been compacted.
+ */
+class ScoreWriterTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Scores written are in the log once the writer is closed
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void savesScores() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        try (var log = new ScoreLog(file); var writer = new ScoreWriter(log, dir.resolve("scores.journal"))) {
+            for(int i = 0; i < 1000; i++) {
+                writer.write(new ScoreEntry("player", i));
+            }
+            writer.flush().join();
+            assertEquals(1000, log.getCount());
+        }
+        try (var log = new ScoreLog(file)) {
+            assertEquals(1000, log.getCount());
+            assertEquals(999, log.getMaxScore());
+        }
+    }
+
+    /**
+     * A batch that only partly reached the log before the game stopped has just its missing scores replayed
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void recoversBatchCutShort() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        Path journal = dir.resolve("scores.journal");
+        try (var log = new ScoreLog(file)) {
+            log.append(new ScoreEntry("before", 1));
+            //The first score of the batch reached the log, the rest did not
+            log.append(new ScoreEntry("a", 10));
+        }
+        Files.writeString(journal, batch(1, "a:10", "b:20", "c:30")
+                + "BATCH 4 2\nd:40\n", StandardCharsets.UTF_8);
+
+        try (var log = new ScoreLog(file); var writer = new ScoreWriter(log, journal)) {
+            assertEquals(List.of("before:1", "a:10", "b:20", "c:30"), text(log.readAll()));
+        }
+        //The journal is cleared once replayed, so reopening adds nothing
+        try (var log = new ScoreLog(file); var writer = new ScoreWriter(log, journal)) {
+            assertEquals(4, log.getCount());
+        }
+    }
+
+    /**
+     * Scores saved before, during and after compaction are each kept once, and a batch cut short after compaction is
+     * replayed against the compacted log
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void recoversAfterCompaction() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        Path journal = dir.resolve("scores.journal");
+        Path textFile = dir.resolve("scores.txt");
+        Files.write(textFile, Collections.nCopies(300, "dup:7"));
+        var expected = new ArrayList<String>();
+        //Imported copies, which compaction drops
+        try (var log = ScoreLog.open(file, textFile)) {
+            expected.add("dup:7");
+        }
+        try (var log = new ScoreLog(file); var writer = new ScoreWriter(log, journal)) {
+            for(int i = 0; i < 100; i++) {
+                writer.write(new ScoreEntry("before", 7));
+                expected.add("before:7");
+            }
+            var compacted = writer.compact();
+            for(int i = 0; i < 50; i++) {
+                writer.write(new ScoreEntry("after", i));
+                expected.add("after:" + i);
+            }
+            compacted.join();
+            writer.flush().join();
+            assertEquals(expected, text(log.readAll()));
+        }
+
+        //Stop part way through a batch written after the compaction
+        try (var log = new ScoreLog(file)) {
+            log.append(new ScoreEntry("late", 1));
+        }
+        Files.writeString(journal, batch(expected.size(), "late:1", "late:2"), StandardCharsets.UTF_8);
+        expected.add("late:1");
+        expected.add("late:2");
+
+        try (var log = new ScoreLog(file); var writer = new ScoreWriter(log, journal)) {
+            assertEquals(expected, text(log.readAll()));
+        }
+    }
+
+    /**
+     * Scores in a batch that failed part way into the log are replayed before the next batch, so every score reaches
+     * the log once and in order
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void savesScoresFromFailedBatch() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        var expected = new ArrayList<String>();
+        try (var log = new FailingLog(file); var writer = new ScoreWriter(log, dir.resolve("scores.journal"))) {
+            var failed = writer.write(new ScoreEntry("first", 1));
+            expected.add("first:1");
+            for(int i = 0; i < 20; i++) {
+                writer.write(new ScoreEntry("player", i));
+                expected.add("player:" + i);
+            }
+            writer.flush().join();
+            assertTrue(failed.isCompletedExceptionally());
+
+            for(int i = 0; i < 20; i++) {
+                writer.write(new ScoreEntry("later", i));
+                expected.add("later:" + i);
+            }
+            writer.flush().join();
+            assertEquals(expected, text(log.readAll()));
+        }
+        try (var log = new ScoreLog(file)) {
+            assertEquals(expected, text(log.readAll()));
+        }
+    }
+
+    /**
+     * A log whose first batched append writes only the first of its scores and then fails
+     */
+    private static class FailingLog extends ScoreLog {
+        private boolean failed;
+
+        FailingLog(Path file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        public synchronized void append(List<ScoreEntry> entries) throws IOException {
+            if(!failed) {
+                failed = true;
+                super.append(entries.subList(0, 1));
+                throw new IOException("Disk full");
+            }
+            super.append(entries);
+        }
+    }
+
+    /**
+     * Reading through the writer gets exactly the scores queued before the read
+     * @throws IOException if the log could not be used
+     */
+    @Test
+    void readsScoresQueuedBeforeRead() throws IOException {
+        try (var log = new ScoreLog(dir.resolve("scores.dat"));
+             var writer = new ScoreWriter(log, dir.resolve("scores.journal"))) {
+            for(int i = 0; i < 500; i++) {
+                writer.write(new ScoreEntry("before", i));
+            }
+            var read = writer.readAll();
+            for(int i = 0; i < 500; i++) {
+                writer.write(new ScoreEntry("after", i));
+            }
+            assertEquals(500, read.join().size());
+            writer.flush().join();
+            assertEquals(1000, log.getCount());
+        }
+    }
+
+    /**
+     * Build a complete journal batch, as the writer writes it
+     * @param position the number of scores in the log before the batch
+     * @param lines the scores in the batch, as name:score
+     * @return the batch text
+     */
+    private static String batch(int position, String... lines) {
+        var text = new StringBuilder("BATCH " + position + " " + lines.length + "\n");
+        var crc = new CRC32();
+        for(String line : lines) {
+            crc.update(line.getBytes(StandardCharsets.UTF_8));
+            text.append(line).append('\n');
+        }
+        return text.append("END ").append(crc.getValue()).append('\n').toString();
+    }
+}
@@ -0,0 +1,132 @@
+package uk.ac.soton.comp1206.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every frame WebSocketFrames builds decodes back to what was put in, at each payload length boundary and
+ * however much of the frame has arrived.
+ */
+class WebSocketFramesTest {
+
+    /**
+     * Text frames round trip, masked and unmasked, on each side of the 126 and 65536 byte length encodings
+     * @param length message length in bytes
+     * @throws ProtocolException if a frame is too long, which none are
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 3, 4, 5, 125, 126, 127, 65535, 65536, 70000 })
+    void roundTripsText(int length) throws ProtocolException {
+        String message = message(length);
+        for(ByteBuffer encoded : new ByteBuffer[] {
+                WebSocketFrames.text(message), WebSocketFrames.maskedText(message, 0x9A3C_5E71) }) {
+            var frame = WebSocketFrames.decode(encoded, 1 << 20);
+            assertTrue(frame.isFinal());
+            assertEquals(WebSocketFrames.TEXT, frame.getOpcode());
+            assertEquals(message, new String(frame.getPayload(), StandardCharsets.UTF_8));
+            assertEquals(0, encoded.remaining());
+        }
+    }
+
+    /**
+     * Close and ping frames round trip
+     * @throws ProtocolException if a frame is too long, which none are
+     */
+    @Test
+    void roundTripsControlFrames() throws ProtocolException {
+        for(ByteBuffer encoded : new ByteBuffer[] {
+                WebSocketFrames.close(WebSocketFrames.CLOSE_TOO_BIG),
+                WebSocketFrames.maskedClose(WebSocketFrames.CLOSE_TOO_BIG, -1) }) {
+            var frame = WebSocketFrames.decode(encoded, 125);
+            assertEquals(WebSocketFrames.CLOSE, frame.getOpcode());
+            byte[] code = frame.getPayload();
+            assertEquals(WebSocketFrames.CLOSE_TOO_BIG, (code[0] & 0xFF) << 8 | code[1] & 0xFF);
+        }
+        byte[] payload = { 1, 2, 3 };
+        var ping = WebSocketFrames.decode(WebSocketFrames.frame(WebSocketFrames.PING, payload), 125);
+        assertEquals(WebSocketFrames.PING, ping.getOpcode());
+        assertArrayEquals(payload, ping.getPayload());
+    }
+
+    /**
+     * A frame is not decoded, and the buffer not moved, until every byte of it has arrived
+     * @throws ProtocolException if a frame is too long, which none are
+     */
+    @Test
+    void waitsForWholeFrame() throws ProtocolException {
+        for(int length : new int[] { 5, 300, 70000 }) {
+            ByteBuffer encoded = WebSocketFrames.maskedText(message(length), 12345);
+            int size = encoded.remaining();
+            for(int arrived = 0; arrived < size; arrived = arrived < 20 ? arrived + 1 : arrived * 2) {
+                ByteBuffer partial = encoded.duplicate().limit(arrived);
+                assertNull(WebSocketFrames.decode(partial, 1 << 20), length + " bytes, " + arrived + " arrived");
+                assertEquals(0, partial.position());
+            }
+            assertEquals(message(length), new String(WebSocketFrames.decode(encoded, 1 << 20).getPayload(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Frames arriving together are decoded one after another
+     * @throws ProtocolException if a frame is too long, which none are
+     */
+    @Test
+    void decodesFramesInTurn() throws ProtocolException {
+        ByteBuffer first = WebSocketFrames.maskedText("HISCORES", 1);
+        ByteBuffer second = WebSocketFrames.maskedText(message(200), 2);
+        ByteBuffer both = ByteBuffer.allocate(first.remaining() + second.remaining()).put(first).put(second).flip();
+
+        assertEquals("HISCORES", new String(WebSocketFrames.decode(both, 1024).getPayload(), StandardCharsets.UTF_8));
+        assertEquals(message(200), new String(WebSocketFrames.decode(both, 1024).getPayload(), StandardCharsets.UTF_8));
+        assertNull(WebSocketFrames.decode(both, 1024));
+    }
+
+    /**
+     * A frame longer than allowed is refused as soon as its length is known
+     */
+    @Test
+    void refusesLongFrames() {
+        ByteBuffer header = WebSocketFrames.maskedText(message(1000), 7).limit(4);
+        assertThrows(ProtocolException.class, () -> WebSocketFrames.decode(header, 999));
+    }
+
+    /**
+     * The handshake key matches the example in RFC 6455
+     */
+    @Test
+    void acceptsKey() {
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", WebSocketFrames.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+    }
+
+    /**
+     * Make a message of a number of bytes, mixing one and two byte characters
+     * @param length length in bytes
+     * @return the message
+     */
+    private static String message(int length) {
+        var text = new StringBuilder();
+        int bytes = 0;
+        while(bytes < length) {
+            if(length - bytes >= 2 && bytes % 7 == 0) {
+                text.append('é');
+                bytes += 2;
+            } else {
+                text.append((char) ('a' + bytes % 26));
+                bytes++;
+            }
+        }
+        return text.toString();
+    }
+}